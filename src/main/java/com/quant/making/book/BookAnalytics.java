@@ -0,0 +1,155 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 订单簿盘口指标：微观价格、前 k 档买卖失衡、按数量扫单的成交均价
+ * 每一侧的累计数量和累计名义金额由订单簿写者在该侧前 N 档深度发布新版本时随之重建（O(N)），
+ * 前 N 档之外的变化不触发重算；读取只在累计数组上做常数或 O(N) 计算，不扫描订单簿
+ *
+ * 实例为订单簿某一版本上的不可变快照，版本与 OrderBook.getVersion 一致
+ */
+public final class BookAnalytics {
+
+    // 比率和价格的计算精度
+    private static final int SCALE = 8;
+
+    private final long version;
+    private final Side bid;
+    private final Side ask;
+
+    /**
+     * 单边累计统计，按价格优先级排列，与所基于的深度一同发布后不再修改
+     */
+    static final class Side {
+        static final Side EMPTY = new Side(BookDepth.empty(OrderBook.BUY, 0));
+
+        private final BookDepth depth;
+        // 前 i+1 档的累计数量和累计名义金额（价格 × 数量）
+        private final BigDecimal[] cumulativeQty;
+        private final BigDecimal[] cumulativeNotional;
+
+        private Side(BookDepth depth) {
+            this.depth = depth;
+            int size = depth.size();
+            this.cumulativeQty = new BigDecimal[size];
+            this.cumulativeNotional = new BigDecimal[size];
+            BigDecimal qty = BigDecimal.ZERO;
+            BigDecimal notional = BigDecimal.ZERO;
+            for (int i = 0; i < size; i++) {
+                qty = qty.add(depth.getQuantity(i));
+                notional = notional.add(depth.getPrice(i).multiply(depth.getQuantity(i)));
+                cumulativeQty[i] = qty;
+                cumulativeNotional[i] = notional;
+            }
+        }
+
+        static Side of(BookDepth depth) {
+            return depth.isEmpty() ? EMPTY : new Side(depth);
+        }
+
+        /**
+         * 所基于的深度，用于判断深度版本是否变化
+         */
+        BookDepth depth() {
+            return depth;
+        }
+
+        private int size() {
+            return cumulativeQty.length;
+        }
+
+        /**
+         * 前 levels 档累计数量，levels 超过已跟踪档位数时取全部已跟踪档位
+         */
+        private BigDecimal quantity(int levels) {
+            int n = Math.min(levels, size());
+            return n > 0 ? cumulativeQty[n - 1] : BigDecimal.ZERO;
+        }
+    }
+
+    BookAnalytics(long version, Side bid, Side ask) {
+        this.version = version;
+        this.bid = bid;
+        this.ask = ask;
+    }
+
+    /**
+     * 订单簿版本，与计算时的 OrderBook.getVersion 相同
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 微观价格：按对手方最优档数量加权的买卖一价格
+     * (bidPrice × askQty + askPrice × bidQty) / (bidQty + askQty)，单边无报价时返回 null
+     */
+    public BigDecimal getMicroprice() {
+        if (bid.size() == 0 || ask.size() == 0) {
+            return null;
+        }
+        BigDecimal bidPrice = bid.depth.getPrice(0);
+        BigDecimal bidQty = bid.depth.getQuantity(0);
+        BigDecimal askPrice = ask.depth.getPrice(0);
+        BigDecimal askQty = ask.depth.getQuantity(0);
+        return bidPrice.multiply(askQty).add(askPrice.multiply(bidQty))
+                .divide(bidQty.add(askQty), SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 前 levels 档买卖失衡：(买量 - 卖量) / (买量 + 卖量)，取值 [-1, 1]，正值表示买方更厚
+     * levels 超过深度容量时按已跟踪的前 N 档计算，双方均无报价时返回 null
+     */
+    public BigDecimal getImbalance(int levels) {
+        if (levels <= 0) {
+            throw new IllegalArgumentException("Levels must be positive: " + levels);
+        }
+        BigDecimal bidQty = bid.quantity(levels);
+        BigDecimal askQty = ask.quantity(levels);
+        BigDecimal total = bidQty.add(askQty);
+        if (total.signum() == 0) {
+            return null;
+        }
+        return bidQty.subtract(askQty).divide(total, SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 从最优价开始依次吃掉指定一侧的档位直至成交 quantity 的成交均价
+     * side 为被吃的一侧：BUY 表示卖出打买方档位，SELL 表示买入打卖方档位
+     *
+     * @return 成交均价，已跟踪的前 N 档数量不足时返回 null
+     */
+    public BigDecimal getSweepVwap(int side, BigDecimal quantity) {
+        if (quantity == null || quantity.signum() <= 0) {
+            throw new IllegalArgumentException("Sweep quantity must be positive: " + quantity);
+        }
+        Side stats = side == OrderBook.BUY ? bid : ask;
+        for (int i = 0; i < stats.size(); i++) {
+            if (stats.cumulativeQty[i].compareTo(quantity) >= 0) {
+                BigDecimal filledQty = i > 0 ? stats.cumulativeQty[i - 1] : BigDecimal.ZERO;
+                BigDecimal filledNotional = i > 0 ? stats.cumulativeNotional[i - 1] : BigDecimal.ZERO;
+                BigDecimal notional = filledNotional
+                        .add(quantity.subtract(filledQty).multiply(stats.depth.getPrice(i)));
+                return notional.divide(quantity, SCALE, RoundingMode.HALF_UP);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 指定一侧已跟踪的前 N 档可扫单总数量，即 getSweepVwap 可计算的最大数量
+     */
+    public BigDecimal getSweepableQuantity(int side) {
+        Side stats = side == OrderBook.BUY ? bid : ask;
+        return stats.quantity(stats.size());
+    }
+
+    @Override
+    public String toString() {
+        return "BookAnalytics{version=" + version +
+                ", microprice=" + getMicroprice() +
+                ", imbalance=" + getImbalance(1) + '}';
+    }
+}
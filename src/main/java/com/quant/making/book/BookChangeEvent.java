@@ -0,0 +1,187 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+
+/**
+ * 订单簿变更事件
+ * 由订单簿写者在变更生效后发布；序号由订阅在投递时分配，同一订阅收到的事件序号严格递增，
+ * 同一订单簿的事件按变更顺序投递
+ */
+public final class BookChangeEvent {
+
+    /**
+     * 事件类型
+     */
+    public enum Type {
+        TOP_OF_BOOK_CHANGED,    // 最优买价/卖价或其数量变化
+        LEVEL_ADDED,            // 新增档位
+        LEVEL_UPDATED,          // 档位数量变化
+        LEVEL_REMOVED,          // 档位移除
+        SOURCE_REFRESHED        // 价源全量刷新或移除
+    }
+
+    private final Type type;
+    private final long sequence;
+    private final String symbol;
+    private final Integer marketType;
+    private final long eventNanos;
+    // 档位事件：方向、价格、变更后数量（移除时为0）
+    private final Integer side;
+    private final BigDecimal price;
+    private final BigDecimal quantity;
+    // 价源事件：价源标识
+    private final String source;
+    // 最优价事件：变更后的最优买卖价及数量（无报价时为 null）
+    private final BigDecimal bestBidPrice;
+    private final BigDecimal bestBidQty;
+    private final BigDecimal bestAskPrice;
+    private final BigDecimal bestAskQty;
+
+    private BookChangeEvent(Type type, long sequence, String symbol, Integer marketType,
+                            Integer side, BigDecimal price, BigDecimal quantity, String source,
+                            BigDecimal bestBidPrice, BigDecimal bestBidQty,
+                            BigDecimal bestAskPrice, BigDecimal bestAskQty) {
+        this.type = type;
+        this.sequence = sequence;
+        this.symbol = symbol;
+        this.marketType = marketType;
+        this.eventNanos = System.nanoTime();
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+        this.source = source;
+        this.bestBidPrice = bestBidPrice;
+        this.bestBidQty = bestBidQty;
+        this.bestAskPrice = bestAskPrice;
+        this.bestAskQty = bestAskQty;
+    }
+
+    private BookChangeEvent(BookChangeEvent event, long sequence) {
+        this.type = event.type;
+        this.sequence = sequence;
+        this.symbol = event.symbol;
+        this.marketType = event.marketType;
+        this.eventNanos = event.eventNanos;
+        this.side = event.side;
+        this.price = event.price;
+        this.quantity = event.quantity;
+        this.source = event.source;
+        this.bestBidPrice = event.bestBidPrice;
+        this.bestBidQty = event.bestBidQty;
+        this.bestAskPrice = event.bestAskPrice;
+        this.bestAskQty = event.bestAskQty;
+    }
+
+    /**
+     * 订阅投递时分配序号，返回带序号的副本
+     */
+    BookChangeEvent withSequence(long sequence) {
+        return new BookChangeEvent(this, sequence);
+    }
+
+    static BookChangeEvent topOfBook(OrderBook orderBook) {
+        OrderBook.PriceLevel bid = orderBook.getBestBid();
+        OrderBook.PriceLevel ask = orderBook.getBestAsk();
+        return new BookChangeEvent(Type.TOP_OF_BOOK_CHANGED, 0L, orderBook.getSymbol(),
+            orderBook.getMarketType(), null, null, null, null,
+            bid != null ? bid.getPrice() : null, bid != null ? bid.getTotalBuyQty() : null,
+            ask != null ? ask.getPrice() : null, ask != null ? ask.getTotalSellQty() : null);
+    }
+
+    static BookChangeEvent level(Type type, OrderBook orderBook, int side, BigDecimal price, BigDecimal quantity) {
+        return new BookChangeEvent(type, 0L, orderBook.getSymbol(), orderBook.getMarketType(),
+            side, price, quantity, null, null, null, null, null);
+    }
+
+    static BookChangeEvent sourceRefreshed(OrderBook orderBook, String source) {
+        return new BookChangeEvent(Type.SOURCE_REFRESHED, 0L, orderBook.getSymbol(),
+            orderBook.getMarketType(), null, null, null, source, null, null, null, null);
+    }
+
+    /**
+     * 合并键：同一合并键的待分发事件只保留最新一条
+     * 最优价按订单簿合并，档位按 (方向, 价格) 合并，价源按价源合并
+     */
+    Object conflationKey() {
+        return switch (type) {
+            case TOP_OF_BOOK_CHANGED -> new ConflationKey(type, symbol, marketType, null, null, null);
+            case LEVEL_ADDED, LEVEL_UPDATED, LEVEL_REMOVED ->
+                new ConflationKey(Type.LEVEL_UPDATED, symbol, marketType, side, price, null);
+            case SOURCE_REFRESHED -> new ConflationKey(type, symbol, marketType, null, null, source);
+        };
+    }
+
+    private record ConflationKey(Type group, String symbol, Integer marketType,
+                                 Integer side, BigDecimal price, String source) {
+    }
+
+    // Getter
+    public Type getType() {
+        return type;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Integer getMarketType() {
+        return marketType;
+    }
+
+    /**
+     * 事件发布时刻（System.nanoTime）
+     */
+    public long getEventNanos() {
+        return eventNanos;
+    }
+
+    public Integer getSide() {
+        return side;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public BigDecimal getBestBidPrice() {
+        return bestBidPrice;
+    }
+
+    public BigDecimal getBestBidQty() {
+        return bestBidQty;
+    }
+
+    public BigDecimal getBestAskPrice() {
+        return bestAskPrice;
+    }
+
+    public BigDecimal getBestAskQty() {
+        return bestAskQty;
+    }
+
+    @Override
+    public String toString() {
+        return "BookChangeEvent{" +
+                "type=" + type +
+                ", sequence=" + sequence +
+                ", symbol='" + symbol + '\'' +
+                ", marketType=" + marketType +
+                (side != null ? ", side=" + side + ", price=" + price + ", quantity=" + quantity : "") +
+                (source != null ? ", source='" + source + '\'' : "") +
+                (type == Type.TOP_OF_BOOK_CHANGED
+                    ? ", bestBid=" + bestBidPrice + ", bestAsk=" + bestAskPrice : "") +
+                '}';
+    }
+}
@@ -0,0 +1,11 @@
+package com.quant.making.book;
+
+/**
+ * 订单簿变更监听器
+ * 在订阅专属的分发线程上回调，不阻塞订单簿写者；处理过慢时待分发事件按合并键合并，只收到最新状态
+ */
+@FunctionalInterface
+public interface BookChangeListener {
+
+    void onBookChange(BookChangeEvent event);
+}
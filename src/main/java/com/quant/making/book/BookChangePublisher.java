@@ -0,0 +1,177 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单簿变更发布器
+ * 由写者在变更前记录最优价和档位状态，变更后比较并向订阅投递事件；没有订阅时写者不做任何额外工作
+ * 各分片写者并发投递，事件序号由订阅在投递时分配，不在写者之间共享计数器
+ */
+final class BookChangePublisher {
+
+    private final List<BookSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong subscriptionIds = new AtomicLong();
+
+    /**
+     * 变更前的最优买卖价和数量
+     */
+    static final class TopOfBook {
+        private final BigDecimal bidPrice;
+        private final long bidUnits;
+        private final BigDecimal askPrice;
+        private final long askUnits;
+
+        private TopOfBook(OrderBook.PriceLevel bid, OrderBook.PriceLevel ask) {
+            this.bidPrice = bid != null ? bid.getPrice() : null;
+            this.bidUnits = bid != null ? bid.getBuyQtyUnits() : 0;
+            this.askPrice = ask != null ? ask.getPrice() : null;
+            this.askUnits = ask != null ? ask.getSellQtyUnits() : 0;
+        }
+
+        static TopOfBook capture(OrderBook orderBook) {
+            return new TopOfBook(orderBook.getBestBid(), orderBook.getBestAsk());
+        }
+
+        boolean sameAs(TopOfBook other) {
+            return samePrice(bidPrice, other.bidPrice) && bidUnits == other.bidUnits
+                && samePrice(askPrice, other.askPrice) && askUnits == other.askUnits;
+        }
+
+        private static boolean samePrice(BigDecimal a, BigDecimal b) {
+            return a == null ? b == null : b != null && a.compareTo(b) == 0;
+        }
+    }
+
+    /**
+     * 批量变更前的状态：最优价和批次触及的每个档位首次触及前的数量
+     */
+    static final class BatchCapture {
+        private final TopOfBook before;
+        private final Map<LevelKey, Long> levelUnitsBefore = new LinkedHashMap<>();
+
+        BatchCapture(OrderBook orderBook) {
+            this.before = TopOfBook.capture(orderBook);
+        }
+
+        /**
+         * 在变更档位前调用，同一档位只记录首次触及前的数量
+         */
+        void touch(OrderBook orderBook, int side, BigDecimal price) {
+            LevelKey key = new LevelKey(side, orderBook.getPriceScale().normalizePrice(price));
+            if (!levelUnitsBefore.containsKey(key)) {
+                levelUnitsBefore.put(key, orderBook.getLevelUnits(side, price));
+            }
+        }
+    }
+
+    private record LevelKey(int side, BigDecimal price) {
+    }
+
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    BookSubscription subscribe(String symbol, Integer marketType, BookChangeListener listener) {
+        BookSubscription subscription = new BookSubscription(subscriptionIds.incrementAndGet(),
+            symbol, marketType, listener, this);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    void remove(BookSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * 取消全部订阅
+     */
+    void close() {
+        for (BookSubscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * 比较变更前后的订单簿状态并发布事件，须在写者上下文中调用
+     *
+     * @param levelUnitsBefore 变更前该方向在更新价格上的定点数量（无档位为0）
+     * @param before 变更前的最优价
+     */
+    void publishChanges(OrderBook orderBook, BookUpdate update, long levelUnitsBefore, TopOfBook before) {
+        String symbol = orderBook.getSymbol();
+        Integer marketType = orderBook.getMarketType();
+        if (!anyAccepts(symbol, marketType)) {
+            return;
+        }
+        switch (update.op) {
+            case ADD, REPLACE, DELETE -> {
+                if (update.side != null && update.price != null) {
+                    publishLevel(orderBook, update.side, update.price, levelUnitsBefore);
+                }
+            }
+            case REFRESH, REMOVE_SOURCE ->
+                offer(symbol, marketType, BookChangeEvent.sourceRefreshed(orderBook, update.source));
+            default -> {
+            }
+        }
+        if (!before.sameAs(TopOfBook.capture(orderBook))) {
+            offer(symbol, marketType, BookChangeEvent.topOfBook(orderBook));
+        }
+    }
+
+    /**
+     * 批量变更后发布事件：每个档位按批次净变化发布一次，最优价变化时发布一次，须在写者上下文中调用
+     */
+    void publishBatch(OrderBook orderBook, BatchCapture capture) {
+        if (!anyAccepts(orderBook.getSymbol(), orderBook.getMarketType())) {
+            return;
+        }
+        for (Map.Entry<LevelKey, Long> entry : capture.levelUnitsBefore.entrySet()) {
+            LevelKey level = entry.getKey();
+            publishLevel(orderBook, level.side(), level.price(), entry.getValue());
+        }
+        if (!capture.before.sameAs(TopOfBook.capture(orderBook))) {
+            offer(orderBook.getSymbol(), orderBook.getMarketType(), BookChangeEvent.topOfBook(orderBook));
+        }
+    }
+
+    private void publishLevel(OrderBook orderBook, int side, BigDecimal price, long unitsBefore) {
+        long unitsAfter = orderBook.getLevelUnits(side, price);
+        BookChangeEvent.Type type;
+        if (unitsAfter == unitsBefore) {
+            return;
+        } else if (unitsBefore == 0) {
+            type = BookChangeEvent.Type.LEVEL_ADDED;
+        } else if (unitsAfter == 0) {
+            type = BookChangeEvent.Type.LEVEL_REMOVED;
+        } else {
+            type = BookChangeEvent.Type.LEVEL_UPDATED;
+        }
+        PriceScale scale = orderBook.getPriceScale();
+        offer(orderBook.getSymbol(), orderBook.getMarketType(), BookChangeEvent.level(type,
+            orderBook, side, scale.normalizePrice(price), scale.toQuantity(unitsAfter)));
+    }
+
+    private boolean anyAccepts(String symbol, Integer marketType) {
+        for (BookSubscription subscription : subscriptions) {
+            if (subscription.accepts(symbol, marketType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void offer(String symbol, Integer marketType, BookChangeEvent event) {
+        for (BookSubscription subscription : subscriptions) {
+            if (subscription.accepts(symbol, marketType)) {
+                subscription.offer(event);
+            }
+        }
+    }
+}
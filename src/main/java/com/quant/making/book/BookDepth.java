@@ -0,0 +1,134 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+
+/**
+ * 单边前 N 档深度
+ * 由订单簿写者在前 N 档变化时按价格阶梯头部重建并整体发布，发布后不再修改；
+ * 读者拿到的始终是某一版本的完整深度，读取不排序、不分配对象
+ */
+public final class BookDepth {
+
+    private final int side;
+    private final long version;
+    private final int size;
+    // 按价格优先级排列：买方从高到低，卖方从低到高
+    private final BigDecimal[] prices;
+    private final BigDecimal[] quantities;
+    private final long[] quantityUnits;
+
+    BookDepth(int side, long version, BigDecimal[] prices, BigDecimal[] quantities,
+              long[] quantityUnits, int size) {
+        this.side = side;
+        this.version = version;
+        this.prices = prices;
+        this.quantities = quantities;
+        this.quantityUnits = quantityUnits;
+        this.size = size;
+    }
+
+    static BookDepth empty(int side, int capacity) {
+        return new BookDepth(side, 0L, new BigDecimal[capacity], new BigDecimal[capacity], new long[capacity], 0);
+    }
+
+    /**
+     * 按档位依次收集前 capacity 档
+     *
+     * @param levels 已按价格优先级排列的档位
+     */
+    static BookDepth of(int side, long version, Iterable<OrderBook.PriceLevel> levels, int capacity) {
+        BigDecimal[] prices = new BigDecimal[capacity];
+        BigDecimal[] quantities = new BigDecimal[capacity];
+        long[] units = new long[capacity];
+        int size = 0;
+        for (OrderBook.PriceLevel level : levels) {
+            if (size >= capacity) {
+                break;
+            }
+            prices[size] = level.getPrice();
+            if (side == OrderBook.BUY) {
+                quantities[size] = level.getTotalBuyQty();
+                units[size] = level.getBuyQtyUnits();
+            } else {
+                quantities[size] = level.getTotalSellQty();
+                units[size] = level.getSellQtyUnits();
+            }
+            size++;
+        }
+        return new BookDepth(side, version, prices, quantities, units, size);
+    }
+
+    /**
+     * 该价格的变化是否落在本深度内（深度未满时任何价格都在深度内）
+     */
+    boolean covers(BigDecimal price) {
+        if (size < prices.length) {
+            return true;
+        }
+        int cmp = price.compareTo(prices[size - 1]);
+        return cmp == 0 || (side == OrderBook.BUY ? cmp > 0 : cmp < 0);
+    }
+
+    public int getSide() {
+        return side;
+    }
+
+    /**
+     * 深度版本，前 N 档每次变化递增；版本不变时深度内容不变
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 实际档位数（不超过容量）
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 最大档位数
+     */
+    public int capacity() {
+        return prices.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public BigDecimal getPrice(int index) {
+        checkIndex(index);
+        return prices[index];
+    }
+
+    public BigDecimal getQuantity(int index) {
+        checkIndex(index);
+        return quantities[index];
+    }
+
+    public long getQuantityUnits(int index) {
+        checkIndex(index);
+        return quantityUnits[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Depth index " + index + " out of range [0, " + size + ")");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("BookDepth{side=").append(side)
+                .append(", version=").append(version).append(", levels=[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(prices[i]).append('x').append(quantities[i]);
+        }
+        return sb.append("]}").toString();
+    }
+}
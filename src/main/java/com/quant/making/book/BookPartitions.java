@@ -0,0 +1,256 @@
+package com.quant.making.book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * 按 (品种, 市场类型) 分区的订单簿表
+ * 以品种编号和市场槽位二维索引，同一品种的境内、境外订单簿互相独立
+ * 读取无锁、不分配对象；新建和移除分区时复制所在行并重新发布整表
+ *
+ * 市场类型为 null 的查询解析为品种的主分区：市场槽位最小的已有分区；
+ * 只支持已定义的市场类型，更新路径拒绝其他市场类型，查询路径视为没有订单簿
+ */
+final class BookPartitions {
+
+    // 市场槽位数：0 表示未指定市场类型，其余槽位与市场类型取值一致
+    static final int MARKET_SLOTS = OrderBook.MARKET_OFFSHORE + 1;
+
+    // 订单簿表: [品种编号][市场槽位]，行和整表均按写时复制替换
+    private volatile OrderBook[][] table = new OrderBook[64][];
+
+    /**
+     * 分区遍历回调
+     */
+    @FunctionalInterface
+    interface PartitionVisitor {
+        void visit(int symbolId, int slot, OrderBook orderBook);
+    }
+
+    /**
+     * 是否为有分区槽位的市场类型，null（未指定）视为支持
+     */
+    static boolean isSupported(Integer marketType) {
+        return marketType == null || (marketType > 0 && marketType < MARKET_SLOTS);
+    }
+
+    /**
+     * 校验市场类型，更新和配置在进入订单簿前调用一次
+     *
+     * @throws IllegalArgumentException 不支持的市场类型
+     */
+    static Integer checkMarketType(Integer marketType) {
+        if (!isSupported(marketType)) {
+            throw new IllegalArgumentException("Unsupported market type: " + marketType
+                    + ", expected " + OrderBook.MARKET_DOMESTIC_GOLD + ".." + OrderBook.MARKET_OFFSHORE);
+        }
+        return marketType;
+    }
+
+    /**
+     * 市场类型对应的槽位
+     *
+     * @throws IllegalArgumentException 不支持的市场类型
+     */
+    static int slot(Integer marketType) {
+        return marketType == null ? 0 : checkMarketType(marketType);
+    }
+
+    /**
+     * 分区键：高32位为品种编号，低32位为市场槽位
+     */
+    static long key(String symbol, Integer marketType) {
+        return ((long) SymbolIds.intern(symbol) << 32) | slot(marketType);
+    }
+
+    /**
+     * 获取分区订单簿，市场类型为 null 时返回主分区，不支持的市场类型没有订单簿
+     */
+    OrderBook get(String symbol, Integer marketType) {
+        OrderBook[] row = row(symbol);
+        if (row == null || !isSupported(marketType)) {
+            return null;
+        }
+        return marketType != null ? row[slot(marketType)] : primary(row);
+    }
+
+    /**
+     * 品种的全部分区订单簿，按市场槽位排列
+     */
+    List<OrderBook> partitions(String symbol) {
+        List<OrderBook> books = new ArrayList<>(MARKET_SLOTS);
+        OrderBook[] row = row(symbol);
+        if (row != null) {
+            for (OrderBook orderBook : row) {
+                if (orderBook != null) {
+                    books.add(orderBook);
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * 解析更新的目标市场类型：未指定时沿用主分区的市场类型，品种尚无订单簿时保持 null
+     *
+     * @throws IllegalArgumentException 不支持的市场类型
+     */
+    Integer resolveMarketType(String symbol, Integer marketType) {
+        if (marketType != null) {
+            return checkMarketType(marketType);
+        }
+        OrderBook primary = get(symbol, null);
+        return primary != null ? primary.getMarketType() : null;
+    }
+
+    /**
+     * 获取或创建分区订单簿
+     *
+     * @throws IllegalArgumentException 不支持的市场类型，此时不创建订单簿
+     */
+    OrderBook computeIfAbsent(String symbol, Integer marketType,
+                              BiFunction<String, Integer, OrderBook> factory) {
+        checkMarketType(marketType);
+        OrderBook existing = get(symbol, marketType);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = get(symbol, marketType);
+            if (existing != null) {
+                return existing;
+            }
+            OrderBook orderBook = factory.apply(symbol, marketType);
+            store(symbol, slot(marketType), orderBook);
+            return orderBook;
+        }
+    }
+
+    /**
+     * 放入订单簿，替换同一分区中已有的订单簿
+     *
+     * @return 被替换的订单簿，没有时返回 null
+     */
+    synchronized OrderBook put(OrderBook orderBook) {
+        return store(orderBook.getSymbol(), slot(orderBook.getMarketType()), orderBook);
+    }
+
+    /**
+     * 移除分区订单簿，市场类型为 null 时移除品种的全部分区
+     *
+     * @return 被移除的订单簿
+     */
+    synchronized List<OrderBook> remove(String symbol, Integer marketType) {
+        List<OrderBook> removed = new ArrayList<>();
+        OrderBook[] row = row(symbol);
+        if (row == null || !isSupported(marketType)) {
+            return removed;
+        }
+        OrderBook[] updated = row.clone();
+        for (int slot = 0; slot < MARKET_SLOTS; slot++) {
+            if (row[slot] != null && (marketType == null || slot == slot(marketType))) {
+                removed.add(row[slot]);
+                updated[slot] = null;
+            }
+        }
+        publish(SymbolIds.lookup(symbol), updated);
+        return removed;
+    }
+
+    /**
+     * 移除全部订单簿
+     */
+    synchronized void clear() {
+        table = new OrderBook[table.length][];
+    }
+
+    /**
+     * 全部分区订单簿
+     */
+    List<OrderBook> all() {
+        List<OrderBook> books = new ArrayList<>();
+        for (OrderBook[] row : table) {
+            if (row == null) {
+                continue;
+            }
+            for (OrderBook orderBook : row) {
+                if (orderBook != null) {
+                    books.add(orderBook);
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * 遍历全部分区订单簿，直接读取当前发布的订单簿表，不复制、不分配对象
+     * 遍历期间新建或移除的分区可能遍历到也可能遍历不到
+     */
+    void forEach(PartitionVisitor visitor) {
+        OrderBook[][] current = table;
+        for (int symbolId = 0; symbolId < current.length; symbolId++) {
+            OrderBook[] row = current[symbolId];
+            if (row == null) {
+                continue;
+            }
+            for (int slot = 0; slot < row.length; slot++) {
+                if (row[slot] != null) {
+                    visitor.visit(symbolId, slot, row[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 分区总数
+     */
+    int size() {
+        int size = 0;
+        for (OrderBook[] row : table) {
+            if (row == null) {
+                continue;
+            }
+            for (OrderBook orderBook : row) {
+                if (orderBook != null) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
+    private OrderBook[] row(String symbol) {
+        int id = SymbolIds.lookup(symbol);
+        OrderBook[][] current = table;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    private static OrderBook primary(OrderBook[] row) {
+        for (OrderBook orderBook : row) {
+            if (orderBook != null) {
+                return orderBook;
+            }
+        }
+        return null;
+    }
+
+    private OrderBook store(String symbol, int slot, OrderBook orderBook) {
+        int id = SymbolIds.intern(symbol);
+        OrderBook[] row = row(symbol);
+        OrderBook[] updated = row != null ? row.clone() : new OrderBook[MARKET_SLOTS];
+        OrderBook previous = updated[slot];
+        updated[slot] = orderBook;
+        publish(id, updated);
+        return previous;
+    }
+
+    private void publish(int id, OrderBook[] row) {
+        OrderBook[][] current = table;
+        OrderBook[][] updated = id < current.length
+            ? current.clone() : Arrays.copyOf(current, Math.max(current.length * 2, id + 1));
+        updated[id] = row;
+        table = updated;
+    }
+}
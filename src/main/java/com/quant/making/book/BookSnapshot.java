@@ -0,0 +1,225 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单簿不可变快照
+ * 在写线程上按价源逐行拷贝为定点数组，不创建实体也不做数量换算；持久化时再展开为快照记录或编码为二进制块
+ * 全量快照包含全部档位；增量快照只包含自上次快照以来变化的 (方向, 价格, 价源) 的最新数量（0表示已删除），档位序号为0
+ */
+public final class BookSnapshot {
+
+    private final String symbol;
+    private final Integer marketType;
+    // 是否为增量快照
+    private final boolean delta;
+    // 数量小数位数，quantityUnits 按此精度解释
+    private final int quantityScale;
+    private final LocalDateTime snapshotTime;
+    // 采集时刻（System.nanoTime），用于统计快照落库延迟
+    private final long captureNanos;
+
+    // 按行存储：方向、档位序号（从1开始）、价格、价源ID、定点数量
+    private final int size;
+    private final int[] sides;
+    private final int[] priceLevels;
+    private final BigDecimal[] prices;
+    private final int[] sourceIds;
+    private final long[] quantityUnits;
+
+    private BookSnapshot(String symbol, Integer marketType, boolean delta, int quantityScale,
+                         LocalDateTime snapshotTime, int capacity) {
+        this.symbol = symbol;
+        this.marketType = marketType;
+        this.delta = delta;
+        this.quantityScale = quantityScale;
+        this.snapshotTime = snapshotTime;
+        this.captureNanos = System.nanoTime();
+        this.sides = new int[capacity];
+        this.priceLevels = new int[capacity];
+        this.prices = new BigDecimal[capacity];
+        this.sourceIds = new int[capacity];
+        this.quantityUnits = new long[capacity];
+        this.size = capacity;
+    }
+
+    /**
+     * 采集订单簿快照，调用方须保证采集期间订单簿不被修改（写线程或持有订单簿锁）
+     *
+     * @param marketType 快照记录的市场类型，为 null 时使用订单簿的市场类型
+     */
+    static BookSnapshot capture(OrderBook orderBook, Integer marketType) {
+        Collection<OrderBook.PriceLevel> bids = orderBook.getBidLevels();
+        Collection<OrderBook.PriceLevel> asks = orderBook.getAskLevels();
+        int rows = countRows(bids, OrderBook.BUY) + countRows(asks, OrderBook.SELL);
+
+        BookSnapshot snapshot = new BookSnapshot(orderBook.getSymbol(),
+            marketType != null ? marketType : orderBook.getMarketType(), false,
+            orderBook.getPriceScale().getQuantityScale(), LocalDateTime.now(), rows);
+        int row = snapshot.fill(0, bids, OrderBook.BUY);
+        snapshot.fill(row, asks, OrderBook.SELL);
+        return snapshot;
+    }
+
+    /**
+     * 采集增量快照：订单簿脏档位上各价源的最新数量，调用方须保证订单簿已启用脏档位记录
+     */
+    static BookSnapshot captureDelta(OrderBook orderBook, Integer marketType) {
+        DirtyLevels dirty = orderBook.getDirtyLevels();
+        BookSnapshot snapshot = new BookSnapshot(orderBook.getSymbol(),
+            marketType != null ? marketType : orderBook.getMarketType(), true,
+            orderBook.getPriceScale().getQuantityScale(), LocalDateTime.now(), dirty.size());
+        int row = snapshot.fillDelta(0, orderBook, dirty, OrderBook.BUY);
+        snapshot.fillDelta(row, orderBook, dirty, OrderBook.SELL);
+        return snapshot;
+    }
+
+    /**
+     * 创建待填充的快照，仅供解码时逐行写入
+     */
+    static BookSnapshot allocate(String symbol, Integer marketType, boolean delta, int quantityScale,
+                                 LocalDateTime snapshotTime, int rows) {
+        return new BookSnapshot(symbol, marketType, delta, quantityScale, snapshotTime, rows);
+    }
+
+    void setRow(int row, int side, int priceLevel, BigDecimal price, int sourceId, long units) {
+        sides[row] = side;
+        priceLevels[row] = priceLevel;
+        prices[row] = price;
+        sourceIds[row] = sourceId;
+        quantityUnits[row] = units;
+    }
+
+    private static int countRows(Collection<OrderBook.PriceLevel> levels, int side) {
+        int rows = 0;
+        for (OrderBook.PriceLevel level : levels) {
+            rows += level.getSourceCount(side);
+        }
+        return rows;
+    }
+
+    private int fill(int row, Collection<OrderBook.PriceLevel> levels, int side) {
+        int priceLevel = 0;
+        for (OrderBook.PriceLevel level : levels) {
+            priceLevel++;
+            for (int i = 0; i < level.getSourceCount(side); i++) {
+                setRow(row, side, priceLevel, level.getPrice(),
+                       level.getSourceId(side, i), level.getSourceQtyUnits(side, i));
+                row++;
+            }
+        }
+        return row;
+    }
+
+    private int fillDelta(int row, OrderBook orderBook, DirtyLevels dirty, int side) {
+        for (Map.Entry<BigDecimal, BitSet> entry : dirty.levels(side).entrySet()) {
+            BitSet sources = entry.getValue();
+            for (int sourceId = sources.nextSetBit(0); sourceId >= 0; sourceId = sources.nextSetBit(sourceId + 1)) {
+                long units = orderBook.getLevelSourceUnits(side, entry.getKey(), sourceId);
+                setRow(row, side, 0, entry.getKey(), sourceId, units);
+                row++;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * 将快照写入订单簿，数量精度一致时直接使用定点数量
+     * 全量快照逐行累加到空订单簿；增量快照逐行替换价源在对应档位上的数量
+     */
+    void restoreInto(OrderBook orderBook) {
+        boolean sameScale = orderBook.getPriceScale().getQuantityScale() == quantityScale;
+        for (int row = 0; row < size; row++) {
+            String source = SourceIds.name(sourceIds[row]);
+            long units = sameScale 
+                ? quantityUnits[row] 
+                : orderBook.getPriceScale().toQuantityUnits(getQuantity(row));
+            if (delta) {
+                orderBook.replaceQuoteUnits(source, sides[row], prices[row], units);
+            } else {
+                orderBook.addQuoteUnits(source, sides[row], prices[row], units);
+            }
+        }
+    }
+
+    /**
+     * 展开为快照记录，每个价源在其所在方向上一条
+     */
+    public List<OrderBookEntry> toEntries() {
+        List<OrderBookEntry> entries = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            entries.add(new OrderBookEntry(
+                symbol,
+                marketType,
+                SourceIds.name(sourceIds[row]),
+                sides[row],
+                priceLevels[row],
+                prices[row],
+                getQuantity(row),
+                snapshotTime
+            ));
+        }
+        return entries;
+    }
+
+    private BigDecimal getQuantity(int row) {
+        return PriceScale.toQuantity(quantityUnits[row], quantityScale);
+    }
+
+    int sideAt(int row) {
+        return sides[row];
+    }
+
+    int priceLevelAt(int row) {
+        return priceLevels[row];
+    }
+
+    BigDecimal priceAt(int row) {
+        return prices[row];
+    }
+
+    int sourceIdAt(int row) {
+        return sourceIds[row];
+    }
+
+    long quantityUnitsAt(int row) {
+        return quantityUnits[row];
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Integer getMarketType() {
+        return marketType;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    public int getQuantityScale() {
+        return quantityScale;
+    }
+
+    public LocalDateTime getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /**
+     * 快照记录行数
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,164 @@
+package com.quant.making.book;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 订单簿快照二进制编解码
+ * 
+ * 格式（v1）：
+ * 头部（不压缩）: magic(int) | version(byte) | flags(byte, bit0=压缩, bit1=增量快照)
+ * 正文（可选 Deflate 压缩）:
+ *   quantityScale(varint) | 价源数(varint) | 价源名(UTF)...
+ *   行数(varint) | 每行: side(byte) | priceLevel(varint) | 价格小数位(byte) | 价格非标度值(zigzag varlong)
+ *                        | 价源下标(varint) | 定点数量(varlong)
+ * 品种、市场类型和快照时间存放在表字段中，不重复编码
+ */
+final class BookSnapshotCodec {
+
+    private static final int MAGIC = 0x4F42534E; // "OBSN"
+    private static final byte VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int FLAG_DELTA = 2;
+
+    private BookSnapshotCodec() {
+    }
+
+    /**
+     * 编码快照
+     *
+     * @param compress 是否压缩正文
+     */
+    static byte[] encode(BookSnapshot snapshot, boolean compress) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + snapshot.size() * 16);
+        try {
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeByte((compress ? FLAG_COMPRESSED : 0) | (snapshot.isDelta() ? FLAG_DELTA : 0));
+            header.flush();
+
+            OutputStream bodyStream = compress ? new DeflaterOutputStream(bytes) : bytes;
+            DataOutputStream body = new DataOutputStream(bodyStream);
+            writeBody(snapshot, body);
+            body.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode snapshot for symbol: " + snapshot.getSymbol(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeBody(BookSnapshot snapshot, DataOutputStream out) throws IOException {
+        // 价源名表：进程内价源ID -> 快照内下标
+        Map<Integer, Integer> sourceIndex = new HashMap<>();
+        String[] names = new String[snapshot.size()];
+        for (int row = 0; row < snapshot.size(); row++) {
+            int sourceId = snapshot.sourceIdAt(row);
+            if (!sourceIndex.containsKey(sourceId)) {
+                names[sourceIndex.size()] = SourceIds.name(sourceId);
+                sourceIndex.put(sourceId, sourceIndex.size());
+            }
+        }
+
+        writeVarLong(out, snapshot.getQuantityScale());
+        writeVarLong(out, sourceIndex.size());
+        for (int i = 0; i < sourceIndex.size(); i++) {
+            out.writeUTF(names[i]);
+        }
+
+        writeVarLong(out, snapshot.size());
+        for (int row = 0; row < snapshot.size(); row++) {
+            BigDecimal price = snapshot.priceAt(row);
+            out.writeByte(snapshot.sideAt(row));
+            writeVarLong(out, snapshot.priceLevelAt(row));
+            out.writeByte(price.scale());
+            long unscaled = price.unscaledValue().longValueExact();
+            writeVarLong(out, (unscaled << 1) ^ (unscaled >> 63));
+            writeVarLong(out, sourceIndex.get(snapshot.sourceIdAt(row)));
+            writeVarLong(out, snapshot.quantityUnitsAt(row));
+        }
+    }
+
+    /**
+     * 解码快照
+     *
+     * @throws IllegalArgumentException 数据格式不正确
+     */
+    static BookSnapshot decode(byte[] payload, String symbol, Integer marketType, LocalDateTime snapshotTime) {
+        try {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(payload);
+            DataInputStream header = new DataInputStream(bytes);
+            if (header.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an order book snapshot payload: " + symbol);
+            }
+            byte version = header.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+            }
+            byte flags = header.readByte();
+            boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+            boolean delta = (flags & FLAG_DELTA) != 0;
+
+            InputStream bodyStream = compressed ? new InflaterInputStream(bytes) : bytes;
+            try (DataInputStream in = new DataInputStream(bodyStream)) {
+                return readBody(in, symbol, marketType, delta, snapshotTime);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupted snapshot payload for symbol: " + symbol, e);
+        }
+    }
+
+    private static BookSnapshot readBody(DataInputStream in, String symbol, Integer marketType, boolean delta,
+                                         LocalDateTime snapshotTime) throws IOException {
+        int quantityScale = (int) readVarLong(in);
+        int[] sourceIds = new int[(int) readVarLong(in)];
+        for (int i = 0; i < sourceIds.length; i++) {
+            sourceIds[i] = SourceIds.intern(in.readUTF());
+        }
+
+        int rows = (int) readVarLong(in);
+        BookSnapshot snapshot = BookSnapshot.allocate(symbol, marketType, delta, quantityScale, snapshotTime, rows);
+        for (int row = 0; row < rows; row++) {
+            int side = in.readByte();
+            int priceLevel = (int) readVarLong(in);
+            int priceScale = in.readByte();
+            long zigzag = readVarLong(in);
+            BigDecimal price = BigDecimal.valueOf((zigzag >>> 1) ^ -(zigzag & 1), priceScale);
+            int sourceId = sourceIds[(int) readVarLong(in)];
+            snapshot.setRow(row, side, priceLevel, price, sourceId, readVarLong(in));
+        }
+        return snapshot;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,202 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 订单簿变更订阅
+ * 每个订阅持有一个合并邮箱和一个分发线程：写者只在邮箱中按合并键覆盖事件，从不等待监听器；
+ * 分发线程每轮取走邮箱中的全部事件依次回调，处理过慢时积压的事件被合并为最新状态
+ */
+public final class BookSubscription {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookSubscription.class);
+
+    // 分发线程空闲时的休眠时长（纳秒）
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final long id;
+    // 订阅过滤条件，为 null 表示不限
+    private final String symbol;
+    private final Integer marketType;
+    private final BookChangeListener listener;
+    private final BookChangePublisher publisher;
+
+    // 待分发事件: 合并键 -> 最新事件，按最新事件的入队顺序分发
+    private Map<Object, BookChangeEvent> pending = new LinkedHashMap<>();
+    // 最近分配的事件序号，与 pending 同在订阅锁内访问
+    private long sequence;
+    private final Thread dispatcher;
+    private volatile boolean active = true;
+
+    private volatile long offeredCount;
+    private volatile long conflatedCount;
+    private volatile long deliveredCount;
+    private volatile long failedCount;
+    private volatile long lastSequence;
+
+    BookSubscription(long id, String symbol, Integer marketType, BookChangeListener listener,
+                     BookChangePublisher publisher) {
+        this.id = id;
+        this.symbol = symbol;
+        this.marketType = marketType;
+        this.listener = listener;
+        this.publisher = publisher;
+        this.dispatcher = new Thread(this::run, "orderbook-subscriber-" + id);
+        this.dispatcher.setDaemon(true);
+    }
+
+    void start() {
+        dispatcher.start();
+    }
+
+    /**
+     * 事件是否符合订阅条件
+     */
+    boolean accepts(String eventSymbol, Integer eventMarketType) {
+        return (symbol == null || symbol.equals(eventSymbol))
+            && (marketType == null || marketType.equals(eventMarketType));
+    }
+
+    /**
+     * 写者投递事件，在订阅锁内分配序号后入队：多个写者并发投递时入队顺序即序号顺序；
+     * 同一合并键的未分发事件被移除，新事件排到队尾，保证分发的事件序号严格递增
+     */
+    void offer(BookChangeEvent event) {
+        if (!active) {
+            return;
+        }
+        boolean wasEmpty;
+        synchronized (this) {
+            wasEmpty = pending.isEmpty();
+            event = event.withSequence(++sequence);
+            Object key = event.conflationKey();
+            if (pending.remove(key) != null) {
+                conflatedCount++;
+            }
+            pending.put(key, event);
+            offeredCount++;
+        }
+        if (wasEmpty) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * 取消订阅，已入队的事件不再分发
+     */
+    public void cancel() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        publisher.remove(this);
+        LockSupport.unpark(dispatcher);
+        if (Thread.currentThread() != dispatcher) {
+            try {
+                dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 等待已投递的事件全部分发（或被合并）
+     *
+     * @return 超时前是否全部分发完成
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (deliveredCount + failedCount + conflatedCount < offeredCount) {
+            if (!active || System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+        return true;
+    }
+
+    private void run() {
+        while (active) {
+            Map<Object, BookChangeEvent> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    batch = null;
+                } else {
+                    batch = pending;
+                    pending = new LinkedHashMap<>();
+                }
+            }
+            if (batch == null) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            for (BookChangeEvent event : batch.values()) {
+                if (!active) {
+                    return;
+                }
+                deliver(event);
+            }
+        }
+    }
+
+    private void deliver(BookChangeEvent event) {
+        try {
+            listener.onBookChange(event);
+            deliveredCount++;
+        } catch (RuntimeException e) {
+            failedCount++;
+            logger.error("Book change listener failed: subscription={}, event={}", id, event, e);
+        }
+        lastSequence = event.getSequence();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * 已投递的事件数
+     */
+    public long getOfferedCount() {
+        return offeredCount;
+    }
+
+    /**
+     * 被后续事件覆盖、未单独分发的事件数
+     */
+    public long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    /**
+     * 已分发的事件数
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * 监听器抛出异常的事件数
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * 最近一次分发的事件序号，只增不减
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+}
@@ -0,0 +1,73 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * 订单簿更新事件
+ * 作为环形缓冲区中的预分配槽位被复用，由生产者填充、写线程消费
+ */
+class BookUpdate {
+
+    /**
+     * 更新操作类型
+     * 序号写入更新日志，新增类型只能追加在末尾
+     */
+    enum Op {
+        ADD,            // 累加报价
+        REPLACE,        // 替换价源报价
+        DELETE,         // 删除价源报价
+        REFRESH,        // 价源全量刷新
+        REMOVE_SOURCE,  // 移除价源
+        SNAPSHOT,       // 采集快照
+        CHECKPOINT,     // 向更新日志写入检查点
+        EXPIRE_SOURCE,  // 价源超过过期时长未更新时移除（写者确认后按 REMOVE_SOURCE 记录）
+        BARRIER;        // 写者屏障：之前的更新应用完毕后暂停，直到独占操作结束（不写入日志）
+
+        /**
+         * 订单簿不存在时是否创建
+         */
+        boolean createsBook() {
+            return this == ADD || this == REPLACE || this == REFRESH;
+        }
+    }
+
+    Op op;
+    String symbol;
+    Integer marketType;
+    String source;
+    Integer side;
+    BigDecimal price;
+    BigDecimal quantity;
+    Map<BigDecimal, BigDecimal> bids;
+    Map<BigDecimal, BigDecimal> asks;
+    // 生产者发布时间（System.nanoTime），用于统计发布到入簿的延迟
+    long publishNanos;
+
+    void set(Op op, String symbol, Integer marketType, String source,
+             Integer side, BigDecimal price, BigDecimal quantity) {
+        this.op = op;
+        this.symbol = symbol;
+        this.marketType = marketType;
+        this.source = source;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+        this.bids = null;
+        this.asks = null;
+    }
+
+    void setRefresh(String symbol, Integer marketType, String source,
+                    Map<BigDecimal, BigDecimal> bids, Map<BigDecimal, BigDecimal> asks) {
+        set(Op.REFRESH, symbol, marketType, source, null, null, null);
+        this.bids = bids;
+        this.asks = asks;
+    }
+
+    /**
+     * 释放对报价数据的引用，避免槽位长期持有已处理的数据
+     */
+    void clear() {
+        set(null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,107 @@
+package com.quant.making.book;
+
+import java.util.Arrays;
+
+/**
+ * 订单簿版本游标
+ * 记录调用方上次遍历时各分区订单簿的版本，再次遍历时跳过版本未变的订单簿；
+ * 分区中的订单簿被替换（移除后重建、从快照恢复）时视为有变化，已移除的分区在遍历结束时从游标中清除
+ *
+ * 每个调用方持有自己的游标，游标不是线程安全的，同一游标不应被并发遍历
+ */
+public final class BookVersionCursor {
+
+    // 上次遍历到的订单簿: [品种编号][市场槽位]
+    private OrderBook[][] books = new OrderBook[64][];
+    // [品种编号][市场槽位 * 2]：上次遍历到的版本、最近一次遍历到该分区的轮次
+    private long[][] states = new long[64][];
+    // 遍历轮次
+    private long pass;
+    private long visitedCount;
+    private long skippedCount;
+
+    void beginPass() {
+        pass++;
+    }
+
+    /**
+     * 登记本轮遍历到的分区
+     *
+     * @return 分区的订单簿和版本与上次遍历时相同
+     */
+    boolean isUnchanged(int symbolId, int slot, OrderBook orderBook, long version) {
+        ensureRow(symbolId);
+        long[] state = states[symbolId];
+        state[slot * 2 + 1] = pass;
+        if (books[symbolId][slot] == orderBook && state[slot * 2] == version) {
+            skippedCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录已交给回调的订单簿版本
+     */
+    void record(int symbolId, int slot, OrderBook orderBook, long version) {
+        books[symbolId][slot] = orderBook;
+        states[symbolId][slot * 2] = version;
+        visitedCount++;
+    }
+
+    /**
+     * 清除本轮未遍历到的分区（已移除），不再持有其订单簿
+     *
+     * @param slot 本轮遍历的市场槽位，-1 表示全部槽位
+     */
+    void endPass(int slot) {
+        for (int symbolId = 0; symbolId < books.length; symbolId++) {
+            OrderBook[] row = books[symbolId];
+            if (row == null) {
+                continue;
+            }
+            for (int s = 0; s < row.length; s++) {
+                if (row[s] != null && (slot < 0 || s == slot) && states[symbolId][s * 2 + 1] != pass) {
+                    row[s] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 遍历时交给回调的订单簿累计数
+     */
+    public long getVisitedCount() {
+        return visitedCount;
+    }
+
+    /**
+     * 遍历时因版本未变而跳过的订单簿累计数
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * 清除全部记录，下次遍历交给回调全部订单簿
+     */
+    public void reset() {
+        for (OrderBook[] row : books) {
+            if (row != null) {
+                Arrays.fill(row, null);
+            }
+        }
+    }
+
+    private void ensureRow(int symbolId) {
+        if (symbolId >= books.length) {
+            int capacity = Math.max(books.length * 2, symbolId + 1);
+            books = Arrays.copyOf(books, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        if (books[symbolId] == null) {
+            books[symbolId] = new OrderBook[BookPartitions.MARKET_SLOTS];
+            states[symbolId] = new long[BookPartitions.MARKET_SLOTS * 2];
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 跨市场合并的只读订单簿视图
+ * 不复制底层分区订单簿，遍历档位时对各分区已排序的价格阶梯做 k 路归并：
+ * 每个分区只持有一个迭代器和当前头档位，同价档位合并数量，调用方停止遍历即停止归并
+ *
+ * 只有一个分区在某价格上有报价时直接返回该分区的档位；多个分区同价时返回新建的合并档位，
+ * 合并档位只包含所在方向（买方阶梯为买量，卖方阶梯为卖量）的数量和价源明细
+ *
+ * read 对全部分区同时做乐观读校验，任一分区在读取期间变更即重试
+ */
+public final class ConsolidatedOrderBook extends OrderBook {
+
+    private final OrderBook[] books;
+    // 各分区数量单位换算到合并精度的倍数
+    private final long[] unitMultipliers;
+    // 最近一次归并的前 N 档深度，版本为各分区深度版本之和
+    private volatile BookDepth mergedBidDepth;
+    private volatile BookDepth mergedAskDepth;
+    // 基于合并深度的盘口指标累计统计，合并深度换新时重建
+    private volatile BookAnalytics.Side mergedBidStats = BookAnalytics.Side.EMPTY;
+    private volatile BookAnalytics.Side mergedAskStats = BookAnalytics.Side.EMPTY;
+
+    /**
+     * @param symbol 品种代码
+     * @param books 参与合并的分区订单簿，数量精度取其中最高者
+     */
+    ConsolidatedOrderBook(String symbol, OrderBook[] books) {
+        super(symbol, null, finestScale(books));
+        this.books = books;
+        this.unitMultipliers = new long[books.length];
+        int quantityScale = getPriceScale().getQuantityScale();
+        for (int i = 0; i < books.length; i++) {
+            unitMultipliers[i] = BigDecimal.TEN
+                .pow(quantityScale - books[i].getPriceScale().getQuantityScale()).longValueExact();
+        }
+    }
+
+    private static PriceScale finestScale(OrderBook[] books) {
+        PriceScale finest = books[0].getPriceScale();
+        for (OrderBook book : books) {
+            if (book.getPriceScale().getQuantityScale() > finest.getQuantityScale()) {
+                finest = book.getPriceScale();
+            }
+        }
+        return finest;
+    }
+
+    /**
+     * 参与合并的分区订单簿数
+     */
+    public int getPartitionCount() {
+        return books.length;
+    }
+
+    /**
+     * 在全部分区均未变更的一致状态上执行读取
+     */
+    @Override
+    public <T> T read(Function<? super OrderBook, ? extends T> reader) {
+        long[] stamps = new long[books.length];
+        for (int attempt = 0; ; attempt++) {
+            if (tryOptimisticStamps(stamps)) {
+                try {
+                    T result = reader.apply(this);
+                    if (validateStamps(stamps)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (validateStamps(stamps)) {
+                        throw e;
+                    }
+                }
+            }
+            backoff(attempt);
+        }
+    }
+
+    private boolean tryOptimisticStamps(long[] stamps) {
+        for (int i = 0; i < books.length; i++) {
+            stamps[i] = books[i].tryOptimisticStamp();
+            if (stamps[i] == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean validateStamps(long[] stamps) {
+        for (int i = 0; i < books.length; i++) {
+            if (!books[i].validateStamp(stamps[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public PriceLevel getBestBid() {
+        MergingIterator it = new MergingIterator(BUY);
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    public PriceLevel getBestAsk() {
+        MergingIterator it = new MergingIterator(SELL);
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * 合并后的买方档位，按价格从高到低排列，遍历时按需归并
+     */
+    @Override
+    public Collection<PriceLevel> getBidLevels() {
+        return new MergedLevels(BUY);
+    }
+
+    /**
+     * 合并后的卖方档位，按价格从低到高排列，遍历时按需归并
+     */
+    @Override
+    public Collection<PriceLevel> getAskLevels() {
+        return new MergedLevels(SELL);
+    }
+
+    @Override
+    public int getBidDepth() {
+        return new MergingIterator(BUY).count();
+    }
+
+    @Override
+    public int getAskDepth() {
+        return new MergingIterator(SELL).count();
+    }
+
+    /**
+     * 合并后的买方前 N 档深度，各分区深度版本均未变化时返回上次归并的结果
+     * 容量取各分区深度容量的最小值，保证分区前 N 档之外的变化不影响合并结果
+     */
+    @Override
+    public BookDepth getTopBidDepth() {
+        long version = 0;
+        for (OrderBook book : books) {
+            version += book.getTopBidDepth().getVersion();
+        }
+        BookDepth cached = mergedBidDepth;
+        if (cached == null || cached.getVersion() != version) {
+            cached = BookDepth.of(BUY, version, getBidLevels(), getDepthCapacity());
+            mergedBidDepth = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * 合并后的卖方前 N 档深度，各分区深度版本均未变化时返回上次归并的结果
+     */
+    @Override
+    public BookDepth getTopAskDepth() {
+        long version = 0;
+        for (OrderBook book : books) {
+            version += book.getTopAskDepth().getVersion();
+        }
+        BookDepth cached = mergedAskDepth;
+        if (cached == null || cached.getVersion() != version) {
+            cached = BookDepth.of(SELL, version, getAskLevels(), getDepthCapacity());
+            mergedAskDepth = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * 合并视图版本为各分区版本之和，任一分区变更后递增
+     */
+    @Override
+    public long getVersion() {
+        long version = 0;
+        for (OrderBook book : books) {
+            version += book.getVersion();
+        }
+        return version;
+    }
+
+    @Override
+    BookAnalytics.Side bidAnalytics() {
+        BookDepth depth = getTopBidDepth();
+        BookAnalytics.Side stats = mergedBidStats;
+        if (stats.depth() != depth) {
+            stats = BookAnalytics.Side.of(depth);
+            mergedBidStats = stats;
+        }
+        return stats;
+    }
+
+    @Override
+    BookAnalytics.Side askAnalytics() {
+        BookDepth depth = getTopAskDepth();
+        BookAnalytics.Side stats = mergedAskStats;
+        if (stats.depth() != depth) {
+            stats = BookAnalytics.Side.of(depth);
+            mergedAskStats = stats;
+        }
+        return stats;
+    }
+
+    @Override
+    public int getDepthCapacity() {
+        int capacity = Integer.MAX_VALUE;
+        for (OrderBook book : books) {
+            capacity = Math.min(capacity, book.getDepthCapacity());
+        }
+        return capacity;
+    }
+
+    /**
+     * 合并全部档位（买卖合计），返回新建的只读快照
+     */
+    @Override
+    public Map<BigDecimal, PriceLevel> getAggregatedLevels() {
+        Map<BigDecimal, PriceLevel> merged = new TreeMap<>();
+        for (int i = 0; i < books.length; i++) {
+            for (PriceLevel level : books[i].getAggregatedLevels().values()) {
+                PriceLevel target = merged.computeIfAbsent(level.getPrice(),
+                    price -> new PriceLevel(price, getPriceScale()));
+                mergeInto(target, level, BUY, unitMultipliers[i]);
+                mergeInto(target, level, SELL, unitMultipliers[i]);
+            }
+        }
+        return Collections.unmodifiableMap(merged);
+    }
+
+    @Override
+    public Set<String> getSourceNames() {
+        Set<String> sources = new LinkedHashSet<>();
+        for (OrderBook book : books) {
+            sources.addAll(book.getSourceNames());
+        }
+        return Collections.unmodifiableSet(sources);
+    }
+
+    // ---------------------------------------------------------------- 只读
+
+    @Override
+    public void addQuote(String source, Integer side, BigDecimal price, BigDecimal quantity) {
+        throw readOnly();
+    }
+
+    @Override
+    void addQuoteUnits(String source, int side, BigDecimal price, long quantityUnits) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceQuote(String source, Integer side, BigDecimal price, BigDecimal quantity) {
+        throw readOnly();
+    }
+
+    @Override
+    void replaceQuoteUnits(String source, int side, BigDecimal price, long quantityUnits) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteQuote(String source, Integer side, BigDecimal price) {
+        throw readOnly();
+    }
+
+    @Override
+    public void refreshSource(String source, Map<BigDecimal, BigDecimal> bids, Map<BigDecimal, BigDecimal> asks) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeSource(String source) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAggregatedLevels(Map<BigDecimal, PriceLevel> aggregatedLevels) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDepthCapacity(int depthCapacity) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setSymbol(String symbol) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setMarketType(Integer marketType) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Consolidated order book is read-only");
+    }
+
+    @Override
+    public String toString() {
+        return "ConsolidatedOrderBook{" +
+                "symbol='" + getSymbol() + '\'' +
+                ", partitions=" + books.length +
+                '}';
+    }
+
+    private static void mergeInto(PriceLevel target, PriceLevel level, int side, long multiplier) {
+        for (int i = 0; i < level.getSourceCount(side); i++) {
+            long units = level.getSourceQtyUnits(side, i) * multiplier;
+            if (side == BUY) {
+                target.addBuyUnits(level.getSourceId(side, i), units);
+            } else {
+                target.addSellUnits(level.getSourceId(side, i), units);
+            }
+        }
+    }
+
+    /**
+     * 按需归并的档位集合视图
+     */
+    private final class MergedLevels extends AbstractCollection<PriceLevel> {
+        private final int side;
+
+        private MergedLevels(int side) {
+            this.side = side;
+        }
+
+        @Override
+        public Iterator<PriceLevel> iterator() {
+            return new MergingIterator(side);
+        }
+
+        @Override
+        public int size() {
+            return new MergingIterator(side).count();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !new MergingIterator(side).hasNext();
+        }
+    }
+
+    /**
+     * k 路归并迭代器：每次在各分区头档位中取最优价格，合并同价档位后推进对应分区
+     * 分区数很小（不超过市场槽位数），线性比较头档位即可
+     */
+    private final class MergingIterator implements Iterator<PriceLevel> {
+        private final int side;
+        private final Iterator<PriceLevel>[] cursors;
+        private final PriceLevel[] heads;
+
+        @SuppressWarnings("unchecked")
+        private MergingIterator(int side) {
+            this.side = side;
+            this.cursors = (Iterator<PriceLevel>[]) new Iterator<?>[books.length];
+            this.heads = new PriceLevel[books.length];
+            for (int i = 0; i < books.length; i++) {
+                cursors[i] = (side == BUY ? books[i].getBidLevels() : books[i].getAskLevels()).iterator();
+                advance(i);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (PriceLevel head : heads) {
+                if (head != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public PriceLevel next() {
+            int best = bestHead();
+            if (best < 0) {
+                throw new NoSuchElementException();
+            }
+            BigDecimal price = heads[best].getPrice();
+            int contributors = 0;
+            for (PriceLevel head : heads) {
+                if (head != null && head.getPrice().compareTo(price) == 0) {
+                    contributors++;
+                }
+            }
+            if (contributors == 1 && unitMultipliers[best] == 1) {
+                PriceLevel level = heads[best];
+                advance(best);
+                return level;
+            }
+            PriceLevel merged = new PriceLevel(price, getPriceScale());
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] != null && heads[i].getPrice().compareTo(price) == 0) {
+                    mergeInto(merged, heads[i], side, unitMultipliers[i]);
+                    advance(i);
+                }
+            }
+            return merged;
+        }
+
+        /**
+         * 遍历剩余档位计数，不构建合并档位
+         */
+        private int count() {
+            int count = 0;
+            int best;
+            while ((best = bestHead()) >= 0) {
+                BigDecimal price = heads[best].getPrice();
+                for (int i = 0; i < heads.length; i++) {
+                    if (heads[i] != null && heads[i].getPrice().compareTo(price) == 0) {
+                        advance(i);
+                    }
+                }
+                count++;
+            }
+            return count;
+        }
+
+        private int bestHead() {
+            int best = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] != null && (best < 0 || isBetter(heads[i].getPrice(), heads[best].getPrice()))) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        private boolean isBetter(BigDecimal a, BigDecimal b) {
+            int cmp = a.compareTo(b);
+            return side == BUY ? cmp > 0 : cmp < 0;
+        }
+
+        private void advance(int i) {
+            // 跳过并发删除后数量已为0的档位
+            while (cursors[i].hasNext()) {
+                PriceLevel level = cursors[i].next();
+                if (side == BUY ? level.hasBuyOrders() : level.hasSellOrders()) {
+                    heads[i] = level;
+                    return;
+                }
+            }
+            heads[i] = null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.quant.making.book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * 按稠密编号索引的表
+ * 品种和价源由 SymbolIds / SourceIds 分配稠密编号，热路径上的按品种、按价源状态以编号直接索引数组，
+ * 不再逐笔哈希字符串；字符串只在接口和持久化边界上转换为编号
+ *
+ * 读取不加锁（读取数组引用后按下标访问），写入串行化，编号超出容量时整体扩容
+ */
+public final class DenseIdTable<V> {
+
+    /**
+     * 遍历回调
+     */
+    @FunctionalInterface
+    public interface Visitor<V> {
+        void visit(int id, V value);
+    }
+
+    private volatile AtomicReferenceArray<V> values;
+
+    public DenseIdTable() {
+        this(16);
+    }
+
+    public DenseIdTable(int initialCapacity) {
+        this.values = new AtomicReferenceArray<>(Math.max(initialCapacity, 1));
+    }
+
+    /**
+     * 获取编号对应的值，编号为负（未分配）或未设置时返回 null
+     */
+    public V get(int id) {
+        AtomicReferenceArray<V> current = values;
+        return id >= 0 && id < current.length() ? current.get(id) : null;
+    }
+
+    /**
+     * 设置编号对应的值，返回原值
+     */
+    public synchronized V put(int id, V value) {
+        return ensureCapacity(id).getAndSet(id, value);
+    }
+
+    /**
+     * 编号未设置值时以 factory 创建并设置，返回当前值
+     */
+    public V computeIfAbsent(int id, IntFunction<? extends V> factory) {
+        V existing = get(id);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            AtomicReferenceArray<V> current = ensureCapacity(id);
+            existing = current.get(id);
+            if (existing == null) {
+                existing = factory.apply(id);
+                current.set(id, existing);
+            }
+            return existing;
+        }
+    }
+
+    /**
+     * 移除编号对应的值，返回原值
+     */
+    public synchronized V remove(int id) {
+        AtomicReferenceArray<V> current = values;
+        return id >= 0 && id < current.length() ? current.getAndSet(id, null) : null;
+    }
+
+    /**
+     * 清空全部值，容量保留
+     */
+    public synchronized void clear() {
+        values = new AtomicReferenceArray<>(values.length());
+    }
+
+    /**
+     * 按编号顺序遍历已设置的值
+     */
+    public void forEach(Visitor<? super V> visitor) {
+        AtomicReferenceArray<V> current = values;
+        for (int id = 0; id < current.length(); id++) {
+            V value = current.get(id);
+            if (value != null) {
+                visitor.visit(id, value);
+            }
+        }
+    }
+
+    /**
+     * 已设置值的快照列表，按编号顺序
+     */
+    public List<V> values() {
+        AtomicReferenceArray<V> current = values;
+        List<V> result = new ArrayList<>();
+        for (int id = 0; id < current.length(); id++) {
+            V value = current.get(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 已设置值的编号数，需要遍历，不应在热路径上调用
+     */
+    public int size() {
+        AtomicReferenceArray<V> current = values;
+        int size = 0;
+        for (int id = 0; id < current.length(); id++) {
+            if (current.get(id) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private AtomicReferenceArray<V> ensureCapacity(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Invalid id: " + id);
+        }
+        AtomicReferenceArray<V> current = values;
+        if (id < current.length()) {
+            return current;
+        }
+        int capacity = current.length();
+        while (capacity <= id) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<V> grown = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        values = grown;
+        return grown;
+    }
+}
@@ -0,0 +1,53 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 订单簿脏档位记录
+ * 记录自上次快照以来数量发生变化的 (方向, 价格, 价源)，增量快照只需写出这些价源在对应档位上的最新数量
+ * 仅由写者访问，不做并发控制
+ */
+class DirtyLevels {
+
+    // price -> 变化过的价源ID集合
+    private final Map<BigDecimal, BitSet> bids = new HashMap<>();
+    private final Map<BigDecimal, BitSet> asks = new HashMap<>();
+    // 脏记录数（价格 × 价源）
+    private int size;
+    // 订单簿被整体替换，无法用增量表达，下次必须生成全量快照
+    private boolean invalidated;
+
+    void mark(int side, BigDecimal price, int sourceId) {
+        BitSet sources = levels(side).computeIfAbsent(price, p -> new BitSet());
+        if (!sources.get(sourceId)) {
+            sources.set(sourceId);
+            size++;
+        }
+    }
+
+    Map<BigDecimal, BitSet> levels(int side) {
+        return side == OrderBook.BUY ? bids : asks;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void invalidate() {
+        invalidated = true;
+    }
+
+    boolean isInvalidated() {
+        return invalidated;
+    }
+
+    void clear() {
+        bids.clear();
+        asks.clear();
+        size = 0;
+        invalidated = false;
+    }
+}
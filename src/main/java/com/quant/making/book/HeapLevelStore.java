@@ -0,0 +1,157 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 堆内档位存储
+ * 档位为 PriceLevel 对象，全部档位保存在按价格排序的跳表中，买卖两侧各自维护一条有序价格阶梯；
+ * 价源在各价格上的数量记录在价源状态中
+ */
+final class HeapLevelStore implements LevelStore {
+
+    private final PriceScale priceScale;
+    // 全部档位（按价格升序），同一价格的买卖数量共用一个档位
+    private Map<BigDecimal, OrderBook.PriceLevel> aggregatedLevels = new ConcurrentSkipListMap<>();
+    // 买方阶梯：仅包含有买量的档位，价格从高到低
+    private final PriceLadder bidLadder = new PriceLadder(true);
+    // 卖方阶梯：仅包含有卖量的档位，价格从低到高
+    private final PriceLadder askLadder = new PriceLadder(false);
+
+    HeapLevelStore(PriceScale priceScale) {
+        this.priceScale = priceScale;
+    }
+
+    @Override
+    public OrderBookStorage storage() {
+        return OrderBookStorage.HEAP;
+    }
+
+    @Override
+    public long sourceUnits(SourceLevelState state, int side, BigDecimal price) {
+        return state.get(side, price);
+    }
+
+    @Override
+    public long levelSourceUnits(int side, BigDecimal price, int sourceId) {
+        OrderBook.PriceLevel level = aggregatedLevels.get(price);
+        return level != null ? level.getSourceQtyUnitsById(side, sourceId) : 0L;
+    }
+
+    @Override
+    public BigDecimal[] sourcePrices(SourceLevelState state, int side) {
+        return SourceLevelState.prices(state.levels(side));
+    }
+
+    /**
+     * 堆内档位的价源数不受限制；按最小变动价位对齐时价格须在定点网格上，与新建档位时的价格规整一致
+     */
+    @Override
+    public void checkCapacity(int sourceId, int side, Map<BigDecimal, Long> levels) {
+        if (!priceScale.isTickAligned()) {
+            return;
+        }
+        for (Map.Entry<BigDecimal, Long> entry : levels.entrySet()) {
+            if (entry.getValue() > 0) {
+                priceScale.toPriceUnits(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * 已存在的档位按价格比较查找（与精度无关，1.10 与 1.1 为同一档位），更新过程不分配对象
+     */
+    @Override
+    public BigDecimal apply(SourceLevelState state, int side, BigDecimal price, long targetUnits, long deltaUnits) {
+        OrderBook.PriceLevel level = aggregatedLevels.get(price);
+        if (level == null) {
+            BigDecimal levelPrice = priceScale.normalizePrice(price);
+            level = aggregatedLevels.computeIfAbsent(levelPrice, p -> new OrderBook.PriceLevel(p, priceScale));
+        }
+        state.set(side, price, targetUnits);
+        if (side == OrderBook.BUY) {
+            level.addBuyUnits(state.getSourceId(), deltaUnits);
+        } else {
+            level.addSellUnits(state.getSourceId(), deltaUnits);
+        }
+        updateLadders(level);
+        if (level.isEmpty()) {
+            aggregatedLevels.remove(level.getPrice());
+        }
+        return level.getPrice();
+    }
+
+    @Override
+    public OrderBook.PriceLevel best(int side) {
+        return ladder(side).best();
+    }
+
+    @Override
+    public Collection<OrderBook.PriceLevel> levels(int side) {
+        return ladder(side).levels();
+    }
+
+    @Override
+    public int depth(int side) {
+        return ladder(side).size();
+    }
+
+    @Override
+    public long levelUnits(int side, BigDecimal price) {
+        OrderBook.PriceLevel level = aggregatedLevels.get(price);
+        if (level == null) {
+            return 0L;
+        }
+        return side == OrderBook.BUY ? level.getBuyQtyUnits() : level.getSellQtyUnits();
+    }
+
+    @Override
+    public BookDepth topDepth(int side, long version, int capacity) {
+        return BookDepth.of(side, version, ladder(side).levels(), capacity);
+    }
+
+    @Override
+    public Map<BigDecimal, OrderBook.PriceLevel> aggregatedLevels() {
+        return aggregatedLevels;
+    }
+
+    /**
+     * 直接使用给定档位对象，并根据全部档位重建买卖阶梯
+     */
+    @Override
+    public void load(Map<BigDecimal, OrderBook.PriceLevel> levels) {
+        this.aggregatedLevels = new ConcurrentSkipListMap<>(levels);
+        bidLadder.clear();
+        askLadder.clear();
+        for (OrderBook.PriceLevel level : aggregatedLevels.values()) {
+            updateLadders(level);
+        }
+    }
+
+    @Override
+    public int size() {
+        return aggregatedLevels.size();
+    }
+
+    private PriceLadder ladder(int side) {
+        return side == OrderBook.BUY ? bidLadder : askLadder;
+    }
+
+    /**
+     * 根据档位当前买卖数量同步其在买卖阶梯中的归属
+     */
+    private void updateLadders(OrderBook.PriceLevel level) {
+        if (level.hasBuyOrders()) {
+            bidLadder.add(level);
+        } else {
+            bidLadder.remove(level.getPrice());
+        }
+        if (level.hasSellOrders()) {
+            askLadder.add(level);
+        } else {
+            askLadder.remove(level.getPrice());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 订单簿档位存储
+ * 保存按价格聚合的档位、买卖两侧的有序阶梯和各价源在档位上的数量；
+ * 加锁、版本、深度发布和脏档位记录由 OrderBook 负责，存储只在写者上下文中被修改
+ */
+interface LevelStore {
+
+    /**
+     * 存储方式
+     */
+    OrderBookStorage storage();
+
+    /**
+     * 价源在指定方向和价格上的当前数量，无报价时为0
+     */
+    long sourceUnits(SourceLevelState state, int side, BigDecimal price);
+
+    /**
+     * 按价源编号查询价源在指定方向和价格上的档位数量，无档位或无报价时为0；不构建档位对象
+     */
+    long levelSourceUnits(int side, BigDecimal price, int sourceId);
+
+    /**
+     * 价源在指定方向上有报价的价格
+     */
+    BigDecimal[] sourcePrices(SourceLevelState state, int side);
+
+    /**
+     * 检查价源能否在给定价格上持有报价（数量大于0的价格），不能时抛出异常且不修改存储
+     * 复合变更在修改前调用，避免中途失败留下只应用了一部分的状态
+     *
+     * @param levels 价格 -> 目标定点数量
+     */
+    void checkCapacity(int sourceId, int side, Map<BigDecimal, Long> levels);
+
+    /**
+     * 将价源在指定价格上的数量设为 targetUnits，聚合数量按 deltaUnits 调整，同步阶梯并移除空档位
+     *
+     * @return 档位价格（规范化后）
+     */
+    BigDecimal apply(SourceLevelState state, int side, BigDecimal price, long targetUnits, long deltaUnits);
+
+    /**
+     * 指定方向的最优档位，无档位时返回 null
+     */
+    OrderBook.PriceLevel best(int side);
+
+    /**
+     * 指定方向的档位，按价格优先级排列（只读视图）
+     */
+    Collection<OrderBook.PriceLevel> levels(int side);
+
+    /**
+     * 指定方向的档位数
+     */
+    int depth(int side);
+
+    /**
+     * 指定方向在该价格上的聚合定点数量，无档位时为0
+     */
+    long levelUnits(int side, BigDecimal price);
+
+    /**
+     * 按阶梯头部收集指定方向的前 capacity 档深度
+     */
+    BookDepth topDepth(int side, long version, int capacity);
+
+    /**
+     * 全部档位（按价格升序）
+     */
+    Map<BigDecimal, OrderBook.PriceLevel> aggregatedLevels();
+
+    /**
+     * 以给定档位替换全部档位，价源数量取自档位的价源明细
+     */
+    void load(Map<BigDecimal, OrderBook.PriceLevel> levels);
+
+    /**
+     * 档位总数
+     */
+    int size();
+}
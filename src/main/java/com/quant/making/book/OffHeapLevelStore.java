@@ -0,0 +1,536 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * 堆外档位存储
+ * 每个价格一条定长记录，保存在直接内存缓冲区中：定点价格、买卖聚合数量、买卖两侧各 sourceSlots 个价源槽位
+ * （价源编号 + 定点数量）；价源数量只记录在槽位中，不再另建按价源的价格映射。
+ * 买卖两侧各以按价格升序的基本类型数组索引记录，堆内只保留这几个数组，档位数量增长不产生对象
+ *
+ * 读取时按记录构建 PriceLevel，返回的档位是读取时刻的副本，修改它不影响订单簿；
+ * 价格以定点精度返回（默认精度为8位小数）。写者变更期间读到的可能是中间状态，OrderBook 的档位读取均在乐观读中校验版本
+ *
+ * 记录布局（字节）：
+ * [0, 8) 价格 | [8, 16) 买量 | [16, 24) 卖量 | [24, 28) 买方价源数 | [28, 32) 卖方价源数 |
+ * 买方槽位 sourceSlots x 12 | 卖方槽位 sourceSlots x 12
+ */
+final class OffHeapLevelStore implements LevelStore {
+
+    private static final int PRICE_OFFSET = 0;
+    private static final int BUY_QTY_OFFSET = 8;
+    private static final int SELL_QTY_OFFSET = 16;
+    private static final int BUY_COUNT_OFFSET = 24;
+    private static final int SELL_COUNT_OFFSET = 28;
+    private static final int SLOTS_OFFSET = 32;
+    // 价源槽位：int 价源编号 + long 定点数量
+    private static final int SLOT_SIZE = 12;
+
+    private final PriceScale priceScale;
+    private final int sourceSlots;
+    private final int recordSize;
+    // 记录缓冲区，容量不足时整体扩容，先发布新缓冲区再写入新记录
+    private volatile ByteBuffer buffer;
+    // 已使用过的记录数和空闲记录栈，只由写者访问
+    private int allocated;
+    private int[] freeRecords = new int[16];
+    private int freeCount;
+    // 买方/卖方索引：仅包含该方向数量大于0的记录，价格升序
+    private final SideIndex bids = new SideIndex();
+    private final SideIndex asks = new SideIndex();
+
+    /**
+     * @param sourceSlots 每个档位单侧的价源槽位数
+     * @param initialLevels 初始记录容量
+     */
+    OffHeapLevelStore(PriceScale priceScale, int sourceSlots, int initialLevels) {
+        if (sourceSlots <= 0) {
+            throw new IllegalArgumentException("Source slots must be positive: " + sourceSlots);
+        }
+        this.priceScale = priceScale;
+        this.sourceSlots = sourceSlots;
+        this.recordSize = SLOTS_OFFSET + 2 * sourceSlots * SLOT_SIZE;
+        this.buffer = allocate(Math.max(initialLevels, 1) * recordSize);
+    }
+
+    @Override
+    public OrderBookStorage storage() {
+        return OrderBookStorage.OFF_HEAP;
+    }
+
+    @Override
+    public long sourceUnits(SourceLevelState state, int side, BigDecimal price) {
+        return levelSourceUnits(side, price, state.getSourceId());
+    }
+
+    @Override
+    public long levelSourceUnits(int side, BigDecimal price, int sourceId) {
+        int record = findRecord(price);
+        if (record < 0) {
+            return 0L;
+        }
+        ByteBuffer buf = buffer;
+        int base = record * recordSize;
+        int slot = findSlot(buf, base, side, sourceId);
+        return slot >= 0 ? buf.getLong(slotOffset(base, side, slot) + 4) : 0L;
+    }
+
+    @Override
+    public BigDecimal[] sourcePrices(SourceLevelState state, int side) {
+        SideIndex index = index(side);
+        ByteBuffer buf = buffer;
+        List<BigDecimal> prices = new ArrayList<>();
+        for (int i = 0; i < index.size; i++) {
+            if (findSlot(buf, index.records[i] * recordSize, side, state.getSourceId()) >= 0) {
+                prices.add(priceScale.toPrice(index.prices[i]));
+            }
+        }
+        return prices.toArray(new BigDecimal[0]);
+    }
+
+    /**
+     * 价格须在定点网格上；已有档位中没有该价源时须还有空闲槽位，新建档位总有空闲槽位
+     */
+    @Override
+    public void checkCapacity(int sourceId, int side, Map<BigDecimal, Long> levels) {
+        ByteBuffer buf = buffer;
+        for (Map.Entry<BigDecimal, Long> entry : levels.entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            int record = findRecord(priceScale.toPriceUnits(entry.getKey()));
+            if (record < 0) {
+                continue;
+            }
+            int base = record * recordSize;
+            if (findSlot(buf, base, side, sourceId) < 0) {
+                checkSlots(slotCount(buf, base, side) + 1);
+            }
+        }
+    }
+
+    @Override
+    public BigDecimal apply(SourceLevelState state, int side, BigDecimal price, long targetUnits, long deltaUnits) {
+        long priceUnits = priceScale.toPriceUnits(price);
+        int record = findRecord(priceUnits);
+        if (record < 0) {
+            record = allocateRecord(priceUnits);
+        }
+        ByteBuffer buf = buffer;
+        int base = record * recordSize;
+        setSlot(buf, base, side, state.getSourceId(), targetUnits);
+
+        int qtyOffset = base + (side == OrderBook.BUY ? BUY_QTY_OFFSET : SELL_QTY_OFFSET);
+        long before = buf.getLong(qtyOffset);
+        long after = before + deltaUnits;
+        buf.putLong(qtyOffset, after);
+        if (before <= 0 && after > 0) {
+            index(side).insert(priceUnits, record);
+        } else if (before > 0 && after <= 0) {
+            index(side).remove(priceUnits);
+        }
+        if (buf.getLong(base + BUY_QTY_OFFSET) <= 0 && buf.getLong(base + SELL_QTY_OFFSET) <= 0) {
+            freeRecord(record);
+        }
+        return priceScale.toPrice(priceUnits);
+    }
+
+    @Override
+    public OrderBook.PriceLevel best(int side) {
+        SideIndex index = index(side);
+        int size = index.size;
+        int[] records = index.records;
+        if (size == 0 || size > records.length) {
+            return null;
+        }
+        return materialize(buffer, records[side == OrderBook.BUY ? size - 1 : 0]);
+    }
+
+    @Override
+    public Collection<OrderBook.PriceLevel> levels(int side) {
+        return new SideLevels(side);
+    }
+
+    @Override
+    public int depth(int side) {
+        return index(side).size;
+    }
+
+    @Override
+    public long levelUnits(int side, BigDecimal price) {
+        int record = findRecord(price);
+        if (record < 0) {
+            return 0L;
+        }
+        return buffer.getLong(record * recordSize + (side == OrderBook.BUY ? BUY_QTY_OFFSET : SELL_QTY_OFFSET));
+    }
+
+    /**
+     * 直接从记录收集深度，不构建档位对象
+     */
+    @Override
+    public BookDepth topDepth(int side, long version, int capacity) {
+        BigDecimal[] prices = new BigDecimal[capacity];
+        BigDecimal[] quantities = new BigDecimal[capacity];
+        long[] units = new long[capacity];
+        SideIndex index = index(side);
+        ByteBuffer buf = buffer;
+        int qtyOffset = side == OrderBook.BUY ? BUY_QTY_OFFSET : SELL_QTY_OFFSET;
+        int size = Math.min(index.size, capacity);
+        for (int i = 0; i < size; i++) {
+            int position = side == OrderBook.BUY ? index.size - 1 - i : i;
+            prices[i] = priceScale.toPrice(index.prices[position]);
+            units[i] = buf.getLong(index.records[position] * recordSize + qtyOffset);
+            quantities[i] = priceScale.toQuantity(units[i]);
+        }
+        return new BookDepth(side, version, prices, quantities, units, size);
+    }
+
+    /**
+     * 全部档位的只读副本（按价格升序）
+     */
+    @Override
+    public Map<BigDecimal, OrderBook.PriceLevel> aggregatedLevels() {
+        ByteBuffer buf = buffer;
+        Map<BigDecimal, OrderBook.PriceLevel> levels = new TreeMap<>();
+        for (SideIndex index : new SideIndex[]{bids, asks}) {
+            int size = Math.min(index.size, index.records.length);
+            for (int i = 0; i < size; i++) {
+                OrderBook.PriceLevel level = materialize(buf, index.records[i]);
+                if (level != null) {
+                    levels.putIfAbsent(level.getPrice(), level);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(levels);
+    }
+
+    /**
+     * 按档位的聚合数量和价源明细写入记录，买卖数量均为0的档位不保存
+     *
+     * @throws IllegalStateException 档位单侧价源数超过槽位数
+     */
+    @Override
+    public void load(Map<BigDecimal, OrderBook.PriceLevel> levels) {
+        for (OrderBook.PriceLevel level : levels.values()) {
+            checkSlots(level.getSourceCount(OrderBook.BUY));
+            checkSlots(level.getSourceCount(OrderBook.SELL));
+        }
+        bids.clear();
+        asks.clear();
+        allocated = 0;
+        freeCount = 0;
+        for (OrderBook.PriceLevel level : levels.values()) {
+            if (!level.hasBuyOrders() && !level.hasSellOrders()) {
+                continue;
+            }
+            long priceUnits = priceScale.toPriceUnits(level.getPrice());
+            int record = findRecord(priceUnits);
+            if (record >= 0) {
+                bids.remove(priceUnits);
+                asks.remove(priceUnits);
+            } else {
+                record = allocateRecord(priceUnits);
+            }
+            ByteBuffer buf = buffer;
+            int base = record * recordSize;
+            buf.putLong(base + BUY_QTY_OFFSET, level.getBuyQtyUnits());
+            buf.putLong(base + SELL_QTY_OFFSET, level.getSellQtyUnits());
+            writeSlots(buf, base, OrderBook.BUY, level);
+            writeSlots(buf, base, OrderBook.SELL, level);
+            if (level.hasBuyOrders()) {
+                bids.insert(priceUnits, record);
+            }
+            if (level.hasSellOrders()) {
+                asks.insert(priceUnits, record);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return allocated - freeCount;
+    }
+
+    /**
+     * 每个档位单侧的价源槽位数
+     */
+    int getSourceSlots() {
+        return sourceSlots;
+    }
+
+    /**
+     * 堆外缓冲区当前容量（字节）
+     */
+    int getCapacityBytes() {
+        return buffer.capacity();
+    }
+
+    // ---------------------------------------------------------------- 记录
+
+    private int findRecord(BigDecimal price) {
+        long priceUnits;
+        try {
+            priceUnits = priceScale.toPriceUnits(price);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            // 不在定点网格上的价格不可能有档位
+            return -1;
+        }
+        return findRecord(priceUnits);
+    }
+
+    /**
+     * 按价格查找记录，档位至少在一侧有数量，因此只需查找两侧索引
+     */
+    private int findRecord(long priceUnits) {
+        int record = bids.find(priceUnits);
+        return record >= 0 ? record : asks.find(priceUnits);
+    }
+
+    private int allocateRecord(long priceUnits) {
+        int record = freeCount > 0 ? freeRecords[--freeCount] : allocated++;
+        ByteBuffer buf = ensureCapacity(record);
+        int base = record * recordSize;
+        buf.putLong(base + PRICE_OFFSET, priceUnits);
+        buf.putLong(base + BUY_QTY_OFFSET, 0L);
+        buf.putLong(base + SELL_QTY_OFFSET, 0L);
+        buf.putInt(base + BUY_COUNT_OFFSET, 0);
+        buf.putInt(base + SELL_COUNT_OFFSET, 0);
+        return record;
+    }
+
+    private void freeRecord(int record) {
+        if (freeCount == freeRecords.length) {
+            freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+        }
+        freeRecords[freeCount++] = record;
+    }
+
+    private ByteBuffer ensureCapacity(int record) {
+        ByteBuffer current = buffer;
+        int required = (record + 1) * recordSize;
+        if (required <= current.capacity()) {
+            return current;
+        }
+        int capacity = current.capacity();
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+        ByteBuffer grown = allocate(capacity);
+        grown.put(0, current, 0, current.capacity());
+        buffer = grown;
+        return grown;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * 由记录构建档位副本，记录超出缓冲区（读到扩容中的中间状态）时返回 null
+     */
+    private OrderBook.PriceLevel materialize(ByteBuffer buf, int record) {
+        int base = record * recordSize;
+        if (record < 0 || base + recordSize > buf.capacity()) {
+            return null;
+        }
+        OrderBook.PriceLevel level = new OrderBook.PriceLevel(
+            priceScale.toPrice(buf.getLong(base + PRICE_OFFSET)), priceScale,
+            buf.getLong(base + BUY_QTY_OFFSET), buf.getLong(base + SELL_QTY_OFFSET));
+        readSlots(buf, base, OrderBook.BUY, level);
+        readSlots(buf, base, OrderBook.SELL, level);
+        return level;
+    }
+
+    // ---------------------------------------------------------------- 价源槽位
+
+    private int slotOffset(int base, int side, int slot) {
+        return base + SLOTS_OFFSET + ((side == OrderBook.BUY ? 0 : sourceSlots) + slot) * SLOT_SIZE;
+    }
+
+    private static int countOffset(int base, int side) {
+        return base + (side == OrderBook.BUY ? BUY_COUNT_OFFSET : SELL_COUNT_OFFSET);
+    }
+
+    private int slotCount(ByteBuffer buf, int base, int side) {
+        return Math.min(buf.getInt(countOffset(base, side)), sourceSlots);
+    }
+
+    private int findSlot(ByteBuffer buf, int base, int side, int sourceId) {
+        int count = slotCount(buf, base, side);
+        for (int slot = 0; slot < count; slot++) {
+            if (buf.getInt(slotOffset(base, side, slot)) == sourceId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 设置价源槽位数量，数量为0时移除槽位并前移其后的槽位，保持首次出现顺序
+     *
+     * @throws IllegalStateException 新价源超出槽位数，此时记录未被修改
+     */
+    private void setSlot(ByteBuffer buf, int base, int side, int sourceId, long quantityUnits) {
+        int count = slotCount(buf, base, side);
+        int slot = findSlot(buf, base, side, sourceId);
+        if (slot >= 0) {
+            if (quantityUnits > 0) {
+                buf.putLong(slotOffset(base, side, slot) + 4, quantityUnits);
+                return;
+            }
+            for (int i = slot + 1; i < count; i++) {
+                int from = slotOffset(base, side, i);
+                int to = slotOffset(base, side, i - 1);
+                buf.putInt(to, buf.getInt(from));
+                buf.putLong(to + 4, buf.getLong(from + 4));
+            }
+            buf.putInt(countOffset(base, side), count - 1);
+        } else if (quantityUnits > 0) {
+            checkSlots(count + 1);
+            int offset = slotOffset(base, side, count);
+            buf.putInt(offset, sourceId);
+            buf.putLong(offset + 4, quantityUnits);
+            buf.putInt(countOffset(base, side), count + 1);
+        }
+    }
+
+    private void writeSlots(ByteBuffer buf, int base, int side, OrderBook.PriceLevel level) {
+        int count = level.getSourceCount(side);
+        for (int i = 0; i < count; i++) {
+            int offset = slotOffset(base, side, i);
+            buf.putInt(offset, level.getSourceId(side, i));
+            buf.putLong(offset + 4, level.getSourceQtyUnits(side, i));
+        }
+        buf.putInt(countOffset(base, side), count);
+    }
+
+    private void readSlots(ByteBuffer buf, int base, int side, OrderBook.PriceLevel level) {
+        int count = slotCount(buf, base, side);
+        for (int slot = 0; slot < count; slot++) {
+            int offset = slotOffset(base, side, slot);
+            level.putSourceUnits(side, buf.getInt(offset), buf.getLong(offset + 4));
+        }
+    }
+
+    private void checkSlots(int count) {
+        if (count > sourceSlots) {
+            throw new IllegalStateException("Source slots exhausted: " + count + " sources exceed " + sourceSlots
+                    + " slots per level side, increase orderbook.storage.source-slots");
+        }
+    }
+
+    private SideIndex index(int side) {
+        return side == OrderBook.BUY ? bids : asks;
+    }
+
+    /**
+     * 单侧记录索引：按价格升序的定点价格和记录号
+     * 写者先替换数组再更新 size，读者先读 size 再读数组，下标不会越界
+     */
+    private static final class SideIndex {
+        private volatile long[] prices = new long[16];
+        private volatile int[] records = new int[16];
+        private volatile int size;
+
+        /**
+         * 查找价格对应的记录号，不存在返回 -1
+         */
+        int find(long priceUnits) {
+            int position = Arrays.binarySearch(prices, 0, size, priceUnits);
+            return position >= 0 ? records[position] : -1;
+        }
+
+        void insert(long priceUnits, int record) {
+            int position = Arrays.binarySearch(prices, 0, size, priceUnits);
+            if (position >= 0) {
+                records[position] = record;
+                return;
+            }
+            position = -position - 1;
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                records = Arrays.copyOf(records, size * 2);
+            }
+            System.arraycopy(prices, position, prices, position + 1, size - position);
+            System.arraycopy(records, position, records, position + 1, size - position);
+            prices[position] = priceUnits;
+            records[position] = record;
+            size++;
+        }
+
+        void remove(long priceUnits) {
+            int position = Arrays.binarySearch(prices, 0, size, priceUnits);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(prices, position + 1, prices, position, size - position - 1);
+            System.arraycopy(records, position + 1, records, position, size - position - 1);
+            size--;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * 单侧档位视图，按价格优先级遍历时逐个构建档位，调用方停止遍历即停止构建
+     */
+    private final class SideLevels extends AbstractCollection<OrderBook.PriceLevel> {
+
+        private final int side;
+
+        SideLevels(int side) {
+            this.side = side;
+        }
+
+        @Override
+        public Iterator<OrderBook.PriceLevel> iterator() {
+            SideIndex index = index(side);
+            int size = index.size;
+            int[] records = index.records;
+            ByteBuffer buf = buffer;
+            int count = Math.min(size, records.length);
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public OrderBook.PriceLevel next() {
+                    if (next >= count) {
+                        throw new NoSuchElementException();
+                    }
+                    int position = side == OrderBook.BUY ? count - 1 - next : next;
+                    next++;
+                    OrderBook.PriceLevel level = materialize(buf, records[position]);
+                    if (level == null) {
+                        throw new IllegalStateException("Level record out of range, book modified during iteration");
+                    }
+                    return level;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return index(side).size;
+        }
+    }
+}
@@ -1,47 +1,128 @@
 package com.quant.making.book;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
 
 /**
  * 订单簿聚合视图
  * 包含按价格聚合的档位信息
+ * 买卖双方各自维护一条有序价格阶梯，最优买卖价随更新维护，查询为 O(1)
+ * 档位由档位存储保存，默认为堆内存储，品种众多的市场可选用堆外存储（见 OrderBookStorage）
+ * 每个价源的档位单独记录，替换/删除/全量刷新按增量调整聚合数量，单次更新为 O(1)
+ * 买卖双方的前 N 档深度随更新维护，只有落在前 N 档内的变化才重建并发布新版本，
+ * 盘口指标的单边累计统计随深度一同重建
+ *
+ * 写者每次变更期间持有版本写锁；读者通过 read 以乐观读执行读取并校验版本，
+ * 期间发生变更则重试，读者不加锁、不阻塞写者，读到的始终是两次变更之间的一致状态
  */
 public class OrderBook {
     
     private String symbol;
     private Integer marketType;
-    private Map<BigDecimal, PriceLevel> aggregatedLevels;
+    // 定点精度配置，价格按 tick 规范化，数量以 long 定点保存
+    private final PriceScale priceScale;
+    // 档位存储：全部档位及买卖两侧的有序阶梯，同一价格的买卖数量共用一个档位
+    private final LevelStore levelStore;
+    // 各价源的档位状态，按价源编号索引
+    private final DenseIdTable<SourceLevelState> sourceStates = new DenseIdTable<>();
+    // 自上次快照以来的脏档位（未启用增量快照时为 null）
+    private DirtyLevels dirtyLevels;
+    // 前 N 档深度容量
+    private int depthCapacity = DEFAULT_DEPTH_CAPACITY;
+    // 买方/卖方前 N 档深度，写者在前 N 档变化时重建发布
+    private volatile BookDepth bidDepth = BookDepth.empty(BUY, DEFAULT_DEPTH_CAPACITY);
+    private volatile BookDepth askDepth = BookDepth.empty(SELL, DEFAULT_DEPTH_CAPACITY);
+    // 买方/卖方盘口指标累计统计，与对应深度同时发布
+    private volatile BookAnalytics.Side bidStats = BookAnalytics.Side.EMPTY;
+    private volatile BookAnalytics.Side askStats = BookAnalytics.Side.EMPTY;
+    // 订单簿版本，每次变更完成时递增
+    private volatile long version;
+    // 版本锁：写者变更期间持有写锁，读者只做乐观读校验
+    private final StampedLock versionLock = new StampedLock();
+    // 持有写锁的线程；只有该线程自己会写入或清除自身引用，其他线程读到的值不会等于自身，因此无需 volatile
+    private Thread writeOwner;
+    // 写锁重入深度和写锁凭证，只由持有写锁的线程访问（复合变更内部的单档变更不重复加锁）
+    private int writeDepth;
+    private long writeStamp;
     
     // 静态内部类：价格档位
+    // 数量以定点 long 保存，getter 在边界处转换为 BigDecimal；买卖两侧各自以紧凑数组记录价源数量
     public static class PriceLevel {
         private BigDecimal price;
-        private BigDecimal totalBuyQty;
-        private BigDecimal totalSellQty;
-        private Map<String, BigDecimal> sources;  // source -> quantity
+        private final PriceScale scale;
+        private long buyQtyUnits;
+        private long sellQtyUnits;
+        // 买方/卖方价源数量（价源编号 -> 定点数量）
+        private final SourceQuantities buySources = new SourceQuantities();
+        private final SourceQuantities sellSources = new SourceQuantities();
         
         public PriceLevel() {
-            this.totalBuyQty = BigDecimal.ZERO;
-            this.totalSellQty = BigDecimal.ZERO;
-            this.sources = new java.util.HashMap<>();
+            this.scale = PriceScale.DEFAULT;
         }
         
         public PriceLevel(BigDecimal price) {
+            this(price, PriceScale.DEFAULT);
+        }
+        
+        PriceLevel(BigDecimal price, PriceScale scale) {
             this.price = price;
-            this.totalBuyQty = BigDecimal.ZERO;
-            this.totalSellQty = BigDecimal.ZERO;
-            this.sources = new java.util.HashMap<>();
+            this.scale = scale;
+        }
+        
+        /**
+         * 按聚合数量构建档位，价源明细随后通过 putSourceUnits 填入
+         */
+        PriceLevel(BigDecimal price, PriceScale scale, long buyQtyUnits, long sellQtyUnits) {
+            this(price, scale);
+            this.buyQtyUnits = buyQtyUnits;
+            this.sellQtyUnits = sellQtyUnits;
         }
         
         public void addBuyQuantity(String source, BigDecimal quantity) {
-            this.totalBuyQty = this.totalBuyQty.add(quantity);
-            this.sources.merge(source, quantity, BigDecimal::add);
+            addBuyUnits(SourceIds.intern(source), scale.toQuantityUnits(quantity));
         }
         
         public void addSellQuantity(String source, BigDecimal quantity) {
-            this.totalSellQty = this.totalSellQty.add(quantity);
-            this.sources.merge(source, quantity, BigDecimal::add);
+            addSellUnits(SourceIds.intern(source), scale.toQuantityUnits(quantity));
+        }
+        
+        /**
+         * 按定点数量单位调整买量，不产生对象分配
+         */
+        void addBuyUnits(int sourceId, long quantityUnits) {
+            this.buyQtyUnits += quantityUnits;
+            buySources.add(sourceId, quantityUnits);
+        }
+        
+        /**
+         * 按定点数量单位调整卖量，不产生对象分配
+         */
+        void addSellUnits(int sourceId, long quantityUnits) {
+            this.sellQtyUnits += quantityUnits;
+            sellSources.add(sourceId, quantityUnits);
+        }
+        
+        /**
+         * 只记录价源明细，不调整聚合数量
+         */
+        void putSourceUnits(int side, int sourceId, long quantityUnits) {
+            sideSources(side).add(sourceId, quantityUnits);
+        }
+        
+        /**
+         * 档位买卖数量均为0
+         */
+        boolean isEmpty() {
+            return buyQtyUnits == 0 && sellQtyUnits == 0;
         }
         
         // Getter 和 Setter
@@ -53,86 +134,688 @@ public class OrderBook {
             this.price = price;
         }
         
+        public PriceScale getScale() {
+            return scale;
+        }
+        
         public BigDecimal getTotalBuyQty() {
-            return totalBuyQty;
+            return scale.toQuantity(buyQtyUnits);
         }
         
         public void setTotalBuyQty(BigDecimal totalBuyQty) {
-            this.totalBuyQty = totalBuyQty;
+            this.buyQtyUnits = scale.toQuantityUnits(totalBuyQty);
         }
         
         public BigDecimal getTotalSellQty() {
-            return totalSellQty;
+            return scale.toQuantity(sellQtyUnits);
         }
         
         public void setTotalSellQty(BigDecimal totalSellQty) {
-            this.totalSellQty = totalSellQty;
+            this.sellQtyUnits = scale.toQuantityUnits(totalSellQty);
+        }
+        
+        public long getBuyQtyUnits() {
+            return buyQtyUnits;
+        }
+        
+        public long getSellQtyUnits() {
+            return sellQtyUnits;
         }
         
+        /**
+         * 指定方向的价源数，配合 getSourceName/getSourceQtyUnits 按下标遍历，无需构建 Map
+         */
+        public int getSourceCount(int side) {
+            return sideSources(side).size();
+        }
+        
+        public String getSourceName(int side, int index) {
+            return SourceIds.name(sideSources(side).sourceIdAt(index));
+        }
+        
+        int getSourceId(int side, int index) {
+            return sideSources(side).sourceIdAt(index);
+        }
+        
+        public long getSourceQtyUnits(int side, int index) {
+            return sideSources(side).quantityUnitsAt(index);
+        }
+        
+        /**
+         * 获取价源在指定方向上的定点数量
+         */
+        long getSourceQtyUnits(int side, String source) {
+            return getSourceQtyUnitsById(side, SourceIds.intern(source));
+        }
+        
+        long getSourceQtyUnitsById(int side, int sourceId) {
+            return sideSources(side).get(sourceId);
+        }
+        
+        /**
+         * 获取买方各价源数量，返回新建的只读快照
+         */
+        public Map<String, BigDecimal> getBuySources() {
+            return toSourceMap(buySources, null);
+        }
+        
+        /**
+         * 获取卖方各价源数量，返回新建的只读快照
+         */
+        public Map<String, BigDecimal> getSellSources() {
+            return toSourceMap(sellSources, null);
+        }
+        
+        /**
+         * 获取各价源数量（买卖合计），返回新建的只读快照
+         */
         public Map<String, BigDecimal> getSources() {
-            return sources;
+            return toSourceMap(buySources, sellSources);
         }
         
+        /**
+         * 设置价源数量：有买量的档位视为买方价源，否则视为卖方价源
+         * 
+         * @deprecated 价源按买卖方向分别记录，请通过 addBuyQuantity/addSellQuantity 设置
+         */
+        @Deprecated
         public void setSources(Map<String, BigDecimal> sources) {
-            this.sources = sources;
+            SourceQuantities target = hasBuyOrders() || !hasSellOrders() ? buySources : sellSources;
+            target.clear();
+            for (Map.Entry<String, BigDecimal> entry : sources.entrySet()) {
+                target.add(SourceIds.intern(entry.getKey()), scale.toQuantityUnits(entry.getValue()));
+            }
         }
         
         public boolean hasBuyOrders() {
-            return totalBuyQty.compareTo(BigDecimal.ZERO) > 0;
+            return buyQtyUnits > 0;
         }
         
         public boolean hasSellOrders() {
-            return totalSellQty.compareTo(BigDecimal.ZERO) > 0;
+            return sellQtyUnits > 0;
+        }
+        
+        private SourceQuantities sideSources(int side) {
+            return side == BUY ? buySources : sellSources;
+        }
+        
+        private Map<String, BigDecimal> toSourceMap(SourceQuantities first, SourceQuantities second) {
+            Map<String, Long> units = new java.util.LinkedHashMap<>();
+            for (int i = 0; i < first.size(); i++) {
+                units.merge(SourceIds.name(first.sourceIdAt(i)), first.quantityUnitsAt(i), Long::sum);
+            }
+            if (second != null) {
+                for (int i = 0; i < second.size(); i++) {
+                    units.merge(SourceIds.name(second.sourceIdAt(i)), second.quantityUnitsAt(i), Long::sum);
+                }
+            }
+            Map<String, BigDecimal> sources = new java.util.LinkedHashMap<>();
+            units.forEach((source, qty) -> sources.put(source, scale.toQuantity(qty)));
+            return java.util.Collections.unmodifiableMap(sources);
         }
         
         @Override
         public String toString() {
             return "PriceLevel{" +
                     "price=" + price +
-                    ", totalBuyQty=" + totalBuyQty +
-                    ", totalSellQty=" + totalSellQty +
-                    ", sources=" + sources +
+                    ", totalBuyQty=" + getTotalBuyQty() +
+                    ", totalSellQty=" + getTotalSellQty() +
+                    ", buySources=" + getBuySources() +
+                    ", sellSources=" + getSellSources() +
                     '}';
         }
     }
     
+    /**
+     * 最优买卖价的一致快照，无报价的一侧价格和数量为 null
+     */
+    public static final class BestPrices {
+        private final BigDecimal bidPrice;
+        private final BigDecimal bidQty;
+        private final BigDecimal askPrice;
+        private final BigDecimal askQty;
+        
+        BestPrices(PriceLevel bid, PriceLevel ask) {
+            this.bidPrice = bid != null ? bid.getPrice() : null;
+            this.bidQty = bid != null ? bid.getTotalBuyQty() : null;
+            this.askPrice = ask != null ? ask.getPrice() : null;
+            this.askQty = ask != null ? ask.getTotalSellQty() : null;
+        }
+        
+        public BigDecimal getBidPrice() {
+            return bidPrice;
+        }
+        
+        public BigDecimal getBidQty() {
+            return bidQty;
+        }
+        
+        public BigDecimal getAskPrice() {
+            return askPrice;
+        }
+        
+        public BigDecimal getAskQty() {
+            return askQty;
+        }
+        
+        /**
+         * 买卖双方均有报价
+         */
+        public boolean isTwoSided() {
+            return bidPrice != null && askPrice != null;
+        }
+        
+        @Override
+        public String toString() {
+            return "BestPrices{bid=" + bidPrice + "x" + bidQty + ", ask=" + askPrice + "x" + askQty + '}';
+        }
+    }
+    
     // 默认构造函数
     public OrderBook() {
-        this.aggregatedLevels = new java.util.concurrent.ConcurrentHashMap<>();
+        this.priceScale = PriceScale.DEFAULT;
+        this.levelStore = new HeapLevelStore(priceScale);
     }
     
     public OrderBook(String symbol, Integer marketType) {
+        this(symbol, marketType, PriceScale.DEFAULT);
+    }
+    
+    public OrderBook(String symbol, Integer marketType, PriceScale priceScale) {
+        this(symbol, marketType, priceScale, OrderBookStorage.HEAP, 0, 0);
+    }
+    
+    /**
+     * 按存储方式创建订单簿
+     * 
+     * @param sourceSlots 堆外存储每个档位单侧的价源槽位数
+     * @param initialLevels 堆外存储的初始档位容量
+     */
+    OrderBook(String symbol, Integer marketType, PriceScale priceScale,
+              OrderBookStorage storage, int sourceSlots, int initialLevels) {
         this.symbol = symbol;
         this.marketType = marketType;
-        this.aggregatedLevels = new java.util.concurrent.ConcurrentHashMap<>();
+        this.priceScale = priceScale != null ? priceScale : PriceScale.DEFAULT;
+        this.levelStore = storage == OrderBookStorage.OFF_HEAP
+            ? new OffHeapLevelStore(this.priceScale, sourceSlots, initialLevels)
+            : new HeapLevelStore(this.priceScale);
     }
     
     // 添加报价到订单簿
     public void addQuote(String source, Integer side, BigDecimal price, BigDecimal quantity) {
-        PriceLevel level = aggregatedLevels.computeIfAbsent(price, PriceLevel::new);
-        if (side == 1) {  // BUY
-            level.addBuyQuantity(source, quantity);
-        } else if (side == 2) {  // SELL
-            level.addSellQuantity(source, quantity);
+        addQuoteUnits(source, side, price, priceScale.toQuantityUnits(quantity));
+    }
+    
+    /**
+     * 按定点数量单位累加报价
+     */
+    void addQuoteUnits(String source, int side, BigDecimal price, long quantityUnits) {
+        beginWrite();
+        try {
+            SourceLevelState state = sourceState(source);
+            state.touch();
+            applySourceQuantity(state, side, price, levelStore.sourceUnits(state, side, price) + quantityUnits);
+        } finally {
+            endWrite();
+        }
+    }
+    
+    /**
+     * 替换价源在指定价格上的报价数量（数量为0等同于删除）
+     * 聚合数量按新旧数量之差调整
+     */
+    public void replaceQuote(String source, Integer side, BigDecimal price, BigDecimal quantity) {
+        replaceQuoteUnits(source, side, price, priceScale.toQuantityUnits(quantity));
+    }
+    
+    /**
+     * 按定点数量单位替换报价
+     */
+    void replaceQuoteUnits(String source, int side, BigDecimal price, long quantityUnits) {
+        if (quantityUnits == 0) {
+            deleteQuote(source, side, price);
+            return;
+        }
+        beginWrite();
+        try {
+            SourceLevelState state = sourceState(source);
+            state.touch();
+            applySourceQuantity(state, side, price, quantityUnits);
+        } finally {
+            endWrite();
         }
     }
     
+    /**
+     * 删除价源在指定价格上的报价
+     */
+    public void deleteQuote(String source, Integer side, BigDecimal price) {
+        SourceLevelState state = sourceStates.get(SourceIds.lookup(source));
+        if (state == null) {
+            return;
+        }
+        beginWrite();
+        try {
+            state.touch();
+            applySourceQuantity(state, side, price, 0L);
+        } finally {
+            endWrite();
+        }
+    }
+    
+    /**
+     * 全量刷新价源的深度报价
+     * 新报价中不存在的旧档位被删除，其余档位按增量替换，只影响该价源涉及的档位；
+     * 数量换算或存储容量检查失败时整个刷新被拒绝，订单簿保持不变
+     * 
+     * @param bids 买方深度: price -> quantity
+     * @param asks 卖方深度: price -> quantity
+     */
+    public void refreshSource(String source, Map<BigDecimal, BigDecimal> bids, Map<BigDecimal, BigDecimal> asks) {
+        NavigableMap<BigDecimal, Long> bidUnits = toQuantityUnits(bids);
+        NavigableMap<BigDecimal, Long> askUnits = toQuantityUnits(asks);
+        int sourceId = SourceIds.intern(source);
+        beginWrite();
+        try {
+            levelStore.checkCapacity(sourceId, BUY, bidUnits);
+            levelStore.checkCapacity(sourceId, SELL, askUnits);
+            SourceLevelState state = sourceState(source);
+            state.touch();
+            refreshSide(state, BUY, bidUnits);
+            refreshSide(state, SELL, askUnits);
+        } finally {
+            endWrite();
+        }
+    }
+    
+    /**
+     * 移除价源的全部报价
+     */
+    public void removeSource(String source) {
+        SourceLevelState state = sourceStates.get(SourceIds.lookup(source));
+        if (state == null) {
+            return;
+        }
+        beginWrite();
+        try {
+            refreshSide(state, BUY, Collections.emptyNavigableMap());
+            refreshSide(state, SELL, Collections.emptyNavigableMap());
+            sourceStates.remove(state.getSourceId());
+            state.detach();
+        } finally {
+            endWrite();
+        }
+    }
+    
+    /**
+     * 当前有报价的价源
+     */
+    public Set<String> getSourceNames() {
+        Set<String> names = new LinkedHashSet<>();
+        sourceStates.forEach((id, state) -> names.add(SourceIds.name(id)));
+        return Collections.unmodifiableSet(names);
+    }
+    
+    /**
+     * 换算为定点数量，按价格比较去重（与价格精度无关）
+     */
+    private NavigableMap<BigDecimal, Long> toQuantityUnits(Map<BigDecimal, BigDecimal> levels) {
+        NavigableMap<BigDecimal, Long> units = new TreeMap<>();
+        for (Map.Entry<BigDecimal, BigDecimal> entry : levels.entrySet()) {
+            units.put(entry.getKey(), priceScale.toQuantityUnits(entry.getValue()));
+        }
+        return units;
+    }
+    
+    private void refreshSide(SourceLevelState state, int side, NavigableMap<BigDecimal, Long> target) {
+        // 按价格比较判断档位是否仍存在，与价格精度无关
+        for (BigDecimal price : levelStore.sourcePrices(state, side)) {
+            if (!target.containsKey(price)) {
+                applySourceQuantity(state, side, price, 0L);
+            }
+        }
+        for (Map.Entry<BigDecimal, Long> entry : target.entrySet()) {
+            applySourceQuantity(state, side, entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * 将价源在指定价格上的数量设为目标值，并按增量调整聚合档位
+     */
+    private void applySourceQuantity(SourceLevelState state, int side, BigDecimal price, long quantityUnits) {
+        if (side != BUY && side != SELL) {
+            return;
+        }
+        long target = Math.max(quantityUnits, 0L);
+        long delta = target - levelStore.sourceUnits(state, side, price);
+        if (delta == 0) {
+            return;
+        }
+        BigDecimal levelPrice = levelStore.apply(state, side, price, target, delta);
+        refreshDepth(side, levelPrice);
+        if (dirtyLevels != null) {
+            dirtyLevels.mark(side, levelPrice, state.getSourceId());
+        }
+    }
+    
+    /**
+     * 价格落在该方向前 N 档内时重建并发布新版本深度，前 N 档之外的变化不影响深度
+     */
+    private void refreshDepth(int side, BigDecimal price) {
+        if (side == BUY) {
+            BookDepth current = bidDepth;
+            if (current.covers(price)) {
+                bidDepth = levelStore.topDepth(BUY, current.getVersion() + 1, depthCapacity);
+                bidStats = BookAnalytics.Side.of(bidDepth);
+            }
+        } else {
+            BookDepth current = askDepth;
+            if (current.covers(price)) {
+                askDepth = levelStore.topDepth(SELL, current.getVersion() + 1, depthCapacity);
+                askStats = BookAnalytics.Side.of(askDepth);
+            }
+        }
+    }
+    
+    /**
+     * 按当前阶梯重建双方深度
+     */
+    private void rebuildDepth() {
+        bidDepth = levelStore.topDepth(BUY, bidDepth.getVersion() + 1, depthCapacity);
+        askDepth = levelStore.topDepth(SELL, askDepth.getVersion() + 1, depthCapacity);
+        bidStats = BookAnalytics.Side.of(bidDepth);
+        askStats = BookAnalytics.Side.of(askDepth);
+    }
+    
+    /**
+     * 启用脏档位记录，用于生成增量快照
+     */
+    void enableDirtyTracking() {
+        if (dirtyLevels == null) {
+            dirtyLevels = new DirtyLevels();
+        }
+    }
+    
+    /**
+     * 自上次快照以来的脏档位，未启用时返回 null
+     */
+    DirtyLevels getDirtyLevels() {
+        return dirtyLevels;
+    }
+    
+    /**
+     * 快照完成后清空脏档位
+     */
+    void clearDirtyLevels() {
+        if (dirtyLevels != null) {
+            dirtyLevels.clear();
+        }
+    }
+    
+    // ---------------------------------------------------------------- 一致读
+    
+    /**
+     * 在一致的订单簿状态上执行读取
+     * 读取期间发生变更则丢弃结果重试，读取函数可能执行多次，须无副作用，且应在函数内取出所需的值，
+     * 不应把档位对象带出函数（档位在函数返回后仍可能被修改）
+     * 
+     * @return 某一时刻两次变更之间的订单簿上的读取结果
+     */
+    public <T> T read(Function<? super OrderBook, ? extends T> reader) {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = versionLock.tryOptimisticRead();
+            if (stamp != 0L) {
+                try {
+                    T result = reader.apply(this);
+                    if (versionLock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    // 读到变更中的中间状态可能导致异常，版本未变时才是真实异常
+                    if (versionLock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+            backoff(attempt);
+        }
+    }
+    
+    /**
+     * 一致读取最优买卖价及数量
+     */
+    public BestPrices readBestPrices() {
+        return read(book -> new BestPrices(book.getBestBid(), book.getBestAsk()));
+    }
+    
+    /**
+     * 一致读取买卖双方前 levels 档深度
+     * 档位数不超过深度容量时直接返回已发布的深度，否则在一致读中按阶梯收集
+     * 
+     * @param levels 档位数，0 表示全部档位
+     * @return [买方深度, 卖方深度]
+     */
+    public BookDepth[] readDepth(int levels) {
+        if (levels > 0 && levels <= getDepthCapacity()) {
+            return read(book -> new BookDepth[]{book.getTopBidDepth(), book.getTopAskDepth()});
+        }
+        return read(book -> new BookDepth[]{
+            BookDepth.of(BUY, book.getTopBidDepth().getVersion(), book.getBidLevels(),
+                         depthLimit(levels, book.getBidDepth())),
+            BookDepth.of(SELL, book.getTopAskDepth().getVersion(), book.getAskLevels(),
+                         depthLimit(levels, book.getAskDepth()))
+        });
+    }
+    
+    /**
+     * 一致读取盘口指标，指标版本与读取时的订单簿版本相同
+     * 单边累计统计由写者随深度维护，读取只组合已发布的统计，不扫描档位
+     */
+    public BookAnalytics readAnalytics() {
+        return read(book -> new BookAnalytics(book.getVersion(), book.bidAnalytics(), book.askAnalytics()));
+    }
+    
+    /**
+     * 买方盘口指标累计统计
+     */
+    BookAnalytics.Side bidAnalytics() {
+        return bidStats;
+    }
+    
+    /**
+     * 卖方盘口指标累计统计
+     */
+    BookAnalytics.Side askAnalytics() {
+        return askStats;
+    }
+    
+    private static int depthLimit(int levels, int depth) {
+        return levels > 0 ? Math.min(levels, depth) : depth;
+    }
+    
+    /**
+     * 乐观读凭证，写者变更期间返回0
+     */
+    long tryOptimisticStamp() {
+        return versionLock.tryOptimisticRead();
+    }
+    
+    /**
+     * 凭证发放后是否未发生变更
+     */
+    boolean validateStamp(long stamp) {
+        return versionLock.validate(stamp);
+    }
+    
+    /**
+     * 乐观读重试退避：先自旋，多次失败后让出处理器
+     */
+    static void backoff(int attempt) {
+        if (attempt < 64) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * 获取写锁：持有写锁的线程重入时只增加深度，其他线程等待写锁
+     */
+    private void beginWrite() {
+        Thread current = Thread.currentThread();
+        if (writeOwner == current) {
+            writeDepth++;
+            return;
+        }
+        long stamp = versionLock.writeLock();
+        writeOwner = current;
+        writeStamp = stamp;
+        writeDepth = 1;
+    }
+    
+    private void endWrite() {
+        if (--writeDepth == 0) {
+            version++;
+            writeOwner = null;
+            versionLock.unlockWrite(writeStamp);
+        }
+    }
+    
+    /**
+     * 价源最近一次更新时间（System.nanoTime），价源不存在时返回 -1
+     */
+    public long getSourceLastUpdateNanos(String source) {
+        SourceLevelState state = sourceStates.get(SourceIds.lookup(source));
+        return state != null ? state.getLastUpdateNanos() : -1L;
+    }
+    
+    /**
+     * 价源是否已超过 ttlNanos 未更新
+     */
+    boolean isSourceIdle(String source, long ttlNanos) {
+        SourceLevelState state = sourceStates.get(SourceIds.lookup(source));
+        return state != null && System.nanoTime() - state.getLastUpdateNanos() >= ttlNanos;
+    }
+    
+    /**
+     * 订单簿被移除后调用，其价源不再被过期检查跟踪
+     */
+    void detachSources() {
+        sourceStates.forEach((id, state) -> state.detach());
+    }
+    
+    /**
+     * 价源当前的档位状态，不存在时返回 null
+     */
+    SourceLevelState sourceStateIfPresent(String source) {
+        return sourceStates.get(SourceIds.lookup(source));
+    }
+    
+    private SourceLevelState sourceState(String source) {
+        return sourceStates.computeIfAbsent(SourceIds.intern(source), id -> new SourceLevelState(source));
+    }
+    
     // 获取最优买方价格（最高买价）
     public PriceLevel getBestBid() {
-        return aggregatedLevels.entrySet().stream()
-                .filter(e -> e.getValue().hasBuyOrders())
-                .max(java.util.Comparator.comparing(Map.Entry::getKey))
-                .map(Map.Entry::getValue)
-                .orElse(null);
+        return readLevels(store -> store.best(BUY));
     }
     
     // 获取最优卖方价格（最低卖价）
     public PriceLevel getBestAsk() {
-        return aggregatedLevels.entrySet().stream()
-                .filter(e -> e.getValue().hasSellOrders())
-                .min(java.util.Comparator.comparing(Map.Entry::getKey))
-                .map(Map.Entry::getValue)
-                .orElse(null);
+        return readLevels(store -> store.best(SELL));
+    }
+    
+    /**
+     * 获取买方档位，按价格从高到低排列（只读视图）
+     * 堆外存储返回在一致读中构建的只读副本
+     */
+    public Collection<PriceLevel> getBidLevels() {
+        return readLevels(store -> store.storage() == OrderBookStorage.OFF_HEAP
+            ? List.copyOf(store.levels(BUY)) : store.levels(BUY));
+    }
+    
+    /**
+     * 获取卖方档位，按价格从低到高排列（只读视图）
+     * 堆外存储返回在一致读中构建的只读副本
+     */
+    public Collection<PriceLevel> getAskLevels() {
+        return readLevels(store -> store.storage() == OrderBookStorage.OFF_HEAP
+            ? List.copyOf(store.levels(SELL)) : store.levels(SELL));
+    }
+    
+    /**
+     * 读取档位存储
+     * 堆内存储的档位可并发读取，直接读取；堆外存储的记录会被写者释放复用，读取须在乐观读中校验版本，
+     * 否则可能把一个档位的价格与另一个档位的数量拼在一起。持有写锁的线程读到的总是自身的状态，直接读取
+     */
+    private <T> T readLevels(Function<LevelStore, T> reader) {
+        if (levelStore.storage() != OrderBookStorage.OFF_HEAP || writeOwner == Thread.currentThread()) {
+            return reader.apply(levelStore);
+        }
+        return read(book -> reader.apply(levelStore));
+    }
+    
+    /**
+     * 指定方向在该价格上的聚合定点数量，无档位时为0
+     */
+    long getLevelUnits(int side, BigDecimal price) {
+        return levelStore.levelUnits(side, price);
+    }
+    
+    /**
+     * 价源（按编号）在指定方向和价格上的定点数量，无档位或无报价时为0
+     */
+    long getLevelSourceUnits(int side, BigDecimal price, int sourceId) {
+        return levelStore.levelSourceUnits(side, price, sourceId);
+    }
+    
+    public int getBidDepth() {
+        return levelStore.depth(BUY);
+    }
+    
+    public int getAskDepth() {
+        return levelStore.depth(SELL);
+    }
+    
+    /**
+     * 买方前 N 档深度（价格从高到低），返回已发布的不可变版本，版本不变时为同一对象
+     */
+    public BookDepth getTopBidDepth() {
+        return bidDepth;
+    }
+    
+    /**
+     * 卖方前 N 档深度（价格从低到高），返回已发布的不可变版本，版本不变时为同一对象
+     */
+    public BookDepth getTopAskDepth() {
+        return askDepth;
+    }
+    
+    /**
+     * 订单簿版本，每次变更完成时递增；版本相同的两次读取看到的是同一状态
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public int getDepthCapacity() {
+        return depthCapacity;
+    }
+    
+    /**
+     * 设置前 N 档深度容量并重建深度，须在写者上下文中调用
+     */
+    public void setDepthCapacity(int depthCapacity) {
+        if (depthCapacity <= 0) {
+            throw new IllegalArgumentException("Depth capacity must be positive: " + depthCapacity);
+        }
+        beginWrite();
+        try {
+            this.depthCapacity = depthCapacity;
+            rebuildDepth();
+        } finally {
+            endWrite();
+        }
     }
     
     // Getter 和 Setter
@@ -152,12 +835,41 @@ public class OrderBook {
         this.marketType = marketType;
     }
     
+    public PriceScale getPriceScale() {
+        return priceScale;
+    }
+    
+    /**
+     * 档位存储方式
+     */
+    public OrderBookStorage getStorage() {
+        return levelStore.storage();
+    }
+    
+    /**
+     * 全部档位（按价格升序）
+     * 堆内存储返回实时视图；堆外存储返回在一致读中构建的只读副本
+     */
     public Map<BigDecimal, PriceLevel> getAggregatedLevels() {
-        return aggregatedLevels;
+        return readLevels(LevelStore::aggregatedLevels);
     }
     
+    /**
+     * 直接设置聚合档位（不含价源明细状态，替换/删除操作仅作用于之后添加的报价）
+     */
     public void setAggregatedLevels(Map<BigDecimal, PriceLevel> aggregatedLevels) {
-        this.aggregatedLevels = aggregatedLevels;
+        beginWrite();
+        try {
+            levelStore.load(aggregatedLevels);
+            sourceStates.forEach((id, state) -> state.detach());
+            this.sourceStates.clear();
+            rebuildDepth();
+            if (dirtyLevels != null) {
+                dirtyLevels.invalidate();
+            }
+        } finally {
+            endWrite();
+        }
     }
     
     // 常量定义
@@ -169,12 +881,16 @@ public class OrderBook {
     public static final int MARKET_FOREIGN_EXCHANGE = 2;   // 境内外汇
     public static final int MARKET_OFFSHORE = 3;           // 境外
     
+    // 默认前 N 档深度容量
+    public static final int DEFAULT_DEPTH_CAPACITY = 10;
+    
     @Override
     public String toString() {
         return "OrderBook{" +
                 "symbol='" + symbol + '\'' +
                 ", marketType=" + marketType +
-                ", aggregatedLevels.size()=" + aggregatedLevels.size() +
+                ", storage=" + levelStore.storage() +
+                ", aggregatedLevels.size()=" + levelStore.size() +
                 '}';
     }
 }
@@ -0,0 +1,546 @@
+package com.quant.making.book;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 订单簿配置
+ * 从 application.yml 加载 orderbook.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "orderbook")
+public class OrderBookConfig {
+
+    // 快照配置
+    private Snapshot snapshot = new Snapshot();
+
+    // 更新接入管道配置
+    private Pipeline pipeline = new Pipeline();
+
+    // 更新日志配置
+    private Journal journal = new Journal();
+
+    // 更新合并配置
+    private Conflation conflation = new Conflation();
+
+    // 价源过期配置
+    private SourceExpiry sourceExpiry = new SourceExpiry();
+
+    // 启动预热配置
+    private WarmStart warmStart = new WarmStart();
+
+    // 快照保留配置
+    private Retention retention = new Retention();
+
+    // 档位存储配置
+    private Storage storage = new Storage();
+
+    /**
+     * 快照配置
+     */
+    public static class Snapshot {
+        // 快照时间间隔（秒）
+        private int intervalSeconds = 60;
+
+        // 快照保留时长（小时），可由 retention.market-retain-hours 按市场类型覆盖
+        private int retainHours = 24;
+
+        // 是否由后台线程异步落库（关闭时在触发快照的更新线程上同步落库）
+        private boolean async = true;
+
+        // 待落库快照队列容量，队列满时丢弃新快照
+        private int queueCapacity = 1024;
+
+        // 快照批量写入的每批记录数
+        private int batchSize = 500;
+
+        // 二进制快照是否压缩
+        private boolean compress = true;
+
+        // 是否同时按行写入 order_book_entry（供临时 SQL 查询，恢复和清理使用二进制快照）
+        private boolean rowFormatEnabled = true;
+
+        // 是否在全量快照之间生成增量快照（只写入二进制快照）
+        private boolean deltaEnabled = true;
+
+        // 每隔多少次快照生成一次全量快照
+        private int fullCheckpointInterval = 10;
+
+        public int getIntervalSeconds() {
+            return intervalSeconds;
+        }
+
+        public void setIntervalSeconds(int intervalSeconds) {
+            this.intervalSeconds = intervalSeconds;
+        }
+
+        public int getRetainHours() {
+            return retainHours;
+        }
+
+        public void setRetainHours(int retainHours) {
+            this.retainHours = retainHours;
+        }
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public boolean isCompress() {
+            return compress;
+        }
+
+        public void setCompress(boolean compress) {
+            this.compress = compress;
+        }
+
+        public boolean isRowFormatEnabled() {
+            return rowFormatEnabled;
+        }
+
+        public void setRowFormatEnabled(boolean rowFormatEnabled) {
+            this.rowFormatEnabled = rowFormatEnabled;
+        }
+
+        public boolean isDeltaEnabled() {
+            return deltaEnabled;
+        }
+
+        public void setDeltaEnabled(boolean deltaEnabled) {
+            this.deltaEnabled = deltaEnabled;
+        }
+
+        public int getFullCheckpointInterval() {
+            return fullCheckpointInterval;
+        }
+
+        public void setFullCheckpointInterval(int fullCheckpointInterval) {
+            this.fullCheckpointInterval = fullCheckpointInterval;
+        }
+    }
+
+    /**
+     * 更新接入管道配置
+     */
+    public static class Pipeline {
+        // 是否启用单写线程接入管道（关闭时在调用线程上同步更新）
+        private boolean enabled = false;
+
+        // 分片数（写线程数）
+        private int shards = 4;
+
+        // 每个分片的环形缓冲区容量（2的幂）
+        private int ringBufferSize = 65536;
+
+        // 是否按市场类型隔离写线程（启用后每个市场独占 shards 个写线程）
+        private boolean isolateMarketTypes = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public int getRingBufferSize() {
+            return ringBufferSize;
+        }
+
+        public void setRingBufferSize(int ringBufferSize) {
+            this.ringBufferSize = ringBufferSize;
+        }
+
+        public boolean isIsolateMarketTypes() {
+            return isolateMarketTypes;
+        }
+
+        public void setIsolateMarketTypes(boolean isolateMarketTypes) {
+            this.isolateMarketTypes = isolateMarketTypes;
+        }
+    }
+
+    /**
+     * 更新日志配置
+     */
+    public static class Journal {
+        // 是否启用内存映射更新日志（启用后启动时从日志恢复订单簿）
+        private boolean enabled = false;
+
+        // 日志目录
+        private String directory = "data/orderbook-journal";
+
+        // 分段文件大小（MB）
+        private int segmentSizeMb = 64;
+
+        // 分段滚动时间间隔（秒）
+        private long rollIntervalSeconds = 3600;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getSegmentSizeMb() {
+            return segmentSizeMb;
+        }
+
+        public void setSegmentSizeMb(int segmentSizeMb) {
+            this.segmentSizeMb = segmentSizeMb;
+        }
+
+        public long getRollIntervalSeconds() {
+            return rollIntervalSeconds;
+        }
+
+        public void setRollIntervalSeconds(long rollIntervalSeconds) {
+            this.rollIntervalSeconds = rollIntervalSeconds;
+        }
+    }
+
+    /**
+     * 更新合并配置
+     */
+    public static class Conflation {
+        // 是否启用更新合并（启用后同一档位的突发更新按周期合并为最终状态再应用）
+        private boolean enabled = false;
+
+        // 合并周期（微秒），即更新入簿的最大额外延迟
+        private long drainIntervalMicros = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getDrainIntervalMicros() {
+            return drainIntervalMicros;
+        }
+
+        public void setDrainIntervalMicros(long drainIntervalMicros) {
+            this.drainIntervalMicros = drainIntervalMicros;
+        }
+    }
+
+    /**
+     * 价源过期配置
+     */
+    public static class SourceExpiry {
+        // 是否启用价源过期（启用后超过过期时长未更新的价源报价被移出订单簿）
+        private boolean enabled = false;
+
+        // 默认过期时长（秒）
+        private long ttlSeconds = 30;
+
+        // 按市场类型覆盖的过期时长（秒）: marketType -> ttlSeconds
+        private Map<Integer, Long> marketTtlSeconds = new HashMap<>();
+
+        // 时间轮刻度（毫秒），即过期判定的精度
+        private long tickMillis = 100;
+
+        // 时间轮槽位数
+        private int wheelSize = 512;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public Map<Integer, Long> getMarketTtlSeconds() {
+            return marketTtlSeconds;
+        }
+
+        public void setMarketTtlSeconds(Map<Integer, Long> marketTtlSeconds) {
+            this.marketTtlSeconds = marketTtlSeconds;
+        }
+
+        public long getTickMillis() {
+            return tickMillis;
+        }
+
+        public void setTickMillis(long tickMillis) {
+            this.tickMillis = tickMillis;
+        }
+
+        public int getWheelSize() {
+            return wheelSize;
+        }
+
+        public void setWheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+        }
+    }
+    /**
+     * 启动预热配置
+     */
+    public static class WarmStart {
+        // 是否在启动时从数据库快照并行恢复全部订单簿（启用更新日志时不预热）
+        private boolean enabled = false;
+
+        // 并行恢复线程数，即预热同时占用的数据库连接数上限
+        private int concurrency = 8;
+
+        // 等待预热完成的最长时间（秒）
+        private long timeoutSeconds = 60;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public long getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public void setTimeoutSeconds(long timeoutSeconds) {
+            this.timeoutSeconds = timeoutSeconds;
+        }
+    }
+    /**
+     * 快照保留配置
+     */
+    public static class Retention {
+        // 按市场类型覆盖的保留时长（小时），未配置的市场使用 snapshot.retain-hours
+        private Map<Integer, Integer> marketRetainHours = new HashMap<>();
+
+        // 每块删除的主键区间大小
+        private int chunkSize = 5000;
+
+        // 块间停顿（毫秒），让出数据库给行情快照写入
+        private long pauseMillis = 20;
+
+        // 单次清理的时间预算（秒），超出后剩余部分留待下次清理
+        private long maxDurationSeconds = 3600;
+
+        // 表按日分区时是否直接删除整体过期的分区
+        private boolean dropPartitions = true;
+
+        public Map<Integer, Integer> getMarketRetainHours() {
+            return marketRetainHours;
+        }
+
+        public void setMarketRetainHours(Map<Integer, Integer> marketRetainHours) {
+            this.marketRetainHours = marketRetainHours;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getPauseMillis() {
+            return pauseMillis;
+        }
+
+        public void setPauseMillis(long pauseMillis) {
+            this.pauseMillis = pauseMillis;
+        }
+
+        public long getMaxDurationSeconds() {
+            return maxDurationSeconds;
+        }
+
+        public void setMaxDurationSeconds(long maxDurationSeconds) {
+            this.maxDurationSeconds = maxDurationSeconds;
+        }
+
+        public boolean isDropPartitions() {
+            return dropPartitions;
+        }
+
+        public void setDropPartitions(boolean dropPartitions) {
+            this.dropPartitions = dropPartitions;
+        }
+    }
+
+    /**
+     * 档位存储配置
+     */
+    public static class Storage {
+        // 默认存储方式
+        private OrderBookStorage backend = OrderBookStorage.HEAP;
+
+        // 按市场类型覆盖的存储方式: marketType -> backend
+        private Map<Integer, OrderBookStorage> marketBackends = new HashMap<>();
+
+        // 堆外存储每个档位单侧的价源槽位数，同一价格同一方向的价源数不能超过该值
+        private int sourceSlots = 8;
+
+        // 堆外存储每个订单簿的初始档位容量，不足时按倍数扩容
+        private int initialLevels = 64;
+
+        /**
+         * 市场类型的存储方式
+         */
+        public OrderBookStorage backendFor(Integer marketType) {
+            return marketType != null ? marketBackends.getOrDefault(marketType, backend) : backend;
+        }
+
+        public OrderBookStorage getBackend() {
+            return backend;
+        }
+
+        public void setBackend(OrderBookStorage backend) {
+            this.backend = backend;
+        }
+
+        public Map<Integer, OrderBookStorage> getMarketBackends() {
+            return marketBackends;
+        }
+
+        public void setMarketBackends(Map<Integer, OrderBookStorage> marketBackends) {
+            this.marketBackends = marketBackends;
+        }
+
+        public int getSourceSlots() {
+            return sourceSlots;
+        }
+
+        public void setSourceSlots(int sourceSlots) {
+            this.sourceSlots = sourceSlots;
+        }
+
+        public int getInitialLevels() {
+            return initialLevels;
+        }
+
+        public void setInitialLevels(int initialLevels) {
+            this.initialLevels = initialLevels;
+        }
+    }
+
+    // Getters and Setters
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(Pipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    public Conflation getConflation() {
+        return conflation;
+    }
+
+    public void setConflation(Conflation conflation) {
+        this.conflation = conflation;
+    }
+
+    public SourceExpiry getSourceExpiry() {
+        return sourceExpiry;
+    }
+
+    public void setSourceExpiry(SourceExpiry sourceExpiry) {
+        this.sourceExpiry = sourceExpiry;
+    }
+
+    public WarmStart getWarmStart() {
+        return warmStart;
+    }
+
+    public void setWarmStart(WarmStart warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    public Retention getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Retention retention) {
+        this.retention = retention;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public void setStorage(Storage storage) {
+        this.storage = storage;
+    }
+}
@@ -9,7 +9,10 @@ import java.time.LocalDateTime;
  * 对应数据库表 order_book_entry
  */
 @Entity
-@Table(name = "order_book_entry")
+@Table(name = "order_book_entry", indexes = {
+    @Index(name = "idx_obe_symbol_market_time", columnList = "symbol, market_type, snapshot_time"),
+    @Index(name = "idx_obe_snapshot_time", columnList = "snapshot_time")
+})
 public class OrderBookEntry {
     
     @Id
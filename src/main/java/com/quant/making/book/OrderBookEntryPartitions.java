@@ -0,0 +1,31 @@
+package com.quant.making.book;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * order_book_entry 按日分区的维护接口
+ * 作为 {@link OrderBookRepository} 的自定义片段；表按 snapshot_time 做 RANGE 分区时，
+ * 整个分区过期后直接删除分区，代价与分区大小无关，且不产生逐行删除的锁和 undo
+ */
+public interface OrderBookEntryPartitions {
+
+    /**
+     * 表的一个 RANGE 分区
+     *
+     * @param name 分区名
+     * @param upperBound 分区上界（不含），分区内记录的快照时间均早于该时刻
+     */
+    record Partition(String name, LocalDateTime upperBound) {
+    }
+
+    /**
+     * 查询有上界的分区，按上界升序；表未分区或数据库不支持时返回空列表
+     */
+    List<Partition> findPartitions();
+
+    /**
+     * 删除分区及其全部记录
+     */
+    void dropPartition(String name);
+}
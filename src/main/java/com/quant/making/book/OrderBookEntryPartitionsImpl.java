@@ -0,0 +1,86 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * order_book_entry 按日分区的维护实现（MySQL）
+ * 从 information_schema.PARTITIONS 读取分区上界，支持 RANGE (TO_DAYS(snapshot_time)) 和
+ * RANGE COLUMNS (snapshot_time) 两种分区方式，MAXVALUE 分区不会被删除
+ */
+public class OrderBookEntryPartitionsImpl implements OrderBookEntryPartitions {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookEntryPartitionsImpl.class);
+
+    private static final String PARTITIONS_SQL =
+        "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'order_book_entry' AND PARTITION_NAME IS NOT NULL";
+
+    // TO_DAYS('1970-01-01')
+    private static final long TO_DAYS_EPOCH = 719528L;
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Partition> findPartitions() {
+        List<Partition> partitions;
+        try {
+            partitions = jdbcTemplate.query(PARTITIONS_SQL,
+                (rs, rowNum) -> new Partition(rs.getString(1), parseUpperBound(rs.getString(2))));
+        } catch (DataAccessException e) {
+            logger.debug("Partition metadata unavailable for order_book_entry", e);
+            return List.of();
+        }
+        List<Partition> bounded = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions) {
+            if (partition.upperBound() != null) {
+                bounded.add(partition);
+            }
+        }
+        bounded.sort(Comparator.comparing(Partition::upperBound));
+        return bounded;
+    }
+
+    @Override
+    public void dropPartition(String name) {
+        if (!PARTITION_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid partition name: " + name);
+        }
+        jdbcTemplate.execute("ALTER TABLE order_book_entry DROP PARTITION " + name);
+    }
+
+    /**
+     * 解析分区上界：TO_DAYS 分区为天数，RANGE COLUMNS 分区为带引号的日期或时间，无法解析时返回 null
+     */
+    static LocalDateTime parseUpperBound(String description) {
+        if (description == null || description.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        String value = description.replace("'", "").trim();
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return LocalDate.ofEpochDay(Long.parseLong(value) - TO_DAYS_EPOCH).atStartOfDay();
+            }
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            return LocalDateTime.parse(value.replace(' ', 'T'));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 订单簿更新接入管道
+ * 按 (品种, 市场类型) 分区将更新路由到固定分片，每个分片由一个预分配环形缓冲区和一个专属写线程组成
+ * 同一分区的更新始终由同一写线程按发布顺序应用，订单簿变更无需加锁且不会丢失
+ * 按市场隔离时每个市场槽位独占一组写线程，一个市场的突发行情不会拖慢其他市场的报价
+ * 停止后发布被拒绝，调用方在所属分片处理完已发布的更新后改为同步应用，更新不会丢失也不会越过之前的更新
+ */
+public class OrderBookIngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookIngestionPipeline.class);
+
+    // 写线程空闲时的休眠时长（纳秒）
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final Shard[] shards;
+    // 按市场隔离时每个市场槽位的分片数，未隔离时为 0
+    private final int shardsPerMarket;
+    private final Consumer<BookUpdate> handler;
+    private volatile boolean running;
+    // 进行中的独占操作的屏障，同一时刻至多一个
+    private volatile Barrier barrier;
+
+    /**
+     * @param shardCount 分片数（写线程数），按市场隔离时为每个市场槽位的分片数
+     * @param ringBufferSize 每个分片的环形缓冲区容量，必须为2的幂
+     * @param isolateMarketTypes 是否为每个市场槽位分配独立的写线程组
+     * @param handler 写线程上应用更新的处理器
+     */
+    OrderBookIngestionPipeline(int shardCount, int ringBufferSize, boolean isolateMarketTypes,
+                               Consumer<BookUpdate> handler) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        this.handler = handler;
+        this.shardsPerMarket = isolateMarketTypes ? shardCount : 0;
+        int total = isolateMarketTypes ? shardCount * BookPartitions.MARKET_SLOTS : shardCount;
+        this.shards = new Shard[total];
+        for (int i = 0; i < total; i++) {
+            shards[i] = new Shard(i, new UpdateRingBuffer(ringBufferSize));
+        }
+    }
+
+    /**
+     * 启动所有分片写线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Shard shard : shards) {
+            String name = shardsPerMarket > 0
+                ? "orderbook-writer-m" + shard.index / shardsPerMarket + "-" + shard.index % shardsPerMarket
+                : "orderbook-writer-" + shard.index;
+            shard.thread = new Thread(shard::run, name);
+            shard.thread.setDaemon(true);
+            shard.thread.start();
+        }
+        logger.info("OrderBook ingestion pipeline started: shards={}, isolateMarketTypes={}, ringBufferSize={}",
+                shards.length, shardsPerMarket > 0, shards[0].ring.capacity());
+    }
+
+    /**
+     * 停止写线程，已发布的更新会在退出前处理完毕；之后的发布被拒绝
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Shard shard : shards) {
+            shard.ring.close();
+        }
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+            try {
+                shard.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("OrderBook ingestion pipeline stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 发布单笔报价更新
+     *
+     * @return 管道已停止时返回 false，此时所属分片已处理完停止前发布的更新，调用方改为同步应用
+     */
+    boolean publish(BookUpdate.Op op, String symbol, Integer marketType, String source,
+                    Integer side, BigDecimal price, BigDecimal quantity) {
+        Shard shard = shardFor(symbol, marketType);
+        UpdateRingBuffer ring = shard.ring;
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            shard.awaitDrained();
+            return false;
+        }
+        BookUpdate slot = ring.slot(sequence);
+        slot.set(op, symbol, marketType, source, side, price, quantity);
+        slot.publishNanos = System.nanoTime();
+        ring.publish(sequence);
+        return true;
+    }
+
+    /**
+     * 发布价源全量刷新
+     *
+     * @return 管道已停止时返回 false，调用方改为同步应用
+     */
+    boolean publishRefresh(String symbol, Integer marketType, String source,
+                           Map<BigDecimal, BigDecimal> bids, Map<BigDecimal, BigDecimal> asks) {
+        Shard shard = shardFor(symbol, marketType);
+        UpdateRingBuffer ring = shard.ring;
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            shard.awaitDrained();
+            return false;
+        }
+        BookUpdate slot = ring.slot(sequence);
+        slot.setRefresh(symbol, marketType, source, bids, asks);
+        slot.publishNanos = System.nanoTime();
+        ring.publish(sequence);
+        return true;
+    }
+
+    /**
+     * 在所有写者暂停期间执行操作
+     * 向每个分片发布屏障，各写者应用完屏障之前发布的更新后等待，操作结束后恢复；不能在写线程上调用
+     *
+     * @return 管道已停止时不执行并返回 false（各分片已处理完已发布的更新），调用方直接执行操作
+     */
+    synchronized boolean runExclusive(Runnable action) {
+        if (!running) {
+            return false;
+        }
+        Barrier current = new Barrier(shards.length);
+        this.barrier = current;
+        try {
+            for (Shard shard : shards) {
+                long sequence = shard.ring.claim();
+                BookUpdate slot = shard.ring.slot(sequence);
+                slot.set(BookUpdate.Op.BARRIER, null, null, null, null, null, null);
+                slot.publishNanos = System.nanoTime();
+                shard.ring.publish(sequence);
+            }
+            awaitUninterruptibly(current.arrived);
+            action.run();
+        } finally {
+            current.released.countDown();
+            this.barrier = null;
+        }
+        return true;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待所有已发布的更新被应用
+     *
+     * @return 超时前是否全部应用完成
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Shard shard : shards) {
+            while (shard.ring.getConsumerSequence() < shard.ring.getClaimSequence()) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 分区所属分片，同一 (品种, 市场类型) 始终路由到同一写线程
+     */
+    int shardIndex(String symbol, Integer marketType) {
+        int slot = BookPartitions.slot(marketType);
+        if (shardsPerMarket > 0) {
+            return slot * shardsPerMarket + Math.floorMod(symbol.hashCode(), shardsPerMarket);
+        }
+        return Math.floorMod(symbol.hashCode() * 31 + slot, shards.length);
+    }
+
+    private Shard shardFor(String symbol, Integer marketType) {
+        return shards[shardIndex(symbol, marketType)];
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 已发布的更新总数
+     */
+    public long getPublishedCount() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.ring.getClaimSequence() + 1;
+        }
+        return total;
+    }
+
+    /**
+     * 已应用的更新总数
+     */
+    public long getAppliedCount() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.appliedCount;
+        }
+        return total;
+    }
+
+    /**
+     * 应用失败的更新总数
+     */
+    public long getFailedCount() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.failedCount;
+        }
+        return total;
+    }
+
+    /**
+     * 因缓冲区满而等待的次数
+     */
+    public long getBackpressureCount() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.ring.getBackpressureCount();
+        }
+        return total;
+    }
+
+    /**
+     * 发布到入簿的平均延迟（纳秒）
+     */
+    public long getMeanLatencyNanos() {
+        long applied = 0;
+        long totalLatency = 0;
+        for (Shard shard : shards) {
+            applied += shard.appliedCount;
+            totalLatency += shard.totalLatencyNanos;
+        }
+        return applied > 0 ? totalLatency / applied : 0;
+    }
+
+    /**
+     * 发布到入簿的最大延迟（纳秒）
+     */
+    public long getMaxLatencyNanos() {
+        long max = 0;
+        for (Shard shard : shards) {
+            max = Math.max(max, shard.maxLatencyNanos);
+        }
+        return max;
+    }
+
+    /**
+     * 独占操作的屏障：全部写者到达后执行操作，释放后写者继续
+     */
+    private static final class Barrier {
+        private final CountDownLatch arrived;
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private Barrier(int shards) {
+            this.arrived = new CountDownLatch(shards);
+        }
+    }
+
+    /**
+     * 分片：一个环形缓冲区 + 一个写线程，统计字段仅由写线程写入
+     */
+    private final class Shard {
+        private final int index;
+        private final UpdateRingBuffer ring;
+        private Thread thread;
+        private volatile long appliedCount;
+        private volatile long failedCount;
+        private volatile long totalLatencyNanos;
+        private volatile long maxLatencyNanos;
+
+        private Shard(int index, UpdateRingBuffer ring) {
+            this.index = index;
+            this.ring = ring;
+        }
+
+        private void run() {
+            long next = ring.getConsumerSequence() + 1;
+            while (true) {
+                BookUpdate update = ring.poll(next);
+                if (update == null) {
+                    // 关闭前领取的槽位可能仍在填充，全部处理完才退出
+                    if (ring.isClosed() && next > ring.getClaimSequence()) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                if (update.op == BookUpdate.Op.BARRIER) {
+                    Barrier current = barrier;
+                    current.arrived.countDown();
+                    awaitUninterruptibly(current.released);
+                } else {
+                    apply(update);
+                }
+                update.clear();
+                ring.release(next);
+                next++;
+            }
+        }
+
+        /**
+         * 等待写者处理完关闭前发布的全部更新
+         */
+        private void awaitDrained() {
+            while (!ring.isDrained()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        private void apply(BookUpdate update) {
+            try {
+                handler.accept(update);
+                long latency = System.nanoTime() - update.publishNanos;
+                totalLatencyNanos += latency;
+                if (latency > maxLatencyNanos) {
+                    maxLatencyNanos = latency;
+                }
+                appliedCount++;
+            } catch (RuntimeException e) {
+                failedCount++;
+                logger.error("Failed to apply order book update: symbol={}, op={}",
+                        update.symbol, update.op, e);
+            }
+        }
+    }
+}
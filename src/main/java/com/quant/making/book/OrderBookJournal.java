@@ -0,0 +1,654 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 订单簿更新日志
+ * 追加写入每条已应用的订单簿变更和检查点（整本快照），按大小和时间滚动为内存映射的分段文件
+ * 启动时按顺序重放所有分段：检查点重置订单簿，其后的变更依次应用，即可不经数据库精确重建内存订单簿
+ *
+ * 记录格式：长度(int) | CRC32(int) | 正文，长度为0表示分段结束；重放遇到校验失败的记录即视为崩溃时的残缺尾部并停止
+ * 价格和数量按 精度(int) | 非标度值字节数(byte) | 非标度值(补码) 编码，任意精度的数值都能原样重放
+ *
+ * 变更记录在变更应用之前编码（编码失败时订单簿保持不变），变更成功后再追加，订单簿与日志不会出现不一致
+ *
+ * 追加不持有全局锁：各分片写线程在自己的缓冲区中编码，以原子位置计数认领分段空间后各自写入，
+ * 只有滚动分段时串行化；同一分区由同一写者追加，分区内的记录顺序与应用顺序一致。
+ * 代价是崩溃时可能有写到一半的记录夹在已完成的记录之间，重放在此处停止，其后的记录随残缺尾部一起丢弃
+ */
+public class OrderBookJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    // 记录头：长度 + CRC32
+    private static final int RECORD_HEADER = 8;
+
+    // 记录类型
+    private static final byte TYPE_UPDATE = 1;
+    private static final byte TYPE_CHECKPOINT = 2;
+    private static final byte TYPE_CLEAR = 3;
+
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    // 数值非标度值的最大字节数
+    private static final int MAX_UNSCALED_BYTES = 0xFF;
+
+    /**
+     * 重放回调
+     */
+    interface ReplayHandler {
+        // 订单簿变更
+        void onUpdate(BookUpdate update);
+
+        // 检查点：以快照重置分区订单簿
+        void onCheckpoint(BookSnapshot snapshot);
+
+        // 清空订单簿，symbol 为 null 表示清空全部，marketType 为 null 表示清空品种的全部分区
+        void onClear(String symbol, Integer marketType);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long rollIntervalNanos;
+
+    // 当前分段，关闭后为 null
+    private volatile Segment segment;
+    private volatile long segmentIndex = -1;
+
+    // 分区最近一次检查点所在分段（分区键见 BookPartitions.key），早于所有分区检查点的分段可以删除
+    private final Map<Long, Long> checkpointSegments = new ConcurrentHashMap<>();
+    // 每个写线程独立的编码缓冲区，变更应用前编码的记录在追加前不被其他线程覆盖
+    private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private final AtomicLong appendedBytes = new AtomicLong();
+    private volatile long rolledSegments;
+    private volatile long deletedSegments;
+    private volatile long replayedRecords;
+    private volatile long recoveryMillis;
+
+    /**
+     * @param directory 日志目录
+     * @param segmentSize 分段文件大小（字节）
+     * @param rollIntervalSeconds 分段滚动时间间隔（秒）
+     */
+    OrderBookJournal(Path directory, int segmentSize, long rollIntervalSeconds) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.rollIntervalNanos = TimeUnit.SECONDS.toNanos(rollIntervalSeconds);
+    }
+
+    /**
+     * 按顺序重放目录下的全部分段
+     *
+     * @return 重放的记录数
+     */
+    synchronized long replay(ReplayHandler handler) {
+        long start = System.nanoTime();
+        long records = 0;
+        for (Path segment : listSegments()) {
+            long index = segmentIndexOf(segment);
+            try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer data = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                records += replaySegment(index, data, handler);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to replay journal segment: " + segment, e);
+            }
+        }
+        this.replayedRecords = records;
+        this.recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Replayed {} journal records in {} ms", records, recoveryMillis);
+        return records;
+    }
+
+    private long replaySegment(long index, ByteBuffer data, ReplayHandler handler) {
+        CRC32 crc = new CRC32();
+        long records = 0;
+        while (data.remaining() >= RECORD_HEADER) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                break;
+            }
+            ByteBuffer payload = data.slice(data.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                logger.warn("Journal segment {} has a torn record at offset {}, stop replaying it",
+                        index, data.position() - RECORD_HEADER);
+                break;
+            }
+            data.position(data.position() + length);
+            replayRecord(index, payload, handler);
+            records++;
+        }
+        return records;
+    }
+
+    private void replayRecord(long index, ByteBuffer in, ReplayHandler handler) {
+        byte type = in.get();
+        switch (type) {
+            case TYPE_UPDATE -> handler.onUpdate(readUpdate(in));
+            case TYPE_CHECKPOINT -> {
+                BookSnapshot snapshot = readCheckpoint(in);
+                checkpointSegments.put(BookPartitions.key(snapshot.getSymbol(), snapshot.getMarketType()), index);
+                handler.onCheckpoint(snapshot);
+            }
+            case TYPE_CLEAR -> {
+                String symbol = readString(in);
+                Integer marketType = readInt(in);
+                forget(symbol, marketType);
+                handler.onClear(symbol, marketType);
+            }
+            default -> throw new IllegalStateException("Unknown journal record type: " + type);
+        }
+    }
+
+    /**
+     * 打开新的分段用于追加，须在重放之后调用
+     */
+    synchronized void open() {
+        long last = -1;
+        for (Path segment : listSegments()) {
+            last = Math.max(last, segmentIndexOf(segment));
+        }
+        openSegment(last + 1);
+    }
+
+    /**
+     * 关闭当前分段，已写入的数据刷盘
+     */
+    synchronized void close() {
+        Segment current = segment;
+        if (current == null) {
+            return;
+        }
+        segment = null;
+        current.seal();
+        current.close();
+    }
+
+    /**
+     * 编码订单簿变更，须在变更应用之前调用；超出分段大小或无法编码时抛出异常
+     * 返回的记录属于调用线程的编码缓冲区，在该线程下一次编码之前通过 append 追加
+     */
+    ByteBuffer encodeUpdate(BookUpdate update) {
+        Encoder encoder = encoders.get();
+        ByteBuffer out = encoder.begin(TYPE_UPDATE);
+        out = writeUpdate(out, update);
+        return encoder.finish(out, segmentSize);
+    }
+
+    /**
+     * 追加 encodeUpdate 编码的变更记录
+     */
+    void append(ByteBuffer record) {
+        appendRecord(record);
+    }
+
+    /**
+     * 追加检查点
+     */
+    void appendCheckpoint(BookSnapshot snapshot) {
+        Encoder encoder = encoders.get();
+        ByteBuffer out = encoder.begin(TYPE_CHECKPOINT);
+        out = writeString(out, snapshot.getSymbol());
+        out = ensure(out, 16);
+        out.putInt(snapshot.getMarketType() != null ? snapshot.getMarketType() : NULL_INT);
+        out.putLong(snapshot.getSnapshotTime().toEpochSecond(ZoneOffset.UTC));
+        out.putInt(snapshot.getSnapshotTime().getNano());
+        byte[] body = BookSnapshotCodec.encode(snapshot, false);
+        out = ensure(out, 4 + body.length);
+        out.putInt(body.length);
+        out.put(body);
+        long index = appendRecord(encoder.finish(out, segmentSize));
+        checkpointSegments.put(BookPartitions.key(snapshot.getSymbol(), snapshot.getMarketType()), index);
+    }
+
+    /**
+     * 追加清空订单簿记录
+     *
+     * @param symbol 品种代码，为 null 表示清空全部
+     * @param marketType 市场类型，为 null 表示清空品种的全部分区
+     */
+    void appendClear(String symbol, Integer marketType) {
+        Encoder encoder = encoders.get();
+        ByteBuffer out = encoder.begin(TYPE_CLEAR);
+        out = writeString(out, symbol);
+        out = writeInt(out, marketType);
+        appendRecord(encoder.finish(out, segmentSize));
+        forget(symbol, marketType);
+    }
+
+    /**
+     * 分区的最近检查点是否早于当前分段（需要补写检查点以便回收旧分段）
+     */
+    boolean needsCheckpoint(String symbol, Integer marketType) {
+        Long segment = checkpointSegments.get(BookPartitions.key(symbol, marketType));
+        return segment == null || segment < segmentIndex;
+    }
+
+    private void forget(String symbol, Integer marketType) {
+        if (symbol == null) {
+            checkpointSegments.clear();
+        } else if (marketType != null) {
+            checkpointSegments.remove(BookPartitions.key(symbol, marketType));
+        } else {
+            for (int slot = 0; slot < BookPartitions.MARKET_SLOTS; slot++) {
+                checkpointSegments.remove(BookPartitions.key(symbol, slot == 0 ? null : slot));
+            }
+        }
+    }
+
+    /**
+     * 追加已编码的记录（含记录头）：认领当前分段的空间后写入，空间不足或到达滚动时间时滚动分段后重试
+     *
+     * @return 记录所在的分段
+     */
+    private long appendRecord(ByteBuffer record) {
+        int size = record.remaining();
+        while (true) {
+            Segment current = segment;
+            if (current == null) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            // 滚动时间在认领之前判断，认领失败只因空间不足，之后的认领同样失败，分段中不会出现空洞
+            if (!current.enter() || System.nanoTime() - current.openedNanos >= rollIntervalNanos) {
+                current.exit();
+                roll(current);
+                continue;
+            }
+            int start = current.position.getAndAdd(size);
+            if (start + size + 4 > segmentSize) {
+                current.exit();
+                roll(current);
+                continue;
+            }
+            // 先写校验和正文，最后写长度，崩溃时残缺记录的长度为0或校验失败
+            MappedByteBuffer buffer = current.buffer;
+            buffer.put(start + 4, record, record.position() + 4, size - 4);
+            buffer.putInt(start, record.getInt(record.position()));
+            current.exit();
+            appendedRecords.incrementAndGet();
+            appendedBytes.addAndGet(size);
+            return current.index;
+        }
+    }
+
+    /**
+     * 滚动分段，只有第一个发现 expected 需要滚动的写者执行，其余写者等待滚动完成后重试
+     */
+    private synchronized void roll(Segment expected) {
+        if (segment != expected) {
+            return;
+        }
+        expected.seal();
+        expected.close();
+        openSegment(expected.index + 1);
+        rolledSegments++;
+        deleteObsoleteSegments();
+    }
+
+    private void openSegment(long index) {
+        Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            segment = new Segment(index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new UncheckedIOException("Failed to open journal segment: " + path, e);
+        }
+        segmentIndex = index;
+        logger.info("Opened journal segment: {}", path);
+    }
+
+    /**
+     * 删除早于所有分区最近检查点的分段
+     */
+    private void deleteObsoleteSegments() {
+        long keepFrom = segmentIndex;
+        for (long segment : checkpointSegments.values()) {
+            keepFrom = Math.min(keepFrom, segment);
+        }
+        for (Path segment : listSegments()) {
+            if (segmentIndexOf(segment) < keepFrom) {
+                try {
+                    Files.deleteIfExists(segment);
+                    deletedSegments++;
+                } catch (IOException e) {
+                    logger.warn("Failed to delete journal segment: {}", segment, e);
+                }
+            }
+        }
+    }
+
+    private List<Path> listSegments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>(files
+                .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                        && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .toList());
+            segments.sort((a, b) -> Long.compare(segmentIndexOf(a), segmentIndexOf(b)));
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list journal directory: " + directory, e);
+        }
+    }
+
+    /**
+     * 内存映射的分段：写者以原子位置计数认领空间并发写入，滚动或关闭时先封闭，等在途写者写完后再刷盘
+     */
+    private static final class Segment {
+        private final long index;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long openedNanos = System.nanoTime();
+        // 下一条记录的起始位置
+        private final AtomicInteger position = new AtomicInteger();
+        // 在途写者数
+        private final AtomicInteger writers = new AtomicInteger();
+        private volatile boolean sealed;
+
+        private Segment(long index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 写者进入分段，分段已封闭时返回 false（仍须调用 exit）
+         * 先登记再检查封闭标志，与 seal 的先封闭再等待配对，封闭后不会再有写者开始写入
+         */
+        boolean enter() {
+            writers.incrementAndGet();
+            return !sealed;
+        }
+
+        void exit() {
+            writers.decrementAndGet();
+        }
+
+        /**
+         * 封闭分段并等待在途写者写完
+         */
+        void seal() {
+            sealed = true;
+            while (writers.get() != 0) {
+                Thread.onSpinWait();
+            }
+        }
+
+        void close() {
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close journal segment {}", index, e);
+            }
+        }
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // ---------------------------------------------------------------- 编解码
+
+    private static ByteBuffer writeUpdate(ByteBuffer out, BookUpdate update) {
+        out = ensure(out, 1);
+        out.put((byte) update.op.ordinal());
+        out = writeString(out, update.symbol);
+        out = writeInt(out, update.marketType);
+        out = writeString(out, update.source);
+        out = writeInt(out, update.side);
+        out = writeDecimal(out, update.price);
+        out = writeDecimal(out, update.quantity);
+        if (update.op == BookUpdate.Op.REFRESH) {
+            out = writeLevels(out, update.bids);
+            out = writeLevels(out, update.asks);
+        }
+        return out;
+    }
+
+    private static BookUpdate readUpdate(ByteBuffer in) {
+        BookUpdate update = new BookUpdate();
+        BookUpdate.Op op = BookUpdate.Op.values()[in.get()];
+        String symbol = readString(in);
+        Integer marketType = readInt(in);
+        String source = readString(in);
+        Integer side = readInt(in);
+        BigDecimal price = readDecimal(in);
+        BigDecimal quantity = readDecimal(in);
+        if (op == BookUpdate.Op.REFRESH) {
+            update.setRefresh(symbol, marketType, source, readLevels(in), readLevels(in));
+        } else {
+            update.set(op, symbol, marketType, source, side, price, quantity);
+        }
+        return update;
+    }
+
+    private static BookSnapshot readCheckpoint(ByteBuffer in) {
+        String symbol = readString(in);
+        Integer marketType = readInt(in);
+        LocalDateTime snapshotTime = LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+        byte[] body = new byte[in.getInt()];
+        in.get(body);
+        return BookSnapshotCodec.decode(body, symbol, marketType, snapshotTime);
+    }
+
+    private static ByteBuffer writeLevels(ByteBuffer out, Map<BigDecimal, BigDecimal> levels) {
+        out = ensure(out, 4);
+        out.putInt(levels.size());
+        for (Map.Entry<BigDecimal, BigDecimal> level : levels.entrySet()) {
+            out = writeDecimal(out, level.getKey());
+            out = writeDecimal(out, level.getValue());
+        }
+        return out;
+    }
+
+    private static Map<BigDecimal, BigDecimal> readLevels(ByteBuffer in) {
+        int size = in.getInt();
+        Map<BigDecimal, BigDecimal> levels = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            levels.put(readDecimal(in), readDecimal(in));
+        }
+        return levels;
+    }
+
+    private static ByteBuffer writeString(ByteBuffer out, String value) {
+        if (value == null) {
+            out = ensure(out, 4);
+            out.putInt(-1);
+            return out;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out = ensure(out, 4 + bytes.length);
+        out.putInt(bytes.length);
+        out.put(bytes);
+        return out;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer writeInt(ByteBuffer out, Integer value) {
+        out = ensure(out, 4);
+        out.putInt(value != null ? value : NULL_INT);
+        return out;
+    }
+
+    private static Integer readInt(ByteBuffer in) {
+        int value = in.getInt();
+        return value == NULL_INT ? null : value;
+    }
+
+    private static ByteBuffer writeDecimal(ByteBuffer out, BigDecimal value) {
+        if (value == null) {
+            out = ensure(out, 4);
+            out.putInt(NULL_INT);
+            return out;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        if (unscaled.length > MAX_UNSCALED_BYTES) {
+            throw new IllegalArgumentException("Decimal " + value + " is too large for the journal");
+        }
+        out = ensure(out, 5 + unscaled.length);
+        out.putInt(value.scale());
+        out.put((byte) unscaled.length);
+        out.put(unscaled);
+        return out;
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        int scale = in.getInt();
+        if (scale == NULL_INT) {
+            return null;
+        }
+        byte[] unscaled = new byte[in.get() & 0xFF];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    /**
+     * 保证编码缓冲区剩余空间，不足时按倍数扩容
+     */
+    private static ByteBuffer ensure(ByteBuffer out, int bytes) {
+        if (out.remaining() >= bytes) {
+            return out;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+        out.flip();
+        larger.put(out);
+        return larger;
+    }
+
+    /**
+     * 线程独立的记录编码缓冲区
+     */
+    private static final class Encoder {
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * 开始编码记录，预留记录头
+         */
+        ByteBuffer begin(byte type) {
+            buffer.clear();
+            buffer.position(RECORD_HEADER);
+            buffer.put(type);
+            return buffer;
+        }
+
+        /**
+         * 结束编码：填写记录头，返回从记录头开始的完整记录
+         */
+        ByteBuffer finish(ByteBuffer out, int segmentSize) {
+            // 扩容后的缓冲区留作之后的编码使用
+            buffer = out;
+            out.flip();
+            int length = out.remaining() - RECORD_HEADER;
+            if (RECORD_HEADER + length + 4 > segmentSize) {
+                throw new IllegalStateException("Journal record of " + length + " bytes exceeds segment size " + segmentSize);
+            }
+            crc.reset();
+            crc.update(out.slice(RECORD_HEADER, length));
+            out.putInt(0, length);
+            out.putInt(4, (int) crc.getValue());
+            return out;
+        }
+    }
+
+    // ---------------------------------------------------------------- 指标
+
+    /**
+     * 已追加的记录数
+     */
+    public long getAppendedRecords() {
+        return appendedRecords.get();
+    }
+
+    /**
+     * 已追加的字节数
+     */
+    public long getAppendedBytes() {
+        return appendedBytes.get();
+    }
+
+    /**
+     * 已滚动的分段数
+     */
+    public long getRolledSegments() {
+        return rolledSegments;
+    }
+
+    /**
+     * 已回收删除的分段数
+     */
+    public long getDeletedSegments() {
+        return deletedSegments;
+    }
+
+    /**
+     * 最近一次恢复重放的记录数
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * 最近一次恢复耗时（毫秒）
+     */
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    public long getSegmentIndex() {
+        return segmentIndex;
+    }
+}
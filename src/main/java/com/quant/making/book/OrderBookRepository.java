@@ -5,15 +5,19 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * 订单簿数据访问接口
+ * 快照批量写入见 {@link OrderBookSnapshotWriter}，按日分区的维护见 {@link OrderBookEntryPartitions}
  */
 @Repository
-public interface OrderBookRepository extends JpaRepository<OrderBookEntry, Long> {
+public interface OrderBookRepository extends JpaRepository<OrderBookEntry, Long>, OrderBookSnapshotWriter,
+        OrderBookEntryPartitions {
     
     /**
      * 根据品种代码和时间范围查询快照
@@ -28,11 +32,55 @@ public interface OrderBookRepository extends JpaRepository<OrderBookEntry, Long>
     
     /**
      * 删除指定时间之前的旧快照
+     * 单条语句删除全部过期记录，数据量大时长时间持锁，定时清理使用按主键区间分块的 deleteChunk
      */
     @Modifying
     @Query("DELETE FROM OrderBookEntry e WHERE e.snapshotTime < :cutoffTime")
     int deleteOldSnapshots(@Param("cutoffTime") LocalDateTime cutoffTime);
     
+    /**
+     * 最小记录主键，表为空时返回 null
+     */
+    @Query("SELECT MIN(e.id) FROM OrderBookEntry e")
+    Long findMinId();
+    
+    /**
+     * 快照时间早于 cutoffTime 的最大记录主键，用于确定分块清理的主键上界
+     */
+    @Query("SELECT MAX(e.id) FROM OrderBookEntry e WHERE e.snapshotTime < :cutoffTime")
+    Long findMaxIdBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
+    
+    /**
+     * 删除主键区间 [fromId, toId] 内早于 cutoffTime 的快照记录，每块一个事务
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OrderBookEntry e WHERE e.id >= :fromId AND e.id <= :toId " +
+           "AND e.snapshotTime < :cutoffTime")
+    int deleteChunk(@Param("fromId") long fromId, @Param("toId") long toId,
+                    @Param("cutoffTime") LocalDateTime cutoffTime);
+    
+    /**
+     * 删除主键区间 [fromId, toId] 内指定市场早于 cutoffTime 的快照记录
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OrderBookEntry e WHERE e.id >= :fromId AND e.id <= :toId " +
+           "AND e.marketType = :marketType AND e.snapshotTime < :cutoffTime")
+    int deleteChunk(@Param("fromId") long fromId, @Param("toId") long toId,
+                    @Param("marketType") Integer marketType, @Param("cutoffTime") LocalDateTime cutoffTime);
+    
+    /**
+     * 删除主键区间 [fromId, toId] 内不属于 marketTypes 的市场中早于 cutoffTime 的快照记录
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OrderBookEntry e WHERE e.id >= :fromId AND e.id <= :toId " +
+           "AND e.marketType NOT IN :marketTypes AND e.snapshotTime < :cutoffTime")
+    int deleteChunkExcluding(@Param("fromId") long fromId, @Param("toId") long toId,
+                             @Param("marketTypes") Collection<Integer> marketTypes,
+                             @Param("cutoffTime") LocalDateTime cutoffTime);
+    
     /**
      * 根据品种和市场类型查询最新快照
      */
@@ -44,6 +92,32 @@ public interface OrderBookRepository extends JpaRepository<OrderBookEntry, Long>
             @Param("symbol") String symbol,
             @Param("marketType") Integer marketType);
     
+    /**
+     * 查询 (品种, 市场类型) 在指定快照时间的全部记录，命中 (symbol, market_type, snapshot_time) 索引
+     * 快照时间取自快照目录，替代 findLatestSnapshot 的 MAX 子查询
+     */
+    @Query("SELECT e FROM OrderBookEntry e WHERE e.symbol = :symbol " +
+           "AND e.marketType = :marketType AND e.snapshotTime = :snapshotTime " +
+           "ORDER BY e.priceLevel, e.side")
+    List<OrderBookEntry> findSnapshotAt(
+            @Param("symbol") String symbol,
+            @Param("marketType") Integer marketType,
+            @Param("snapshotTime") LocalDateTime snapshotTime);
+    
+    /**
+     * 查询品种有快照的市场类型
+     */
+    @Query("SELECT DISTINCT e.marketType FROM OrderBookEntry e WHERE e.symbol = :symbol ORDER BY e.marketType")
+    List<Integer> findSnapshotMarketTypes(@Param("symbol") String symbol);
+    
+    /**
+     * 查询所有有快照的 (品种, 市场类型)，快照目录为空时用于枚举预热目标
+     * 
+     * @return [symbol, marketType] 列表
+     */
+    @Query("SELECT DISTINCT e.symbol, e.marketType FROM OrderBookEntry e")
+    List<Object[]> findSnapshotKeys();
+    
     /**
      * 根据品种代码查询所有相关价源
      */
@@ -6,12 +6,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * 订单簿服务
@@ -25,14 +40,385 @@ public class OrderBookService {
     @Autowired
     protected OrderBookRepository orderBookRepository;
     
-    // 内存订单簿缓存: symbol -> OrderBook
-    private final Map<String, OrderBook> orderBookCache = new ConcurrentHashMap<>();
+    @Autowired(required = false)
+    protected OrderBookSnapshotBlobRepository snapshotBlobRepository;
+    
+    @Autowired(required = false)
+    protected OrderBookSnapshotCatalogRepository snapshotCatalogRepository;
+    
+    @Autowired(required = false)
+    protected OrderBookConfig orderBookConfig;
+    
+    @Autowired(required = false)
+    protected SourceRefreshRequester sourceRefreshRequester;
+    
+    // 内存订单簿缓存: (symbol, marketType) -> OrderBook
+    private final BookPartitions orderBookCache = new BookPartitions();
     
     // 快照时间间隔配置（秒）
     private int snapshotIntervalSeconds = 60;
     
-    // 最后快照时间
-    private final Map<String, LocalDateTime> lastSnapshotTime = new ConcurrentHashMap<>();
+    // 最后快照时间（System.nanoTime），按分区订单簿记录
+    private final Map<OrderBook, Long> lastSnapshotNanos = new ConcurrentHashMap<>();
+    
+    // 最近一次全量快照之后的增量快照数
+    private final Map<OrderBook, Integer> deltasSinceFull = new ConcurrentHashMap<>();
+    
+    // 增量快照丢弃或落库失败、下一次必须生成全量快照的分区订单簿
+    private final Set<OrderBook> fullSnapshotRequired = ConcurrentHashMap.newKeySet();
+    
+    // 品种定点精度配置: symbol -> PriceScale（未配置的品种使用默认8位精度）
+    private final Map<String, PriceScale> priceScales = new ConcurrentHashMap<>();
+    
+    // 更新接入管道（未启用时为 null，更新在调用线程上同步应用）
+    private volatile OrderBookIngestionPipeline ingestionPipeline;
+    
+    // 快照后台调度器（未启用时为 null，快照在触发线程上同步落库）
+    private volatile OrderBookSnapshotScheduler snapshotScheduler;
+    
+    // 更新日志（未启用时为 null）
+    private volatile OrderBookJournal journal;
+    
+    // 订单簿变更订阅
+    private final BookChangePublisher changePublisher = new BookChangePublisher();
+    
+    // 更新合并器（未启用时为 null，报价更新直接提交）
+    private volatile OrderBookUpdateConflator conflator;
+    
+    // 价源过期时间轮（未启用时为 null，价源报价一直保留到被显式移除）
+    private volatile SourceExpiryWheel sourceExpiryWheel;
+    
+    // 价源行情序号跟踪（只跟踪带序号提交的更新）
+    private final SourceSequenceTracker sequenceTracker = new SourceSequenceTracker();
+    
+    // 最近一次启动预热的进度（未预热时为 null）
+    private volatile WarmStartProgress warmStartProgress;
+    
+    // 最近一次快照清理的报告（未清理时为 null）
+    private volatile SnapshotRetentionReport retentionReport;
+    private final AtomicBoolean retentionRunning = new AtomicBoolean();
+    
+    /**
+     * 初始化：加载配置，按需从更新日志恢复订单簿或从数据库预热，启动快照调度器和更新接入管道
+     */
+    @PostConstruct
+    public void init() {
+        if (orderBookConfig == null) {
+            return;
+        }
+        OrderBookConfig.Snapshot snapshot = orderBookConfig.getSnapshot();
+        this.snapshotIntervalSeconds = snapshot.getIntervalSeconds();
+        OrderBookConfig.Journal journalConfig = orderBookConfig.getJournal();
+        if (journalConfig.isEnabled()) {
+            startJournal(Path.of(journalConfig.getDirectory()), journalConfig.getSegmentSizeMb() << 20,
+                         journalConfig.getRollIntervalSeconds());
+        }
+        OrderBookConfig.WarmStart warmStartConfig = orderBookConfig.getWarmStart();
+        // 启用更新日志时订单簿已由日志精确重建，不再从数据库预热
+        if (warmStartConfig.isEnabled() && !journalConfig.isEnabled()) {
+            warmStart(warmStartConfig.getConcurrency(), warmStartConfig.getTimeoutSeconds());
+        }
+        if (snapshot.isAsync()) {
+            startSnapshotScheduler(snapshot.getQueueCapacity());
+        }
+        OrderBookConfig.Pipeline pipeline = orderBookConfig.getPipeline();
+        if (pipeline.isEnabled()) {
+            startIngestionPipeline(pipeline.getShards(), pipeline.getRingBufferSize(), 
+                                   pipeline.isIsolateMarketTypes());
+        }
+        OrderBookConfig.Conflation conflation = orderBookConfig.getConflation();
+        if (conflation.isEnabled()) {
+            startConflation(conflation.getDrainIntervalMicros());
+        }
+        OrderBookConfig.SourceExpiry expiry = orderBookConfig.getSourceExpiry();
+        if (expiry.isEnabled()) {
+            Map<Integer, Long> ttlMillis = new HashMap<>();
+            expiry.getMarketTtlSeconds().forEach((type, seconds) -> ttlMillis.put(type, seconds * 1000));
+            startSourceExpiry(expiry.getTtlSeconds() * 1000, ttlMillis, expiry.getTickMillis(), expiry.getWheelSize());
+        }
+    }
+    
+    /**
+     * 关闭：先应用合并中的更新并停止接入管道，再停止快照调度器和更新日志，
+     * 已发布的更新和已入队的快照处理完毕后退出，最后取消变更订阅
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopSourceExpiry();
+        stopConflation();
+        stopIngestionPipeline();
+        stopSnapshotScheduler();
+        stopJournal();
+        changePublisher.close();
+    }
+    
+    /**
+     * 启动更新接入管道
+     * 启动后所有更新按 (品种, 市场类型) 路由到分片写线程异步应用
+     * 
+     * @param shards 分片数（写线程数）
+     * @param ringBufferSize 每个分片的环形缓冲区容量（2的幂）
+     */
+    public void startIngestionPipeline(int shards, int ringBufferSize) {
+        startIngestionPipeline(shards, ringBufferSize, false);
+    }
+    
+    /**
+     * 启动更新接入管道
+     * 
+     * @param shards 分片数（写线程数），按市场隔离时为每个市场的分片数
+     * @param ringBufferSize 每个分片的环形缓冲区容量（2的幂）
+     * @param isolateMarketTypes 是否为每个市场分配独立的写线程
+     */
+    public synchronized void startIngestionPipeline(int shards, int ringBufferSize, boolean isolateMarketTypes) {
+        if (ingestionPipeline != null) {
+            return;
+        }
+        OrderBookIngestionPipeline pipeline = new OrderBookIngestionPipeline(
+            shards, ringBufferSize, isolateMarketTypes, update -> applyUpdate(update, false));
+        pipeline.start();
+        this.ingestionPipeline = pipeline;
+    }
+    
+    /**
+     * 停止更新接入管道，之后的更新恢复在调用线程上同步应用
+     * 先停止并处理完已发布的更新再清除引用，期间仍读到管道的发布被拒绝并改为同步应用
+     */
+    public synchronized void stopIngestionPipeline() {
+        OrderBookIngestionPipeline pipeline = this.ingestionPipeline;
+        if (pipeline != null) {
+            pipeline.stop();
+            this.ingestionPipeline = null;
+        }
+    }
+    
+    /**
+     * 获取更新接入管道（未启用时返回 null），用于查询吞吐和延迟指标
+     */
+    public OrderBookIngestionPipeline getIngestionPipeline() {
+        return ingestionPipeline;
+    }
+    
+    /**
+     * 启动更新合并
+     * 启动后报价的累加、替换和删除按 (品种, 市场类型, 价源, 方向, 价格) 合并，每个周期只提交各档位的最终状态
+     * 
+     * @param drainIntervalMicros 合并周期（微秒）
+     */
+    public synchronized void startConflation(long drainIntervalMicros) {
+        if (conflator != null) {
+            return;
+        }
+        OrderBookUpdateConflator started = new OrderBookUpdateConflator(drainIntervalMicros, this::dispatch);
+        started.start();
+        this.conflator = started;
+    }
+    
+    /**
+     * 停止更新合并，合并中的更新在停止前提交，之后的更新直接提交
+     */
+    public synchronized void stopConflation() {
+        OrderBookUpdateConflator current = this.conflator;
+        if (current != null) {
+            this.conflator = null;
+            current.stop();
+        }
+    }
+    
+    /**
+     * 获取更新合并器（未启用时返回 null），用于查询合并和应用计数
+     */
+    public OrderBookUpdateConflator getConflator() {
+        return conflator;
+    }
+    
+    /**
+     * 启动价源过期检查
+     * 价源超过所在市场的过期时长未更新时，其全部报价从订单簿移除，不再参与最优价；
+     * 启动前已有的价源在启动后的首次更新时开始跟踪
+     * 
+     * @param ttlMillis 默认过期时长（毫秒）
+     * @param marketTtlMillis 按市场类型覆盖的过期时长（毫秒），可为空
+     * @param tickMillis 时间轮刻度（毫秒），即过期判定的精度
+     * @param wheelSize 时间轮槽位数
+     * @throws IllegalArgumentException 按市场类型的过期时长中有不支持的市场类型
+     */
+    public synchronized void startSourceExpiry(long ttlMillis, Map<Integer, Long> marketTtlMillis,
+                                               long tickMillis, int wheelSize) {
+        if (sourceExpiryWheel != null) {
+            return;
+        }
+        Map<Integer, Long> marketTtlNanos = new HashMap<>();
+        if (marketTtlMillis != null) {
+            marketTtlMillis.forEach((type, millis) -> marketTtlNanos.put(BookPartitions.checkMarketType(type),
+                                                                          TimeUnit.MILLISECONDS.toNanos(millis)));
+        }
+        SourceExpiryWheel wheel = new SourceExpiryWheel(TimeUnit.MILLISECONDS.toNanos(ttlMillis), marketTtlNanos,
+            TimeUnit.MILLISECONDS.toNanos(tickMillis), wheelSize,
+            (orderBook, source) -> submit(BookUpdate.Op.EXPIRE_SOURCE, orderBook.getSymbol(),
+                                          orderBook.getMarketType(), source, null, null, null));
+        wheel.start();
+        this.sourceExpiryWheel = wheel;
+    }
+    
+    /**
+     * 停止价源过期检查
+     */
+    public synchronized void stopSourceExpiry() {
+        SourceExpiryWheel wheel = this.sourceExpiryWheel;
+        if (wheel != null) {
+            this.sourceExpiryWheel = null;
+            wheel.stop();
+        }
+    }
+    
+    /**
+     * 获取价源过期时间轮（未启用时返回 null），用于查询跟踪和过期计数
+     */
+    public SourceExpiryWheel getSourceExpiryWheel() {
+        return sourceExpiryWheel;
+    }
+    
+    /**
+     * 启动快照后台调度器
+     * 启动后快照在更新线程上只做采集，落库由后台线程完成
+     * 
+     * @param queueCapacity 待落库快照队列容量
+     */
+    public synchronized void startSnapshotScheduler(int queueCapacity) {
+        if (snapshotScheduler != null) {
+            return;
+        }
+        OrderBookSnapshotScheduler scheduler = new OrderBookSnapshotScheduler(queueCapacity, this::persistSnapshot);
+        scheduler.start();
+        this.snapshotScheduler = scheduler;
+    }
+    
+    /**
+     * 停止快照后台调度器，之后的快照恢复同步落库
+     */
+    public synchronized void stopSnapshotScheduler() {
+        OrderBookSnapshotScheduler scheduler = this.snapshotScheduler;
+        if (scheduler != null) {
+            this.snapshotScheduler = null;
+            scheduler.stop();
+        }
+    }
+    
+    /**
+     * 获取快照后台调度器（未启用时返回 null），用于查询快照延迟和丢弃指标
+     */
+    public OrderBookSnapshotScheduler getSnapshotScheduler() {
+        return snapshotScheduler;
+    }
+    
+    /**
+     * 启动更新日志
+     * 先重放目录中已有的分段重建内存订单簿，再打开新分段记录之后的变更；须在启动接入管道之前调用
+     * 
+     * @param directory 日志目录
+     * @param segmentSize 分段文件大小（字节）
+     * @param rollIntervalSeconds 分段滚动时间间隔（秒）
+     * @return 重放的记录数
+     */
+    public synchronized long startJournal(Path directory, int segmentSize, long rollIntervalSeconds) {
+        if (journal != null) {
+            return 0;
+        }
+        OrderBookJournal newJournal = new OrderBookJournal(directory, segmentSize, rollIntervalSeconds);
+        long replayed = newJournal.replay(new OrderBookJournal.ReplayHandler() {
+            @Override
+            public void onUpdate(BookUpdate update) {
+                OrderBook orderBook = orderBookFor(update);
+                if (orderBook != null) {
+                    applyMutation(orderBook, update);
+                }
+            }
+            
+            @Override
+            public void onCheckpoint(BookSnapshot snapshot) {
+                OrderBook orderBook = newOrderBook(snapshot.getSymbol(), snapshot.getMarketType());
+                snapshot.restoreInto(orderBook);
+                orderBookCache.put(orderBook);
+            }
+            
+            @Override
+            public void onClear(String symbol, Integer marketType) {
+                if (symbol == null) {
+                    orderBookCache.clear();
+                } else {
+                    orderBookCache.remove(symbol, marketType);
+                }
+            }
+        });
+        newJournal.open();
+        this.journal = newJournal;
+        logger.info("Recovered {} OrderBooks from journal: records={}, elapsed={}ms", 
+                orderBookCache.size(), replayed, newJournal.getRecoveryMillis());
+        return replayed;
+    }
+    
+    /**
+     * 停止更新日志，已写入的数据刷盘
+     */
+    public synchronized void stopJournal() {
+        OrderBookJournal current = this.journal;
+        if (current != null) {
+            this.journal = null;
+            current.close();
+        }
+    }
+    
+    /**
+     * 获取更新日志（未启用时返回 null），用于查询写入和恢复指标
+     */
+    public OrderBookJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * 订阅全部订单簿的变更事件
+     * 
+     * @param listener 监听器，在订阅专属线程上回调
+     * @return 订阅，调用 cancel() 取消
+     */
+    public BookSubscription subscribe(BookChangeListener listener) {
+        return subscribe(null, null, listener);
+    }
+    
+    /**
+     * 订阅指定订单簿的变更事件
+     * 写者只向订阅邮箱投递事件，不等待监听器；监听器处理过慢时积压的事件按订单簿、档位、价源合并为最新状态
+     * 
+     * @param symbol 品种代码，为 null 时不限品种
+     * @param marketType 市场类型，为 null 时不限市场
+     * @param listener 监听器，在订阅专属线程上回调
+     * @return 订阅，调用 cancel() 取消
+     */
+    public BookSubscription subscribe(String symbol, Integer marketType, BookChangeListener listener) {
+        BookSubscription subscription = changePublisher.subscribe(symbol, marketType, listener);
+        logger.info("Book change subscription {} added: symbol={}, marketType={}", 
+                subscription.getId(), symbol, marketType);
+        return subscription;
+    }
+    
+    /**
+     * 为检查点早于当前日志分段的订单簿补写检查点（定时任务）
+     * 长时间无更新的品种不会触发快照，补写后旧分段才能回收
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void checkpointIdleOrderBooks() {
+        OrderBookJournal current = this.journal;
+        if (current == null) {
+            return;
+        }
+        for (OrderBook orderBook : orderBookCache.all()) {
+            if (current.needsCheckpoint(orderBook.getSymbol(), orderBook.getMarketType())) {
+                submit(BookUpdate.Op.CHECKPOINT, orderBook.getSymbol(), orderBook.getMarketType(), 
+                       null, null, null, null);
+            }
+        }
+    }
     
     /**
      * 更新报价
@@ -44,252 +430,1241 @@ public class OrderBookService {
      * @param side BUY=1, SELL=2
      * @param price 价格
      * @param quantity 数量
+     * @throws IllegalArgumentException 不支持的市场类型
      */
     public void updateQuote(String symbol, Integer marketType, String source, 
                            Integer side, BigDecimal price, BigDecimal quantity) {
         logger.debug("Updating quote: symbol={}, marketType={}, source={}, side={}, price={}, quantity={}",
                 symbol, marketType, source, side, price, quantity);
+        submit(BookUpdate.Op.ADD, symbol, marketType, source, side, price, quantity);
+    }
+    
+    /**
+     * 按价源行情序号更新报价
+     * 序号连续时正常应用；重复或迟到的序号被丢弃；出现缺口时移除该价源的全部报价使其不再参与最优价，
+     * 并请求适配器推送全量刷新，刷新前该价源的增量更新一律丢弃
+     * 
+     * @param sequence 价源行情序号，同一价源按1递增
+     * @return 更新是否被应用
+     */
+    public boolean updateQuote(String symbol, Integer marketType, String source,
+                               Integer side, BigDecimal price, BigDecimal quantity, long sequence) {
+        marketType = sequencedMarketType(symbol, marketType);
+        SourceSequenceTracker.Result result = sequenceTracker.check(symbol, marketType, source, sequence);
+        if (result == SourceSequenceTracker.Result.APPLY) {
+            updateQuote(symbol, marketType, source, side, price, quantity);
+            return true;
+        }
+        if (result == SourceSequenceTracker.Result.GAP) {
+            suspendSource(symbol, marketType, source, sequence);
+        }
+        return false;
+    }
+    
+    /**
+     * 解析带序号更新的分区市场类型，与更新最终应用的订单簿一致
+     * 品种尚无订单簿时先在调用线程上创建目标分区（与同步应用时相同），避免异步应用前其他分区被创建后
+     * 同一价源的后续更新解析到另一分区、序号在不同的跟踪状态中重新开始而漏报缺口
+     */
+    private Integer sequencedMarketType(String symbol, Integer marketType) {
+        return orderBookCache.computeIfAbsent(symbol, marketType, this::newOrderBook).getMarketType();
+    }
+    
+    /**
+     * 价源序号出现缺口：移除其报价并请求全量刷新
+     */
+    private void suspendSource(String symbol, Integer marketType, String source, long sequence) {
+        logger.warn("Sequence gap from source {} on {} (marketType={}) at {}, awaiting full refresh",
+                source, symbol, marketType, sequence);
+        removeSource(symbol, marketType, source);
+        SourceRefreshRequester requester = this.sourceRefreshRequester;
+        if (requester == null) {
+            logger.warn("No refresh requester configured, source {} stays suspended until refreshed", source);
+            return;
+        }
+        try {
+            requester.requestRefresh(symbol, marketType, source);
+        } catch (RuntimeException e) {
+            logger.error("Failed to request refresh of source {} on {}", source, symbol, e);
+        }
+    }
+    
+    /**
+     * 获取价源行情序号跟踪，用于查询缺口、丢弃和恢复时长指标
+     */
+    public SourceSequenceTracker getSequenceTracker() {
+        return sequenceTracker;
+    }
+    
+    /**
+     * 批量更新报价
+     * 带序号的报价先做序号检查，出现缺口的价源在本批中的全部报价被丢弃
+     * 同步模式下按分区订单簿分组，每组只获取一次订单簿锁，组内按原顺序应用，
+     * 快照检查和变更通知每组只做一次；启用更新合并或接入管道时逐条提交，由其合并或按分片批量应用
+     * 
+     * @throws IllegalArgumentException 批次中有不支持的市场类型，此时整批都不应用
+     */
+    public void updateQuotes(List<QuoteData> quotes) {
+        if (quotes.isEmpty()) {
+            return;
+        }
+        for (QuoteData quote : quotes) {
+            BookPartitions.checkMarketType(quote.getMarketType());
+        }
+        logger.debug("Updating {} quotes", quotes.size());
+        quotes = checkSequences(quotes);
+        if (conflator != null || ingestionPipeline != null) {
+            for (QuoteData quote : quotes) {
+                submit(BookUpdate.Op.ADD, quote.getSymbol(), quote.getMarketType(), quote.getSource(),
+                       quote.getSide(), quote.getPrice(), quote.getQuantity());
+            }
+            return;
+        }
+        for (Map.Entry<OrderBook, List<QuoteData>> group : groupByOrderBook(quotes).entrySet()) {
+            OrderBook orderBook = group.getKey();
+            BookSnapshot snapshot;
+            synchronized (orderBook) {
+                snapshot = mutateBatch(orderBook, group.getValue());
+            }
+            if (snapshot != null) {
+                dispatchSnapshot(snapshot);
+            }
+        }
+    }
+    
+    /**
+     * 检查批量报价中的行情序号，返回需要应用的报价；没有带序号的报价时原样返回
+     */
+    private List<QuoteData> checkSequences(List<QuoteData> quotes) {
+        if (quotes.stream().allMatch(quote -> quote.getSequence() == null)) {
+            return quotes;
+        }
+        List<QuoteData> accepted = new ArrayList<>(quotes.size());
+        Map<SourceKey, QuoteData> gaps = new LinkedHashMap<>();
+        for (QuoteData quote : quotes) {
+            if (quote.getSequence() == null) {
+                accepted.add(quote);
+                continue;
+            }
+            SourceKey key = sourceKey(quote);
+            switch (sequenceTracker.check(key.symbol(), key.marketType(), key.source(), quote.getSequence())) {
+                case APPLY -> accepted.add(quote);
+                case GAP -> gaps.putIfAbsent(key, quote);
+                default -> {
+                }
+            }
+        }
+        if (!gaps.isEmpty()) {
+            // 缺口之前已通过检查的报价同样来自不可靠的价源，一并丢弃，由全量刷新重建
+            accepted.removeIf(quote -> gaps.containsKey(sourceKey(quote)));
+            gaps.forEach((key, gap) -> suspendSource(key.symbol(), key.marketType(), key.source(), gap.getSequence()));
+        }
+        return accepted;
+    }
+    
+    private record SourceKey(String symbol, Integer marketType, String source) {
+    }
+    
+    private SourceKey sourceKey(QuoteData quote) {
+        return new SourceKey(quote.getSymbol(),
+                             sequencedMarketType(quote.getSymbol(), quote.getMarketType()),
+                             quote.getSource());
+    }
+    
+    /**
+     * 按分区订单簿分组，订单簿不存在时创建，分组顺序和组内顺序与输入一致
+     */
+    private Map<OrderBook, List<QuoteData>> groupByOrderBook(List<QuoteData> quotes) {
+        Map<OrderBook, List<QuoteData>> groups = new LinkedHashMap<>();
+        OrderBook previous = null;
+        List<QuoteData> group = null;
+        for (QuoteData quote : quotes) {
+            String symbol = quote.getSymbol();
+            Integer marketType = orderBookCache.resolveMarketType(symbol, quote.getMarketType());
+            // 适配器批次通常按品种连续排列，与上一条同分区时跳过查找
+            if (previous == null || !previous.getSymbol().equals(symbol)
+                    || !Objects.equals(previous.getMarketType(), marketType)) {
+                previous = orderBookCache.computeIfAbsent(symbol, marketType, this::newOrderBook);
+                group = groups.computeIfAbsent(previous, book -> new ArrayList<>());
+            }
+            group.add(quote);
+        }
+        return groups;
+    }
+    
+    /**
+     * 在写者上下文中依次应用同一订单簿的一组报价，并按需采集快照
+     * 
+     * @return 需要落库的快照，无需快照时返回 null
+     */
+    private BookSnapshot mutateBatch(OrderBook orderBook, List<QuoteData> quotes) {
+        OrderBookJournal journal = this.journal;
+        BookUpdate logged = journal != null ? new BookUpdate() : null;
+        BookChangePublisher publisher = this.changePublisher;
+        BookChangePublisher.BatchCapture capture = publisher.hasSubscribers()
+            ? new BookChangePublisher.BatchCapture(orderBook) : null;
+        try {
+            for (QuoteData quote : quotes) {
+                if (capture != null && quote.getSide() != null && quote.getPrice() != null) {
+                    capture.touch(orderBook, quote.getSide(), quote.getPrice());
+                }
+                ByteBuffer record = null;
+                if (journal != null) {
+                    logged.set(BookUpdate.Op.ADD, orderBook.getSymbol(), orderBook.getMarketType(),
+                               quote.getSource(), quote.getSide(), quote.getPrice(), quote.getQuantity());
+                    record = journal.encodeUpdate(logged);
+                }
+                orderBook.addQuote(quote.getSource(), quote.getSide(), quote.getPrice(), quote.getQuantity());
+                trackSource(orderBook, BookUpdate.Op.ADD, quote.getSource());
+                if (record != null) {
+                    journal.append(record);
+                }
+            }
+        } finally {
+            // 已应用的部分即使中途失败也要通知订阅者
+            if (capture != null) {
+                publisher.publishBatch(orderBook, capture);
+            }
+        }
+        return checkAndCaptureSnapshot(orderBook);
+    }
+    
+    /**
+     * 替换价源报价
+     * 将价源在指定价格上的数量替换为新值（数量为0等同于删除），聚合数量按增量调整
+     */
+    public void replaceQuote(String symbol, Integer marketType, String source,
+                             Integer side, BigDecimal price, BigDecimal quantity) {
+        submit(BookUpdate.Op.REPLACE, symbol, marketType, source, side, price, quantity);
+    }
+    
+    /**
+     * 删除价源在指定价格上的报价（品种主分区）
+     */
+    public void deleteQuote(String symbol, String source, Integer side, BigDecimal price) {
+        deleteQuote(symbol, null, source, side, price);
+    }
+    
+    /**
+     * 删除价源在指定市场订单簿指定价格上的报价
+     */
+    public void deleteQuote(String symbol, Integer marketType, String source, Integer side, BigDecimal price) {
+        submit(BookUpdate.Op.DELETE, symbol, marketType, source, side, price, null);
+    }
+    
+    /**
+     * 全量刷新价源的深度报价
+     * 只替换该价源的档位，其他价源不受影响，无需清空订单簿
+     * 
+     * @param bids 买方深度: price -> quantity
+     * @param asks 卖方深度: price -> quantity
+     */
+    public void refreshSource(String symbol, Integer marketType, String source,
+                              Map<BigDecimal, BigDecimal> bids, Map<BigDecimal, BigDecimal> asks) {
+        logger.debug("Refreshing source {} for symbol {}: {} bids, {} asks", 
+                source, symbol, bids.size(), asks.size());
+        marketType = orderBookCache.resolveMarketType(symbol, marketType);
+        flushConflator();
+        OrderBookIngestionPipeline pipeline = ingestionPipeline;
+        if (pipeline != null && pipeline.publishRefresh(symbol, marketType, source, bids, asks)) {
+            return;
+        }
+        BookUpdate update = new BookUpdate();
+        update.setRefresh(symbol, marketType, source, bids, asks);
+        applyUpdate(update, true);
+    }
+    
+    /**
+     * 按价源行情序号全量刷新价源的深度报价
+     * 刷新同时是序号缺口的恢复点：价源恢复可靠，之后的增量更新从 sequence + 1 开始接受
+     * 
+     * @param sequence 刷新对应的价源行情序号
+     */
+    public void refreshSource(String symbol, Integer marketType, String source,
+                              Map<BigDecimal, BigDecimal> bids, Map<BigDecimal, BigDecimal> asks, long sequence) {
+        marketType = sequencedMarketType(symbol, marketType);
+        refreshSource(symbol, marketType, source, bids, asks);
+        sequenceTracker.resync(symbol, marketType, source, sequence);
+    }
+    
+    /**
+     * 移除价源在指定品种上的全部报价（品种主分区）
+     */
+    public void removeSource(String symbol, String source) {
+        removeSource(symbol, null, source);
+    }
+    
+    /**
+     * 移除价源在指定市场订单簿上的全部报价
+     */
+    public void removeSource(String symbol, Integer marketType, String source) {
+        submit(BookUpdate.Op.REMOVE_SOURCE, symbol, marketType, source, null, null, null);
+    }
+    
+    /**
+     * 提交更新：启用更新合并时报价更新先进入合并器，其他操作先提交合并中的更新再分发
+     * 未指定市场类型的更新先解析为品种主分区，保证与该分区的其他更新路由到同一写线程；
+     * 不支持的市场类型在此拒绝，不进入合并器和写者
+     */
+    private void submit(BookUpdate.Op op, String symbol, Integer marketType, String source,
+                        Integer side, BigDecimal price, BigDecimal quantity) {
+        marketType = orderBookCache.resolveMarketType(symbol, marketType);
+        OrderBookUpdateConflator current = conflator;
+        if (current != null) {
+            if (OrderBookUpdateConflator.isConflatable(op)) {
+                current.offer(op, symbol, marketType, source, side, price, quantity);
+                return;
+            }
+            current.flush();
+        }
+        dispatch(op, symbol, marketType, source, side, price, quantity);
+    }
+    
+    /**
+     * 分发更新：启用接入管道时发布到分区所属分片，否则（或管道已停止时）在调用线程上同步应用
+     */
+    private void dispatch(BookUpdate.Op op, String symbol, Integer marketType, String source,
+                          Integer side, BigDecimal price, BigDecimal quantity) {
+        OrderBookIngestionPipeline pipeline = ingestionPipeline;
+        if (pipeline != null && pipeline.publish(op, symbol, marketType, source, side, price, quantity)) {
+            return;
+        }
+        BookUpdate update = new BookUpdate();
+        update.set(op, symbol, marketType, source, side, price, quantity);
+        applyUpdate(update, true);
+    }
+    
+    /**
+     * 提交合并中的更新，保证随后的操作不越过之前的报价更新
+     */
+    private void flushConflator() {
+        OrderBookUpdateConflator current = conflator;
+        if (current != null) {
+            current.flush();
+        }
+    }
+    
+    /**
+     * 应用订单簿更新
+     * 接入管道的写线程是分区订单簿的唯一写者，无需加锁；同步模式下持有订单簿锁以串行化并发调用
+     * 
+     * @param locked 是否需要持有订单簿锁
+     */
+    private void applyUpdate(BookUpdate update, boolean locked) {
+        String symbol = update.symbol;
+        OrderBook orderBook = orderBookFor(update);
+        if (orderBook == null) {
+            logger.warn("OrderBook not found for symbol: {}", symbol);
+            return;
+        }
         
-        // 获取或创建订单簿
-        OrderBook orderBook = orderBookCache.computeIfAbsent(symbol, 
-            k -> new OrderBook(symbol, marketType));
+        // 快照采集与变更在同一写者上下文中执行，保证采集到一致的订单簿
+        BookSnapshot snapshot;
+        if (locked) {
+            synchronized (orderBook) {
+                snapshot = mutate(orderBook, update);
+            }
+        } else {
+            snapshot = mutate(orderBook, update);
+        }
         
-        // 更新聚合视图
-        orderBook.addQuote(source, side, price, quantity);
+        if (update.op == BookUpdate.Op.REMOVE_SOURCE) {
+            logger.info("Removed source {} from OrderBook: {}", update.source, symbol);
+        }
+        if (snapshot != null) {
+            dispatchSnapshot(snapshot);
+        }
+    }
+    
+    /**
+     * 变更订单簿，并按需采集快照
+     * 
+     * @return 需要落库的快照，无需快照时返回 null
+     */
+    private BookSnapshot mutate(OrderBook orderBook, BookUpdate update) {
+        OrderBookJournal journal = this.journal;
+        if (update.op == BookUpdate.Op.SNAPSHOT) {
+            return captureSnapshot(orderBook);
+        }
+        if (update.op == BookUpdate.Op.CHECKPOINT) {
+            if (journal != null) {
+                journal.appendCheckpoint(BookSnapshot.capture(orderBook, null));
+            }
+            return null;
+        }
+        if (update.op == BookUpdate.Op.EXPIRE_SOURCE) {
+            // 在写者上下文中再次确认价源仍未更新，确认后按移除价源应用、记录日志和发布变更
+            SourceExpiryWheel wheel = this.sourceExpiryWheel;
+            if (wheel == null || !orderBook.isSourceIdle(update.source, wheel.ttlNanos(orderBook.getMarketType()))) {
+                return null;
+            }
+            update.op = BookUpdate.Op.REMOVE_SOURCE;
+        }
+        
+        // 有订阅时记录变更前的最优价和档位数量，用于生成变更事件
+        BookChangePublisher publisher = this.changePublisher;
+        boolean notify = publisher.hasSubscribers();
+        BookChangePublisher.TopOfBook before = notify ? BookChangePublisher.TopOfBook.capture(orderBook) : null;
+        long levelUnitsBefore = notify && update.side != null && update.price != null
+            ? orderBook.getLevelUnits(update.side, update.price) : 0L;
         
+        // 日志记录在变更前编码，编码失败时订单簿不变；变更成功后追加，先于可能随后写入的检查点
+        ByteBuffer record = journal != null ? journal.encodeUpdate(update) : null;
+        applyMutation(orderBook, update);
+        if (record != null) {
+            journal.append(record);
+        }
+        trackSource(orderBook, update.op, update.source);
+        if (notify) {
+            publisher.publishChanges(orderBook, update, levelUnitsBefore, before);
+        }
+        if (update.op == BookUpdate.Op.DELETE || update.op == BookUpdate.Op.REMOVE_SOURCE) {
+            return null;
+        }
         // 生成快照（如果需要）
-        checkAndGenerateSnapshot(symbol, marketType);
+        return checkAndCaptureSnapshot(orderBook);
+    }
+    
+    /**
+     * 启用价源过期检查时登记价源，已登记的价源只有一次字段判断
+     */
+    private void trackSource(OrderBook orderBook, BookUpdate.Op op, String source) {
+        SourceExpiryWheel wheel = this.sourceExpiryWheel;
+        if (wheel != null && op != BookUpdate.Op.REMOVE_SOURCE) {
+            wheel.track(orderBook, source);
+        }
+    }
+    
+    private static void applyMutation(OrderBook orderBook, BookUpdate update) {
+        switch (update.op) {
+            case ADD -> orderBook.addQuote(update.source, update.side, update.price, update.quantity);
+            case REPLACE -> orderBook.replaceQuote(update.source, update.side, update.price, update.quantity);
+            case DELETE -> orderBook.deleteQuote(update.source, update.side, update.price);
+            case REFRESH -> orderBook.refreshSource(update.source, update.bids, update.asks);
+            case REMOVE_SOURCE -> orderBook.removeSource(update.source);
+            default -> throw new IllegalArgumentException("Not a mutation: " + update.op);
+        }
+    }
+    
+    /**
+     * 获取更新对应的分区订单簿，新增类更新在订单簿不存在时创建，其余返回 null
+     */
+    private OrderBook orderBookFor(BookUpdate update) {
+        if (!update.op.createsBook()) {
+            return orderBookCache.get(update.symbol, update.marketType);
+        }
+        // 获取或创建订单簿
+        return orderBookCache.computeIfAbsent(update.symbol, update.marketType, this::newOrderBook);
+    }
+    
+    /**
+     * 创建订单簿，按市场类型选择档位存储方式，启用增量快照时记录脏档位
+     */
+    private OrderBook newOrderBook(String symbol, Integer marketType) {
+        OrderBookConfig.Storage storage = orderBookConfig != null ? orderBookConfig.getStorage() : null;
+        OrderBook orderBook = storage != null
+            ? new OrderBook(symbol, marketType, priceScales.get(symbol), storage.backendFor(marketType),
+                            storage.getSourceSlots(), storage.getInitialLevels())
+            : new OrderBook(symbol, marketType, priceScales.get(symbol));
+        if (isDeltaSnapshotEnabled()) {
+            orderBook.enableDirtyTracking();
+        }
+        return orderBook;
+    }
+    
+    /**
+     * 增量快照只写入二进制快照存储，未配置二进制快照仓库时始终生成全量快照
+     */
+    private boolean isDeltaSnapshotEnabled() {
+        return snapshotBlobRepository != null && orderBookConfig != null 
+            && orderBookConfig.getSnapshot().isDeltaEnabled();
     }
     
     /**
-     * 批量更新报价
+     * 获取最优买方价格（品种主分区）
+     * 
+     * @param symbol 品种代码
+     * @return 最优买方档位信息
      */
-    public void updateQuotes(List<QuoteData> quotes) {
-        for (QuoteData quote : quotes) {
-            updateQuote(quote.getSymbol(), quote.getMarketType(), quote.getSource(),
-                       quote.getSide(), quote.getPrice(), quote.getQuantity());
-        }
+    public OrderBook.PriceLevel getBestBid(String symbol) {
+        return getBestBid(symbol, null);
     }
     
     /**
-     * 获取最优买方价格
+     * 获取指定市场订单簿的最优买方价格
      * 
      * @param symbol 品种代码
+     * @param marketType 市场类型，为 null 时取品种主分区
      * @return 最优买方档位信息
      */
-    public OrderBook.PriceLevel getBestBid(String symbol) {
-        OrderBook orderBook = orderBookCache.get(symbol);
+    public OrderBook.PriceLevel getBestBid(String symbol, Integer marketType) {
+        OrderBook orderBook = orderBookCache.get(symbol, marketType);
         if (orderBook == null) {
-            logger.warn("OrderBook not found for symbol: {}", symbol);
+            logger.warn("OrderBook not found for symbol: {}, marketType: {}", symbol, marketType);
             return null;
         }
         return orderBook.getBestBid();
     }
     
     /**
-     * 获取最优卖方价格
+     * 获取最优卖方价格（品种主分区）
      * 
      * @param symbol 品种代码
      * @return 最优卖方档位信息
      */
     public OrderBook.PriceLevel getBestAsk(String symbol) {
-        OrderBook orderBook = orderBookCache.get(symbol);
+        return getBestAsk(symbol, null);
+    }
+    
+    /**
+     * 获取指定市场订单簿的最优卖方价格
+     * 
+     * @param symbol 品种代码
+     * @param marketType 市场类型，为 null 时取品种主分区
+     * @return 最优卖方档位信息
+     */
+    public OrderBook.PriceLevel getBestAsk(String symbol, Integer marketType) {
+        OrderBook orderBook = orderBookCache.get(symbol, marketType);
         if (orderBook == null) {
-            logger.warn("OrderBook not found for symbol: {}", symbol);
+            logger.warn("OrderBook not found for symbol: {}, marketType: {}", symbol, marketType);
             return null;
         }
         return orderBook.getBestAsk();
     }
     
+    /**
+     * 获取盘口指标（品种主分区）
+     * 
+     * @param symbol 品种代码
+     * @return 盘口指标，订单簿不存在时返回 null
+     */
+    public BookAnalytics getAnalytics(String symbol) {
+        return getAnalytics(symbol, null);
+    }
+    
+    /**
+     * 获取指定市场订单簿的盘口指标：微观价格、前 k 档失衡、扫单成交均价
+     * 指标随订单簿前 N 档增量维护，返回值带有与订单簿一致的版本号
+     * 
+     * @param symbol 品种代码
+     * @param marketType 市场类型，为 null 时取品种主分区
+     * @return 盘口指标，订单簿不存在时返回 null
+     */
+    public BookAnalytics getAnalytics(String symbol, Integer marketType) {
+        OrderBook orderBook = orderBookCache.get(symbol, marketType);
+        if (orderBook == null) {
+            logger.warn("OrderBook not found for symbol: {}, marketType: {}", symbol, marketType);
+            return null;
+        }
+        return orderBook.readAnalytics();
+    }
+    
     /**
      * 获取完整订单簿
+     * 同一品种在多个市场都有订单簿时返回主分区（市场类型编号最小者）
      * 
      * @param symbol 品种代码
      * @return 订单簿聚合视图
      */
     public OrderBook getOrderBook(String symbol) {
-        return orderBookCache.get(symbol);
+        return orderBookCache.get(symbol, null);
+    }
+    
+    /**
+     * 获取指定市场的订单簿
+     * 
+     * @param symbol 品种代码
+     * @param marketType 市场类型，为 null 时取品种主分区
+     * @return 订单簿聚合视图
+     */
+    public OrderBook getOrderBook(String symbol, Integer marketType) {
+        return orderBookCache.get(symbol, marketType);
+    }
+    
+    /**
+     * 获取品种跨市场合并的只读订单簿视图
+     * 视图不复制档位，遍历时对各市场订单簿按价格归并，同价档位数量合并
+     * 
+     * @param symbol 品种代码
+     * @param marketTypes 参与合并的市场类型，未指定时合并品种的全部市场
+     * @return 合并视图，没有可合并的订单簿时返回 null
+     */
+    public ConsolidatedOrderBook getConsolidatedOrderBook(String symbol, Integer... marketTypes) {
+        List<OrderBook> books;
+        if (marketTypes == null || marketTypes.length == 0) {
+            books = orderBookCache.partitions(symbol);
+        } else {
+            books = new ArrayList<>(marketTypes.length);
+            for (Integer marketType : marketTypes) {
+                OrderBook orderBook = orderBookCache.get(symbol, marketType);
+                if (orderBook != null) {
+                    books.add(orderBook);
+                }
+            }
+        }
+        if (books.isEmpty()) {
+            return null;
+        }
+        return new ConsolidatedOrderBook(symbol, books.toArray(new OrderBook[0]));
     }
     
     /**
-     * 获取所有订单簿
+     * 获取所有品种的主分区订单簿
+     * 每次调用构建新的映射，频繁遍历应使用 forEachOrderBook / forEachTopOfBook
      */
     public Map<String, OrderBook> getAllOrderBooks() {
-        return new ConcurrentHashMap<>(orderBookCache);
+        Map<String, OrderBook> books = new ConcurrentHashMap<>();
+        orderBookCache.forEach((symbolId, slot, orderBook) -> books.putIfAbsent(orderBook.getSymbol(), orderBook));
+        return books;
+    }
+    
+    /**
+     * 获取指定市场的所有订单簿
+     * 每次调用构建新的映射，频繁遍历应使用 forEachOrderBook / forEachTopOfBook
+     */
+    public Map<String, OrderBook> getAllOrderBooks(Integer marketType) {
+        Map<String, OrderBook> books = new ConcurrentHashMap<>();
+        orderBookCache.forEach((symbolId, slot, orderBook) -> {
+            if (Objects.equals(orderBook.getMarketType(), marketType)) {
+                books.put(orderBook.getSymbol(), orderBook);
+            }
+        });
+        return books;
+    }
+    
+    /**
+     * 遍历全部分区订单簿
+     * 直接读取订单簿表，不复制映射、不按订单簿分配对象；回调在调用线程上执行，拿到的是实时订单簿，
+     * 需要一致状态时应在回调中使用 OrderBook.read
+     */
+    public void forEachOrderBook(Consumer<? super OrderBook> visitor) {
+        forEachOrderBook(null, null, visitor);
+    }
+    
+    /**
+     * 遍历分区订单簿，只回调自游标上次遍历以来版本有变化的订单簿
+     * 版本在回调前读取，回调期间及之后的变更使版本递增，下次遍历时再次回调
+     * 
+     * @param marketType 市场类型，null 表示全部市场
+     * @param cursor 调用方持有的版本游标，null 表示回调全部订单簿
+     */
+    public void forEachOrderBook(Integer marketType, BookVersionCursor cursor, Consumer<? super OrderBook> visitor) {
+        if (!BookPartitions.isSupported(marketType)) {
+            return;
+        }
+        int slotFilter = marketType != null ? BookPartitions.slot(marketType) : -1;
+        if (cursor != null) {
+            cursor.beginPass();
+        }
+        orderBookCache.forEach((symbolId, slot, orderBook) -> {
+            if (slotFilter >= 0 && slot != slotFilter) {
+                return;
+            }
+            long version = orderBook.getVersion();
+            if (cursor != null && cursor.isUnchanged(symbolId, slot, orderBook, version)) {
+                return;
+            }
+            visitor.accept(orderBook);
+            if (cursor != null) {
+                cursor.record(symbolId, slot, orderBook, version);
+            }
+        });
+        if (cursor != null) {
+            cursor.endPass(slotFilter);
+        }
+    }
+    
+    /**
+     * 遍历全部分区订单簿的最优报价
+     */
+    public void forEachTopOfBook(TopOfBookVisitor visitor) {
+        forEachTopOfBook(null, null, visitor);
+    }
+    
+    /**
+     * 遍历分区订单簿的最优报价，只回调自游标上次遍历以来版本有变化的订单簿
+     * 每个订单簿以乐观读一致读取版本和已发布的前 N 档深度，不加锁、不阻塞写者，也不按订单簿分配对象
+     * 
+     * @param marketType 市场类型，null 表示全部市场
+     * @param cursor 调用方持有的版本游标，null 表示回调全部订单簿
+     */
+    public void forEachTopOfBook(Integer marketType, BookVersionCursor cursor, TopOfBookVisitor visitor) {
+        if (!BookPartitions.isSupported(marketType)) {
+            return;
+        }
+        int slotFilter = marketType != null ? BookPartitions.slot(marketType) : -1;
+        if (cursor != null) {
+            cursor.beginPass();
+        }
+        orderBookCache.forEach((symbolId, slot, orderBook) -> {
+            if (slotFilter < 0 || slot == slotFilter) {
+                visitTopOfBook(symbolId, slot, orderBook, cursor, visitor);
+            }
+        });
+        if (cursor != null) {
+            cursor.endPass(slotFilter);
+        }
+    }
+    
+    private static void visitTopOfBook(int symbolId, int slot, OrderBook orderBook,
+                                       BookVersionCursor cursor, TopOfBookVisitor visitor) {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = orderBook.tryOptimisticStamp();
+            if (stamp != 0L) {
+                long version = orderBook.getVersion();
+                BookDepth bids = orderBook.getTopBidDepth();
+                BookDepth asks = orderBook.getTopAskDepth();
+                if (orderBook.validateStamp(stamp)) {
+                    if (cursor != null && cursor.isUnchanged(symbolId, slot, orderBook, version)) {
+                        return;
+                    }
+                    visitor.visit(orderBook, version, bids, asks);
+                    if (cursor != null) {
+                        cursor.record(symbolId, slot, orderBook, version);
+                    }
+                    return;
+                }
+            }
+            OrderBook.backoff(attempt);
+        }
     }
     
     /**
-     * 手动触发快照生成
+     * 手动触发快照生成（品种主分区）
      * 
      * @param symbol 品种代码
      */
     public void snapshot(String symbol) {
-        generateSnapshot(symbol);
+        generateSnapshot(symbol, null);
     }
     
     /**
-     * 手动触发所有订单簿快照
+     * 手动触发所有分区订单簿快照
      */
     public void snapshotAll() {
-        orderBookCache.keySet().forEach(this::generateSnapshot);
+        for (OrderBook orderBook : orderBookCache.all()) {
+            generateSnapshot(orderBook.getSymbol(), orderBook.getMarketType());
+        }
     }
     
     /**
      * 手动触发指定市场和品种的快照
      */
     public void snapshot(String symbol, Integer marketType) {
-        OrderBook orderBook = orderBookCache.get(symbol);
-        if (orderBook != null) {
-            saveSnapshotToDatabase(orderBook, marketType);
+        generateSnapshot(symbol, marketType);
+    }
+    
+    /**
+     * 生成订单簿快照
+     * 启用接入管道时作为更新发布到分区所属写线程采集，否则持有订单簿锁采集
+     */
+    private void generateSnapshot(String symbol, Integer marketType) {
+        if (orderBookCache.get(symbol, marketType) == null) {
+            logger.warn("Cannot snapshot: OrderBook not found for symbol: {}, marketType: {}", symbol, marketType);
+            return;
         }
+        submit(BookUpdate.Op.SNAPSHOT, symbol, marketType, null, null, null, null);
     }
     
     /**
-     * 定时检查并生成快照
+     * 距上次快照超过间隔时采集快照
+     * 启用增量快照时，每个全量快照之后跟随 fullCheckpointInterval - 1 个增量快照
      */
-    private void checkAndGenerateSnapshot(String symbol, Integer marketType) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime lastTime = lastSnapshotTime.get(symbol);
+    private BookSnapshot checkAndCaptureSnapshot(OrderBook orderBook) {
+        Long lastNanos = lastSnapshotNanos.get(orderBook);
+        if (lastNanos != null && 
+            System.nanoTime() - lastNanos < TimeUnit.SECONDS.toNanos(snapshotIntervalSeconds)) {
+            return null;
+        }
         
-        if (lastTime == null || 
-            java.time.Duration.between(lastTime, now).getSeconds() >= snapshotIntervalSeconds) {
-            generateSnapshot(symbol);
+        Integer deltas = deltasSinceFull.get(orderBook);
+        DirtyLevels dirty = orderBook.getDirtyLevels();
+        if (deltas != null && dirty != null && !dirty.isInvalidated() && !fullSnapshotRequired.remove(orderBook)
+                && deltas + 1 < orderBookConfig.getSnapshot().getFullCheckpointInterval()) {
+            return captureDeltaSnapshot(orderBook, deltas);
         }
+        return captureSnapshot(orderBook);
     }
     
     /**
-     * 生成订单簿快照
+     * 采集增量快照，没有脏档位时不生成快照
      */
-    private void generateSnapshot(String symbol) {
-        OrderBook orderBook = orderBookCache.get(symbol);
-        if (orderBook == null) {
-            logger.warn("Cannot snapshot: OrderBook not found for symbol: {}", symbol);
-            return;
+    private BookSnapshot captureDeltaSnapshot(OrderBook orderBook, int deltas) {
+        lastSnapshotNanos.put(orderBook, System.nanoTime());
+        if (orderBook.getDirtyLevels().size() == 0) {
+            return null;
+        }
+        BookSnapshot snapshot = BookSnapshot.captureDelta(orderBook, null);
+        orderBook.clearDirtyLevels();
+        deltasSinceFull.put(orderBook, deltas + 1);
+        return snapshot;
+    }
+    
+    /**
+     * 采集订单簿全量快照，须在写者上下文中调用；启用更新日志时同时作为检查点写入
+     */
+    private BookSnapshot captureSnapshot(OrderBook orderBook) {
+        BookSnapshot snapshot = BookSnapshot.capture(orderBook, null);
+        lastSnapshotNanos.put(orderBook, snapshot.getCaptureNanos());
+        orderBook.clearDirtyLevels();
+        fullSnapshotRequired.remove(orderBook);
+        deltasSinceFull.put(orderBook, 0);
+        OrderBookJournal current = this.journal;
+        if (current != null) {
+            current.appendCheckpoint(snapshot);
+        }
+        return snapshot;
+    }
+    
+    /**
+     * 分发快照：启用调度器时入队异步落库，否则同步落库
+     */
+    private void dispatchSnapshot(BookSnapshot snapshot) {
+        OrderBookSnapshotScheduler scheduler = snapshotScheduler;
+        if (scheduler != null) {
+            if (!scheduler.submit(snapshot)) {
+                // 丢弃的快照会中断增量链，下一次改为全量快照
+                requireFullSnapshot(snapshot);
+            }
+        } else {
+            persistSnapshot(snapshot);
         }
-        
-        saveSnapshotToDatabase(orderBook, orderBook.getMarketType());
-        lastSnapshotTime.put(symbol, LocalDateTime.now());
-        
-        logger.info("Snapshot generated for symbol: {}", symbol);
     }
     
     /**
      * 保存快照到数据库
+     * 二进制快照每本订单簿一行，供恢复和清理使用；全量快照同时按行格式每个价源在其所在方向上一条记录，
+     * 档位序号从1开始，批量写入、单事务提交，供临时 SQL 查询使用
      */
-    private void saveSnapshotToDatabase(OrderBook orderBook, Integer marketType) {
-        LocalDateTime snapshotTime = LocalDateTime.now();
-        
-        for (Map.Entry<BigDecimal, OrderBook.PriceLevel> entry : 
-             orderBook.getAggregatedLevels().entrySet()) {
-            BigDecimal price = entry.getKey();
-            OrderBook.PriceLevel level = entry.getValue();
-            
-            // 保存买方档位
-            if (level.hasBuyOrders()) {
-                OrderBookEntry entryBuy = new OrderBookEntry(
-                    orderBook.getSymbol(),
-                    marketType,
-                    null,  // source将在聚合时记录
-                    OrderBook.BUY,
-                    0,  // priceLevel将在查询时计算
-                    price,
-                    level.getTotalBuyQty(),
-                    snapshotTime
-                );
-                
-                // 为每个价源保存单独记录
-                for (Map.Entry<String, BigDecimal> sourceEntry : level.getSources().entrySet()) {
-                    OrderBookEntry sourceEntryRecord = new OrderBookEntry(
-                        orderBook.getSymbol(),
-                        marketType,
-                        sourceEntry.getKey(),
-                        OrderBook.BUY,
-                        0,
-                        price,
-                        sourceEntry.getValue(),
-                        snapshotTime
-                    );
-                    orderBookRepository.save(sourceEntryRecord);
-                }
+    private void persistSnapshot(BookSnapshot snapshot) {
+        OrderBookConfig.Snapshot config = orderBookConfig != null ? orderBookConfig.getSnapshot() : null;
+        Long snapshotId = null;
+        try {
+            if (snapshotBlobRepository != null) {
+                boolean compress = config == null || config.isCompress();
+                byte[] payload = BookSnapshotCodec.encode(snapshot, compress);
+                int kind = snapshot.isDelta() ? OrderBookSnapshotBlob.KIND_DELTA : OrderBookSnapshotBlob.KIND_FULL;
+                OrderBookSnapshotBlob saved = snapshotBlobRepository.save(new OrderBookSnapshotBlob(
+                    snapshot.getSymbol(), snapshot.getMarketType(), snapshot.getSnapshotTime(), kind, 
+                    snapshot.size(), compress, payload));
+                snapshotId = saved != null ? saved.getId() : null;
             }
-            
-            // 保存卖方档位
-            if (level.hasSellOrders()) {
-                for (Map.Entry<String, BigDecimal> sourceEntry : level.getSources().entrySet()) {
-                    OrderBookEntry sourceEntryRecord = new OrderBookEntry(
-                        orderBook.getSymbol(),
-                        marketType,
-                        sourceEntry.getKey(),
-                        OrderBook.SELL,
-                        0,
-                        price,
-                        sourceEntry.getValue(),
-                        snapshotTime
-                    );
-                    orderBookRepository.save(sourceEntryRecord);
+            if (!snapshot.isDelta() 
+                    && (snapshotBlobRepository == null || config == null || config.isRowFormatEnabled())) {
+                orderBookRepository.saveSnapshotBatch(snapshot.toEntries());
+            }
+        } catch (RuntimeException e) {
+            // 落库失败会中断增量链，下一次改为全量快照
+            requireFullSnapshot(snapshot);
+            throw e;
+        }
+        if (!snapshot.isDelta()) {
+            updateCatalog(snapshot, snapshotId);
+        }
+        logger.info("Snapshot generated for symbol: {}, marketType={}, delta={}, rows={}", 
+                snapshot.getSymbol(), snapshot.getMarketType(), snapshot.isDelta(), snapshot.size());
+    }
+    
+    /**
+     * 将快照目录指向最新的全量快照，目录只前进不后退
+     * 目录只是索引，更新失败不影响快照本身，恢复时退回按快照表查询
+     */
+    private void updateCatalog(BookSnapshot snapshot, Long snapshotId) {
+        if (snapshotCatalogRepository == null) {
+            return;
+        }
+        try {
+            OrderBookSnapshotCatalog entry = snapshotCatalogRepository
+                .findBySymbolAndMarketType(snapshot.getSymbol(), snapshot.getMarketType())
+                .orElseGet(() -> new OrderBookSnapshotCatalog(snapshot.getSymbol(), snapshot.getMarketType(), 
+                                                              null, null));
+            if (entry.getSnapshotTime() != null && entry.getSnapshotTime().isAfter(snapshot.getSnapshotTime())) {
+                return;
+            }
+            entry.setSnapshotId(snapshotId);
+            entry.setSnapshotTime(snapshot.getSnapshotTime());
+            entry.setUpdatedAt(LocalDateTime.now());
+            snapshotCatalogRepository.save(entry);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to update snapshot catalog for symbol: {}, marketType={}", 
+                    snapshot.getSymbol(), snapshot.getMarketType(), e);
+        }
+    }
+    
+    private void requireFullSnapshot(BookSnapshot snapshot) {
+        OrderBook orderBook = orderBookCache.get(snapshot.getSymbol(), snapshot.getMarketType());
+        if (orderBook != null) {
+            fullSnapshotRequired.add(orderBook);
+        }
+    }
+    
+    /**
+     * 从数据库恢复品种在各市场的订单簿
+     * 优先按快照目录定位各市场的最新快照；目录中没有该品种时，按快照表逐个市场恢复最新快照
+     * 
+     * @param symbol 品种代码
+     * @return 是否至少恢复了一个订单簿
+     */
+    public boolean restoreFromSnapshot(String symbol) {
+        if (snapshotCatalogRepository != null) {
+            List<OrderBookSnapshotCatalog> entries = snapshotCatalogRepository.findBySymbolOrderByMarketType(symbol);
+            if (!entries.isEmpty()) {
+                boolean restored = false;
+                for (OrderBookSnapshotCatalog entry : entries) {
+                    restored |= restoreTarget(entry);
                 }
+                return restored;
             }
         }
+        if (snapshotBlobRepository != null) {
+            return restoreFromBlob(symbol, LocalDateTime.now());
+        }
+        boolean restored = false;
+        for (Integer marketType : orderBookRepository.findSnapshotMarketTypes(symbol)) {
+            restored |= restoreFromRows(symbol, orderBookRepository.findLatestSnapshot(symbol, marketType));
+        }
+        if (!restored) {
+            logger.info("No snapshot found for symbol: {}", symbol);
+        }
+        return restored;
     }
     
     /**
-     * 从数据库恢复订单簿
+     * 从数据库恢复指定市场的订单簿，优先按快照目录定位最新快照
      * 
      * @param symbol 品种代码
+     * @param marketType 市场类型
      * @return 是否恢复成功
      */
-    public boolean restoreFromSnapshot(String symbol) {
-        List<OrderBookEntry> entries = orderBookRepository.findLatestSnapshot(symbol, null);
+    public boolean restoreFromSnapshot(String symbol, Integer marketType) {
+        OrderBookSnapshotCatalog entry = snapshotCatalogRepository != null
+            ? snapshotCatalogRepository.findBySymbolAndMarketType(symbol, marketType).orElse(null)
+            : null;
+        return restoreTarget(entry != null ? entry : new OrderBookSnapshotCatalog(symbol, marketType, null, null));
+    }
+    
+    /**
+     * 恢复一个目录项指向的订单簿；目录项未记录快照时间或指向的快照已被清理时，按快照表查找最新快照
+     */
+    private boolean restoreTarget(OrderBookSnapshotCatalog entry) {
+        if (entry.getSnapshotTime() != null && restoreFromCatalog(entry)) {
+            return true;
+        }
+        String symbol = entry.getSymbol();
+        Integer marketType = entry.getMarketType();
+        if (snapshotBlobRepository != null) {
+            Optional<OrderBookSnapshotBlob> latestFull = snapshotBlobRepository
+                .findFirstBySymbolAndMarketTypeAndSnapshotKindAndSnapshotTimeLessThanEqualOrderBySnapshotTimeDesc(
+                    symbol, marketType, OrderBookSnapshotBlob.KIND_FULL, LocalDateTime.now());
+            if (latestFull.isPresent()) {
+                return restoreBlobChain(latestFull.get(), LocalDateTime.now());
+            }
+        } else if (restoreFromRows(symbol, orderBookRepository.findLatestSnapshot(symbol, marketType))) {
+            return true;
+        }
+        logger.info("No snapshot found for symbol: {}, marketType={}", symbol, marketType);
+        return false;
+    }
+    
+    /**
+     * 按目录项直接定位快照：二进制快照按主键读取，按行快照按 (品种, 市场类型, 快照时间) 索引读取
+     */
+    private boolean restoreFromCatalog(OrderBookSnapshotCatalog entry) {
+        if (entry.getSnapshotId() != null && snapshotBlobRepository != null) {
+            Optional<OrderBookSnapshotBlob> full = snapshotBlobRepository.findById(entry.getSnapshotId());
+            return full.isPresent() && restoreBlobChain(full.get(), LocalDateTime.now());
+        }
+        return restoreFromRows(entry.getSymbol(), orderBookRepository.findSnapshotAt(
+            entry.getSymbol(), entry.getMarketType(), entry.getSnapshotTime()));
+    }
+    
+    /**
+     * 恢复全量快照及其后到 asOf（含）的同一市场增量快照
+     */
+    private boolean restoreBlobChain(OrderBookSnapshotBlob full, LocalDateTime asOf) {
+        OrderBook orderBook = newOrderBook(full.getSymbol(), full.getMarketType());
+        decode(full).restoreInto(orderBook);
+        List<OrderBookSnapshotBlob> deltas = snapshotBlobRepository.findDeltas(
+            full.getSymbol(), full.getMarketType(), full.getSnapshotTime(), asOf);
+        for (OrderBookSnapshotBlob delta : deltas) {
+            decode(delta).restoreInto(orderBook);
+        }
+        install(orderBook);
+        journalCheckpoint(orderBook);
+        logger.info("Restored OrderBook from snapshot for symbol: {}, marketType={}, snapshotTime={}, deltas={}", 
+                full.getSymbol(), full.getMarketType(), full.getSnapshotTime(), deltas.size());
+        return true;
+    }
+    
+    /**
+     * 由按行快照的记录恢复订单簿，没有记录时返回 false
+     */
+    private boolean restoreFromRows(String symbol, List<OrderBookEntry> entries) {
         if (entries.isEmpty()) {
-            logger.info("No snapshot found for symbol: {}", symbol);
             return false;
         }
         
-        OrderBook orderBook = new OrderBook();
-        orderBook.setSymbol(symbol);
-        if (!entries.isEmpty()) {
-            orderBook.setMarketType(entries.get(0).getMarketType());
-        }
+        OrderBook orderBook = newOrderBook(symbol, entries.get(0).getMarketType());
         
         for (OrderBookEntry entry : entries) {
             orderBook.addQuote(entry.getSource(), entry.getSide(), 
                              entry.getPrice(), entry.getQuantity());
         }
         
-        orderBookCache.put(symbol, orderBook);
-        logger.info("Restored OrderBook from snapshot for symbol: {}", symbol);
+        install(orderBook);
+        journalCheckpoint(orderBook);
+        logger.info("Restored OrderBook from snapshot for symbol: {}, marketType={}", 
+                symbol, orderBook.getMarketType());
         return true;
     }
     
+    /**
+     * 启动预热：并行恢复快照目录中的全部订单簿
+     * 同时访问数据库的恢复任务数不超过 concurrency（每个任务顺序执行一到两次按索引的查询），
+     * 进度可通过 getWarmStartProgress 在预热期间观察；目录为空时按快照表枚举 (品种, 市场类型)
+     * 
+     * @param concurrency 并行恢复线程数，即同时占用的数据库连接数上限
+     * @param timeoutSeconds 等待预热完成的最长时间，超时后未开始的任务被取消
+     * @return 预热进度
+     */
+    public WarmStartProgress warmStart(int concurrency, long timeoutSeconds) {
+        List<OrderBookSnapshotCatalog> targets = warmStartTargets();
+        WarmStartProgress progress = new WarmStartProgress(targets.size());
+        this.warmStartProgress = progress;
+        if (targets.isEmpty()) {
+            progress.finish();
+            return progress;
+        }
+        
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, targets.size())), 
+            runnable -> {
+                Thread thread = new Thread(runnable, "orderbook-warm-start-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        try {
+            for (OrderBookSnapshotCatalog target : targets) {
+                executor.execute(() -> {
+                    try {
+                        if (restoreTarget(target)) {
+                            progress.recordRestored();
+                        } else {
+                            progress.recordEmpty();
+                        }
+                    } catch (RuntimeException e) {
+                        progress.recordFailed();
+                        logger.error("Warm start failed for symbol: {}, marketType={}", 
+                                target.getSymbol(), target.getMarketType(), e);
+                    }
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Warm start timed out after {}s: {}", timeoutSeconds, progress);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            progress.finish();
+        }
+        logger.info("Warm start finished: {}", progress);
+        return progress;
+    }
+    
+    /**
+     * 预热目标：快照目录全部条目，目录未配置或为空时按快照表枚举
+     */
+    private List<OrderBookSnapshotCatalog> warmStartTargets() {
+        if (snapshotCatalogRepository != null) {
+            List<OrderBookSnapshotCatalog> entries = snapshotCatalogRepository.findAll();
+            if (!entries.isEmpty()) {
+                return entries;
+            }
+        }
+        List<OrderBookSnapshotCatalog> targets = new ArrayList<>();
+        for (Object[] key : orderBookRepository.findSnapshotKeys()) {
+            targets.add(new OrderBookSnapshotCatalog((String) key[0], (Integer) key[1], null, null));
+        }
+        return targets;
+    }
+    
+    /**
+     * 最近一次启动预热的进度，未预热时返回 null
+     */
+    public WarmStartProgress getWarmStartProgress() {
+        return warmStartProgress;
+    }
+    
+    /**
+     * 放入恢复的订单簿，替换同一分区中的旧订单簿并丢弃其快照状态
+     */
+    private void install(OrderBook orderBook) {
+        OrderBook previous = orderBookCache.put(orderBook);
+        if (previous != null) {
+            retire(previous);
+        }
+    }
+    
+    /**
+     * 丢弃被移除订单簿的快照状态，其价源不再被过期检查跟踪
+     */
+    private void retire(OrderBook orderBook) {
+        orderBook.detachSources();
+        lastSnapshotNanos.remove(orderBook);
+        deltasSinceFull.remove(orderBook);
+        fullSnapshotRequired.remove(orderBook);
+    }
+    
+    /**
+     * 从数据库恢复的订单簿不在更新日志中，写入检查点作为之后变更的重放起点
+     */
+    private void journalCheckpoint(OrderBook orderBook) {
+        OrderBookJournal current = this.journal;
+        if (current != null) {
+            current.appendCheckpoint(BookSnapshot.capture(orderBook, null));
+        }
+    }
+    
+    /**
+     * 将品种在各市场的订单簿恢复到指定时刻：每个市场取该时刻前最近的全量快照 + 其后到该时刻的同一市场增量快照
+     * 需要二进制快照存储
+     * 
+     * @param symbol 品种代码
+     * @param asOf 恢复到的时刻（含）
+     * @return 是否至少恢复了一个订单簿
+     */
+    public boolean restoreFromSnapshot(String symbol, LocalDateTime asOf) {
+        if (snapshotBlobRepository == null) {
+            throw new IllegalStateException("Point-in-time restore requires the binary snapshot store");
+        }
+        return restoreFromBlob(symbol, asOf);
+    }
+    
+    /**
+     * 从二进制快照逐个市场恢复品种的订单簿，每个快照一次读取、一次解码
+     * 各市场的全量快照和增量快照互相独立，增量只叠加到同一市场的全量快照上
+     */
+    private boolean restoreFromBlob(String symbol, LocalDateTime asOf) {
+        boolean restored = false;
+        for (Integer marketType : snapshotBlobRepository.findSnapshotMarketTypes(symbol)) {
+            Optional<OrderBookSnapshotBlob> latestFull = snapshotBlobRepository
+                .findFirstBySymbolAndMarketTypeAndSnapshotKindAndSnapshotTimeLessThanEqualOrderBySnapshotTimeDesc(
+                    symbol, marketType, OrderBookSnapshotBlob.KIND_FULL, asOf);
+            if (latestFull.isPresent()) {
+                restored |= restoreBlobChain(latestFull.get(), asOf);
+            }
+        }
+        if (!restored) {
+            logger.info("No snapshot found for symbol: {}", symbol);
+        }
+        return restored;
+    }
+    
+    private static BookSnapshot decode(OrderBookSnapshotBlob blob) {
+        return BookSnapshotCodec.decode(blob.getPayload(), blob.getSymbol(), 
+                                        blob.getMarketType(), blob.getSnapshotTime());
+    }
+    
     /**
      * 清理旧快照（定时任务）
-     * 默认保留最近24小时的数据
+     * 保留时长按市场类型配置（默认 snapshot.retain-hours），过期的按日分区整体删除，
+     * 其余过期记录按主键区间分块删除；上一次清理尚未结束时跳过
      */
     @Scheduled(cron = "0 0 2 * * ?")  // 每天凌晨2点执行
     public void cleanupOldSnapshots() {
-        LocalDateTime cutoffTime = LocalDateTime.now().minusHours(24);
-        int deletedCount = orderBookRepository.deleteOldSnapshots(cutoffTime);
-        logger.info("Cleaned up {} old snapshot entries", deletedCount);
+        if (!retentionRunning.compareAndSet(false, true)) {
+            logger.warn("Snapshot retention already running, skipped");
+            return;
+        }
+        try {
+            SnapshotRetentionReport report = new SnapshotRetentionReport();
+            this.retentionReport = report;
+            OrderBookConfig config = orderBookConfig != null ? orderBookConfig : new OrderBookConfig();
+            new OrderBookSnapshotRetention(orderBookRepository, snapshotBlobRepository,
+                config.getSnapshot().getRetainHours(), config.getRetention()).run(LocalDateTime.now(), report);
+        } finally {
+            retentionRunning.set(false);
+        }
+    }
+    
+    /**
+     * 最近一次快照清理的进度和开销，清理期间可观察，未清理过时返回 null
+     */
+    public SnapshotRetentionReport getRetentionReport() {
+        return retentionReport;
     }
     
     /**
-     * 清空指定品种的订单簿
+     * 清空指定品种在所有市场的订单簿
      */
     public void clearOrderBook(String symbol) {
-        orderBookCache.remove(symbol);
-        lastSnapshotTime.remove(symbol);
-        logger.info("Cleared OrderBook for symbol: {}", symbol);
+        clearOrderBook(symbol, null);
+    }
+    
+    /**
+     * 清空指定品种在指定市场的订单簿
+     * 
+     * @param marketType 市场类型，为 null 时清空品种的全部分区
+     * @throws IllegalArgumentException 不支持的市场类型
+     */
+    public void clearOrderBook(String symbol, Integer marketType) {
+        BookPartitions.checkMarketType(marketType);
+        flushConflator();
+        runExclusive(() -> {
+            for (OrderBook orderBook : orderBookCache.remove(symbol, marketType)) {
+                retire(orderBook);
+            }
+            OrderBookJournal current = this.journal;
+            if (current != null) {
+                current.appendClear(symbol, marketType);
+            }
+        });
+        logger.info("Cleared OrderBook for symbol: {}, marketType: {}", symbol, marketType);
     }
     
     /**
      * 清空所有订单簿
      */
     public void clearAllOrderBooks() {
-        orderBookCache.clear();
-        lastSnapshotTime.clear();
+        flushConflator();
+        runExclusive(() -> {
+            for (OrderBook orderBook : orderBookCache.all()) {
+                orderBook.detachSources();
+            }
+            orderBookCache.clear();
+            lastSnapshotNanos.clear();
+            deltasSinceFull.clear();
+            fullSnapshotRequired.clear();
+            OrderBookJournal current = this.journal;
+            if (current != null) {
+                current.appendClear(null, null);
+            }
+        });
         logger.info("Cleared all OrderBooks");
     }
     
+    /**
+     * 启用接入管道时在所有写者暂停期间执行操作：已发布的更新先于操作应用，操作期间没有写者修改订单簿；
+     * 未启用或已停止时直接执行
+     */
+    private void runExclusive(Runnable action) {
+        OrderBookIngestionPipeline pipeline = ingestionPipeline;
+        if (pipeline == null || !pipeline.runExclusive(action)) {
+            action.run();
+        }
+    }
+    
+    /**
+     * 设置品种的定点精度（最小变动价位和数量精度）
+     * 仅对之后新建的订单簿生效
+     */
+    public void setPriceScale(String symbol, PriceScale priceScale) {
+        priceScales.put(symbol, priceScale);
+    }
+    
     /**
      * 设置快照间隔
      */
@@ -307,6 +1682,8 @@ public class OrderBookService {
         private Integer side;
         private BigDecimal price;
         private BigDecimal quantity;
+        // 价源行情序号，为 null 表示不做序号检查
+        private Long sequence;
         
         public QuoteData() {}
         
@@ -320,6 +1697,12 @@ public class OrderBookService {
             this.quantity = quantity;
         }
         
+        public QuoteData(String symbol, Integer marketType, String source, 
+                        Integer side, BigDecimal price, BigDecimal quantity, Long sequence) {
+            this(symbol, marketType, source, side, price, quantity);
+            this.sequence = sequence;
+        }
+        
         // Getter 和 Setter
         public String getSymbol() { return symbol; }
         public void setSymbol(String symbol) { this.symbol = symbol; }
@@ -333,5 +1716,7 @@ public class OrderBookService {
         public void setPrice(BigDecimal price) { this.price = price; }
         public BigDecimal getQuantity() { return quantity; }
         public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
+        public Long getSequence() { return sequence; }
+        public void setSequence(Long sequence) { this.sequence = sequence; }
     }
 }
@@ -0,0 +1,146 @@
+package com.quant.making.book;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 订单簿二进制快照实体
+ * 对应数据库表 order_book_snapshot，每个 (symbol, marketType, snapshotTime) 一行，订单簿编码为一个二进制块
+ * 全量快照之后跟随若干增量快照，任一时刻的订单簿 = 该时刻前最近的全量快照 + 其后到该时刻的增量快照
+ */
+@Entity
+@Table(name = "order_book_snapshot", indexes = {
+    @Index(name = "idx_obs_symbol_market_time", columnList = "symbol, market_type, snapshot_time"),
+    @Index(name = "idx_obs_snapshot_time", columnList = "snapshot_time")
+})
+public class OrderBookSnapshotBlob {
+    
+    // 快照类型
+    public static final int KIND_FULL = 1;    // 全量快照
+    public static final int KIND_DELTA = 2;   // 增量快照
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "symbol", nullable = false, length = 32)
+    private String symbol;
+    
+    @Column(name = "market_type", nullable = false)
+    private Integer marketType;
+    
+    @Column(name = "snapshot_time", nullable = false)
+    private LocalDateTime snapshotTime;
+    
+    // 快照类型：KIND_FULL / KIND_DELTA
+    @Column(name = "snapshot_kind", nullable = false)
+    private Integer snapshotKind;
+    
+    // 快照记录行数（价源 × 档位 × 方向）
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount;
+    
+    // 是否压缩
+    @Column(name = "compressed", nullable = false)
+    private Boolean compressed;
+    
+    // 编码后的订单簿，格式见 BookSnapshotCodec
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+    
+    // 默认构造函数
+    public OrderBookSnapshotBlob() {
+    }
+    
+    // 全参构造函数
+    public OrderBookSnapshotBlob(String symbol, Integer marketType, LocalDateTime snapshotTime, Integer snapshotKind,
+                                 Integer rowCount, Boolean compressed, byte[] payload) {
+        this.symbol = symbol;
+        this.marketType = marketType;
+        this.snapshotTime = snapshotTime;
+        this.snapshotKind = snapshotKind;
+        this.rowCount = rowCount;
+        this.compressed = compressed;
+        this.payload = payload;
+    }
+    
+    // Getter 和 Setter
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getSymbol() {
+        return symbol;
+    }
+    
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+    
+    public Integer getMarketType() {
+        return marketType;
+    }
+    
+    public void setMarketType(Integer marketType) {
+        this.marketType = marketType;
+    }
+    
+    public LocalDateTime getSnapshotTime() {
+        return snapshotTime;
+    }
+    
+    public void setSnapshotTime(LocalDateTime snapshotTime) {
+        this.snapshotTime = snapshotTime;
+    }
+    
+    public Integer getSnapshotKind() {
+        return snapshotKind;
+    }
+    
+    public void setSnapshotKind(Integer snapshotKind) {
+        this.snapshotKind = snapshotKind;
+    }
+    
+    public Integer getRowCount() {
+        return rowCount;
+    }
+    
+    public void setRowCount(Integer rowCount) {
+        this.rowCount = rowCount;
+    }
+    
+    public Boolean getCompressed() {
+        return compressed;
+    }
+    
+    public void setCompressed(Boolean compressed) {
+        this.compressed = compressed;
+    }
+    
+    public byte[] getPayload() {
+        return payload;
+    }
+    
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+    
+    @Override
+    public String toString() {
+        return "OrderBookSnapshotBlob{" +
+                "id=" + id +
+                ", symbol='" + symbol + '\'' +
+                ", marketType=" + marketType +
+                ", snapshotTime=" + snapshotTime +
+                ", snapshotKind=" + snapshotKind +
+                ", rowCount=" + rowCount +
+                ", compressed=" + compressed +
+                ", payloadSize=" + (payload != null ? payload.length : 0) +
+                '}';
+    }
+}
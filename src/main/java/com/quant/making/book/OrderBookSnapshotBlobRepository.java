@@ -0,0 +1,68 @@
+package com.quant.making.book;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 订单簿二进制快照数据访问接口
+ */
+@Repository
+public interface OrderBookSnapshotBlobRepository extends JpaRepository<OrderBookSnapshotBlob, Long> {
+    
+    /**
+     * 查询 (品种, 市场类型) 在指定时刻（含）之前最近的指定类型快照
+     */
+    Optional<OrderBookSnapshotBlob> findFirstBySymbolAndMarketTypeAndSnapshotKindAndSnapshotTimeLessThanEqualOrderBySnapshotTimeDesc(
+            String symbol, Integer marketType, Integer snapshotKind, LocalDateTime asOf);
+    
+    /**
+     * 查询 (品种, 市场类型) 在 (fromTime, toTime] 区间内的增量快照，按时间顺序
+     */
+    @Query("SELECT s FROM OrderBookSnapshotBlob s WHERE s.symbol = :symbol AND s.marketType = :marketType " +
+           "AND s.snapshotKind = " + OrderBookSnapshotBlob.KIND_DELTA + " " +
+           "AND s.snapshotTime > :fromTime AND s.snapshotTime <= :toTime " +
+           "ORDER BY s.snapshotTime, s.id")
+    List<OrderBookSnapshotBlob> findDeltas(
+            @Param("symbol") String symbol,
+            @Param("marketType") Integer marketType,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime);
+    
+    /**
+     * 查询所有有快照的品种
+     */
+    @Query("SELECT DISTINCT s.symbol FROM OrderBookSnapshotBlob s")
+    List<String> findDistinctSymbols();
+    
+    /**
+     * 查询品种有快照的市场类型
+     */
+    @Query("SELECT DISTINCT s.marketType FROM OrderBookSnapshotBlob s WHERE s.symbol = :symbol ORDER BY s.marketType")
+    List<Integer> findSnapshotMarketTypes(@Param("symbol") String symbol);
+    
+    /**
+     * 查询所有有快照的 (品种, 市场类型)
+     * 
+     * @return [symbol, marketType] 列表
+     */
+    @Query("SELECT DISTINCT s.symbol, s.marketType FROM OrderBookSnapshotBlob s")
+    List<Object[]> findSnapshotKeys();
+    
+    /**
+     * 删除 (品种, 市场类型) 在指定时间之前的快照
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OrderBookSnapshotBlob s WHERE s.symbol = :symbol AND s.marketType = :marketType " +
+           "AND s.snapshotTime < :beforeTime")
+    int deleteSnapshotsBefore(@Param("symbol") String symbol, @Param("marketType") Integer marketType,
+                              @Param("beforeTime") LocalDateTime beforeTime);
+}
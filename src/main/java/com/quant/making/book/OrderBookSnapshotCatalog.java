@@ -0,0 +1,112 @@
+package com.quant.making.book;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 订单簿快照目录实体
+ * 对应数据库表 order_book_snapshot_catalog，每个 (symbol, marketType) 一行，指向该订单簿最近一次全量快照，
+ * 恢复时按主键直接定位快照，不再在快照表上求 MAX(snapshot_time)；启动预热按目录枚举全部订单簿
+ */
+@Entity
+@Table(name = "order_book_snapshot_catalog", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_obsc_symbol_market", columnNames = {"symbol", "market_type"})
+})
+public class OrderBookSnapshotCatalog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "symbol", nullable = false, length = 32)
+    private String symbol;
+
+    @Column(name = "market_type", nullable = false)
+    private Integer marketType;
+
+    // 最近一次全量二进制快照的主键（未启用二进制快照存储时为 null，按行快照以快照时间定位）
+    @Column(name = "snapshot_id")
+    private Long snapshotId;
+
+    // 最近一次全量快照时间
+    @Column(name = "snapshot_time", nullable = false)
+    private LocalDateTime snapshotTime;
+
+    // 目录更新时间
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // 默认构造函数
+    public OrderBookSnapshotCatalog() {
+    }
+
+    // 全参构造函数
+    public OrderBookSnapshotCatalog(String symbol, Integer marketType, Long snapshotId, LocalDateTime snapshotTime) {
+        this.symbol = symbol;
+        this.marketType = marketType;
+        this.snapshotId = snapshotId;
+        this.snapshotTime = snapshotTime;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getter 和 Setter
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public Integer getMarketType() {
+        return marketType;
+    }
+
+    public void setMarketType(Integer marketType) {
+        this.marketType = marketType;
+    }
+
+    public Long getSnapshotId() {
+        return snapshotId;
+    }
+
+    public void setSnapshotId(Long snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    public LocalDateTime getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    public void setSnapshotTime(LocalDateTime snapshotTime) {
+        this.snapshotTime = snapshotTime;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderBookSnapshotCatalog{" +
+                "id=" + id +
+                ", symbol='" + symbol + '\'' +
+                ", marketType=" + marketType +
+                ", snapshotId=" + snapshotId +
+                ", snapshotTime=" + snapshotTime +
+                ", updatedAt=" + updatedAt +
+                '}';
+    }
+}
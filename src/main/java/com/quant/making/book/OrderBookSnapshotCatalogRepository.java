@@ -0,0 +1,24 @@
+package com.quant.making.book;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 订单簿快照目录数据访问接口
+ */
+@Repository
+public interface OrderBookSnapshotCatalogRepository extends JpaRepository<OrderBookSnapshotCatalog, Long> {
+
+    /**
+     * 按 (品种, 市场类型) 查询目录项，命中唯一索引
+     */
+    Optional<OrderBookSnapshotCatalog> findBySymbolAndMarketType(String symbol, Integer marketType);
+
+    /**
+     * 查询品种在各市场的目录项，按市场类型排序
+     */
+    List<OrderBookSnapshotCatalog> findBySymbolOrderByMarketType(String symbol);
+}
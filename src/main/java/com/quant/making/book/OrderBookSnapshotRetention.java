@@ -0,0 +1,171 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 快照保留策略执行器
+ * 按行快照先删除整体过期的按日分区（表已分区时），剩余过期记录按主键区间分块删除：
+ * 每块一个短事务，块间停顿，单次持锁时间与块大小成正比而不是与过期数据量成正比；
+ * 超出时间预算时停止，剩余部分留待下次清理
+ *
+ * 保留时长按市场类型配置，二进制快照按 (品种, 市场类型) 保留截止时间前最近的全量快照，其后的增量快照依赖它
+ */
+class OrderBookSnapshotRetention {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookSnapshotRetention.class);
+
+    private final OrderBookRepository entryRepository;
+    private final OrderBookSnapshotBlobRepository blobRepository;
+    private final int defaultRetainHours;
+    private final Map<Integer, Integer> marketRetainHours;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final long maxDurationNanos;
+    private final boolean dropPartitions;
+
+    /**
+     * @param blobRepository 二进制快照仓库，未启用时为 null
+     * @param defaultRetainHours 未单独配置的市场的保留时长（小时）
+     */
+    OrderBookSnapshotRetention(OrderBookRepository entryRepository, OrderBookSnapshotBlobRepository blobRepository,
+                               int defaultRetainHours, OrderBookConfig.Retention config) {
+        this.entryRepository = entryRepository;
+        this.blobRepository = blobRepository;
+        this.defaultRetainHours = defaultRetainHours;
+        this.marketRetainHours = Map.copyOf(config.getMarketRetainHours());
+        this.chunkSize = Math.max(config.getChunkSize(), 1);
+        this.pauseMillis = config.getPauseMillis();
+        this.maxDurationNanos = TimeUnit.SECONDS.toNanos(config.getMaxDurationSeconds());
+        this.dropPartitions = config.isDropPartitions();
+    }
+
+    /**
+     * 市场类型的保留截止时间，早于该时间的快照可以删除
+     */
+    LocalDateTime cutoff(Integer marketType, LocalDateTime now) {
+        return now.minusHours(marketRetainHours.getOrDefault(marketType, defaultRetainHours));
+    }
+
+    /**
+     * 执行一次清理，进度和开销实时写入 report
+     */
+    void run(LocalDateTime now, SnapshotRetentionReport report) {
+        long deadline = System.nanoTime() + maxDurationNanos;
+        boolean completed = false;
+        try {
+            if (blobRepository != null) {
+                cleanupBlobs(now, report);
+            }
+            if (dropPartitions) {
+                dropExpiredPartitions(now, report);
+            }
+            completed = deleteChunks(now, deadline, report);
+        } finally {
+            report.finish(completed);
+            logger.info("Snapshot retention finished: {}", report);
+        }
+    }
+
+    /**
+     * 二进制快照每个快照一行，按 (品种, 市场类型) 删除截止时间前最近的全量快照之前的快照
+     */
+    private void cleanupBlobs(LocalDateTime now, SnapshotRetentionReport report) {
+        for (Object[] key : blobRepository.findSnapshotKeys()) {
+            String symbol = (String) key[0];
+            Integer marketType = (Integer) key[1];
+            Optional<OrderBookSnapshotBlob> base = blobRepository
+                .findFirstBySymbolAndMarketTypeAndSnapshotKindAndSnapshotTimeLessThanEqualOrderBySnapshotTimeDesc(
+                    symbol, marketType, OrderBookSnapshotBlob.KIND_FULL, cutoff(marketType, now));
+            if (base.isPresent()) {
+                report.recordBlobsDeleted(
+                    blobRepository.deleteSnapshotsBefore(symbol, marketType, base.get().getSnapshotTime()));
+            }
+        }
+    }
+
+    /**
+     * 删除上界不晚于最早截止时间的分区：分区内的记录对所有市场都已过期
+     */
+    private void dropExpiredPartitions(LocalDateTime now, SnapshotRetentionReport report) {
+        LocalDateTime earliestCutoff = earliestCutoff(now);
+        for (OrderBookEntryPartitions.Partition partition : entryRepository.findPartitions()) {
+            if (partition.upperBound().isAfter(earliestCutoff)) {
+                break;
+            }
+            entryRepository.dropPartition(partition.name());
+            report.recordPartitionDropped();
+            logger.info("Dropped expired snapshot partition: {}, upperBound={}",
+                    partition.name(), partition.upperBound());
+        }
+    }
+
+    /**
+     * 按主键区间分块删除过期记录，主键上界为最晚截止时间之前的最大主键
+     *
+     * @return 是否在时间预算内处理完全部区间
+     */
+    private boolean deleteChunks(LocalDateTime now, long deadline, SnapshotRetentionReport report) {
+        Long firstId = entryRepository.findMinId();
+        Long lastId = firstId != null ? entryRepository.findMaxIdBefore(latestCutoff(now)) : null;
+        if (firstId == null || lastId == null) {
+            return true;
+        }
+        report.beginChunks(firstId, lastId);
+        for (long fromId = firstId; fromId <= lastId; fromId += chunkSize) {
+            if (System.nanoTime() - deadline > 0) {
+                logger.warn("Snapshot retention stopped at id {} of {}: time budget exhausted", fromId, lastId);
+                return false;
+            }
+            long toId = Math.min(fromId + chunkSize - 1, lastId);
+            long start = System.nanoTime();
+            int deleted = deleteChunk(fromId, toId, now);
+            report.recordChunk(toId, deleted, System.nanoTime() - start);
+            if (pauseMillis > 0 && toId < lastId) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除一个主键区间内的过期记录，单独配置保留时长的市场各自按其截止时间删除
+     */
+    private int deleteChunk(long fromId, long toId, LocalDateTime now) {
+        LocalDateTime defaultCutoff = now.minusHours(defaultRetainHours);
+        if (marketRetainHours.isEmpty()) {
+            return entryRepository.deleteChunk(fromId, toId, defaultCutoff);
+        }
+        int deleted = entryRepository.deleteChunkExcluding(fromId, toId, marketRetainHours.keySet(), defaultCutoff);
+        for (Integer marketType : marketRetainHours.keySet()) {
+            deleted += entryRepository.deleteChunk(fromId, toId, marketType, cutoff(marketType, now));
+        }
+        return deleted;
+    }
+
+    private LocalDateTime earliestCutoff(LocalDateTime now) {
+        int hours = defaultRetainHours;
+        for (int retainHours : marketRetainHours.values()) {
+            hours = Math.max(hours, retainHours);
+        }
+        return now.minusHours(hours);
+    }
+
+    private LocalDateTime latestCutoff(LocalDateTime now) {
+        int hours = defaultRetainHours;
+        for (int retainHours : marketRetainHours.values()) {
+            hours = Math.min(hours, retainHours);
+        }
+        return now.minusHours(hours);
+    }
+}
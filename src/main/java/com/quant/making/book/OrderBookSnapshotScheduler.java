@@ -0,0 +1,194 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 订单簿快照后台调度器
+ * 写线程只负责采集不可变快照并入队，由后台线程异步落库；队列有界，满时丢弃新快照并计数，不阻塞行情更新
+ */
+public class OrderBookSnapshotScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookSnapshotScheduler.class);
+
+    // 后台线程等待新快照的超时，用于及时响应停止
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final BlockingQueue<BookSnapshot> queue;
+    private final Consumer<BookSnapshot> persister;
+    private volatile boolean running;
+    private Thread thread;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    // 以下统计字段仅由后台线程写入
+    private volatile long persistedCount;
+    private volatile long failedCount;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+
+    /**
+     * @param queueCapacity 待落库快照队列容量
+     * @param persister 后台线程上执行的快照持久化
+     */
+    OrderBookSnapshotScheduler(int queueCapacity, Consumer<BookSnapshot> persister) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.persister = persister;
+    }
+
+    /**
+     * 启动后台落库线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "orderbook-snapshot");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("OrderBook snapshot scheduler started: queueCapacity={}", 
+                queue.remainingCapacity() + queue.size());
+    }
+
+    /**
+     * 停止后台线程，队列中剩余的快照会在退出前落库
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("OrderBook snapshot scheduler stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 提交快照，队列满时丢弃
+     *
+     * @return 是否入队成功
+     */
+    public boolean submit(BookSnapshot snapshot) {
+        submittedCount.incrementAndGet();
+        if (queue.offer(snapshot)) {
+            return true;
+        }
+        droppedCount.incrementAndGet();
+        logger.warn("Snapshot queue full, dropped snapshot for symbol: {}", snapshot.getSymbol());
+        return false;
+    }
+
+    /**
+     * 等待队列中的快照全部落库
+     *
+     * @return 超时前是否全部完成
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (persistedCount + failedCount + droppedCount.get() < submittedCount.get()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            BookSnapshot snapshot;
+            try {
+                snapshot = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (snapshot != null) {
+                persist(snapshot);
+            }
+        }
+    }
+
+    private void persist(BookSnapshot snapshot) {
+        try {
+            persister.accept(snapshot);
+            long lag = System.nanoTime() - snapshot.getCaptureNanos();
+            lastLagNanos = lag;
+            if (lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+            persistedCount++;
+        } catch (RuntimeException e) {
+            failedCount++;
+            logger.error("Failed to persist snapshot for symbol: {}", snapshot.getSymbol(), e);
+        }
+    }
+
+    /**
+     * 已提交的快照总数
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * 因队列满而丢弃的快照数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 已落库的快照数
+     */
+    public long getPersistedCount() {
+        return persistedCount;
+    }
+
+    /**
+     * 落库失败的快照数
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * 当前待落库的快照数
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * 最近一次快照从采集到落库完成的延迟（毫秒）
+     */
+    public long getLastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLagNanos);
+    }
+
+    /**
+     * 快照从采集到落库完成的最大延迟（毫秒）
+     */
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos);
+    }
+}
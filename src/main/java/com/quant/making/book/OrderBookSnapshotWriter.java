@@ -0,0 +1,18 @@
+package com.quant.making.book;
+
+import java.util.List;
+
+/**
+ * 订单簿快照批量写入接口
+ * 作为 {@link OrderBookRepository} 的自定义片段，绕过逐行 save 的 IDENTITY 主键回填
+ */
+public interface OrderBookSnapshotWriter {
+
+    /**
+     * 批量写入一次快照的全部记录，在同一事务内提交
+     *
+     * @param entries 快照记录
+     * @return 写入的记录数
+     */
+    int saveSnapshotBatch(List<OrderBookEntry> entries);
+}
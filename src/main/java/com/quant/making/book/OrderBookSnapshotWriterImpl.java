@@ -0,0 +1,45 @@
+package com.quant.making.book;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 订单簿快照批量写入实现
+ * 通过 JdbcTemplate 按批次执行多行插入（MySQL 需开启 rewriteBatchedStatements），一次快照一个事务
+ */
+public class OrderBookSnapshotWriterImpl implements OrderBookSnapshotWriter {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO order_book_entry (symbol, market_type, source, side, price_level, price, quantity, snapshot_time) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private OrderBookConfig orderBookConfig;
+
+    @Override
+    @Transactional
+    public int saveSnapshotBatch(List<OrderBookEntry> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        int batchSize = orderBookConfig != null ? orderBookConfig.getSnapshot().getBatchSize() : 500;
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, batchSize, (ps, entry) -> {
+            ps.setString(1, entry.getSymbol());
+            ps.setInt(2, entry.getMarketType());
+            ps.setString(3, entry.getSource());
+            ps.setInt(4, entry.getSide());
+            ps.setInt(5, entry.getPriceLevel());
+            ps.setBigDecimal(6, entry.getPrice());
+            ps.setBigDecimal(7, entry.getQuantity());
+            ps.setTimestamp(8, Timestamp.valueOf(entry.getSnapshotTime()));
+        });
+        return entries.size();
+    }
+}
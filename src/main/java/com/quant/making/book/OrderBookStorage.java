@@ -0,0 +1,18 @@
+package com.quant.making.book;
+
+/**
+ * 订单簿档位存储方式
+ */
+public enum OrderBookStorage {
+
+    /**
+     * 堆内存储：档位为 PriceLevel 对象，保存在有序跳表中
+     */
+    HEAP,
+
+    /**
+     * 堆外存储：档位以定长记录保存在直接内存缓冲区中，读取时按需构建 PriceLevel，
+     * 适用于品种数量大、堆内档位对象图占满老年代的市场
+     */
+    OFF_HEAP
+}
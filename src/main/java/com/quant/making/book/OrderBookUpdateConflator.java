@@ -0,0 +1,248 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 订单簿更新合并器
+ * 报价更新先按 (品种, 市场类型, 价源, 方向, 价格) 合并到待应用表，价格按数值比较，后台线程按固定周期取走整表，
+ * 每个键只应用合并后的最终状态；突发行情下同一档位的多次更新只入簿一次
+ *
+ * 合并规则与逐笔应用的结果一致：累加与累加相加，替换/删除以最后一次为准，
+ * 替换或删除之后的累加折算为替换
+ */
+public class OrderBookUpdateConflator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookUpdateConflator.class);
+
+    /**
+     * 合并后更新的应用目标
+     */
+    @FunctionalInterface
+    interface Sink {
+        void apply(BookUpdate.Op op, String symbol, Integer marketType, String source,
+                   Integer side, BigDecimal price, BigDecimal quantity);
+    }
+
+    private final Sink sink;
+    private final long drainIntervalNanos;
+
+    // 待应用更新: 合并键 -> 合并后状态，按首次入队顺序应用
+    private Map<Key, Pending> pending = new LinkedHashMap<>();
+    private final Object pendingLock = new Object();
+    // 串行化取表和应用，保证同一键的先后两批不会乱序
+    private final Object drainLock = new Object();
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile long receivedCount;
+    private volatile long conflatedCount;
+    private volatile long appliedCount;
+    private volatile long drainCycles;
+    private volatile long maxLatencyNanos;
+
+    /**
+     * 价格去掉末尾的0后作为键的一部分，不同精度的同一价格（2000 与 2000.00）合并到同一键
+     */
+    private record Key(String symbol, Integer marketType, String source, Integer side, BigDecimal price) {
+        private Key {
+            price = price != null ? price.stripTrailingZeros() : null;
+        }
+    }
+
+    /**
+     * 合并后的待应用状态
+     */
+    private static final class Pending {
+        private BookUpdate.Op op;
+        private BigDecimal quantity;
+        private final long firstNanos;
+
+        private Pending(BookUpdate.Op op, BigDecimal quantity, long firstNanos) {
+            this.op = op;
+            this.quantity = quantity;
+            this.firstNanos = firstNanos;
+        }
+
+        private void merge(BookUpdate.Op next, BigDecimal nextQuantity) {
+            switch (next) {
+                case ADD -> {
+                    if (op == BookUpdate.Op.DELETE) {
+                        op = BookUpdate.Op.REPLACE;
+                        quantity = nextQuantity;
+                    } else {
+                        quantity = quantity.add(nextQuantity);
+                    }
+                }
+                case REPLACE, DELETE -> {
+                    op = next;
+                    quantity = nextQuantity;
+                }
+                default -> throw new IllegalArgumentException("Not a conflatable update: " + next);
+            }
+        }
+    }
+
+    /**
+     * @param drainIntervalMicros 后台线程取表周期（微秒）
+     * @param sink 合并后更新的应用目标
+     */
+    OrderBookUpdateConflator(long drainIntervalMicros, Sink sink) {
+        this.drainIntervalNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(drainIntervalMicros, 1));
+        this.sink = sink;
+    }
+
+    /**
+     * 该操作是否可以合并
+     */
+    static boolean isConflatable(BookUpdate.Op op) {
+        return op == BookUpdate.Op.ADD || op == BookUpdate.Op.REPLACE || op == BookUpdate.Op.DELETE;
+    }
+
+    /**
+     * 启动后台取表线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "orderbook-conflator");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("OrderBook update conflator started: drainIntervalMicros={}",
+                TimeUnit.NANOSECONDS.toMicros(drainIntervalNanos));
+    }
+
+    /**
+     * 停止后台线程，剩余的待应用更新在退出前应用
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.info("OrderBook update conflator stopped: received={}, conflated={}, applied={}",
+                receivedCount, conflatedCount, appliedCount);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 合并一笔报价更新
+     */
+    void offer(BookUpdate.Op op, String symbol, Integer marketType, String source,
+               Integer side, BigDecimal price, BigDecimal quantity) {
+        Key key = new Key(symbol, marketType, source, side, price);
+        synchronized (pendingLock) {
+            Pending existing = pending.get(key);
+            if (existing == null) {
+                pending.put(key, new Pending(op, quantity, System.nanoTime()));
+            } else {
+                existing.merge(op, quantity);
+                conflatedCount++;
+            }
+            receivedCount++;
+        }
+    }
+
+    /**
+     * 立即应用全部待应用更新
+     * 不可合并的操作（全量刷新、移除价源、快照等）提交前调用，保证其不越过之前的报价更新
+     */
+    public void flush() {
+        synchronized (drainLock) {
+            Map<Key, Pending> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            long now = System.nanoTime();
+            long applied = 0;
+            for (Map.Entry<Key, Pending> entry : batch.entrySet()) {
+                Key key = entry.getKey();
+                Pending update = entry.getValue();
+                maxLatencyNanos = Math.max(maxLatencyNanos, now - update.firstNanos);
+                try {
+                    sink.apply(update.op, key.symbol(), key.marketType(), key.source(),
+                               key.side(), key.price(), update.quantity);
+                    applied++;
+                } catch (RuntimeException e) {
+                    logger.error("Failed to apply conflated update: symbol={}, source={}, op={}",
+                            key.symbol(), key.source(), update.op, e);
+                }
+            }
+            appliedCount += applied;
+            drainCycles++;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(drainIntervalNanos);
+            flush();
+        }
+    }
+
+    /**
+     * 收到的更新总数
+     */
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * 被合并、未单独应用的更新数
+     */
+    public long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    /**
+     * 合并后实际应用的更新数
+     */
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    /**
+     * 当前待应用的合并键数
+     */
+    public int getPendingCount() {
+        synchronized (pendingLock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * 已完成的取表周期数
+     */
+    public long getDrainCycles() {
+        return drainCycles;
+    }
+
+    /**
+     * 更新从首次入队到被应用的最大等待时长（纳秒）
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+}
@@ -0,0 +1,89 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 单边价格阶梯
+ * 按价格优先级有序保存某一方向的档位，并随更新维护最优档位
+ * 买方阶梯按价格从高到低排列，卖方阶梯按价格从低到高排列
+ */
+class PriceLadder {
+
+    private final boolean descending;
+    private final ConcurrentNavigableMap<BigDecimal, OrderBook.PriceLevel> levels;
+
+    // 当前最优档位（阶梯头部），随更新维护，读取为 O(1)
+    private volatile OrderBook.PriceLevel best;
+
+    PriceLadder(boolean descending) {
+        this.descending = descending;
+        this.levels = descending
+                ? new ConcurrentSkipListMap<>(Comparator.reverseOrder())
+                : new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * 加入档位（已存在则忽略），并在新档位优于当前最优时更新最优档位
+     */
+    void add(OrderBook.PriceLevel level) {
+        if (levels.putIfAbsent(level.getPrice(), level) != null) {
+            return;
+        }
+        OrderBook.PriceLevel currentBest = best;
+        if (currentBest == null || isBetter(level.getPrice(), currentBest.getPrice())) {
+            best = level;
+        }
+    }
+
+    /**
+     * 移除档位，若移除的是最优档位则取阶梯头部作为新的最优档位
+     */
+    void remove(BigDecimal price) {
+        OrderBook.PriceLevel removed = levels.remove(price);
+        if (removed != null && removed == best) {
+            refreshBest();
+        }
+    }
+
+    boolean contains(BigDecimal price) {
+        return levels.containsKey(price);
+    }
+
+    OrderBook.PriceLevel best() {
+        return best;
+    }
+
+    int size() {
+        return levels.size();
+    }
+
+    /**
+     * 按价格优先级排列的只读档位视图
+     */
+    Collection<OrderBook.PriceLevel> levels() {
+        return Collections.unmodifiableCollection(levels.values());
+    }
+
+    void clear() {
+        levels.clear();
+        best = null;
+    }
+
+    /**
+     * 判断价格 a 是否优于价格 b
+     */
+    boolean isBetter(BigDecimal a, BigDecimal b) {
+        int cmp = a.compareTo(b);
+        return descending ? cmp > 0 : cmp < 0;
+    }
+
+    private void refreshBest() {
+        java.util.Map.Entry<BigDecimal, OrderBook.PriceLevel> head = levels.firstEntry();
+        best = head != null ? head.getValue() : null;
+    }
+}
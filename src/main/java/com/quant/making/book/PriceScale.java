@@ -0,0 +1,139 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 品种定点精度配置
+ * 订单簿内部以 long 定点数保存价格和数量，仅在 API 边界（服务接口、报价引擎、持久化）转换为 BigDecimal
+ *
+ * 价格以 10^-priceScale 为单位、数量以 10^-quantityScale 为单位保存；
+ * 配置了最小变动价位（tick）的品种，价格必须落在 tick 网格上
+ */
+public final class PriceScale {
+
+    // 与 order_book_entry 表 DECIMAL(18, 8) 一致的默认精度
+    public static final int DEFAULT_SCALE = 8;
+
+    /**
+     * 默认精度：价格和数量均保留8位小数，不校验 tick
+     */
+    public static final PriceScale DEFAULT = new PriceScale(DEFAULT_SCALE, 0, DEFAULT_SCALE);
+
+    private final int priceScale;
+    // 最小变动价位（以价格单位计），0 表示不校验
+    private final long tickUnits;
+    private final int quantityScale;
+
+    private PriceScale(int priceScale, long tickUnits, int quantityScale) {
+        this.priceScale = priceScale;
+        this.tickUnits = tickUnits;
+        this.quantityScale = quantityScale;
+    }
+
+    /**
+     * 按最小变动价位和数量精度创建定点配置
+     *
+     * @param tickSize 最小变动价位，例如 0.01
+     * @param quantityScale 数量小数位数
+     */
+    public static PriceScale of(BigDecimal tickSize, int quantityScale) {
+        if (tickSize == null || tickSize.signum() <= 0) {
+            throw new IllegalArgumentException("tickSize must be positive: " + tickSize);
+        }
+        if (quantityScale < 0 || quantityScale > 18) {
+            throw new IllegalArgumentException("quantityScale out of range: " + quantityScale);
+        }
+        BigDecimal tick = tickSize.stripTrailingZeros();
+        int scale = Math.max(tick.scale(), 0);
+        return new PriceScale(scale, tick.movePointRight(scale).longValueExact(), quantityScale);
+    }
+
+    /**
+     * 是否为按 tick 校验的定点模式
+     */
+    public boolean isTickAligned() {
+        return tickUnits > 0;
+    }
+
+    /**
+     * 价格转换为定点价格单位
+     *
+     * @throws IllegalArgumentException 定点模式下价格不在 tick 网格上
+     */
+    public long toPriceUnits(BigDecimal price) {
+        if (!isTickAligned()) {
+            return price.setScale(priceScale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+        long units;
+        try {
+            units = price.setScale(priceScale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Price " + price + " exceeds tick precision " + getTickSize());
+        }
+        if (units % tickUnits != 0) {
+            throw new IllegalArgumentException("Price " + price + " is not a multiple of tick " + getTickSize());
+        }
+        return units;
+    }
+
+    /**
+     * 定点价格单位转换为价格
+     */
+    public BigDecimal toPrice(long priceUnits) {
+        return BigDecimal.valueOf(priceUnits, priceScale);
+    }
+
+    /**
+     * 规范化价格：定点模式对齐到 tick 精度，默认模式保留原始精度（最多8位小数）
+     */
+    public BigDecimal normalizePrice(BigDecimal price) {
+        if (isTickAligned()) {
+            return toPrice(toPriceUnits(price));
+        }
+        return price.scale() > priceScale ? price.setScale(priceScale, RoundingMode.HALF_UP) : price;
+    }
+
+    /**
+     * 数量转换为定点数量单位（超出精度部分四舍五入）
+     */
+    public long toQuantityUnits(BigDecimal quantity) {
+        return quantity.setScale(quantityScale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 定点数量单位转换为数量，去除多余的尾零（如 60.00000000 返回 60）
+     */
+    public BigDecimal toQuantity(long quantityUnits) {
+        return toQuantity(quantityUnits, quantityScale);
+    }
+
+    static BigDecimal toQuantity(long quantityUnits, int quantityScale) {
+        if (quantityUnits == 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal quantity = BigDecimal.valueOf(quantityUnits, quantityScale).stripTrailingZeros();
+        return quantity.scale() < 0 ? quantity.setScale(0) : quantity;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQuantityScale() {
+        return quantityScale;
+    }
+
+    public BigDecimal getTickSize() {
+        return isTickAligned() ? toPrice(tickUnits) : BigDecimal.ONE.movePointLeft(priceScale);
+    }
+
+    @Override
+    public String toString() {
+        return "PriceScale{" +
+                "tickSize=" + getTickSize() +
+                ", priceScale=" + priceScale +
+                ", quantityScale=" + quantityScale +
+                '}';
+    }
+}
@@ -0,0 +1,141 @@
+package com.quant.making.book;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 快照清理进度和开销
+ * 由清理线程在运行过程中更新，可在任意线程读取以观察进度
+ */
+public final class SnapshotRetentionReport {
+
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+    // 是否在时间预算内完成全部清理
+    private volatile boolean completed;
+
+    private volatile int partitionsDropped;
+    private volatile long chunkCount;
+    private volatile long rowsDeleted;
+    private volatile long blobsDeleted;
+    // 单块删除耗时合计和最大值（纳秒），反映清理对数据库的占用
+    private volatile long chunkNanos;
+    private volatile long maxChunkNanos;
+    // 分块清理的主键区间和当前位置
+    private volatile long firstId;
+    private volatile long lastId;
+    private volatile long currentId;
+
+    void recordPartitionDropped() {
+        partitionsDropped++;
+    }
+
+    void beginChunks(long firstId, long lastId) {
+        this.firstId = firstId;
+        this.lastId = lastId;
+        this.currentId = firstId - 1;
+    }
+
+    void recordChunk(long toId, int deleted, long elapsedNanos) {
+        currentId = toId;
+        chunkCount++;
+        rowsDeleted += deleted;
+        chunkNanos += elapsedNanos;
+        maxChunkNanos = Math.max(maxChunkNanos, elapsedNanos);
+    }
+
+    void recordBlobsDeleted(int deleted) {
+        blobsDeleted += deleted;
+    }
+
+    void finish(boolean completed) {
+        this.completed = completed;
+        this.finishNanos = System.nanoTime();
+    }
+
+    /**
+     * 删除的整日分区数
+     */
+    public int getPartitionsDropped() {
+        return partitionsDropped;
+    }
+
+    /**
+     * 已执行的分块删除次数
+     */
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * 分块删除的按行快照记录数
+     */
+    public long getRowsDeleted() {
+        return rowsDeleted;
+    }
+
+    /**
+     * 删除的二进制快照数
+     */
+    public long getBlobsDeleted() {
+        return blobsDeleted;
+    }
+
+    /**
+     * 分块删除的数据库耗时合计（毫秒），不含块间停顿
+     */
+    public long getChunkMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(chunkNanos);
+    }
+
+    /**
+     * 单块删除的最长耗时（毫秒），即清理单次持锁的上限
+     */
+    public long getMaxChunkMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxChunkNanos);
+    }
+
+    /**
+     * 分块清理的完成比例，按已处理的主键区间计算，取值 [0, 1]
+     */
+    public double getProgress() {
+        if (finishNanos != 0L && completed) {
+            return 1.0;
+        }
+        long span = lastId - firstId + 1;
+        return span <= 0 ? 0.0 : Math.min(1.0, (double) (currentId - firstId + 1) / span);
+    }
+
+    /**
+     * 清理是否结束
+     */
+    public boolean isDone() {
+        return finishNanos != 0L;
+    }
+
+    /**
+     * 是否在时间预算内完成全部清理，超出预算时剩余部分留待下次清理
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * 清理耗时（毫秒），未结束时为已进行的时长
+     */
+    public long getElapsedMillis() {
+        long end = finishNanos != 0L ? finishNanos : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotRetentionReport{partitionsDropped=" + partitionsDropped +
+                ", chunks=" + chunkCount +
+                ", rowsDeleted=" + rowsDeleted +
+                ", blobsDeleted=" + blobsDeleted +
+                ", chunkMillis=" + getChunkMillis() +
+                ", maxChunkMillis=" + getMaxChunkMillis() +
+                ", completed=" + completed +
+                ", elapsedMillis=" + getElapsedMillis() + '}';
+    }
+}
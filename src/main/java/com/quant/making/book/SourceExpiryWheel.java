@@ -0,0 +1,248 @@
+package com.quant.making.book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 价源过期时间轮
+ * 每个 (订单簿, 价源) 登记一个条目，按到期时间散列到时间轮槽位；后台线程每个刻度只处理当前槽位中到期的条目：
+ * 价源在过期时长内有更新则按最近更新时间重新散列，否则通知过期处理（由订单簿写者再次确认后移除价源）
+ *
+ * 写者每次更新只记录价源的最近更新时间，新价源首次登记时入队一次，更新为 O(1)；
+ * 每个刻度的开销与到期条目数成正比，不扫描订单簿
+ */
+public class SourceExpiryWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceExpiryWheel.class);
+
+    /**
+     * 价源过期处理
+     */
+    @FunctionalInterface
+    interface ExpiryHandler {
+        void onExpired(OrderBook orderBook, String source);
+    }
+
+    /**
+     * 时间轮条目：一个订单簿中的一个价源
+     */
+    private static final class Entry {
+        private final OrderBook orderBook;
+        private final SourceLevelState state;
+        // 剩余圈数，为0时在所在槽位到期
+        private long rounds;
+
+        private Entry(OrderBook orderBook, SourceLevelState state) {
+            this.orderBook = orderBook;
+            this.state = state;
+        }
+    }
+
+    private final ExpiryHandler handler;
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<Entry>[] wheel;
+    // 各市场槽位的过期时长（纳秒），槽位0为默认值
+    private final long[] ttlNanos = new long[BookPartitions.MARKET_SLOTS];
+    // 写者登记的新条目，由时间轮线程在每个刻度开始时散列到槽位
+    private final Queue<Entry> registrations = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+    private Thread thread;
+    private long tick;
+    private long startNanos;
+
+    private final AtomicLong trackedCount = new AtomicLong();
+    private volatile long expiredCount;
+    private volatile long rescheduledCount;
+    private volatile long tickCount;
+
+    /**
+     * @param defaultTtlNanos 默认过期时长
+     * @param ttlNanosByMarketType 按市场类型覆盖的过期时长
+     * @param tickNanos 刻度时长
+     * @param wheelSize 槽位数（向上取整为2的幂）
+     */
+    @SuppressWarnings("unchecked")
+    SourceExpiryWheel(long defaultTtlNanos, Map<Integer, Long> ttlNanosByMarketType,
+                      long tickNanos, int wheelSize, ExpiryHandler handler) {
+        if (defaultTtlNanos <= 0 || tickNanos <= 0) {
+            throw new IllegalArgumentException("TTL and tick must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.wheel = (ArrayDeque<Entry>[]) new ArrayDeque<?>[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.mask = size - 1;
+        this.tickNanos = tickNanos;
+        this.handler = handler;
+        Arrays.fill(ttlNanos, defaultTtlNanos);
+        if (ttlNanosByMarketType != null) {
+            for (Map.Entry<Integer, Long> entry : ttlNanosByMarketType.entrySet()) {
+                ttlNanos[BookPartitions.slot(entry.getKey())] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * 市场类型对应的过期时长（纳秒）
+     */
+    long ttlNanos(Integer marketType) {
+        return ttlNanos[BookPartitions.slot(marketType)];
+    }
+
+    /**
+     * 登记价源，须在写者上下文中调用；已登记的价源只返回
+     */
+    void track(OrderBook orderBook, String source) {
+        SourceLevelState state = orderBook.sourceStateIfPresent(source);
+        if (state != null && state.markTracked()) {
+            registrations.add(new Entry(orderBook, state));
+            trackedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 启动时间轮线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startNanos = System.nanoTime();
+        thread = new Thread(this::run, "orderbook-source-expiry");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Source expiry wheel started: slots={}, tickMillis={}",
+                wheel.length, TimeUnit.NANOSECONDS.toMillis(tickNanos));
+    }
+
+    /**
+     * 停止时间轮线程，未到期的条目随之丢弃
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Source expiry wheel stopped: expired={}, rescheduled={}", expiredCount, rescheduledCount);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleep = deadline - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue;
+            }
+            try {
+                advance(System.nanoTime());
+            } catch (RuntimeException e) {
+                logger.error("Source expiry tick failed", e);
+            }
+        }
+    }
+
+    /**
+     * 推进一个刻度：散列新登记的条目，处理当前槽位中到期的条目
+     */
+    private void advance(long now) {
+        Entry registered;
+        while ((registered = registrations.poll()) != null) {
+            schedule(registered, registered.state.getLastUpdateNanos());
+        }
+        ArrayDeque<Entry> bucket = wheel[(int) (tick & mask)];
+        int pending = bucket.size();
+        for (int i = 0; i < pending; i++) {
+            Entry entry = bucket.poll();
+            if (entry.rounds > 0) {
+                entry.rounds--;
+                bucket.add(entry);
+                continue;
+            }
+            if (entry.state.isDetached()) {
+                trackedCount.decrementAndGet();
+                continue;
+            }
+            long ttl = ttlNanos(entry.orderBook.getMarketType());
+            long lastUpdate = entry.state.getLastUpdateNanos();
+            if (now - lastUpdate >= ttl) {
+                expiredCount++;
+                try {
+                    handler.onExpired(entry.orderBook, entry.state.getSource());
+                } catch (RuntimeException e) {
+                    logger.error("Failed to expire source {} of {}", entry.state.getSource(),
+                            entry.orderBook.getSymbol(), e);
+                }
+                // 写者确认移除后条目在下次到期时被丢弃；期间恢复更新的价源继续跟踪
+                schedule(entry, now);
+            } else {
+                rescheduledCount++;
+                schedule(entry, lastUpdate);
+            }
+        }
+        tick++;
+        tickCount = tick;
+    }
+
+    /**
+     * 按 fromNanos + ttl 散列条目，至少落在下一个刻度
+     */
+    private void schedule(Entry entry, long fromNanos) {
+        long due = fromNanos + ttlNanos(entry.orderBook.getMarketType());
+        long dueTick = Math.max((due - startNanos + tickNanos - 1) / tickNanos, tick + 1);
+        long ticks = dueTick - tick;
+        entry.rounds = (ticks - 1) / wheel.length;
+        wheel[(int) (dueTick & mask)].add(entry);
+    }
+
+    /**
+     * 跟踪中的 (订单簿, 价源) 条目数
+     */
+    public long getTrackedCount() {
+        return trackedCount.get();
+    }
+
+    /**
+     * 判定过期的价源次数
+     */
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * 到期时仍在更新、按最近更新时间重新散列的次数
+     */
+    public long getRescheduledCount() {
+        return rescheduledCount;
+    }
+
+    /**
+     * 已推进的刻度数
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+}
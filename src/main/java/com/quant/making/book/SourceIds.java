@@ -0,0 +1,59 @@
+package com.quant.making.book;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 价源标识驻留表
+ * 全系统统一的价源编号登记处：为每个价源分配稠密的 int 编号，档位内按编号保存价源数量，
+ * 订单簿的价源状态按编号直接索引，避免逐笔哈希字符串
+ */
+public final class SourceIds {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static int nextId;
+
+    private SourceIds() {
+    }
+
+    /**
+     * 获取价源编号，首次出现时分配
+     * 未标识的价源（null）统一归入空字符串
+     */
+    public static int intern(String source) {
+        String key = source != null ? source : "";
+        Integer id = IDS.get(key);
+        return id != null ? id : register(key);
+    }
+
+    /**
+     * 获取已分配的价源编号，未出现过的价源返回 -1
+     */
+    public static int lookup(String source) {
+        Integer id = IDS.get(source != null ? source : "");
+        return id != null ? id : -1;
+    }
+
+    /**
+     * 根据编号获取价源名称
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    private static synchronized int register(String source) {
+        Integer existing = IDS.get(source);
+        if (existing != null) {
+            return existing;
+        }
+        int id = nextId++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+        }
+        names[id] = source;
+        IDS.put(source, id);
+        return id;
+    }
+}
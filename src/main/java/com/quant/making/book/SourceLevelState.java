@@ -0,0 +1,124 @@
+package com.quant.making.book;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 单个价源在订单簿中的档位状态
+ * 记录该价源每个方向、每个价格当前贡献的数量（定点），
+ * 用于替换/删除/全量刷新时计算聚合数量的增量
+ * 同时记录价源最近一次更新的时间，供价源过期检查使用
+ */
+class SourceLevelState {
+
+    private final String source;
+    private final int sourceId;
+    // price -> {quantityUnits}，使用可变单元避免更新时装箱
+    private final NavigableMap<BigDecimal, long[]> bids = new TreeMap<>();
+    private final NavigableMap<BigDecimal, long[]> asks = new TreeMap<>();
+    // 最近一次更新时间（System.nanoTime），写者更新、过期检查线程读取
+    private volatile long lastUpdateNanos;
+    // 已从订单簿移除，过期检查遇到时丢弃对应条目
+    private volatile boolean detached;
+    // 已登记到过期时间轮，只由写者访问
+    private boolean tracked;
+
+    SourceLevelState(String source) {
+        this.source = source;
+        this.sourceId = SourceIds.intern(source);
+        this.lastUpdateNanos = System.nanoTime();
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    int getSourceId() {
+        return sourceId;
+    }
+
+    /**
+     * 记录价源的一次更新（数量未变化的重复报价同样视为价源仍在发布）
+     */
+    void touch() {
+        lastUpdateNanos = System.nanoTime();
+    }
+
+    long getLastUpdateNanos() {
+        return lastUpdateNanos;
+    }
+
+    void detach() {
+        detached = true;
+    }
+
+    boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * 标记已登记到过期时间轮
+     *
+     * @return 此前是否未登记
+     */
+    boolean markTracked() {
+        if (tracked) {
+            return false;
+        }
+        tracked = true;
+        return true;
+    }
+
+    /**
+     * 获取价源在指定方向和价格上的当前数量
+     */
+    long get(int side, BigDecimal price) {
+        long[] cell = levels(side).get(price);
+        return cell != null ? cell[0] : 0L;
+    }
+
+    /**
+     * 设置价源在指定方向和价格上的数量，数量为0时移除该价格
+     *
+     * @return 原数量
+     */
+    long set(int side, BigDecimal price, long quantityUnits) {
+        NavigableMap<BigDecimal, long[]> levels = levels(side);
+        long[] cell = levels.get(price);
+        long previous = cell != null ? cell[0] : 0L;
+        if (quantityUnits == 0) {
+            if (cell != null) {
+                levels.remove(price);
+            }
+        } else if (cell != null) {
+            cell[0] = quantityUnits;
+        } else {
+            levels.put(price, new long[]{quantityUnits});
+        }
+        return previous;
+    }
+
+    /**
+     * 价源在指定方向上的全部档位（价格升序）
+     */
+    NavigableMap<BigDecimal, long[]> levels(int side) {
+        return side == OrderBook.BUY ? bids : asks;
+    }
+
+    int levelCount() {
+        return bids.size() + asks.size();
+    }
+
+    boolean isEmpty() {
+        return bids.isEmpty() && asks.isEmpty();
+    }
+
+    /**
+     * 价源档位的只读副本，用于全量刷新前确定需要删除的价格
+     */
+    static BigDecimal[] prices(Map<BigDecimal, long[]> levels) {
+        return levels.keySet().toArray(new BigDecimal[0]);
+    }
+}
@@ -0,0 +1,76 @@
+package com.quant.making.book;
+
+import java.util.Arrays;
+
+/**
+ * 档位单边的价源数量
+ * 以紧凑数组保存（价源编号 -> 定点数量），按首次出现顺序排列，遍历无需哈希和过滤
+ */
+final class SourceQuantities {
+
+    private int[] sourceIds = new int[2];
+    private long[] quantityUnits = new long[2];
+    private int count;
+
+    /**
+     * 按增量调整价源数量，数量减至0时移除该价源
+     */
+    void add(int sourceId, long deltaUnits) {
+        for (int i = 0; i < count; i++) {
+            if (sourceIds[i] == sourceId) {
+                quantityUnits[i] += deltaUnits;
+                if (deltaUnits < 0 && quantityUnits[i] <= 0) {
+                    removeAt(i);
+                }
+                return;
+            }
+        }
+        if (deltaUnits < 0) {
+            return;
+        }
+        if (count == sourceIds.length) {
+            sourceIds = Arrays.copyOf(sourceIds, count * 2);
+            quantityUnits = Arrays.copyOf(quantityUnits, count * 2);
+        }
+        sourceIds[count] = sourceId;
+        quantityUnits[count] = deltaUnits;
+        count++;
+    }
+
+    /**
+     * 获取价源数量，不存在返回0
+     */
+    long get(int sourceId) {
+        for (int i = 0; i < count; i++) {
+            if (sourceIds[i] == sourceId) {
+                return quantityUnits[i];
+            }
+        }
+        return 0L;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int sourceIdAt(int index) {
+        return sourceIds[index];
+    }
+
+    long quantityUnitsAt(int index) {
+        return quantityUnits[index];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    private void removeAt(int index) {
+        int tail = count - index - 1;
+        if (tail > 0) {
+            System.arraycopy(sourceIds, index + 1, sourceIds, index, tail);
+            System.arraycopy(quantityUnits, index + 1, quantityUnits, index, tail);
+        }
+        count--;
+    }
+}
@@ -0,0 +1,17 @@
+package com.quant.making.book;
+
+/**
+ * 价源全量刷新请求
+ * 由行情适配器实现：价源序号出现缺口后，订单簿请求适配器重新推送该价源的全量深度，
+ * 适配器收到后以 OrderBookService.refreshSource 带序号提交
+ */
+@FunctionalInterface
+public interface SourceRefreshRequester {
+
+    /**
+     * @param symbol 品种代码
+     * @param marketType 市场类型
+     * @param source 价源标识
+     */
+    void requestRefresh(String symbol, Integer marketType, String source);
+}
@@ -0,0 +1,157 @@
+package com.quant.making.book;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 价源序号跟踪
+ * 按 (品种, 市场类型, 价源) 记录下一条期望的行情序号：序号连续的更新正常应用，
+ * 重复或迟到的更新丢弃，出现缺口时价源被标记为不可靠，之后的增量更新一律丢弃，
+ * 直到该价源以全量刷新重新同步
+ *
+ * 序号检查在提交更新的线程上进行，要求同一价源的行情由一个线程按到达顺序提交
+ */
+public class SourceSequenceTracker {
+
+    /**
+     * 序号检查结果
+     */
+    public enum Result {
+        APPLY,          // 序号连续，应用更新
+        DUPLICATE,      // 重复或迟到的序号，丢弃
+        GAP,            // 出现缺口，价源转为不可靠，丢弃
+        SUSPENDED       // 价源不可靠、等待全量刷新，丢弃
+    }
+
+    /**
+     * 单个价源的序号状态
+     */
+    private static final class SourceSequence {
+        // 下一条期望的序号，0 表示尚未收到任何序号
+        private long expected;
+        private boolean reliable = true;
+        // 缺口发现时间（System.nanoTime）
+        private long gapNanos;
+    }
+
+    private record Key(String symbol, Integer marketType, String source) {
+    }
+
+    private final Map<Key, SourceSequence> sequences = new ConcurrentHashMap<>();
+
+    private final AtomicLong gapCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong recoveryCount = new AtomicLong();
+    private final AtomicLong totalRecoveryNanos = new AtomicLong();
+    private final AtomicLong maxRecoveryNanos = new AtomicLong();
+
+    /**
+     * 检查增量更新的序号
+     */
+    Result check(String symbol, Integer marketType, String source, long sequence) {
+        SourceSequence state = sequences.computeIfAbsent(new Key(symbol, marketType, source),
+                                                         k -> new SourceSequence());
+        synchronized (state) {
+            if (!state.reliable) {
+                droppedCount.incrementAndGet();
+                return Result.SUSPENDED;
+            }
+            if (state.expected == 0 || sequence == state.expected) {
+                state.expected = sequence + 1;
+                return Result.APPLY;
+            }
+            if (sequence < state.expected) {
+                droppedCount.incrementAndGet();
+                return Result.DUPLICATE;
+            }
+            state.reliable = false;
+            state.gapNanos = System.nanoTime();
+            gapCount.incrementAndGet();
+            droppedCount.incrementAndGet();
+            return Result.GAP;
+        }
+    }
+
+    /**
+     * 全量刷新后重新同步：价源恢复可靠，下一条期望序号为刷新序号加1
+     */
+    void resync(String symbol, Integer marketType, String source, long sequence) {
+        SourceSequence state = sequences.computeIfAbsent(new Key(symbol, marketType, source),
+                                                         k -> new SourceSequence());
+        synchronized (state) {
+            if (!state.reliable) {
+                long recoveryNanos = System.nanoTime() - state.gapNanos;
+                recoveryCount.incrementAndGet();
+                totalRecoveryNanos.addAndGet(recoveryNanos);
+                maxRecoveryNanos.accumulateAndGet(recoveryNanos, Math::max);
+                state.reliable = true;
+            }
+            state.expected = sequence + 1;
+        }
+    }
+
+    /**
+     * 价源当前是否可靠（未跟踪序号的价源视为可靠）
+     */
+    public boolean isReliable(String symbol, Integer marketType, String source) {
+        SourceSequence state = sequences.get(new Key(symbol, marketType, source));
+        if (state == null) {
+            return true;
+        }
+        synchronized (state) {
+            return state.reliable;
+        }
+    }
+
+    /**
+     * 当前不可靠、等待全量刷新的价源数
+     */
+    public int getUnreliableCount() {
+        int count = 0;
+        for (SourceSequence state : sequences.values()) {
+            synchronized (state) {
+                if (!state.reliable) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 发现的序号缺口总数
+     */
+    public long getGapCount() {
+        return gapCount.get();
+    }
+
+    /**
+     * 因重复、迟到、缺口或等待刷新而丢弃的更新数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 从缺口恢复的次数
+     */
+    public long getRecoveryCount() {
+        return recoveryCount.get();
+    }
+
+    /**
+     * 从发现缺口到全量刷新完成的平均时长（纳秒），尚未恢复过时为0
+     */
+    public long getAverageRecoveryNanos() {
+        long recoveries = recoveryCount.get();
+        return recoveries > 0 ? totalRecoveryNanos.get() / recoveries : 0L;
+    }
+
+    /**
+     * 从发现缺口到全量刷新完成的最长时长（纳秒）
+     */
+    public long getMaxRecoveryNanos() {
+        return maxRecoveryNanos.get();
+    }
+}
@@ -0,0 +1,57 @@
+package com.quant.making.book;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 品种代码驻留表
+ * 全系统统一的品种编号登记处：为每个品种分配稠密的 int 编号，订单簿分区、报价、风控和持仓的
+ * 按品种状态均以编号直接索引（见 {@link DenseIdTable}），查找时不分配对象
+ */
+public final class SymbolIds {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int nextId;
+
+    private SymbolIds() {
+    }
+
+    /**
+     * 获取品种编号，首次出现（品种上线）时分配
+     */
+    public static int intern(String symbol) {
+        Integer id = IDS.get(symbol);
+        return id != null ? id : register(symbol);
+    }
+
+    /**
+     * 获取已分配的品种编号，未出现过的品种返回 -1
+     */
+    public static int lookup(String symbol) {
+        Integer id = symbol != null ? IDS.get(symbol) : null;
+        return id != null ? id : -1;
+    }
+
+    /**
+     * 根据编号获取品种代码
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    private static synchronized int register(String symbol) {
+        Integer existing = IDS.get(symbol);
+        if (existing != null) {
+            return existing;
+        }
+        int id = nextId++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+        }
+        names[id] = symbol;
+        IDS.put(symbol, id);
+        return id;
+    }
+}
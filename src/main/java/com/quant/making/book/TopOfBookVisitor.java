@@ -0,0 +1,16 @@
+package com.quant.making.book;
+
+/**
+ * 最优报价遍历回调
+ * 版本和买卖两侧深度来自同一次一致读；深度是订单簿已发布的不可变对象，回调不分配对象，也可以在回调之外保留
+ */
+@FunctionalInterface
+public interface TopOfBookVisitor {
+
+    /**
+     * @param version 订单簿版本
+     * @param bids 买方前 N 档深度，最优买价为下标0，为空表示无买方报价
+     * @param asks 卖方前 N 档深度，最优卖价为下标0，为空表示无卖方报价
+     */
+    void visit(OrderBook orderBook, long version, BookDepth bids, BookDepth asks);
+}
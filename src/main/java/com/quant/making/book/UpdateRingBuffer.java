@@ -0,0 +1,133 @@
+package com.quant.making.book;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多生产者、单消费者的预分配环形缓冲区
+ * 生产者通过原子序号领取槽位，填充后按序号标记发布；消费者按序号顺序读取已发布的槽位
+ * 缓冲区满时生产者自旋等待（背压），不丢弃更新
+ * 关闭后不再领取新槽位，消费者处理完关闭前领取的全部槽位后退出
+ */
+class UpdateRingBuffer {
+
+    private final BookUpdate[] slots;
+    // 每个槽位最近一次发布的序号，消费者据此判断槽位是否可读
+    private final AtomicLongArray published;
+    private static final long CLOSED = 1L << 62;
+
+    private final int mask;
+    // 已领取的槽位数，CLOSED 位表示已关闭；领取与关闭在同一原子值上互斥
+    private final AtomicLong claimState = new AtomicLong();
+    // 已消费的最大序号（仅消费者写入）
+    private volatile long consumerSequence = -1;
+    // 因缓冲区满而等待的次数
+    private final AtomicLong backpressureCount = new AtomicLong();
+
+    UpdateRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two: " + capacity);
+        }
+        this.slots = new BookUpdate[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new BookUpdate();
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 领取下一个槽位序号，缓冲区满时等待消费者释放空间
+     *
+     * @return 槽位序号，缓冲区已关闭时返回 -1
+     */
+    long claim() {
+        long state;
+        do {
+            state = claimState.get();
+            if ((state & CLOSED) != 0) {
+                return -1;
+            }
+        } while (!claimState.compareAndSet(state, state + 1));
+        long sequence = state;
+        if (sequence - slots.length > consumerSequence) {
+            backpressureCount.incrementAndGet();
+            while (sequence - slots.length > consumerSequence) {
+                LockSupport.parkNanos(1_000);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * 获取序号对应的槽位（领取后、发布前由生产者填充）
+     */
+    BookUpdate slot(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * 发布已填充的槽位
+     */
+    void publish(long sequence) {
+        published.set((int) (sequence & mask), sequence);
+    }
+
+    /**
+     * 关闭缓冲区，之后的领取返回 -1，已领取的序号不变
+     */
+    void close() {
+        long state;
+        do {
+            state = claimState.get();
+        } while ((state & CLOSED) == 0 && !claimState.compareAndSet(state, state | CLOSED));
+    }
+
+    boolean isClosed() {
+        return (claimState.get() & CLOSED) != 0;
+    }
+
+    /**
+     * 关闭前领取的槽位是否已全部消费
+     */
+    boolean isDrained() {
+        return isClosed() && consumerSequence >= getClaimSequence();
+    }
+
+    /**
+     * 消费者读取下一个已发布的槽位，没有可读槽位时返回 null
+     * 读取后须调用 {@link #release(long)}
+     */
+    BookUpdate poll(long sequence) {
+        int index = (int) (sequence & mask);
+        return published.get(index) == sequence ? slots[index] : null;
+    }
+
+    /**
+     * 消费者释放已处理的槽位
+     */
+    void release(long sequence) {
+        consumerSequence = sequence;
+    }
+
+    long getConsumerSequence() {
+        return consumerSequence;
+    }
+
+    /**
+     * 已领取的最大序号
+     */
+    long getClaimSequence() {
+        return (claimState.get() & ~CLOSED) - 1;
+    }
+
+    long getBackpressureCount() {
+        return backpressureCount.get();
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,104 @@
+package com.quant.making.book;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 订单簿启动预热进度
+ * 预热期间由恢复线程并发累加，可在任意线程读取以观察进度
+ */
+public final class WarmStartProgress {
+
+    private final int total;
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger restoredCount = new AtomicInteger();
+    private final AtomicInteger emptyCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private volatile long finishNanos;
+
+    WarmStartProgress(int total) {
+        this.total = total;
+    }
+
+    void recordRestored() {
+        restoredCount.incrementAndGet();
+    }
+
+    void recordEmpty() {
+        emptyCount.incrementAndGet();
+    }
+
+    void recordFailed() {
+        failedCount.incrementAndGet();
+    }
+
+    void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    /**
+     * 预热目标订单簿数
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * 已恢复的订单簿数
+     */
+    public int getRestoredCount() {
+        return restoredCount.get();
+    }
+
+    /**
+     * 目录中有记录但快照已不存在的订单簿数
+     */
+    public int getEmptyCount() {
+        return emptyCount.get();
+    }
+
+    /**
+     * 恢复失败的订单簿数
+     */
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 已处理（恢复、无快照或失败）的订单簿数
+     */
+    public int getCompletedCount() {
+        return restoredCount.get() + emptyCount.get() + failedCount.get();
+    }
+
+    /**
+     * 完成比例，取值 [0, 1]，没有预热目标时为1
+     */
+    public double getProgress() {
+        return total == 0 ? 1.0 : (double) getCompletedCount() / total;
+    }
+
+    /**
+     * 预热是否结束（全部处理完毕或超时）
+     */
+    public boolean isDone() {
+        return finishNanos != 0L;
+    }
+
+    /**
+     * 预热耗时（毫秒），未结束时为已进行的时长
+     */
+    public long getElapsedMillis() {
+        long end = finishNanos != 0L ? finishNanos : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "WarmStartProgress{total=" + total +
+                ", restored=" + getRestoredCount() +
+                ", empty=" + getEmptyCount() +
+                ", failed=" + getFailedCount() +
+                ", elapsedMillis=" + getElapsedMillis() + '}';
+    }
+}
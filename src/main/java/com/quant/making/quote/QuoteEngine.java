@@ -1,7 +1,10 @@
 package com.quant.making.quote;
 
+import com.quant.making.book.BookDepth;
+import com.quant.making.book.DenseIdTable;
 import com.quant.making.book.OrderBook;
 import com.quant.making.book.OrderBookService;
+import com.quant.making.book.SymbolIds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,8 +16,6 @@ import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -38,14 +39,31 @@ public class QuoteEngine {
     // 报价计数器，用于生成报价序号
     private final AtomicLong quoteCounter = new AtomicLong(0);
     
-    // 缓存的最新报价: symbol -> [buyQuote, sellQuote]
-    private final Map<String, Quote[]> latestQuotesCache = new ConcurrentHashMap<>();
+    // 缓存的最新报价，按品种编号索引: [buyQuote, sellQuote]
+    private final DenseIdTable<Quote[]> latestQuotesCache = new DenseIdTable<>();
     
-    // 缓存的档位报价: symbol -> List<Quote>
-    private final Map<String, List<Quote>> levelQuotesCache = new ConcurrentHashMap<>();
+    // 缓存的档位报价，按品种编号索引
+    private final DenseIdTable<List<Quote>> levelQuotesCache = new DenseIdTable<>();
     
-    // 配置的点差缓冲: symbol -> spread buffer
-    private final Map<String, BigDecimal> spreadBufferConfig = new ConcurrentHashMap<>();
+    // 配置的点差缓冲，按品种编号索引
+    private final DenseIdTable<BigDecimal> spreadBufferConfig = new DenseIdTable<>();
+    
+    // 报价所用订单簿的选择器（未设置时按品种和市场类型取对应分区订单簿）
+    private volatile BookSelector bookSelector;
+    
+    /**
+     * 订单簿选择器
+     * 决定报价基于哪本订单簿，例如境内报价参考境外订单簿
+     */
+    @FunctionalInterface
+    public interface BookSelector {
+        /**
+         * @param symbol 品种代码
+         * @param marketType 报价的市场类型，可能为 null
+         * @return 报价所用订单簿，不存在时返回 null
+         */
+        OrderBook select(String symbol, Integer marketType);
+    }
     
     /**
      * 计算并生成最优报价
@@ -57,22 +75,22 @@ public class QuoteEngine {
     public Quote[] generateBestQuotes(String symbol, Integer marketType) {
         logger.debug("Generating best quotes for symbol: {}", symbol);
         
-        OrderBook orderBook = orderBookService.getOrderBook(symbol);
+        OrderBook orderBook = selectBook(symbol, marketType);
         if (orderBook == null) {
-            logger.warn("OrderBook not found for symbol: {}", symbol);
+            logger.warn("OrderBook not found for symbol: {}, marketType: {}", symbol, marketType);
             return null;
         }
         
-        OrderBook.PriceLevel bestBid = orderBook.getBestBid();
-        OrderBook.PriceLevel bestAsk = orderBook.getBestAsk();
+        // 最优买卖价及数量一次性一致读取，不会读到变更中的档位
+        OrderBook.BestPrices best = orderBook.readBestPrices();
         
-        if (bestBid == null || bestAsk == null) {
+        if (!best.isTwoSided()) {
             logger.warn("Insufficient liquidity for symbol: {}", symbol);
             return null;
         }
         
         // 计算点差
-        BigDecimal rawSpread = bestAsk.getPrice().subtract(bestBid.getPrice());
+        BigDecimal rawSpread = best.getAskPrice().subtract(best.getBidPrice());
         BigDecimal spreadBuffer = getSpreadBuffer(symbol);
         BigDecimal effectiveSpread = rawSpread.compareTo(BigDecimal.ZERO) > 0 
                 ? rawSpread : spreadBuffer;
@@ -80,19 +98,19 @@ public class QuoteEngine {
         // 生成买方报价（最优买价）
         Quote buyQuote = createQuote(
                 symbol, marketType, Quote.BUY,
-                bestBid.getPrice(), bestBid.getTotalBuyQty(),
+                best.getBidPrice(), best.getBidQty(),
                 0, effectiveSpread, "ENGINE"
         );
         
         // 生成卖方报价（最优卖价）
         Quote sellQuote = createQuote(
                 symbol, marketType, Quote.SELL,
-                bestAsk.getPrice(), bestAsk.getTotalSellQty(),
+                best.getAskPrice(), best.getAskQty(),
                 0, effectiveSpread, "ENGINE"
         );
         
         // 缓存最新报价
-        latestQuotesCache.put(symbol, new Quote[]{buyQuote, sellQuote});
+        latestQuotesCache.put(SymbolIds.intern(symbol), new Quote[]{buyQuote, sellQuote});
         
         logger.info("Best quotes generated for {}: Bid={}, Ask={}, Spread={}", 
                 symbol, buyQuote.getPrice(), sellQuote.getPrice(), effectiveSpread);
@@ -111,68 +129,39 @@ public class QuoteEngine {
     public List<Quote> generateLevelQuotes(String symbol, Integer marketType, int levels) {
         logger.debug("Generating {} level quotes for symbol: {}", levels, symbol);
         
-        OrderBook orderBook = orderBookService.getOrderBook(symbol);
+        OrderBook orderBook = selectBook(symbol, marketType);
         if (orderBook == null) {
-            logger.warn("OrderBook not found for symbol: {}", symbol);
+            logger.warn("OrderBook not found for symbol: {}, marketType: {}", symbol, marketType);
             return new ArrayList<>();
         }
         
         List<Quote> quotes = new ArrayList<>();
         BigDecimal spreadBuffer = getSpreadBuffer(symbol);
         
-        // 获取排序后的价格档位
-        Map<BigDecimal, OrderBook.PriceLevel> levelsMap = orderBook.getAggregatedLevels();
-        
-        // 收集所有买价档位
-        List<Map.Entry<BigDecimal, OrderBook.PriceLevel>> bidLevels = new ArrayList<>();
-        // 收集所有卖价档位
-        List<Map.Entry<BigDecimal, OrderBook.PriceLevel>> askLevels = new ArrayList<>();
-        
-        for (Map.Entry<BigDecimal, OrderBook.PriceLevel> entry : levelsMap.entrySet()) {
-            if (entry.getValue().hasBuyOrders()) {
-                bidLevels.add(entry);
-            }
-            if (entry.getValue().hasSellOrders()) {
-                askLevels.add(entry);
-            }
-        }
-        
-        // 按价格排序：买价从高到低，卖价从低到高
-        bidLevels.sort((a, b) -> b.getKey().compareTo(a.getKey()));
-        askLevels.sort((a, b) -> a.getKey().compareTo(b.getKey()));
-        
-        int bidCount = levels > 0 ? Math.min(levels, bidLevels.size()) : bidLevels.size();
-        int askCount = levels > 0 ? Math.min(levels, askLevels.size()) : askLevels.size();
-        
-        // 生成买方多档报价
-        for (int i = 0; i < bidCount; i++) {
-            Map.Entry<BigDecimal, OrderBook.PriceLevel> level = bidLevels.get(i);
-            Quote quote = createQuote(
-                    symbol, marketType, Quote.BUY,
-                    level.getKey(), level.getValue().getTotalBuyQty(),
-                    i, null, "ENGINE"
-            );
-            quotes.add(quote);
-        }
-        
-        // 生成卖方多档报价
-        for (int i = 0; i < askCount; i++) {
-            Map.Entry<BigDecimal, OrderBook.PriceLevel> level = askLevels.get(i);
-            Quote quote = createQuote(
-                    symbol, marketType, Quote.SELL,
-                    level.getKey(), level.getValue().getTotalSellQty(),
-                    i, null, "ENGINE"
-            );
-            quotes.add(quote);
-        }
+        // 买卖两侧深度在同一次一致读中取得，按价格优先级排列：买价从高到低，卖价从低到高
+        BookDepth[] depths = orderBook.readDepth(levels);
+        addDepthQuotes(quotes, symbol, marketType, Quote.BUY, depths[0], levels);
+        addDepthQuotes(quotes, symbol, marketType, Quote.SELL, depths[1], levels);
         
         // 缓存档位报价
-        levelQuotesCache.put(symbol, new ArrayList<>(quotes));
+        levelQuotesCache.put(SymbolIds.intern(symbol), new ArrayList<>(quotes));
         
         logger.info("Generated {} level quotes for {}", quotes.size(), symbol);
         return quotes;
     }
     
+    /**
+     * 按前 N 档深度生成单边多档报价
+     */
+    private void addDepthQuotes(List<Quote> quotes, String symbol, Integer marketType, int side,
+                                BookDepth depth, int levels) {
+        int count = levels > 0 ? Math.min(levels, depth.size()) : depth.size();
+        for (int i = 0; i < count; i++) {
+            quotes.add(createQuote(symbol, marketType, side, depth.getPrice(i), depth.getQuantity(i),
+                                   i, null, "ENGINE"));
+        }
+    }
+    
     /**
      * 计算点差
      * 
@@ -180,19 +169,28 @@ public class QuoteEngine {
      * @return 点差值，如果无法计算则返回null
      */
     public BigDecimal calculateSpread(String symbol) {
-        OrderBook orderBook = orderBookService.getOrderBook(symbol);
+        return calculateSpread(symbol, null);
+    }
+    
+    /**
+     * 计算指定市场订单簿的点差
+     * 
+     * @param symbol 品种代码
+     * @param marketType 市场类型
+     * @return 点差值，如果无法计算则返回null
+     */
+    public BigDecimal calculateSpread(String symbol, Integer marketType) {
+        OrderBook orderBook = selectBook(symbol, marketType);
         if (orderBook == null) {
             return null;
         }
         
-        OrderBook.PriceLevel bestBid = orderBook.getBestBid();
-        OrderBook.PriceLevel bestAsk = orderBook.getBestAsk();
-        
-        if (bestBid == null || bestAsk == null) {
+        OrderBook.BestPrices best = orderBook.readBestPrices();
+        if (!best.isTwoSided()) {
             return null;
         }
         
-        return bestAsk.getPrice().subtract(bestBid.getPrice());
+        return best.getAskPrice().subtract(best.getBidPrice());
     }
     
     /**
@@ -218,19 +216,28 @@ public class QuoteEngine {
      * @return 中间价，如果无法计算则返回null
      */
     public BigDecimal calculateMidPrice(String symbol) {
-        OrderBook orderBook = orderBookService.getOrderBook(symbol);
+        return calculateMidPrice(symbol, null);
+    }
+    
+    /**
+     * 计算指定市场订单簿的中间价
+     * 
+     * @param symbol 品种代码
+     * @param marketType 市场类型
+     * @return 中间价，如果无法计算则返回null
+     */
+    public BigDecimal calculateMidPrice(String symbol, Integer marketType) {
+        OrderBook orderBook = selectBook(symbol, marketType);
         if (orderBook == null) {
             return null;
         }
         
-        OrderBook.PriceLevel bestBid = orderBook.getBestBid();
-        OrderBook.PriceLevel bestAsk = orderBook.getBestAsk();
-        
-        if (bestBid == null || bestAsk == null) {
+        OrderBook.BestPrices best = orderBook.readBestPrices();
+        if (!best.isTwoSided()) {
             return null;
         }
         
-        return bestBid.getPrice().add(bestAsk.getPrice())
+        return best.getBidPrice().add(best.getAskPrice())
                 .divide(new BigDecimal("2"), 8, RoundingMode.HALF_UP);
     }
     
@@ -256,7 +263,7 @@ public class QuoteEngine {
      * @return 包含最优买价和卖价的数组 [buyQuote, sellQuote]
      */
     public Quote[] getLatestQuotes(String symbol) {
-        return latestQuotesCache.get(symbol);
+        return latestQuotesCache.get(SymbolIds.lookup(symbol));
     }
     
     /**
@@ -266,7 +273,7 @@ public class QuoteEngine {
      * @return 档位报价列表
      */
     public List<Quote> getLevelQuotes(String symbol) {
-        return levelQuotesCache.get(symbol);
+        return levelQuotesCache.get(SymbolIds.lookup(symbol));
     }
     
     /**
@@ -276,14 +283,15 @@ public class QuoteEngine {
      * @param buffer 点差缓冲值
      */
     public void setSpreadBuffer(String symbol, BigDecimal buffer) {
-        spreadBufferConfig.put(symbol, buffer);
+        spreadBufferConfig.put(SymbolIds.intern(symbol), buffer);
     }
     
     /**
      * 获取品种的点差缓冲
      */
     private BigDecimal getSpreadBuffer(String symbol) {
-        return spreadBufferConfig.getOrDefault(symbol, DEFAULT_SPREAD_BUFFER);
+        BigDecimal buffer = spreadBufferConfig.get(SymbolIds.lookup(symbol));
+        return buffer != null ? buffer : DEFAULT_SPREAD_BUFFER;
     }
     
     /**
@@ -301,16 +309,13 @@ public class QuoteEngine {
         LocalDateTime now = LocalDateTime.now();
         
         // 检查最新报价过期
-        for (Map.Entry<String, Quote[]> entry : latestQuotesCache.entrySet()) {
-            Quote[] quotes = entry.getValue();
-            if (quotes != null) {
-                for (Quote quote : quotes) {
-                    if (quote != null && !quote.isValid()) {
-                        logger.debug("Quote expired: {}", quote.getQuoteId());
-                    }
+        latestQuotesCache.forEach((symbolId, quotes) -> {
+            for (Quote quote : quotes) {
+                if (quote != null && !quote.isValid()) {
+                    logger.debug("Quote expired: {}", quote.getQuoteId());
                 }
             }
-        }
+        });
     }
     
     /**
@@ -324,8 +329,9 @@ public class QuoteEngine {
             levelQuotesCache.clear();
             logger.info("Cleared all quote caches");
         } else {
-            latestQuotesCache.remove(symbol);
-            levelQuotesCache.remove(symbol);
+            int symbolId = SymbolIds.lookup(symbol);
+            latestQuotesCache.remove(symbolId);
+            levelQuotesCache.remove(symbolId);
             logger.info("Cleared quote cache for symbol: {}", symbol);
         }
     }
@@ -337,28 +343,60 @@ public class QuoteEngine {
      * @return 是否有足够流动性
      */
     public boolean hasSufficientLiquidity(String symbol) {
-        OrderBook orderBook = orderBookService.getOrderBook(symbol);
+        return hasSufficientLiquidity(symbol, null);
+    }
+    
+    /**
+     * 检查指定市场订单簿是否有足够的流动性生成报价
+     * 
+     * @param symbol 品种代码
+     * @param marketType 市场类型
+     * @return 是否有足够流动性
+     */
+    public boolean hasSufficientLiquidity(String symbol, Integer marketType) {
+        OrderBook orderBook = selectBook(symbol, marketType);
         if (orderBook == null) {
             return false;
         }
         
-        return orderBook.getBestBid() != null && orderBook.getBestAsk() != null;
+        return orderBook.readBestPrices().isTwoSided();
     }
     
     /**
      * 获取最优买方报价价格
      */
     public BigDecimal getBestBidPrice(String symbol) {
-        OrderBook.PriceLevel bestBid = orderBookService.getBestBid(symbol);
-        return bestBid != null ? bestBid.getPrice() : null;
+        OrderBook orderBook = selectBook(symbol, null);
+        return orderBook != null ? orderBook.readBestPrices().getBidPrice() : null;
     }
     
     /**
      * 获取最优卖方报价价格
      */
     public BigDecimal getBestAskPrice(String symbol) {
-        OrderBook.PriceLevel bestAsk = orderBookService.getBestAsk(symbol);
-        return bestAsk != null ? bestAsk.getPrice() : null;
+        OrderBook orderBook = selectBook(symbol, null);
+        return orderBook != null ? orderBook.readBestPrices().getAskPrice() : null;
+    }
+    
+    /**
+     * 设置订单簿选择器，为 null 时恢复默认选择（按品种和市场类型取对应分区订单簿）
+     */
+    public void setBookSelector(BookSelector bookSelector) {
+        this.bookSelector = bookSelector;
+    }
+    
+    /**
+     * 选择报价所用订单簿
+     * 未指定市场类型时取品种主分区订单簿
+     */
+    private OrderBook selectBook(String symbol, Integer marketType) {
+        BookSelector selector = bookSelector;
+        if (selector != null) {
+            return selector.select(symbol, marketType);
+        }
+        return marketType != null 
+            ? orderBookService.getOrderBook(symbol, marketType) 
+            : orderBookService.getOrderBook(symbol);
     }
     
     /**
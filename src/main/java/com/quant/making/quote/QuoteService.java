@@ -1,6 +1,8 @@
 package com.quant.making.quote;
 
+import com.quant.making.book.DenseIdTable;
 import com.quant.making.book.OrderBookService;
+import com.quant.making.book.SymbolIds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,14 +29,14 @@ public class QuoteService {
     @Autowired
     protected OrderBookService orderBookService;
     
-    // 当前活跃报价缓存: symbol -> List<Quote>
-    private final Map<String, List<Quote>> activeQuotes = new ConcurrentHashMap<>();
+    // 当前活跃报价缓存，按品种编号索引
+    private final DenseIdTable<List<Quote>> activeQuotes = new DenseIdTable<>();
     
     // 报价历史记录: quoteId -> Quote
     private final Map<String, Quote> quoteHistory = new ConcurrentHashMap<>();
     
-    // 报价统计: symbol -> QuoteStatistics
-    private final Map<String, QuoteStatistics> quoteStats = new ConcurrentHashMap<>();
+    // 报价统计，按品种编号索引
+    private final DenseIdTable<QuoteStatistics> quoteStats = new DenseIdTable<>();
     
     /**
      * 创建新报价
@@ -54,7 +56,7 @@ public class QuoteService {
         quote.activate(); // 激活报价
         
         // 添加到活跃报价列表
-        activeQuotes.computeIfAbsent(symbol, k -> new ArrayList<>()).add(quote);
+        activeQuotes.computeIfAbsent(SymbolIds.intern(symbol), id -> new ArrayList<>()).add(quote);
         
         // 更新统计信息
         updateQuoteStatistics(symbol, quote);
@@ -77,7 +79,7 @@ public class QuoteService {
         
         if (quotes != null) {
             // 添加到活跃报价列表
-            List<Quote> existingQuotes = activeQuotes.computeIfAbsent(symbol, k -> new ArrayList<>());
+            List<Quote> existingQuotes = activeQuotes.computeIfAbsent(SymbolIds.intern(symbol), id -> new ArrayList<>());
             for (Quote quote : quotes) {
                 if (quote != null) {
                     existingQuotes.add(quote);
@@ -110,7 +112,7 @@ public class QuoteService {
         }
         
         // 添加到活跃报价列表
-        List<Quote> existingQuotes = activeQuotes.computeIfAbsent(symbol, k -> new ArrayList<>());
+        List<Quote> existingQuotes = activeQuotes.computeIfAbsent(SymbolIds.intern(symbol), id -> new ArrayList<>());
         existingQuotes.addAll(quotes);
         
         // 更新统计信息
@@ -191,7 +193,7 @@ public class QuoteService {
      * @return 取消的报价数量
      */
     public int cancelAllQuotesForSymbol(String symbol) {
-        List<Quote> symbolQuotes = activeQuotes.get(symbol);
+        List<Quote> symbolQuotes = activeQuotes.get(SymbolIds.lookup(symbol));
         if (symbolQuotes == null || symbolQuotes.isEmpty()) {
             logger.info("No active quotes to cancel for symbol: {}", symbol);
             return 0;
@@ -221,7 +223,7 @@ public class QuoteService {
      * @return 活跃报价列表
      */
     public List<Quote> getActiveQuotes(String symbol) {
-        List<Quote> quotes = activeQuotes.getOrDefault(symbol, new ArrayList<>());
+        List<Quote> quotes = activeQuotesFor(symbol);
         return quotes.stream()
                 .filter(quote -> !quote.isExpired())
                 .collect(Collectors.toList());
@@ -258,7 +260,7 @@ public class QuoteService {
         List<Quote> allQuotes = new ArrayList<>();
         
         // 添加活跃报价
-        List<Quote> activeForSymbol = activeQuotes.getOrDefault(symbol, new ArrayList<>());
+        List<Quote> activeForSymbol = activeQuotesFor(symbol);
         allQuotes.addAll(activeForSymbol.stream()
                 .filter(q -> q.getCreateTime().isAfter(cutoffTime))
                 .collect(Collectors.toList()));
@@ -281,7 +283,7 @@ public class QuoteService {
      * @return 统计信息对象
      */
     public QuoteStatistics getQuoteStatistics(String symbol) {
-        return quoteStats.get(symbol);
+        return quoteStats.get(SymbolIds.lookup(symbol));
     }
     
     /**
@@ -294,10 +296,7 @@ public class QuoteService {
         int expiredCount = 0;
         LocalDateTime now = LocalDateTime.now();
         
-        for (Map.Entry<String, List<Quote>> entry : activeQuotes.entrySet()) {
-            String symbol = entry.getKey();
-            List<Quote> quotes = entry.getValue();
-            
+        for (List<Quote> quotes : activeQuotes.values()) {
             synchronized (quotes) {
                 Iterator<Quote> iterator = quotes.iterator();
                 while (iterator.hasNext()) {
@@ -317,6 +316,14 @@ public class QuoteService {
         return expiredCount;
     }
     
+    /**
+     * 品种的活跃报价列表，品种没有活跃报价时返回空列表
+     */
+    private List<Quote> activeQuotesFor(String symbol) {
+        List<Quote> quotes = activeQuotes.get(SymbolIds.lookup(symbol));
+        return quotes != null ? quotes : new ArrayList<>();
+    }
+    
     /**
      * 根据报价ID查找活跃报价
      *
@@ -340,7 +347,7 @@ public class QuoteService {
      * @param quote 要移除的报价
      */
     private void removeQuoteFromActiveList(Quote quote) {
-        List<Quote> symbolQuotes = activeQuotes.get(quote.getSymbol());
+        List<Quote> symbolQuotes = activeQuotes.get(SymbolIds.lookup(quote.getSymbol()));
         if (symbolQuotes != null) {
             synchronized (symbolQuotes) {
                 symbolQuotes.remove(quote);
@@ -355,7 +362,7 @@ public class QuoteService {
      * @param quote 报价对象
      */
     private void updateQuoteStatistics(String symbol, Quote quote) {
-        QuoteStatistics stats = quoteStats.computeIfAbsent(symbol, k -> new QuoteStatistics());
+        QuoteStatistics stats = quoteStats.computeIfAbsent(SymbolIds.intern(symbol), id -> new QuoteStatistics());
         
         stats.incrementTotalQuotes();
         if (quote.getSide() == Quote.BUY) {
@@ -1,5 +1,7 @@
 package com.quant.making.risk;
 
+import com.quant.making.book.DenseIdTable;
+import com.quant.making.book.SymbolIds;
 import com.quant.making.quote.Quote;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -22,8 +24,8 @@ public class RiskRuleEngine {
     // 存储当日交易统计
     private Map<String, BigDecimal> dailyTradeAmountMap = new HashMap<>();
     
-    // 存储品种持仓统计
-    private Map<String, BigDecimal> positionMap = new HashMap<>();
+    // 存储品种持仓统计，按品种编号索引
+    private DenseIdTable<BigDecimal> positionMap = new DenseIdTable<>();
     
     // 存储最近订单时间戳，用于限频检查 (线程安全队列)
     private ConcurrentLinkedQueue<LocalDateTime> recentOrders = new ConcurrentLinkedQueue<>();
@@ -150,7 +152,11 @@ public class RiskRuleEngine {
      * 检查品种最大持仓限制
      */
     private RiskCheckResult checkPositionLimit(String symbol, BigDecimal quantity) {
-        BigDecimal currentPosition = positionMap.getOrDefault(symbol, BigDecimal.ZERO);
+        // 只查找不分配编号，未出现过的品种持仓为0；通过检查记录持仓时才分配编号
+        BigDecimal currentPosition = positionMap.get(SymbolIds.lookup(symbol));
+        if (currentPosition == null) {
+            currentPosition = BigDecimal.ZERO;
+        }
         BigDecimal newPosition = currentPosition.add(quantity);
         
         if (newPosition.compareTo(riskConfig.getMaxPositionPerSymbol()) > 0) {
@@ -161,7 +167,7 @@ public class RiskRuleEngine {
             return new RiskCheckResult(false, reason, "POSITION_LIMIT");
         }
         
-        positionMap.put(symbol, newPosition);
+        positionMap.put(SymbolIds.intern(symbol), newPosition);
         return new RiskCheckResult(true, "品种持仓检查通过", "POSITION_LIMIT");
     }
     
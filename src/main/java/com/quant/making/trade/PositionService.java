@@ -1,5 +1,7 @@
 package com.quant.making.trade;
 
+import com.quant.making.book.DenseIdTable;
+import com.quant.making.book.SymbolIds;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -7,7 +9,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 持仓服务类
@@ -19,15 +20,15 @@ public class PositionService {
     @Autowired
     private PositionRepository positionRepository;
 
-    // 内存中的持仓缓存，提高访问性能
-    private final ConcurrentHashMap<String, Position> positionCache = new ConcurrentHashMap<>();
+    // 内存中的持仓缓存，按品种编号索引，提高访问性能
+    private final DenseIdTable<Position> positionCache = new DenseIdTable<>();
 
     /**
      * 获取持仓信息
      */
     public synchronized Position getPosition(String symbol) {
         // 先从缓存获取
-        Position cachedPosition = positionCache.get(symbol);
+        Position cachedPosition = positionCache.get(SymbolIds.lookup(symbol));
         if (cachedPosition != null) {
             return cachedPosition;
         }
@@ -43,7 +44,7 @@ public class PositionService {
         }
 
         // 加入缓存
-        positionCache.put(symbol, position);
+        positionCache.put(SymbolIds.intern(symbol), position);
         return position;
     }
 
@@ -60,7 +61,7 @@ public class PositionService {
         position = positionRepository.save(position);
 
         // 更新缓存
-        positionCache.put(symbol, position);
+        positionCache.put(SymbolIds.intern(symbol), position);
 
         return position;
     }
@@ -78,7 +79,7 @@ public class PositionService {
         position = positionRepository.save(position);
 
         // 更新缓存
-        positionCache.put(symbol, position);
+        positionCache.put(SymbolIds.intern(symbol), position);
 
         return position;
     }
@@ -95,7 +96,7 @@ public class PositionService {
             position = positionRepository.save(position);
 
             // 更新缓存
-            positionCache.put(symbol, position);
+            positionCache.put(SymbolIds.intern(symbol), position);
         }
 
         return success;
@@ -113,7 +114,7 @@ public class PositionService {
             position = positionRepository.save(position);
 
             // 更新缓存
-            positionCache.put(symbol, position);
+            positionCache.put(SymbolIds.intern(symbol), position);
         }
 
         return success;
@@ -146,9 +147,9 @@ public class PositionService {
     public void refreshCache(String symbol) {
         Optional<Position> positionOpt = positionRepository.findBySymbol(symbol);
         if (positionOpt.isPresent()) {
-            positionCache.put(symbol, positionOpt.get());
+            positionCache.put(SymbolIds.intern(symbol), positionOpt.get());
         } else {
-            positionCache.remove(symbol);
+            positionCache.remove(SymbolIds.lookup(symbol));
         }
     }
 }
\ No newline at end of file
@@ -3,16 +3,28 @@ package com.quant.making.book;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -26,6 +38,9 @@ class OrderBookServiceTest {
     @Mock
     private OrderBookRepository orderBookRepository;
 
+    @Mock
+    private SourceRefreshRequester sourceRefreshRequester;
+
     @InjectMocks
     private OrderBookService orderBookService;
 
@@ -238,6 +253,44 @@ class OrderBookServiceTest {
             .isEqualByComparingTo(new BigDecimal("30"));
     }
 
+    /**
+     * 测试批量更新按订单簿分组，每个订单簿每批只发布净变化
+     */
+    @Test
+    void testUpdateQuotes_GroupedNotifications() {
+        // Given - 订阅测试品种，批次中两个品种交错
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        List<BookChangeEvent> events = new CopyOnWriteArrayList<>();
+        BookSubscription subscription = orderBookService.subscribe(TEST_SYMBOL, null, events::add);
+        List<OrderBookService.QuoteData> quotes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            quotes.add(new OrderBookService.QuoteData(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                                      OrderBook.BUY, new BigDecimal("100"), new BigDecimal("10")));
+            quotes.add(new OrderBookService.QuoteData("USDJPY", TEST_MARKET_TYPE, TEST_SOURCE,
+                                                      OrderBook.BUY, new BigDecimal("150"), BigDecimal.ONE));
+        }
+        quotes.add(new OrderBookService.QuoteData(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                                  OrderBook.SELL, new BigDecimal("101"), new BigDecimal("20")));
+
+        try {
+            // When - 批量更新报价
+            orderBookService.updateQuotes(quotes);
+            assertThat(subscription.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 两个档位各一条净变化事件，最优价事件只有一条
+            assertThat(events).extracting(BookChangeEvent::getType).containsExactly(
+                BookChangeEvent.Type.LEVEL_ADDED, BookChangeEvent.Type.LEVEL_ADDED,
+                BookChangeEvent.Type.TOP_OF_BOOK_CHANGED);
+            assertThat(events.get(0).getQuantity()).isEqualByComparingTo("30");
+            assertThat(events.get(2).getBestBidQty()).isEqualByComparingTo("30");
+            assertThat(events.get(2).getBestAskPrice()).isEqualByComparingTo("101");
+            assertThat(orderBookService.getBestBid("USDJPY", TEST_MARKET_TYPE).getTotalBuyQty())
+                .isEqualByComparingTo("3");
+        } finally {
+            subscription.cancel();
+        }
+    }
+
     /**
      * 测试快照生成
      */
@@ -253,7 +306,777 @@ class OrderBookServiceTest {
         // When - 手动触发快照
         orderBookService.snapshot(TEST_SYMBOL);
 
-        // Then - 验证快照数据已保存到仓库
-        verify(orderBookRepository, atLeastOnce()).save(any(OrderBookEntry.class));
+        // Then - 验证快照数据已批量保存到仓库
+        verify(orderBookRepository, atLeastOnce()).saveSnapshotBatch(anyList());
+    }
+
+    /**
+     * 测试快照按买卖方向分别保存价源记录
+     * 验证买方记录只包含买方价源数量，卖方记录只包含卖方价源数量
+     */
+    @Test
+    void testSnapshotWritesPerSideSourceRows() {
+        // Given - 同一价格上两个价源分别报买卖
+        BigDecimal price = new BigDecimal("100");
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "SOURCE1",
+                                   OrderBook.BUY, price, new BigDecimal("10"));
+        orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "SOURCE2",
+                                   OrderBook.SELL, price, new BigDecimal("20"));
+        clearInvocations(orderBookRepository);
+
+        // When - 手动触发快照
+        orderBookService.snapshot(TEST_SYMBOL);
+
+        // Then - 一次批量写入，每个价源只在其报价方向上一条记录
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<OrderBookEntry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(orderBookRepository, times(1)).saveSnapshotBatch(captor.capture());
+        verify(orderBookRepository, never()).save(any(OrderBookEntry.class));
+        assertThat(captor.getValue())
+            .extracting(OrderBookEntry::getSource, OrderBookEntry::getSide, OrderBookEntry::getPriceLevel)
+            .containsExactlyInAnyOrder(
+                tuple("SOURCE1", OrderBook.BUY, 1),
+                tuple("SOURCE2", OrderBook.SELL, 1));
+    }
+
+    /**
+     * 测试接入管道下多线程并发更新
+     * 验证同一品种的更新由单写线程应用，累加数量不丢失
+     */
+    @Test
+    void testIngestionPipelineConcurrentUpdates() throws Exception {
+        // Given - 启用2分片接入管道
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startIngestionPipeline(2, 1024);
+        int producers = 4;
+        int updatesPerProducer = 2000;
+        BigDecimal price = new BigDecimal("100");
+
+        try {
+            // When - 多个生产者线程同时向同一品种累加报价
+            Thread[] threads = new Thread[producers];
+            for (int i = 0; i < producers; i++) {
+                String source = "SOURCE" + i;
+                threads[i] = new Thread(() -> {
+                    for (int n = 0; n < updatesPerProducer; n++) {
+                        orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, source,
+                                                   OrderBook.BUY, price, BigDecimal.ONE);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            OrderBookIngestionPipeline pipeline = orderBookService.getIngestionPipeline();
+            assertThat(pipeline.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 所有更新均已入簿
+            OrderBook.PriceLevel bestBid = orderBookService.getBestBid(TEST_SYMBOL);
+            assertThat(bestBid.getTotalBuyQty())
+                .isEqualByComparingTo(new BigDecimal(producers * updatesPerProducer));
+            assertThat(bestBid.getSources()).hasSize(producers);
+            assertThat(pipeline.getAppliedCount()).isEqualTo((long) producers * updatesPerProducer);
+            assertThat(pipeline.getFailedCount()).isZero();
+        } finally {
+            orderBookService.stopIngestionPipeline();
+        }
+    }
+
+    /**
+     * 测试生产者持续发布时停止接入管道
+     * 验证停止前已发布的更新全部应用，停止后的更新改为同步应用，累加数量不丢失
+     */
+    @Test
+    void testStopIngestionPipelineWhilePublishing() throws Exception {
+        // Given - 启用2分片接入管道（小缓冲区以触发背压）
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startIngestionPipeline(2, 64);
+        int producers = 4;
+        int updatesPerProducer = 5000;
+        BigDecimal price = new BigDecimal("100");
+        CountDownLatch started = new CountDownLatch(producers);
+
+        // When - 多个生产者发布期间停止管道
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            String source = "SOURCE" + i;
+            threads[i] = new Thread(() -> {
+                started.countDown();
+                for (int n = 0; n < updatesPerProducer; n++) {
+                    orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, source,
+                                               OrderBook.BUY, price, BigDecimal.ONE);
+                }
+            });
+            threads[i].start();
+        }
+        started.await();
+        orderBookService.stopIngestionPipeline();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertThat(thread.isAlive()).isFalse();
+        }
+
+        // Then - 全部更新均已入簿
+        assertThat(orderBookService.getIngestionPipeline()).isNull();
+        assertThat(orderBookService.getBestBid(TEST_SYMBOL, TEST_MARKET_TYPE).getTotalBuyQty())
+            .isEqualByComparingTo(new BigDecimal(producers * updatesPerProducer));
+    }
+
+    /**
+     * 测试接入管道启用时清空订单簿
+     * 验证清空经写者屏障执行，清空前已发布的更新先于清空应用，不会在清空后重建订单簿
+     */
+    @Test
+    void testClearOrderBookOrderedWithPublishedUpdates() {
+        // Given - 启用2分片接入管道，两个品种各发布一批更新
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startIngestionPipeline(2, 1024);
+        try {
+            for (int n = 0; n < 2000; n++) {
+                orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                           OrderBook.BUY, new BigDecimal("100"), BigDecimal.ONE);
+                orderBookService.updateQuote("USDJPY", TEST_MARKET_TYPE, TEST_SOURCE,
+                                           OrderBook.BUY, new BigDecimal("150"), BigDecimal.ONE);
+            }
+
+            // When - 立即清空其中一个品种
+            orderBookService.clearOrderBook(TEST_SYMBOL);
+            OrderBookIngestionPipeline pipeline = orderBookService.getIngestionPipeline();
+            assertThat(pipeline.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 被清空的品种不再存在，另一品种的更新全部应用
+            assertThat(orderBookService.getOrderBook(TEST_SYMBOL, TEST_MARKET_TYPE)).isNull();
+            assertThat(orderBookService.getBestBid("USDJPY", TEST_MARKET_TYPE).getTotalBuyQty())
+                .isEqualByComparingTo("2000");
+
+            // When - 清空全部后继续更新
+            orderBookService.clearAllOrderBooks();
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE);
+            assertThat(pipeline.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+
+            // Then
+            assertThat(orderBookService.getAllOrderBooks()).containsOnlyKeys(TEST_SYMBOL);
+            assertThat(pipeline.getFailedCount()).isZero();
+        } finally {
+            orderBookService.stopIngestionPipeline();
+        }
+    }
+
+    /**
+     * 测试快照后台异步落库
+     * 验证更新线程只采集快照，落库由后台线程完成并记录延迟
+     */
+    @Test
+    void testAsyncSnapshotScheduler() {
+        // Given - 启用快照调度器
+        orderBookService.startSnapshotScheduler(16);
+
+        try {
+            // When - 首次更新触发快照
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.BUY, new BigDecimal("100"), new BigDecimal("10"));
+            OrderBookSnapshotScheduler scheduler = orderBookService.getSnapshotScheduler();
+            assertThat(scheduler.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 快照已由后台线程落库
+            verify(orderBookRepository, times(1)).saveSnapshotBatch(anyList());
+            assertThat(scheduler.getPersistedCount()).isEqualTo(1);
+            assertThat(scheduler.getDroppedCount()).isZero();
+        } finally {
+            orderBookService.stopSnapshotScheduler();
+        }
+    }
+
+    /**
+     * 测试快照队列满时丢弃
+     * 验证落库阻塞时新快照被丢弃并计数，不阻塞提交方
+     */
+    @Test
+    void testSnapshotSchedulerDropsWhenQueueFull() throws Exception {
+        // Given - 落库被阻塞、队列容量为1的调度器
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OrderBookSnapshotScheduler scheduler = new OrderBookSnapshotScheduler(1, snapshot -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        scheduler.start();
+        OrderBook orderBook = new OrderBook(TEST_SYMBOL, TEST_MARKET_TYPE);
+
+        try {
+            // When - 连续提交快照
+            scheduler.submit(BookSnapshot.capture(orderBook, null));
+            // 等待后台线程取走第一个快照并阻塞在落库中
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+            scheduler.submit(BookSnapshot.capture(orderBook, null));
+            boolean accepted = scheduler.submit(BookSnapshot.capture(orderBook, null));
+
+            // Then - 超出队列容量的快照被丢弃
+            assertThat(accepted).isFalse();
+            assertThat(scheduler.getDroppedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            scheduler.stop();
+        }
+        assertThat(scheduler.getPersistedCount()).isEqualTo(2);
+    }
+
+    /**
+     * 测试按市场类型分区的订单簿
+     * 验证同一品种的境内、境外报价进入各自的订单簿，未指定市场类型时取主分区
+     */
+    @Test
+    void testMarketTypePartitionedBooks() {
+        // Given - 同一品种在境内黄金和境外市场的报价
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, "FOREIGN_BANK",
+                                   OrderBook.BUY, new BigDecimal("2001.00"), new BigDecimal("5"));
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, "DIMPLE",
+                                   OrderBook.BUY, new BigDecimal("2000.00"), new BigDecimal("10"));
+
+        // When - 未指定市场类型删除报价
+        orderBookService.deleteQuote("XAUUSD", "DIMPLE", OrderBook.BUY, new BigDecimal("2000.00"));
+
+        // Then - 两个市场的订单簿互相独立，删除作用于主分区（境内黄金）
+        OrderBook domestic = orderBookService.getOrderBook("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD);
+        OrderBook offshore = orderBookService.getOrderBook("XAUUSD", OrderBook.MARKET_OFFSHORE);
+        assertThat(domestic).isNotSameAs(offshore);
+        assertThat(orderBookService.getOrderBook("XAUUSD")).isSameAs(domestic);
+        assertThat(domestic.getBestBid()).isNull();
+        assertThat(offshore.getBestBid().getPrice()).isEqualByComparingTo("2001.00");
+        assertThat(orderBookService.getAllOrderBooks(OrderBook.MARKET_OFFSHORE)).containsOnlyKeys("XAUUSD");
+
+        // When - 清空境外分区
+        orderBookService.clearOrderBook("XAUUSD", OrderBook.MARKET_OFFSHORE);
+
+        // Then - 境内分区保留
+        assertThat(orderBookService.getOrderBook("XAUUSD", OrderBook.MARKET_OFFSHORE)).isNull();
+        assertThat(orderBookService.getOrderBook("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD)).isSameAs(domestic);
+    }
+
+    /**
+     * 测试不支持的市场类型
+     * 验证更新在入口处以明确的异常拒绝且不创建订单簿、整批报价都不应用，查询返回 null 或不回调
+     */
+    @Test
+    void testUnsupportedMarketType() {
+        // Given
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        List<OrderBookService.QuoteData> batch = List.of(
+            new OrderBookService.QuoteData("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, "DIMPLE",
+                                           OrderBook.BUY, new BigDecimal("2000.00"), new BigDecimal("10")),
+            new OrderBookService.QuoteData("XAUUSD", 4, "DIMPLE",
+                                           OrderBook.BUY, new BigDecimal("1999.00"), new BigDecimal("10")));
+
+        // When / Then - 更新被拒绝
+        for (Integer marketType : new Integer[]{0, 4}) {
+            assertThatThrownBy(() -> orderBookService.updateQuote("XAUUSD", marketType, "DIMPLE",
+                    OrderBook.BUY, new BigDecimal("2000.00"), new BigDecimal("10")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unsupported market type: " + marketType);
+        }
+        assertThatThrownBy(() -> orderBookService.updateQuotes(batch))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> orderBookService.startSourceExpiry(1000, Map.of(4, 500L), 10, 64))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(orderBookService.getOrderBook("XAUUSD")).isNull();
+
+        // When / Then - 查询视为没有订单簿
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, "DIMPLE",
+                                   OrderBook.BUY, new BigDecimal("2000.00"), new BigDecimal("10"));
+        List<OrderBook> visited = new ArrayList<>();
+        orderBookService.forEachOrderBook(4, null, visited::add);
+        assertThat(orderBookService.getOrderBook("XAUUSD", 4)).isNull();
+        assertThat(orderBookService.getBestBid("XAUUSD", 4)).isNull();
+        assertThat(orderBookService.getAllOrderBooks(4)).isEmpty();
+        assertThat(visited).isEmpty();
+        assertThat(orderBookService.getBestBid("XAUUSD").getPrice()).isEqualByComparingTo("2000.00");
+    }
+
+    /**
+     * 测试按市场隔离写线程的接入管道
+     * 验证不同市场的分区路由到不同写线程组，更新均正确入簿
+     */
+    @Test
+    void testIngestionPipelineIsolatesMarketTypes() {
+        // Given - 每个市场1个写线程
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startIngestionPipeline(1, 1024, true);
+
+        try {
+            OrderBookIngestionPipeline pipeline = orderBookService.getIngestionPipeline();
+            assertThat(pipeline.getShardCount()).isEqualTo(BookPartitions.MARKET_SLOTS);
+            assertThat(pipeline.shardIndex("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD))
+                .isNotEqualTo(pipeline.shardIndex("XAUUSD", OrderBook.MARKET_OFFSHORE));
+
+            // When - 两个市场同时更新同一品种
+            for (int i = 0; i < 100; i++) {
+                orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, TEST_SOURCE,
+                                           OrderBook.BUY, new BigDecimal("2000.00"), BigDecimal.ONE);
+                orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                           OrderBook.BUY, new BigDecimal("2001.00"), new BigDecimal("2"));
+            }
+            assertThat(pipeline.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 各分区数量互不干扰
+            assertThat(orderBookService.getBestBid("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD).getTotalBuyQty())
+                .isEqualByComparingTo("100");
+            assertThat(orderBookService.getBestBid("XAUUSD", OrderBook.MARKET_OFFSHORE).getTotalBuyQty())
+                .isEqualByComparingTo("200");
+        } finally {
+            orderBookService.stopIngestionPipeline();
+        }
+    }
+
+    /**
+     * 测试跨市场合并订单簿视图
+     * 验证按价格优先级归并各市场档位，同价档位数量合并，视图只读
+     */
+    @Test
+    void testConsolidatedOrderBook() {
+        // Given - 境内黄金和境外市场的买方深度，2000.00 两个市场都有报价
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, "DIMPLE",
+                                   OrderBook.BUY, new BigDecimal("2000.00"), new BigDecimal("10"));
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, "DIMPLE",
+                                   OrderBook.BUY, new BigDecimal("1999.00"), new BigDecimal("20"));
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, "FOREIGN_BANK",
+                                   OrderBook.BUY, new BigDecimal("2000.50"), new BigDecimal("5"));
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, "FOREIGN_BANK",
+                                   OrderBook.BUY, new BigDecimal("2000.00"), new BigDecimal("7"));
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, "FOREIGN_BANK",
+                                   OrderBook.SELL, new BigDecimal("2001.00"), new BigDecimal("3"));
+
+        // When - 获取合并视图
+        ConsolidatedOrderBook consolidated = orderBookService.getConsolidatedOrderBook("XAUUSD");
+
+        // Then - 买方按价格从高到低归并，同价档位合并数量和价源
+        assertThat(consolidated.getPartitionCount()).isEqualTo(2);
+        assertThat(consolidated.getBidLevels())
+            .extracting(level -> level.getPrice().stripTrailingZeros().toPlainString(),
+                        level -> level.getTotalBuyQty().stripTrailingZeros().toPlainString())
+            .containsExactly(tuple("2000.5", "5"), tuple("2000", "17"), tuple("1999", "20"));
+        assertThat(consolidated.getBidDepth()).isEqualTo(3);
+        OrderBook.PriceLevel merged = consolidated.getBidLevels().stream().skip(1).findFirst().orElseThrow();
+        assertThat(merged.getBuySources()).containsOnlyKeys("DIMPLE", "FOREIGN_BANK");
+        assertThat(consolidated.getBestAsk().getPrice()).isEqualByComparingTo("2001.00");
+
+        // 只合并指定市场
+        assertThat(orderBookService.getConsolidatedOrderBook("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD)
+            .getBestBid().getPrice()).isEqualByComparingTo("2000.00");
+        assertThat(orderBookService.getConsolidatedOrderBook("UNKNOWN")).isNull();
+
+        // 视图只读
+        assertThatThrownBy(() -> consolidated.addQuote("X", OrderBook.BUY, BigDecimal.ONE, BigDecimal.ONE))
+            .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * 测试订单簿变更订阅
+     * 验证档位新增、移除和最优价变化均以带序号的事件推送给订阅者
+     */
+    @Test
+    void testBookChangeSubscription() {
+        // Given - 订阅测试品种
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        List<BookChangeEvent> events = new CopyOnWriteArrayList<>();
+        BookSubscription subscription = orderBookService.subscribe(TEST_SYMBOL, null, events::add);
+
+        try {
+            // When - 新增最优买价，再删除
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.BUY, new BigDecimal("100"), new BigDecimal("10"));
+            assertThat(subscription.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+            orderBookService.deleteQuote(TEST_SYMBOL, TEST_SOURCE, OrderBook.BUY, new BigDecimal("100"));
+            orderBookService.updateQuote("USDJPY", TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.BUY, new BigDecimal("150"), new BigDecimal("10"));
+            assertThat(subscription.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 只收到订阅品种的事件，序号递增
+            assertThat(events).extracting(BookChangeEvent::getType).containsExactly(
+                BookChangeEvent.Type.LEVEL_ADDED, BookChangeEvent.Type.TOP_OF_BOOK_CHANGED,
+                BookChangeEvent.Type.LEVEL_REMOVED, BookChangeEvent.Type.TOP_OF_BOOK_CHANGED);
+            assertThat(events).extracting(BookChangeEvent::getSequence).isSorted();
+            assertThat(events.get(1).getBestBidPrice()).isEqualByComparingTo("100");
+            assertThat(events.get(3).getBestBidPrice()).isNull();
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * 测试慢订阅者的事件合并
+     * 验证监听器阻塞时写者不被阻塞，积压的同一档位事件合并为最新状态
+     */
+    @Test
+    void testSlowSubscriberConflation() throws Exception {
+        // Given - 第一个事件处阻塞的订阅者
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        CountDownLatch release = new CountDownLatch(1);
+        List<BookChangeEvent> events = new CopyOnWriteArrayList<>();
+        BookSubscription subscription = orderBookService.subscribe(event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        });
+
+        try {
+            // When - 监听器阻塞期间连续更新同一档位
+            for (int i = 0; i < 100; i++) {
+                orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                           OrderBook.BUY, new BigDecimal("100"), BigDecimal.ONE);
+            }
+            release.countDown();
+            assertThat(subscription.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 更新全部完成，积压事件被合并，最后收到的最优价为最新状态
+            assertThat(orderBookService.getBestBid(TEST_SYMBOL).getTotalBuyQty()).isEqualByComparingTo("100");
+            assertThat(subscription.getConflatedCount()).isPositive();
+            assertThat(events.size()).isLessThan(200);
+            BookChangeEvent last = events.stream()
+                .filter(e -> e.getType() == BookChangeEvent.Type.TOP_OF_BOOK_CHANGED)
+                .reduce((a, b) -> b).orElseThrow();
+            assertThat(last.getBestBidQty()).isEqualByComparingTo("100");
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * 测试合并后的事件顺序
+     * 验证多个档位交替更新、积压事件被合并时，订阅者收到的事件序号仍然严格递增
+     */
+    @Test
+    void testConflatedEventsDeliveredInSequenceOrder() throws Exception {
+        // Given - 第一个事件处阻塞的订阅者，分发线程已进入监听器
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<BookChangeEvent> events = new CopyOnWriteArrayList<>();
+        BookSubscription subscription = orderBookService.subscribe(event -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        });
+
+        try {
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.SELL, new BigDecimal("101"), BigDecimal.ONE);
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // When - 监听器阻塞期间交替更新两个档位，全部事件积压在同一批次中
+            for (int i = 0; i < 50; i++) {
+                BigDecimal price = i % 2 == 0 ? new BigDecimal("99") : new BigDecimal("100");
+                orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                           OrderBook.BUY, price, BigDecimal.valueOf(i + 1));
+            }
+            release.countDown();
+            assertThat(subscription.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 积压事件被合并，分发顺序与事件序号一致
+            assertThat(subscription.getConflatedCount()).isPositive();
+            assertThat(events).extracting(BookChangeEvent::getSequence).isSorted().doesNotHaveDuplicates();
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * 测试多个分片写者并发投递时的事件顺序
+     * 验证订阅全部品种时，不同写线程投递的事件仍按序号严格递增分发，同一订单簿的事件按变更顺序到达
+     */
+    @Test
+    void testEventsFromShardWritersDeliveredInSequenceOrder() throws Exception {
+        // Given - 4分片接入管道，订阅全部品种
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startIngestionPipeline(4, 1024);
+        List<BookChangeEvent> events = new CopyOnWriteArrayList<>();
+        BookSubscription subscription = orderBookService.subscribe(events::add);
+        int symbols = 8;
+        int updatesPerSymbol = 500;
+
+        try {
+            // When - 每个品种一个生产者线程，更新经各自分片的写线程应用
+            Thread[] threads = new Thread[symbols];
+            for (int i = 0; i < symbols; i++) {
+                String symbol = "SYM" + i;
+                threads[i] = new Thread(() -> {
+                    for (int n = 1; n <= updatesPerSymbol; n++) {
+                        orderBookService.updateQuote(symbol, TEST_MARKET_TYPE, TEST_SOURCE,
+                                                   OrderBook.BUY, new BigDecimal("100"), BigDecimal.ONE);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertThat(orderBookService.getIngestionPipeline().awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(subscription.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+
+            // Then - 分发顺序与序号一致，每个品种的最优买量按更新顺序递增
+            assertThat(events).extracting(BookChangeEvent::getSequence).isSorted().doesNotHaveDuplicates();
+            assertThat(subscription.getLastSequence()).isEqualTo(events.get(events.size() - 1).getSequence());
+            for (int i = 0; i < symbols; i++) {
+                String symbol = "SYM" + i;
+                assertThat(events.stream()
+                        .filter(e -> e.getSymbol().equals(symbol) && e.getType() == BookChangeEvent.Type.TOP_OF_BOOK_CHANGED)
+                        .map(BookChangeEvent::getBestBidQty).toList())
+                    .isSortedAccordingTo(BigDecimal::compareTo)
+                    .last().satisfies(qty -> assertThat(qty).isEqualByComparingTo(String.valueOf(updatesPerSymbol)));
+            }
+        } finally {
+            subscription.cancel();
+            orderBookService.stopIngestionPipeline();
+        }
+    }
+
+    @Test
+    void testUpdateConflation() {
+        // Given - 合并周期足够长，更新只在显式提交时应用
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startConflation(TimeUnit.SECONDS.toMicros(60));
+
+        try {
+            OrderBookUpdateConflator conflator = orderBookService.getConflator();
+
+            // When - 同一档位的突发累加（价格精度不同），另一档位先删除后累加
+            for (int i = 0; i < 100; i++) {
+                BigDecimal price = i % 2 == 0 ? new BigDecimal("2000.00") : new BigDecimal("2000");
+                orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                           OrderBook.BUY, price, BigDecimal.ONE);
+            }
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.SELL, new BigDecimal("2001.00"), new BigDecimal("5"));
+            orderBookService.deleteQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.SELL, new BigDecimal("2001"));
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                       OrderBook.SELL, new BigDecimal("2001.0"), new BigDecimal("3"));
+
+            // Then - 提交前只有两个待应用档位，订单簿尚未变化
+            assertThat(conflator.getPendingCount()).isEqualTo(2);
+            assertThat(orderBookService.getOrderBook(TEST_SYMBOL, TEST_MARKET_TYPE)).isNull();
+
+            conflator.flush();
+
+            // Then - 每个档位只应用一次，结果与逐笔应用一致
+            assertThat(conflator.getReceivedCount()).isEqualTo(103);
+            assertThat(conflator.getConflatedCount()).isEqualTo(101);
+            assertThat(conflator.getAppliedCount()).isEqualTo(2);
+            assertThat(conflator.getPendingCount()).isZero();
+            assertThat(orderBookService.getBestBid(TEST_SYMBOL, TEST_MARKET_TYPE).getTotalBuyQty())
+                .isEqualByComparingTo("100");
+            assertThat(orderBookService.getBestAsk(TEST_SYMBOL, TEST_MARKET_TYPE).getTotalSellQty())
+                .isEqualByComparingTo("3");
+        } finally {
+            orderBookService.stopConflation();
+        }
+
+        // Then - 停止后更新直接应用
+        orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("2000.00"), BigDecimal.ONE);
+        assertThat(orderBookService.getBestBid(TEST_SYMBOL, TEST_MARKET_TYPE).getTotalBuyQty())
+            .isEqualByComparingTo("101");
+    }
+
+    @Test
+    void testStaleSourceExpiry() {
+        // Given - 过期时长100毫秒，刻度10毫秒
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startSourceExpiry(100, Map.of(OrderBook.MARKET_OFFSHORE, 60_000L), 10, 64);
+
+        try {
+            // When - 停止发布的价源报出最优买价，另一价源持续更新
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "STALE",
+                                       OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE);
+            // 持续更新直到停止发布的价源被移除，且持续更新的价源至少在到期时被重新散列一次
+            SourceExpiryWheel wheel = orderBookService.getSourceExpiryWheel();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            do {
+                orderBookService.replaceQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "LIVE",
+                                            OrderBook.BUY, new BigDecimal("100"), BigDecimal.TEN);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            } while ((orderBookService.getOrderBook(TEST_SYMBOL, TEST_MARKET_TYPE).getSourceNames().contains("STALE")
+                      || wheel.getRescheduledCount() == 0)
+                     && System.nanoTime() < deadline);
+            // 刷新后立即读取状态，断言耗时不计入持续更新价源的过期时长
+            orderBookService.replaceQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "LIVE",
+                                        OrderBook.BUY, new BigDecimal("100"), BigDecimal.TEN);
+            Set<String> sources = orderBookService.getOrderBook(TEST_SYMBOL, TEST_MARKET_TYPE).getSourceNames();
+            OrderBook.PriceLevel bestBid = orderBookService.getBestBid(TEST_SYMBOL, TEST_MARKET_TYPE);
+            long expired = wheel.getExpiredCount();
+            long rescheduled = wheel.getRescheduledCount();
+
+            // Then - 只有停止发布的价源被移除，最优买价回到持续更新的价源
+            assertThat(sources).containsExactly("LIVE");
+            assertThat(bestBid).isNotNull();
+            assertThat(bestBid.getPrice()).isEqualByComparingTo("100");
+            assertThat(expired).isGreaterThanOrEqualTo(1);
+            assertThat(rescheduled).isGreaterThan(0);
+        } finally {
+            orderBookService.stopSourceExpiry();
+        }
+    }
+
+    @Test
+    void testSequenceGapSuspendsSourceUntilRefresh() {
+        // Given - 两个价源，GAPPY 按序号提交
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        BigDecimal price = new BigDecimal("100");
+        orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "OTHER", OrderBook.BUY, price, BigDecimal.ONE);
+        assertThat(orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY",
+                                                OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE, 1)).isTrue();
+        assertThat(orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY",
+                                                OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE, 2)).isTrue();
+
+        // When - 序号3丢失，之后的更新被丢弃
+        assertThat(orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY",
+                                                OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE, 4)).isFalse();
+        assertThat(orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY",
+                                                OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE, 5)).isFalse();
+
+        // Then - 价源报价被移出最优价计算并请求全量刷新
+        SourceSequenceTracker tracker = orderBookService.getSequenceTracker();
+        verify(sourceRefreshRequester).requestRefresh(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY");
+        assertThat(tracker.isReliable(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY")).isFalse();
+        assertThat(orderBookService.getBestBid(TEST_SYMBOL, TEST_MARKET_TYPE).getPrice()).isEqualByComparingTo(price);
+
+        // When - 全量刷新后继续按序号更新
+        orderBookService.refreshSource(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY",
+                                       Map.of(new BigDecimal("101"), new BigDecimal("3")), Map.of(), 10);
+        assertThat(orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY",
+                                                OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE, 11)).isTrue();
+
+        // Then - 价源恢复，指标记录缺口、丢弃和恢复
+        assertThat(orderBookService.getBestBid(TEST_SYMBOL, TEST_MARKET_TYPE).getTotalBuyQty())
+            .isEqualByComparingTo("4");
+        assertThat(tracker.isReliable(TEST_SYMBOL, TEST_MARKET_TYPE, "GAPPY")).isTrue();
+        assertThat(tracker.getGapCount()).isEqualTo(1);
+        assertThat(tracker.getDroppedCount()).isEqualTo(2);
+        assertThat(tracker.getRecoveryCount()).isEqualTo(1);
+        assertThat(tracker.getMaxRecoveryNanos()).isPositive();
+    }
+
+    @Test
+    void testSequenceGapWithNullMarketType() {
+        // Given - 更新合并中：另一价源的显式市场更新先入队，GAPPY 不指定市场类型、品种尚无订单簿
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startConflation(TimeUnit.SECONDS.toMicros(60));
+        try {
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "OTHER",
+                                       OrderBook.BUY, new BigDecimal("100"), BigDecimal.ONE);
+            assertThat(orderBookService.updateQuote(TEST_SYMBOL, null, "GAPPY",
+                                                    OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE, 1)).isTrue();
+        } finally {
+            orderBookService.stopConflation();
+        }
+
+        // When - 显式市场的订单簿已创建后，GAPPY 的序号2丢失
+        assertThat(orderBookService.updateQuote(TEST_SYMBOL, null, "GAPPY",
+                                                OrderBook.BUY, new BigDecimal("101"), BigDecimal.ONE, 3)).isFalse();
+
+        // Then - 序号在 GAPPY 实际所在的分区中连续跟踪，缺口被发现
+        SourceSequenceTracker tracker = orderBookService.getSequenceTracker();
+        assertThat(tracker.getGapCount()).isEqualTo(1);
+        assertThat(tracker.isReliable(TEST_SYMBOL, null, "GAPPY")).isFalse();
+        verify(sourceRefreshRequester).requestRefresh(TEST_SYMBOL, null, "GAPPY");
+        assertThat(orderBookService.getOrderBook(TEST_SYMBOL, null).getSourceNames()).doesNotContain("GAPPY");
+        assertThat(orderBookService.getOrderBook(TEST_SYMBOL, TEST_MARKET_TYPE).getSourceNames())
+            .containsExactly("OTHER");
+    }
+
+    @Test
+    void testStorageBackendPerMarketType() {
+        // Given - 境外市场使用堆外存储，其余市场使用默认的堆内存储
+        OrderBookConfig config = new OrderBookConfig();
+        config.getStorage().setMarketBackends(Map.of(OrderBook.MARKET_OFFSHORE, OrderBookStorage.OFF_HEAP));
+        ReflectionTestUtils.setField(orderBookService, "orderBookConfig", config);
+
+        // When
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("2000.10"), BigDecimal.ONE);
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("2000.20"), BigDecimal.TEN);
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.SELL, new BigDecimal("2000.50"), BigDecimal.TEN);
+
+        // Then - 服务接口不因存储方式而变化
+        assertThat(orderBookService.getOrderBook("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD).getStorage())
+            .isEqualTo(OrderBookStorage.HEAP);
+        assertThat(orderBookService.getOrderBook("XAUUSD", OrderBook.MARKET_OFFSHORE).getStorage())
+            .isEqualTo(OrderBookStorage.OFF_HEAP);
+        assertThat(orderBookService.getBestBid("XAUUSD", OrderBook.MARKET_OFFSHORE).getPrice())
+            .isEqualByComparingTo("2000.20");
+        assertThat(orderBookService.getBestAsk("XAUUSD", OrderBook.MARKET_OFFSHORE).getTotalSellQty())
+            .isEqualByComparingTo("10");
+    }
+
+    @Test
+    void testForEachTopOfBookSkipsUnchangedBooks() {
+        // Given - 两个品种在境外市场有报价，一个品种在境内黄金市场有报价
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("2000.10"), BigDecimal.ONE);
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.SELL, new BigDecimal("2000.50"), BigDecimal.TEN);
+        orderBookService.updateQuote("XAGUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("25.10"), BigDecimal.TEN);
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_DOMESTIC_GOLD, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("480.00"), BigDecimal.ONE);
+        BookVersionCursor cursor = new BookVersionCursor();
+        List<String> visited = new ArrayList<>();
+
+        // When - 首次遍历境外市场
+        orderBookService.forEachTopOfBook(OrderBook.MARKET_OFFSHORE, cursor, (book, version, bids, asks) -> {
+            visited.add(book.getSymbol());
+            assertThat(version).isEqualTo(book.getVersion());
+            if (book.getSymbol().equals("XAUUSD")) {
+                assertThat(bids.getPrice(0)).isEqualByComparingTo("2000.10");
+                assertThat(asks.getQuantity(0)).isEqualByComparingTo("10");
+            } else {
+                assertThat(asks.isEmpty()).isTrue();
+            }
+        });
+
+        // Then - 只遍历境外市场的订单簿
+        assertThat(visited).containsExactlyInAnyOrder("XAUUSD", "XAGUSD");
+
+        // When - 只有一个品种变化后再次遍历
+        visited.clear();
+        orderBookService.updateQuote("XAGUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.SELL, new BigDecimal("25.20"), BigDecimal.ONE);
+        orderBookService.forEachTopOfBook(OrderBook.MARKET_OFFSHORE, cursor,
+                                          (book, version, bids, asks) -> visited.add(book.getSymbol()));
+
+        // Then - 版本未变的订单簿被跳过
+        assertThat(visited).containsExactly("XAGUSD");
+        assertThat(cursor.getVisitedCount()).isEqualTo(3);
+        assertThat(cursor.getSkippedCount()).isEqualTo(1);
+
+        // When - 移除后重建的订单簿视为有变化
+        visited.clear();
+        orderBookService.clearOrderBook("XAUUSD", OrderBook.MARKET_OFFSHORE);
+        orderBookService.updateQuote("XAUUSD", OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("2000.10"), BigDecimal.ONE);
+        orderBookService.forEachOrderBook(OrderBook.MARKET_OFFSHORE, cursor, book -> visited.add(book.getSymbol()));
+
+        // Then
+        assertThat(visited).containsExactly("XAUUSD");
+        List<String> all = new ArrayList<>();
+        orderBookService.forEachOrderBook(book -> all.add(book.getSymbol() + "/" + book.getMarketType()));
+        assertThat(all).containsExactlyInAnyOrder("XAUUSD/1", "XAUUSD/3", "XAGUSD/3");
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package com.quant.making.book;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -10,11 +11,18 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -28,7 +36,7 @@ class OrderBookSnapshotTest {
     private OrderBookRepository orderBookRepository;
 
     @Captor
-    private ArgumentCaptor<OrderBookEntry> entryCaptor;
+    private ArgumentCaptor<List<OrderBookEntry>> entryCaptor;
 
     private OrderBookService orderBookService;
 
@@ -76,11 +84,11 @@ class OrderBookSnapshotTest {
         // When - 手动触发快照生成
         orderBookService.snapshot(TEST_SYMBOL);
 
-        // Then - 验证快照数据已保存到数据库
-        verify(orderBookRepository, atLeastOnce()).save(any(OrderBookEntry.class));
+        // Then - 验证快照数据已批量保存到数据库
+        verify(orderBookRepository, atLeastOnce()).saveSnapshotBatch(entryCaptor.capture());
         
-        // 捕获保存的快照数据
-        List<OrderBookEntry> capturedEntries = entryCaptor.getAllValues();
+        // 捕获最近一次保存的快照数据
+        List<OrderBookEntry> capturedEntries = entryCaptor.getValue();
         
         // 验证快照数据的正确性
         assertThat(capturedEntries).isNotEmpty();
@@ -137,6 +145,7 @@ class OrderBookSnapshotTest {
         );
         
         // 模拟仓库返回这些快照数据
+        when(orderBookRepository.findSnapshotMarketTypes(TEST_SYMBOL)).thenReturn(List.of(TEST_MARKET_TYPE));
         when(orderBookRepository.findLatestSnapshot(TEST_SYMBOL, TEST_MARKET_TYPE))
             .thenReturn(snapshotData);
 
@@ -176,7 +185,8 @@ class OrderBookSnapshotTest {
      */
     @Test
     void testRestoreFromEmptySnapshot() {
-        // Given - 模拟没有快照数据
+        // Given - 模拟没有快照数据（快照记录已被清理）
+        when(orderBookRepository.findSnapshotMarketTypes(TEST_SYMBOL)).thenReturn(List.of(TEST_MARKET_TYPE));
         when(orderBookRepository.findLatestSnapshot(TEST_SYMBOL, TEST_MARKET_TYPE))
             .thenReturn(List.of());
 
@@ -210,8 +220,8 @@ class OrderBookSnapshotTest {
         orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE, 
                                    OrderBook.SELL, price.add(new BigDecimal("0.1")), qty);
 
-        // Then - 验证只调用了一次save（第一次更新触发了快照）
-        verify(orderBookRepository, atLeastOnce()).save(any(OrderBookEntry.class));
+        // Then - 验证只写入了一次快照（第一次更新触发了快照）
+        verify(orderBookRepository, times(1)).saveSnapshotBatch(anyList());
     }
 
     /**
@@ -251,9 +261,10 @@ class OrderBookSnapshotTest {
         orderBookService.snapshot(TEST_SYMBOL);
 
         // Then - 验证快照数据正确保存
-        verify(orderBookRepository, atLeast(4)).save(any(OrderBookEntry.class)); // 至少4个价源条目
+        verify(orderBookRepository, atLeastOnce()).saveSnapshotBatch(entryCaptor.capture());
         
-        List<OrderBookEntry> capturedEntries = entryCaptor.getAllValues();
+        List<OrderBookEntry> capturedEntries = entryCaptor.getValue();
+        assertThat(capturedEntries).hasSizeGreaterThanOrEqualTo(4); // 至少4个价源条目
         
         // 验证包含了所有价源的数据
         long buyEntriesCount = capturedEntries.stream()
@@ -270,18 +281,365 @@ class OrderBookSnapshotTest {
 
     /**
      * 测试快照清理功能
-     * 验证旧快照能够被正确清理
+     * 验证整体过期的按日分区直接删除，其余过期记录按主键区间分块删除，保留时长按市场类型生效
      */
     @Test
     void testCleanupOldSnapshots() {
-        // Given - 模拟清理操作
-        when(orderBookRepository.deleteOldSnapshots(any(LocalDateTime.class)))
-            .thenReturn(5); // 模拟删除了5条记录
+        // Given - 境外市场保留48小时，其余市场保留24小时；每块5000个主键，过期主键区间 [1, 12000]
+        OrderBookConfig config = new OrderBookConfig();
+        config.getRetention().setMarketRetainHours(Map.of(OrderBook.MARKET_OFFSHORE, 48));
+        config.getRetention().setChunkSize(5000);
+        config.getRetention().setPauseMillis(0);
+        ReflectionTestUtils.setField(orderBookService, "orderBookConfig", config);
+        LocalDateTime today = LocalDateTime.now().toLocalDate().atStartOfDay();
+        when(orderBookRepository.findPartitions()).thenReturn(List.of(
+            new OrderBookEntryPartitions.Partition("p_old", today.minusDays(3)),
+            new OrderBookEntryPartitions.Partition("p_recent", today.minusDays(1))));
+        when(orderBookRepository.findMinId()).thenReturn(1L);
+        when(orderBookRepository.findMaxIdBefore(any(LocalDateTime.class))).thenReturn(12000L);
+        when(orderBookRepository.deleteChunkExcluding(anyLong(), anyLong(), any(), any(LocalDateTime.class)))
+            .thenReturn(100);
+        when(orderBookRepository.deleteChunk(anyLong(), anyLong(), eq(OrderBook.MARKET_OFFSHORE), 
+                                             any(LocalDateTime.class)))
+            .thenReturn(10);
 
         // When - 执行清理操作
         orderBookService.cleanupOldSnapshots();
 
-        // Then - 验证清理方法被正确调用
-        verify(orderBookRepository).deleteOldSnapshots(any(LocalDateTime.class));
+        // Then - 只删除对所有市场都已过期的分区，剩余记录分3块删除，不再执行整表删除
+        verify(orderBookRepository).dropPartition("p_old");
+        verify(orderBookRepository, never()).dropPartition("p_recent");
+        verify(orderBookRepository).deleteChunkExcluding(eq(1L), eq(5000L), any(), any(LocalDateTime.class));
+        verify(orderBookRepository).deleteChunkExcluding(eq(10001L), eq(12000L), any(), any(LocalDateTime.class));
+        verify(orderBookRepository, never()).deleteOldSnapshots(any(LocalDateTime.class));
+        SnapshotRetentionReport report = orderBookService.getRetentionReport();
+        assertThat(report.isDone()).isTrue();
+        assertThat(report.isCompleted()).isTrue();
+        assertThat(report.getPartitionsDropped()).isEqualTo(1);
+        assertThat(report.getChunkCount()).isEqualTo(3);
+        assertThat(report.getRowsDeleted()).isEqualTo(330);
+        assertThat(report.getProgress()).isEqualTo(1.0);
     }
-}
\ No newline at end of file
+
+    /**
+     * 测试二进制快照编解码
+     * 验证压缩与不压缩两种格式都能完整还原订单簿
+     */
+    @Test
+    void testBinarySnapshotRoundTrip() {
+        // Given - 多价源、多档位的订单簿
+        OrderBook orderBook = new OrderBook(TEST_SYMBOL, TEST_MARKET_TYPE);
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("100.50"), new BigDecimal("20"));
+        orderBook.addQuote("SOURCE2", OrderBook.BUY, new BigDecimal("100.50"), new BigDecimal("0.125"));
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("99.75"), new BigDecimal("5"));
+        orderBook.addQuote("SOURCE2", OrderBook.SELL, new BigDecimal("101.25"), new BigDecimal("30"));
+        BookSnapshot snapshot = BookSnapshot.capture(orderBook, null);
+
+        for (boolean compress : new boolean[] {true, false}) {
+            // When - 编码后解码并恢复到新订单簿
+            byte[] payload = BookSnapshotCodec.encode(snapshot, compress);
+            BookSnapshot decoded = BookSnapshotCodec.decode(payload, TEST_SYMBOL, TEST_MARKET_TYPE,
+                                                            snapshot.getSnapshotTime());
+            OrderBook restored = new OrderBook(TEST_SYMBOL, TEST_MARKET_TYPE);
+            decoded.restoreInto(restored);
+
+            // Then - 行数、档位和价源数量一致
+            assertThat(decoded.size()).isEqualTo(snapshot.size());
+            assertThat(restored.getBestBid().getPrice()).isEqualByComparingTo(new BigDecimal("100.50"));
+            assertThat(restored.getBestBid().getBuySources())
+                .containsEntry("SOURCE1", new BigDecimal("20"))
+                .containsEntry("SOURCE2", new BigDecimal("0.125"));
+            assertThat(restored.getBidDepth()).isEqualTo(2);
+            assertThat(restored.getBestAsk().getSellSources()).containsEntry("SOURCE2", new BigDecimal("30"));
+            assertThat(decoded.toEntries()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(snapshot.toEntries());
+        }
+    }
+
+    /**
+     * 测试从二进制快照恢复订单簿
+     * 验证启用二进制快照存储后恢复只读取一行快照，不再查询按行快照
+     */
+    @Test
+    void testRestoreFromBlobSnapshot() {
+        // Given - 二进制快照仓库中保存了最新快照
+        OrderBookSnapshotBlobRepository blobRepository = mock(OrderBookSnapshotBlobRepository.class);
+        ReflectionTestUtils.setField(orderBookService, "snapshotBlobRepository", blobRepository);
+        OrderBook source = new OrderBook(TEST_SYMBOL, TEST_MARKET_TYPE);
+        source.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("100"), new BigDecimal("60"));
+        source.addQuote(TEST_SOURCE, OrderBook.SELL, new BigDecimal("101"), new BigDecimal("40"));
+        BookSnapshot snapshot = BookSnapshot.capture(source, null);
+        when(blobRepository.findSnapshotMarketTypes(TEST_SYMBOL)).thenReturn(List.of(TEST_MARKET_TYPE));
+        when(blobRepository.findFirstBySymbolAndMarketTypeAndSnapshotKindAndSnapshotTimeLessThanEqualOrderBySnapshotTimeDesc(
+                eq(TEST_SYMBOL), eq(TEST_MARKET_TYPE), eq(OrderBookSnapshotBlob.KIND_FULL), any(LocalDateTime.class)))
+            .thenReturn(Optional.of(new OrderBookSnapshotBlob(TEST_SYMBOL, TEST_MARKET_TYPE, snapshot.getSnapshotTime(),
+                OrderBookSnapshotBlob.KIND_FULL, snapshot.size(), true, BookSnapshotCodec.encode(snapshot, true))));
+
+        // When - 从快照恢复订单簿
+        boolean restored = orderBookService.restoreFromSnapshot(TEST_SYMBOL);
+
+        // Then - 订单簿按二进制快照恢复
+        assertThat(restored).isTrue();
+        OrderBook orderBook = orderBookService.getOrderBook(TEST_SYMBOL);
+        assertThat(orderBook.getMarketType()).isEqualTo(TEST_MARKET_TYPE);
+        assertThat(orderBook.getBestBid().getTotalBuyQty()).isEqualByComparingTo(new BigDecimal("60"));
+        assertThat(orderBook.getBestAsk().getTotalSellQty()).isEqualByComparingTo(new BigDecimal("40"));
+        verify(orderBookRepository, never()).findLatestSnapshot(any(), any());
+    }
+
+    /**
+     * 测试从更新日志恢复订单簿
+     * 验证未正常关闭（模拟崩溃）时，重放检查点和其后的变更可精确重建订单簿，且跨分段滚动、高精度数值原样重放
+     */
+    @Test
+    void testRecoverFromJournal(@TempDir Path journalDir) {
+        // Given - 启用更新日志（小分段以触发滚动），首次更新写入检查点，其后的变更只记录在日志中
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startJournal(journalDir, 4096, 3600);
+        for (int i = 0; i < 100; i++) {
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "SOURCE" + (i % 3),
+                                       OrderBook.BUY, new BigDecimal("100").add(BigDecimal.valueOf(i % 5)), BigDecimal.ONE);
+        }
+        orderBookService.replaceQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "SOURCE1", OrderBook.SELL,
+                                      new BigDecimal("106.5"), new BigDecimal("7"));
+        orderBookService.deleteQuote(TEST_SYMBOL, "SOURCE2", OrderBook.BUY, new BigDecimal("104"));
+        // 非标度值超出 long 范围的高精度数量同样原样记录
+        orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "SOURCE1", OrderBook.SELL,
+                                   new BigDecimal("106.5"), new BigDecimal("0.250000000000000000000000001"));
+        orderBookService.refreshSource(TEST_SYMBOL, TEST_MARKET_TYPE, "SOURCE0",
+                                       Map.of(new BigDecimal("99"), new BigDecimal("3")),
+                                       Map.of(new BigDecimal("107"), new BigDecimal("4")));
+        orderBookService.updateQuote("USDJPY", TEST_MARKET_TYPE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("150"), BigDecimal.TEN);
+        orderBookService.clearOrderBook("USDJPY");
+        assertThat(orderBookService.getJournal().getRolledSegments()).isGreaterThan(0);
+        BookSnapshot expected = BookSnapshot.capture(orderBookService.getOrderBook(TEST_SYMBOL), null);
+
+        // When - 新服务实例（未关闭旧日志）从同一目录恢复
+        OrderBookService recovered = new OrderBookService();
+        ReflectionTestUtils.setField(recovered, "orderBookRepository", orderBookRepository);
+        long replayed = recovered.startJournal(journalDir, 4096, 3600);
+
+        // Then - 订单簿与崩溃前一致，已清空的品种不再出现
+        assertThat(replayed).isGreaterThan(100);
+        assertThat(recovered.getAllOrderBooks()).containsOnlyKeys(TEST_SYMBOL);
+        OrderBook orderBook = recovered.getOrderBook(TEST_SYMBOL);
+        assertThat(orderBook.getMarketType()).isEqualTo(TEST_MARKET_TYPE);
+        assertThat(BookSnapshot.capture(orderBook, null).toEntries())
+            .usingRecursiveFieldByFieldElementComparatorIgnoringFields("snapshotTime")
+            .containsExactlyElementsOf(expected.toEntries());
+        recovered.stopJournal();
+        orderBookService.stopJournal();
+    }
+
+    /**
+     * 测试多个分片写线程并发追加更新日志
+     * 验证各写者无锁认领分段空间，跨分段滚动后重放仍能精确重建每个订单簿
+     */
+    @Test
+    void testRecoverFromJournalWrittenByConcurrentShards(@TempDir Path journalDir) throws Exception {
+        // Given - 启用更新日志（小分段以频繁滚动）和4分片接入管道
+        orderBookService.setSnapshotIntervalSeconds(3600);
+        orderBookService.startJournal(journalDir, 8192, 3600);
+        orderBookService.startIngestionPipeline(4, 1024);
+        String[] symbols = {"EURUSD", "USDJPY", "GBPUSD", "AUDUSD"};
+        int updatesPerSymbol = 2000;
+
+        // When - 每个品种一个生产者线程，各品种的更新由不同分片写者追加
+        Thread[] threads = new Thread[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            String symbol = symbols[i];
+            threads[i] = new Thread(() -> {
+                for (int n = 0; n < updatesPerSymbol; n++) {
+                    orderBookService.updateQuote(symbol, TEST_MARKET_TYPE, "SOURCE" + (n % 3), OrderBook.BUY,
+                                               new BigDecimal("100").add(BigDecimal.valueOf(n % 7)), BigDecimal.ONE);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        orderBookService.stopIngestionPipeline();
+        assertThat(orderBookService.getJournal().getRolledSegments()).isGreaterThan(0);
+
+        // When - 新服务实例（未关闭旧日志）从同一目录恢复
+        OrderBookService recovered = new OrderBookService();
+        ReflectionTestUtils.setField(recovered, "orderBookRepository", orderBookRepository);
+        recovered.startJournal(journalDir, 8192, 3600);
+
+        // Then - 每个品种的订单簿与崩溃前一致
+        assertThat(recovered.getAllOrderBooks()).containsOnlyKeys(symbols);
+        for (String symbol : symbols) {
+            BookSnapshot expected = BookSnapshot.capture(orderBookService.getOrderBook(symbol, TEST_MARKET_TYPE), null);
+            assertThat(BookSnapshot.capture(recovered.getOrderBook(symbol, TEST_MARKET_TYPE), null).toEntries())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("snapshotTime")
+                .containsExactlyElementsOf(expected.toEntries());
+        }
+        recovered.stopJournal();
+        orderBookService.stopJournal();
+    }
+
+    /**
+     * 测试增量快照
+     * 验证全量快照之间只写入变化的价源档位，且任一快照时刻都能由全量快照 + 增量快照精确恢复
+     */
+    @Test
+    void testDeltaSnapshotsRestorePointInTime() {
+        // Given - 启用增量快照（每3次快照一次全量），每次更新都触发快照，快照保存在内存仓库中
+        List<OrderBookSnapshotBlob> stored = new ArrayList<>();
+        OrderBookSnapshotBlobRepository blobRepository = inMemoryBlobRepository(stored);
+        OrderBookConfig config = new OrderBookConfig();
+        config.getSnapshot().setFullCheckpointInterval(3);
+        ReflectionTestUtils.setField(orderBookService, "snapshotBlobRepository", blobRepository);
+        ReflectionTestUtils.setField(orderBookService, "orderBookConfig", config);
+        orderBookService.setSnapshotIntervalSeconds(0);
+
+        List<BookSnapshot> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            if (i == 4) {
+                // 删除不触发快照，由随后的更新一并写入增量快照
+                orderBookService.deleteQuote(TEST_SYMBOL, "SOURCE1", OrderBook.BUY, new BigDecimal("101"));
+            }
+            orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, "SOURCE" + (i % 2),
+                                       OrderBook.BUY, new BigDecimal(100 + i % 4), BigDecimal.ONE);
+            expected.add(BookSnapshot.capture(orderBookService.getOrderBook(TEST_SYMBOL), null));
+        }
+
+        // Then - 快照类型按 全量、增量、增量 循环，增量快照只包含本次变化的价源档位
+        assertThat(stored).extracting(OrderBookSnapshotBlob::getSnapshotKind).containsExactly(
+            OrderBookSnapshotBlob.KIND_FULL, OrderBookSnapshotBlob.KIND_DELTA, OrderBookSnapshotBlob.KIND_DELTA,
+            OrderBookSnapshotBlob.KIND_FULL, OrderBookSnapshotBlob.KIND_DELTA, OrderBookSnapshotBlob.KIND_DELTA,
+            OrderBookSnapshotBlob.KIND_FULL);
+        assertThat(stored.get(1).getRowCount()).isEqualTo(1);
+        verify(orderBookRepository, times(3)).saveSnapshotBatch(anyList());
+
+        // When/Then - 恢复到每个快照时刻，订单簿与当时一致
+        for (int i = 0; i < stored.size(); i++) {
+            assertThat(orderBookService.restoreFromSnapshot(TEST_SYMBOL, stored.get(i).getSnapshotTime())).isTrue();
+            assertThat(BookSnapshot.capture(orderBookService.getOrderBook(TEST_SYMBOL), null).toEntries())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("snapshotTime")
+                .containsExactlyElementsOf(expected.get(i).toEntries());
+        }
+    }
+
+    /**
+     * 测试同一品种多个市场的时点恢复
+     * 验证每个市场各自取最近的全量快照，增量快照只叠加到同一市场的订单簿上
+     */
+    @Test
+    void testRestorePointInTimePerMarketType() {
+        // Given - 同一品种在两个市场各有全量快照，离岸市场之后还有一个增量快照
+        List<OrderBookSnapshotBlob> stored = new ArrayList<>();
+        OrderBookSnapshotBlobRepository blobRepository = inMemoryBlobRepository(stored);
+        OrderBookConfig config = new OrderBookConfig();
+        config.getSnapshot().setFullCheckpointInterval(2);
+        ReflectionTestUtils.setField(orderBookService, "snapshotBlobRepository", blobRepository);
+        ReflectionTestUtils.setField(orderBookService, "orderBookConfig", config);
+        orderBookService.setSnapshotIntervalSeconds(0);
+        orderBookService.updateQuote(TEST_SYMBOL, OrderBook.MARKET_DOMESTIC_GOLD, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("100"), new BigDecimal("3"));
+        orderBookService.updateQuote(TEST_SYMBOL, OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("200"), new BigDecimal("5"));
+        orderBookService.updateQuote(TEST_SYMBOL, OrderBook.MARKET_OFFSHORE, TEST_SOURCE,
+                                   OrderBook.BUY, new BigDecimal("201"), new BigDecimal("7"));
+        assertThat(stored).extracting(OrderBookSnapshotBlob::getSnapshotKind).containsExactly(
+            OrderBookSnapshotBlob.KIND_FULL, OrderBookSnapshotBlob.KIND_FULL, OrderBookSnapshotBlob.KIND_DELTA);
+        orderBookService.clearOrderBook(TEST_SYMBOL, OrderBook.MARKET_DOMESTIC_GOLD);
+        orderBookService.clearOrderBook(TEST_SYMBOL, OrderBook.MARKET_OFFSHORE);
+
+        // When - 恢复到最后一个快照时刻
+        boolean restored = orderBookService.restoreFromSnapshot(TEST_SYMBOL, stored.get(2).getSnapshotTime());
+
+        // Then - 两个市场的订单簿各自恢复，离岸市场的增量没有叠加到境内市场
+        assertThat(restored).isTrue();
+        OrderBook domestic = orderBookService.getOrderBook(TEST_SYMBOL, OrderBook.MARKET_DOMESTIC_GOLD);
+        assertThat(domestic.getBidDepth()).isEqualTo(1);
+        assertThat(domestic.getBestBid().getPrice()).isEqualByComparingTo(new BigDecimal("100"));
+        OrderBook offshore = orderBookService.getOrderBook(TEST_SYMBOL, OrderBook.MARKET_OFFSHORE);
+        assertThat(offshore.getBidDepth()).isEqualTo(2);
+        assertThat(offshore.getBestBid().getPrice()).isEqualByComparingTo(new BigDecimal("201"));
+        assertThat(offshore.getBestBid().getTotalBuyQty()).isEqualByComparingTo(new BigDecimal("7"));
+    }
+
+    /**
+     * 测试快照目录和启动预热
+     * 验证全量快照落库后目录指向最新快照，预热按目录并行恢复全部订单簿且不再执行 MAX 子查询
+     */
+    @Test
+    void testWarmStartFromSnapshotCatalog() {
+        // Given - 快照目录记录了20个品种在两个市场的最新快照
+        OrderBookSnapshotCatalogRepository catalogRepository = mock(OrderBookSnapshotCatalogRepository.class);
+        ReflectionTestUtils.setField(orderBookService, "snapshotCatalogRepository", catalogRepository);
+        LocalDateTime snapshotTime = LocalDateTime.now().minusMinutes(1);
+        List<OrderBookSnapshotCatalog> catalog = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            catalog.add(new OrderBookSnapshotCatalog("SYM" + i, OrderBook.MARKET_DOMESTIC_GOLD, null, snapshotTime));
+            catalog.add(new OrderBookSnapshotCatalog("SYM" + i, OrderBook.MARKET_OFFSHORE, null, snapshotTime));
+        }
+        when(catalogRepository.findAll()).thenReturn(catalog);
+        when(orderBookRepository.findSnapshotAt(any(), any(), eq(snapshotTime))).thenAnswer(invocation -> List.of(
+            new OrderBookEntry(invocation.getArgument(0), invocation.getArgument(1), TEST_SOURCE, OrderBook.BUY,
+                               1, new BigDecimal("100"), new BigDecimal("5"), snapshotTime)));
+
+        // When - 4个线程并行预热
+        WarmStartProgress progress = orderBookService.warmStart(4, 30);
+
+        // Then - 全部订单簿按目录恢复
+        assertThat(progress.isDone()).isTrue();
+        assertThat(progress.getTotal()).isEqualTo(40);
+        assertThat(progress.getRestoredCount()).isEqualTo(40);
+        assertThat(progress.getProgress()).isEqualTo(1.0);
+        assertThat(orderBookService.getWarmStartProgress()).isSameAs(progress);
+        assertThat(orderBookService.getOrderBook("SYM7", OrderBook.MARKET_OFFSHORE).getBestBid().getTotalBuyQty())
+            .isEqualByComparingTo("5");
+        verify(orderBookRepository, never()).findLatestSnapshot(any(), any());
+
+        // When - 生成新的全量快照
+        when(catalogRepository.findBySymbolAndMarketType(TEST_SYMBOL, TEST_MARKET_TYPE)).thenReturn(Optional.empty());
+        orderBookService.setSnapshotIntervalSeconds(0);
+        orderBookService.updateQuote(TEST_SYMBOL, TEST_MARKET_TYPE, TEST_SOURCE, OrderBook.BUY,
+                                   new BigDecimal("100"), BigDecimal.ONE);
+
+        // Then - 目录新增该订单簿，指向快照时间
+        ArgumentCaptor<OrderBookSnapshotCatalog> catalogCaptor = ArgumentCaptor.forClass(OrderBookSnapshotCatalog.class);
+        verify(catalogRepository).save(catalogCaptor.capture());
+        assertThat(catalogCaptor.getValue().getSymbol()).isEqualTo(TEST_SYMBOL);
+        assertThat(catalogCaptor.getValue().getMarketType()).isEqualTo(TEST_MARKET_TYPE);
+        assertThat(catalogCaptor.getValue().getSnapshotTime()).isNotNull();
+    }
+
+    /**
+     * 基于列表的二进制快照仓库，按快照时间和写入顺序查询
+     */
+    private OrderBookSnapshotBlobRepository inMemoryBlobRepository(List<OrderBookSnapshotBlob> stored) {
+        OrderBookSnapshotBlobRepository blobRepository = mock(OrderBookSnapshotBlobRepository.class);
+        when(blobRepository.save(any(OrderBookSnapshotBlob.class))).thenAnswer(invocation -> {
+            OrderBookSnapshotBlob blob = invocation.getArgument(0);
+            blob.setId((long) stored.size() + 1);
+            stored.add(blob);
+            return blob;
+        });
+        lenient().when(blobRepository.findSnapshotMarketTypes(any())).thenAnswer(invocation -> stored.stream()
+            .filter(b -> b.getSymbol().equals(invocation.getArgument(0)))
+            .map(OrderBookSnapshotBlob::getMarketType)
+            .distinct()
+            .sorted()
+            .toList());
+        lenient().when(blobRepository.findFirstBySymbolAndMarketTypeAndSnapshotKindAndSnapshotTimeLessThanEqualOrderBySnapshotTimeDesc(
+                any(), any(), any(), any())).thenAnswer(invocation -> stored.stream()
+            .filter(b -> b.getSymbol().equals(invocation.getArgument(0))
+                && b.getMarketType().equals(invocation.getArgument(1))
+                && b.getSnapshotKind().equals(invocation.getArgument(2))
+                && !b.getSnapshotTime().isAfter(invocation.getArgument(3)))
+            .reduce((first, second) -> second));
+        lenient().when(blobRepository.findDeltas(any(), any(), any(), any())).thenAnswer(invocation -> stored.stream()
+            .filter(b -> b.getSymbol().equals(invocation.getArgument(0))
+                && b.getMarketType().equals(invocation.getArgument(1))
+                && b.getSnapshotKind() == OrderBookSnapshotBlob.KIND_DELTA
+                && b.getSnapshotTime().isAfter(invocation.getArgument(2))
+                && !b.getSnapshotTime().isAfter(invocation.getArgument(3)))
+            .toList());
+        return blobRepository;
+    }
+}
@@ -5,8 +5,10 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
 /**
@@ -260,4 +262,545 @@ class OrderBookTest {
         assertThat(level.getSources()).containsEntry(source1, qty1);
         assertThat(level.getSources()).containsEntry(source2, qty2);
     }
-}
\ No newline at end of file
+
+    /**
+     * 测试买卖阶梯排序及最优价维护
+     * 验证买方阶梯价格从高到低、卖方阶梯价格从低到高，且最优价随新档位更新
+     */
+    @Test
+    void testBidAskLadderOrdering() {
+        // Given - 乱序添加买卖档位
+        BigDecimal qty = new BigDecimal("10");
+        orderBook.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("99.90"), qty);
+        orderBook.addQuote(TEST_SOURCE, OrderBook.SELL, new BigDecimal("100.30"), qty);
+        orderBook.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("99.80"), qty);
+        orderBook.addQuote(TEST_SOURCE, OrderBook.SELL, new BigDecimal("100.10"), qty);
+
+        // When - 新增更优的买价
+        orderBook.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("100.00"), qty);
+
+        // Then - 验证阶梯顺序和最优价
+        assertThat(orderBook.getBidLevels())
+            .extracting(OrderBook.PriceLevel::getPrice)
+            .containsExactly(new BigDecimal("100.00"), new BigDecimal("99.90"), new BigDecimal("99.80"));
+        assertThat(orderBook.getAskLevels())
+            .extracting(OrderBook.PriceLevel::getPrice)
+            .containsExactly(new BigDecimal("100.10"), new BigDecimal("100.30"));
+        assertThat(orderBook.getBestBid().getPrice()).isEqualByComparingTo(new BigDecimal("100.00"));
+        assertThat(orderBook.getBestAsk().getPrice()).isEqualByComparingTo(new BigDecimal("100.10"));
+        assertThat(orderBook.getBidDepth()).isEqualTo(3);
+        assertThat(orderBook.getAskDepth()).isEqualTo(2);
+        assertThat(orderBook.getAggregatedLevels()).hasSize(5);
+    }
+
+    /**
+     * 测试不同精度的相同价格落入同一档位
+     * 验证 1.10 与 1.1 不会产生重复档位
+     */
+    @Test
+    void testSamePriceDifferentScaleMergesIntoOneLevel() {
+        // When - 以不同精度添加相同价格
+        orderBook.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("1.10"), new BigDecimal("10"));
+        orderBook.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("1.1"), new BigDecimal("5"));
+
+        // Then - 只有一个档位，数量合并
+        assertThat(orderBook.getAggregatedLevels()).hasSize(1);
+        assertThat(orderBook.getBestBid().getTotalBuyQty()).isEqualByComparingTo(new BigDecimal("15"));
+        assertThat(orderBook.getBestBid().getBuyQtyUnits()).isEqualTo(1_500_000_000L);
+    }
+
+    /**
+     * 测试按 tick 配置的定点模式
+     * 验证价格规范化到 tick 精度、数量按配置精度保存，且拒绝不在 tick 网格上的价格
+     */
+    @Test
+    void testFixedPointPriceScale() {
+        // Given - 最小变动价位 0.05，数量保留2位小数
+        PriceScale scale = PriceScale.of(new BigDecimal("0.05"), 2);
+        OrderBook fixedBook = new OrderBook("AU9999", OrderBook.MARKET_DOMESTIC_GOLD, scale);
+
+        // When - 添加报价
+        fixedBook.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("380.1"), new BigDecimal("1.5"));
+        fixedBook.addQuote(TEST_SOURCE, OrderBook.BUY, new BigDecimal("380.10"), new BigDecimal("2.25"));
+
+        // Then - 价格按 tick 精度规范化，数量以定点保存
+        OrderBook.PriceLevel bestBid = fixedBook.getBestBid();
+        assertThat(bestBid.getPrice()).isEqualTo(new BigDecimal("380.10"));
+        assertThat(bestBid.getBuyQtyUnits()).isEqualTo(375L);
+        assertThat(bestBid.getTotalBuyQty()).isEqualTo(new BigDecimal("3.75"));
+        assertThat(scale.toPriceUnits(new BigDecimal("380.15"))).isEqualTo(38015L);
+
+        // 不在 tick 网格上的价格被拒绝
+        assertThatThrownBy(() ->
+                fixedBook.addQuote(TEST_SOURCE, OrderBook.SELL, new BigDecimal("380.12"), BigDecimal.ONE))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 测试价源报价替换与删除
+     * 验证替换按增量调整聚合数量，删除后空档位被移除且最优价回退
+     */
+    @Test
+    void testReplaceAndDeleteQuote() {
+        // Given - 两个价源在同一价格报价
+        BigDecimal price = new BigDecimal("100.00");
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, price, new BigDecimal("10"));
+        orderBook.addQuote("SOURCE2", OrderBook.BUY, price, new BigDecimal("20"));
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("99.90"), new BigDecimal("5"));
+
+        // When - 价源1重新发布该档位
+        orderBook.replaceQuote("SOURCE1", OrderBook.BUY, price, new BigDecimal("15"));
+
+        // Then - 聚合数量为 15 + 20，而不是继续累加
+        OrderBook.PriceLevel level = orderBook.getAggregatedLevels().get(price);
+        assertThat(level.getTotalBuyQty()).isEqualByComparingTo(new BigDecimal("35"));
+        assertThat(level.getSources()).containsEntry("SOURCE1", new BigDecimal("15"));
+
+        // When - 两个价源都删除该档位
+        orderBook.deleteQuote("SOURCE1", OrderBook.BUY, price);
+        orderBook.deleteQuote("SOURCE2", OrderBook.BUY, price);
+
+        // Then - 档位被移除，最优买价回退到次优档位
+        assertThat(orderBook.getAggregatedLevels()).doesNotContainKey(price);
+        assertThat(orderBook.getBestBid().getPrice()).isEqualByComparingTo(new BigDecimal("99.90"));
+    }
+
+    /**
+     * 测试价源全量刷新
+     * 验证旧档位被删除、其他价源不受影响
+     */
+    @Test
+    void testRefreshSource() {
+        // Given - 价源1和价源2的初始报价
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("100.00"), new BigDecimal("10"));
+        orderBook.addQuote("SOURCE1", OrderBook.SELL, new BigDecimal("100.10"), new BigDecimal("10"));
+        orderBook.addQuote("SOURCE2", OrderBook.BUY, new BigDecimal("99.90"), new BigDecimal("30"));
+
+        // When - 价源1全量刷新深度
+        orderBook.refreshSource("SOURCE1",
+            Map.of(new BigDecimal("100.05"), new BigDecimal("12")),
+            Map.of(new BigDecimal("100.15"), new BigDecimal("8")));
+
+        // Then - 价源1的旧档位被替换，价源2保持不变
+        assertThat(orderBook.getAggregatedLevels()).hasSize(3);
+        assertThat(orderBook.getBestBid().getPrice()).isEqualByComparingTo(new BigDecimal("100.05"));
+        assertThat(orderBook.getBestAsk().getPrice()).isEqualByComparingTo(new BigDecimal("100.15"));
+        assertThat(orderBook.getAggregatedLevels().get(new BigDecimal("99.90")).getTotalBuyQty())
+            .isEqualByComparingTo(new BigDecimal("30"));
+
+        // When - 移除价源1
+        orderBook.removeSource("SOURCE1");
+
+        // Then - 只剩价源2的档位
+        assertThat(orderBook.getAggregatedLevels()).hasSize(1);
+        assertThat(orderBook.getBestAsk()).isNull();
+        assertThat(orderBook.getSourceNames()).containsExactly("SOURCE2");
+    }
+
+    /**
+     * 测试价源按买卖方向分别记录
+     * 验证同一价源同一价格的买卖数量互不混合
+     */
+    @Test
+    void testSourcesSplitBySide() {
+        // Given - 同一档位两个价源分别报买卖
+        BigDecimal price = new BigDecimal("100.00");
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, price, new BigDecimal("10"));
+        orderBook.addQuote("SOURCE1", OrderBook.SELL, price, new BigDecimal("4"));
+        orderBook.addQuote("SOURCE2", OrderBook.SELL, price, new BigDecimal("6"));
+
+        // Then - 各方向只包含本方向的价源数量
+        OrderBook.PriceLevel level = orderBook.getAggregatedLevels().get(price);
+        assertThat(level.getBuySources()).containsOnlyKeys("SOURCE1");
+        assertThat(level.getBuySources().get("SOURCE1")).isEqualByComparingTo("10");
+        assertThat(level.getSellSources()).containsOnlyKeys("SOURCE1", "SOURCE2");
+        assertThat(level.getSellSources().get("SOURCE1")).isEqualByComparingTo("4");
+        assertThat(level.getSourceCount(OrderBook.SELL)).isEqualTo(2);
+        assertThat(level.getSourceName(OrderBook.SELL, 1)).isEqualTo("SOURCE2");
+        assertThat(level.getSourceQtyUnits(OrderBook.SELL, 1)).isEqualTo(600_000_000L);
+    }
+
+    /**
+     * 测试前 N 档深度缓存
+     * 验证深度按价格优先级排列，前 N 档之外的变化不产生新版本
+     */
+    @Test
+    void testTopDepthCache() {
+        // Given - 前3档深度，买方5个档位
+        orderBook.setDepthCapacity(3);
+        for (int i = 0; i < 5; i++) {
+            orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal(100 - i), new BigDecimal("10"));
+        }
+        orderBook.addQuote("SOURCE1", OrderBook.SELL, new BigDecimal("101"), new BigDecimal("5"));
+
+        // Then - 买方深度为最高的3档
+        BookDepth bids = orderBook.getTopBidDepth();
+        assertThat(bids.size()).isEqualTo(3);
+        assertThat(bids.getPrice(0)).isEqualByComparingTo("100");
+        assertThat(bids.getPrice(2)).isEqualByComparingTo("98");
+        BookDepth asks = orderBook.getTopAskDepth();
+        assertThat(asks.getQuantity(0)).isEqualByComparingTo("5");
+
+        // When - 第4档之外的变化
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("96"), new BigDecimal("10"));
+        orderBook.deleteQuote("SOURCE1", OrderBook.BUY, new BigDecimal("97"));
+
+        // Then - 深度不变，读取到同一版本的同一对象
+        assertThat(orderBook.getTopBidDepth()).isSameAs(bids);
+
+        // When - 删除第2档
+        orderBook.deleteQuote("SOURCE1", OrderBook.BUY, new BigDecimal("99"));
+
+        // Then - 新版本补入下一档，旧版本内容不变
+        BookDepth updated = orderBook.getTopBidDepth();
+        assertThat(updated.getVersion()).isGreaterThan(bids.getVersion());
+        assertThat(updated.getPrice(1)).isEqualByComparingTo("98");
+        assertThat(updated.getPrice(2)).isEqualByComparingTo("96");
+        assertThat(bids.getPrice(1)).isEqualByComparingTo("99");
+        assertThat(orderBook.getTopAskDepth()).isSameAs(asks);
+    }
+
+    /**
+     * 测试盘口指标
+     * 验证微观价格、前 k 档失衡和扫单均价随档位变化维护，版本与订单簿一致
+     */
+    @Test
+    void testBookAnalytics() {
+        // Given - 买方 100x10、99x30，卖方 101x30、102x10
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("100"), new BigDecimal("10"));
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("99"), new BigDecimal("30"));
+        orderBook.addQuote("SOURCE1", OrderBook.SELL, new BigDecimal("101"), new BigDecimal("30"));
+        orderBook.addQuote("SOURCE2", OrderBook.SELL, new BigDecimal("102"), new BigDecimal("10"));
+
+        // When
+        BookAnalytics analytics = orderBook.readAnalytics();
+
+        // Then - 微观价格偏向卖方数量较大的一侧的对手价
+        assertThat(analytics.getVersion()).isEqualTo(orderBook.getVersion());
+        assertThat(analytics.getMicroprice()).isEqualByComparingTo("100.25");
+        assertThat(analytics.getImbalance(1)).isEqualByComparingTo("-0.5");
+        assertThat(analytics.getImbalance(2)).isEqualByComparingTo("0");
+        assertThat(analytics.getSweepVwap(OrderBook.SELL, new BigDecimal("35"))).isEqualByComparingTo("101.14285714");
+        assertThat(analytics.getSweepVwap(OrderBook.BUY, new BigDecimal("10"))).isEqualByComparingTo("100");
+        assertThat(analytics.getSweepVwap(OrderBook.BUY, new BigDecimal("50"))).isNull();
+        assertThat(analytics.getSweepableQuantity(OrderBook.BUY)).isEqualByComparingTo("40");
+
+        // When - 卖一撤单
+        orderBook.deleteQuote("SOURCE1", OrderBook.SELL, new BigDecimal("101"));
+        BookAnalytics updated = orderBook.readAnalytics();
+
+        // Then - 新版本指标反映变化，旧快照不变
+        assertThat(updated.getVersion()).isGreaterThan(analytics.getVersion());
+        assertThat(updated.getMicroprice()).isEqualByComparingTo("101");
+        assertThat(updated.getImbalance(1)).isEqualByComparingTo("0");
+        assertThat(analytics.getMicroprice()).isEqualByComparingTo("100.25");
+    }
+
+    /**
+     * 测试价源编号索引
+     * 验证价源按稠密编号保存状态，编号与名称双向对应，未出现过的价源不分配编号
+     */
+    @Test
+    void testSourceStatesIndexedByDenseId() {
+        // Given
+        orderBook.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("100"), new BigDecimal("10"));
+        orderBook.addQuote("SOURCE2", OrderBook.SELL, new BigDecimal("101"), new BigDecimal("20"));
+
+        // When
+        int sourceId = SourceIds.lookup("SOURCE2");
+
+        // Then
+        assertThat(sourceId).isEqualTo(SourceIds.intern("SOURCE2"));
+        assertThat(SourceIds.name(sourceId)).isEqualTo("SOURCE2");
+        assertThat(SourceIds.lookup("NEVER_SEEN_SOURCE")).isNegative();
+        assertThat(orderBook.getSourceNames()).containsExactlyInAnyOrder("SOURCE1", "SOURCE2");
+
+        // When - 移除价源后重新报价
+        orderBook.removeSource("SOURCE2");
+        orderBook.addQuote("SOURCE2", OrderBook.SELL, new BigDecimal("102"), new BigDecimal("5"));
+
+        // Then - 编号不变，状态重新建立
+        assertThat(SourceIds.lookup("SOURCE2")).isEqualTo(sourceId);
+        assertThat(orderBook.getBestAsk().getPrice()).isEqualByComparingTo(new BigDecimal("102"));
+    }
+
+    /**
+     * 测试堆外档位存储
+     * 验证同一组报价、替换、删除、全量刷新和价源移除在堆外存储上得到与堆内存储相同的档位、深度和价源明细
+     */
+    @Test
+    void testOffHeapStorageMatchesHeap() {
+        // Given - 初始容量为2个档位，更新过程中需要扩容
+        OrderBook heap = new OrderBook(TEST_SYMBOL, OrderBook.MARKET_OFFSHORE, PriceScale.DEFAULT);
+        OrderBook offHeap = new OrderBook(TEST_SYMBOL, OrderBook.MARKET_OFFSHORE, PriceScale.DEFAULT,
+                                          OrderBookStorage.OFF_HEAP, 4, 2);
+        heap.setDepthCapacity(3);
+        offHeap.setDepthCapacity(3);
+
+        // When
+        for (OrderBook book : new OrderBook[]{heap, offHeap}) {
+            for (int i = 0; i < 8; i++) {
+                book.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal(100 - i), BigDecimal.valueOf(10 + i));
+                book.addQuote("SOURCE2", OrderBook.SELL, new BigDecimal(101 + i), BigDecimal.valueOf(20 + i));
+            }
+            book.addQuote("SOURCE3", OrderBook.BUY, new BigDecimal("99"), new BigDecimal("5"));
+            book.replaceQuote("SOURCE1", OrderBook.BUY, new BigDecimal("100"), new BigDecimal("7"));
+            book.deleteQuote("SOURCE2", OrderBook.SELL, new BigDecimal("101"));
+            book.refreshSource("SOURCE3", Map.of(new BigDecimal("98"), new BigDecimal("4")),
+                               Map.of(new BigDecimal("102"), new BigDecimal("6")));
+            book.removeSource("SOURCE2");
+            book.addQuote("SOURCE2", OrderBook.SELL, new BigDecimal("103"), new BigDecimal("1"));
+        }
+
+        // Then
+        assertThat(offHeap.getStorage()).isEqualTo(OrderBookStorage.OFF_HEAP);
+        assertThat(offHeap.getBestBid().getPrice()).isEqualByComparingTo(heap.getBestBid().getPrice());
+        assertThat(offHeap.getBestAsk().getTotalSellQty()).isEqualByComparingTo(heap.getBestAsk().getTotalSellQty());
+        assertThat(offHeap.getBidDepth()).isEqualTo(heap.getBidDepth());
+        assertThat(offHeap.getAskDepth()).isEqualTo(heap.getAskDepth());
+        assertThat(offHeap.getAggregatedLevels()).hasSameSizeAs(heap.getAggregatedLevels());
+        assertThat(offHeap.getLevelUnits(OrderBook.BUY, new BigDecimal("98")))
+            .isEqualTo(heap.getLevelUnits(OrderBook.BUY, new BigDecimal("98")));
+        int source1 = SourceIds.intern("SOURCE1");
+        assertThat(offHeap.getLevelSourceUnits(OrderBook.BUY, new BigDecimal("99.00"), source1))
+            .isEqualTo(heap.getLevelSourceUnits(OrderBook.BUY, new BigDecimal("99.00"), source1))
+            .isPositive();
+        assertThat(offHeap.getLevelSourceUnits(OrderBook.SELL, new BigDecimal("99"), source1)).isZero();
+        assertThat(offHeap.getSourceNames()).isEqualTo(heap.getSourceNames());
+        assertThat(offHeap.getBidLevels()).extracting(level -> level.getPrice().stripTrailingZeros(),
+                                                      OrderBook.PriceLevel::getBuySources)
+            .containsExactlyElementsOf(heap.getBidLevels().stream()
+                .map(level -> tuple(level.getPrice().stripTrailingZeros(), level.getBuySources())).toList());
+        assertThat(offHeap.getAskLevels()).extracting(level -> level.getPrice().stripTrailingZeros(),
+                                                      OrderBook.PriceLevel::getSellSources)
+            .containsExactlyElementsOf(heap.getAskLevels().stream()
+                .map(level -> tuple(level.getPrice().stripTrailingZeros(), level.getSellSources())).toList());
+        BookDepth heapBids = heap.getTopBidDepth();
+        BookDepth offHeapBids = offHeap.getTopBidDepth();
+        assertThat(offHeapBids.size()).isEqualTo(heapBids.size());
+        for (int i = 0; i < heapBids.size(); i++) {
+            assertThat(offHeapBids.getPrice(i)).isEqualByComparingTo(heapBids.getPrice(i));
+            assertThat(offHeapBids.getQuantityUnits(i)).isEqualTo(heapBids.getQuantityUnits(i));
+        }
+        assertThat(offHeap.readAnalytics().getMicroprice()).isEqualByComparingTo(heap.readAnalytics().getMicroprice());
+    }
+
+    /**
+     * 测试堆外存储价源槽位
+     * 验证同一价格同一方向的价源数超过槽位数时拒绝更新，档位保持不变
+     */
+    @Test
+    void testOffHeapSourceSlotsExhausted() {
+        // Given - 每个档位单侧2个槽位
+        OrderBook offHeap = new OrderBook(TEST_SYMBOL, TEST_MARKET_TYPE, PriceScale.DEFAULT,
+                                          OrderBookStorage.OFF_HEAP, 2, 4);
+        BigDecimal price = new BigDecimal("100");
+        offHeap.addQuote("SOURCE1", OrderBook.BUY, price, new BigDecimal("10"));
+        offHeap.addQuote("SOURCE2", OrderBook.BUY, price, new BigDecimal("20"));
+
+        // When & Then
+        assertThatThrownBy(() -> offHeap.addQuote("SOURCE3", OrderBook.BUY, price, new BigDecimal("30")))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Source slots exhausted");
+        assertThat(offHeap.getBestBid().getTotalBuyQty()).isEqualByComparingTo("30");
+
+        // When - 已有价源撤单后槽位释放
+        offHeap.deleteQuote("SOURCE1", OrderBook.BUY, price);
+        offHeap.addQuote("SOURCE3", OrderBook.BUY, price, new BigDecimal("30"));
+
+        // Then
+        assertThat(offHeap.getBestBid().getBuySources()).containsOnlyKeys("SOURCE2", "SOURCE3");
+        assertThat(offHeap.getBestBid().getTotalBuyQty()).isEqualByComparingTo("50");
+    }
+
+    /**
+     * 测试堆外存储全量刷新超出槽位
+     * 验证刷新中任一档位超出槽位数时整个刷新被拒绝，该价源其余档位和另一侧报价保持刷新前的状态
+     */
+    @Test
+    void testOffHeapRefreshSourceSlotsExhausted() {
+        // Given - 每个档位单侧2个槽位，100 买方已满
+        OrderBook offHeap = new OrderBook(TEST_SYMBOL, TEST_MARKET_TYPE, PriceScale.DEFAULT,
+                                          OrderBookStorage.OFF_HEAP, 2, 4);
+        offHeap.addQuote("SOURCE1", OrderBook.BUY, new BigDecimal("100"), new BigDecimal("10"));
+        offHeap.addQuote("SOURCE2", OrderBook.BUY, new BigDecimal("100"), new BigDecimal("20"));
+        offHeap.refreshSource("SOURCE3", Map.of(new BigDecimal("99"), new BigDecimal("5")),
+                              Map.of(new BigDecimal("101"), new BigDecimal("6")));
+
+        // When & Then - 刷新删除 99、新增 98 和已满的 100，并替换卖方
+        assertThatThrownBy(() -> offHeap.refreshSource("SOURCE3",
+                Map.of(new BigDecimal("98"), new BigDecimal("4"), new BigDecimal("100"), new BigDecimal("1")),
+                Map.of(new BigDecimal("102"), new BigDecimal("7"))))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Source slots exhausted");
+        assertThatThrownBy(() -> offHeap.refreshSource("SOURCE4",
+                Map.of(new BigDecimal("100"), new BigDecimal("1")), Map.of()))
+            .isInstanceOf(IllegalStateException.class);
+
+        // Then - 订单簿保持刷新前的状态，未登记新价源
+        assertThat(offHeap.getBidLevels()).extracting(level -> level.getPrice().stripTrailingZeros().toPlainString())
+            .containsExactly("100", "99");
+        assertThat(offHeap.getBestBid().getTotalBuyQty()).isEqualByComparingTo("30");
+        assertThat(offHeap.getLevelUnits(OrderBook.BUY, new BigDecimal("99")))
+            .isEqualTo(PriceScale.DEFAULT.toQuantityUnits(new BigDecimal("5")));
+        assertThat(offHeap.getAskLevels()).extracting(level -> level.getPrice().stripTrailingZeros().toPlainString())
+            .containsExactly("101");
+        assertThat(offHeap.getSourceNames()).containsExactly("SOURCE1", "SOURCE2", "SOURCE3");
+
+        // When - 已有价源撤单后槽位释放，刷新整体应用
+        offHeap.deleteQuote("SOURCE1", OrderBook.BUY, new BigDecimal("100"));
+        offHeap.refreshSource("SOURCE3",
+                Map.of(new BigDecimal("98"), new BigDecimal("4"), new BigDecimal("100"), new BigDecimal("1")),
+                Map.of(new BigDecimal("102"), new BigDecimal("7")));
+
+        // Then
+        assertThat(offHeap.getBidLevels()).extracting(level -> level.getPrice().stripTrailingZeros().toPlainString())
+            .containsExactly("100", "98");
+        assertThat(offHeap.getBestBid().getTotalBuyQty()).isEqualByComparingTo("21");
+        assertThat(offHeap.getBestAsk().getPrice()).isEqualByComparingTo(new BigDecimal("102"));
+    }
+
+    /**
+     * 测试堆内存储全量刷新包含不在最小变动价位上的价格
+     * 验证整个刷新被拒绝，该价源的买卖两侧都保持刷新前的状态
+     */
+    @Test
+    void testHeapRefreshSourceOffTickRejected() {
+        // Given - 最小变动价位 0.5
+        OrderBook heap = new OrderBook(TEST_SYMBOL, TEST_MARKET_TYPE, PriceScale.of(new BigDecimal("0.5"), 8));
+        heap.refreshSource("SOURCE1", Map.of(new BigDecimal("99"), new BigDecimal("5")),
+                           Map.of(new BigDecimal("101"), new BigDecimal("6")));
+
+        // When & Then - 新报价中 98.5 在网格上，98.3 不在网格上
+        assertThatThrownBy(() -> heap.refreshSource("SOURCE1",
+                Map.of(new BigDecimal("98.5"), new BigDecimal("4"), new BigDecimal("98.3"), new BigDecimal("1")),
+                Map.of(new BigDecimal("102"), new BigDecimal("7"))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("not a multiple of tick");
+        assertThatThrownBy(() -> heap.refreshSource("SOURCE2",
+                Map.of(), Map.of(new BigDecimal("101.2"), new BigDecimal("1"))))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        // Then - 订单簿保持刷新前的状态，未登记新价源
+        assertThat(heap.getBidLevels()).extracting(level -> level.getPrice().stripTrailingZeros().toPlainString())
+            .containsExactly("99");
+        assertThat(heap.getBestBid().getTotalBuyQty()).isEqualByComparingTo("5");
+        assertThat(heap.getAskLevels()).extracting(level -> level.getPrice().stripTrailingZeros().toPlainString())
+            .containsExactly("101");
+        assertThat(heap.getSourceNames()).containsExactly("SOURCE1");
+    }
+
+    /**
+     * 测试多个写者并发写同一订单簿
+     * 验证写锁只在持有线程内重入，其他线程的变更等待写锁，数量和版本不丢失
+     */
+    @Test
+    void testConcurrentWritersSerialized() throws Exception {
+        // Given - 两个写者各自用不同价源在同一档位累加，并穿插全量刷新（复合变更）
+        int updates = 2_000;
+        long versionBefore = orderBook.getVersion();
+        Thread[] writers = new Thread[2];
+        for (int w = 0; w < writers.length; w++) {
+            String source = "WRITER" + w;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < updates; i++) {
+                    orderBook.addQuote(source, OrderBook.BUY, new BigDecimal("100"), BigDecimal.ONE);
+                    orderBook.refreshSource(source + "_REFRESH", Map.of(new BigDecimal("99"), BigDecimal.ONE),
+                                            Map.of(new BigDecimal("101"), BigDecimal.ONE));
+                }
+            });
+        }
+
+        // When
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // Then - 每次变更都在写锁内完成，版本按变更次数递增
+        assertThat(orderBook.getBestBid().getTotalBuyQty()).isEqualByComparingTo(BigDecimal.valueOf(2L * updates));
+        assertThat(orderBook.getBestBid().getBuySources()).containsOnlyKeys("WRITER0", "WRITER1");
+        assertThat(orderBook.getBestAsk().getTotalSellQty()).isEqualByComparingTo("2");
+        assertThat(orderBook.getVersion() - versionBefore).isEqualTo(4L * updates);
+    }
+
+    /**
+     * 测试一致读
+     * 验证写者持续全量刷新买卖两侧时，读者读到的买卖数量始终来自同一次刷新
+     */
+    @Test
+    void testConsistentReadDuringWrites() throws Exception {
+        // Given - 写者每次刷新将买一和卖一设为相同数量
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            long qty = 1;
+            while (running.get()) {
+                BigDecimal quantity = BigDecimal.valueOf(qty++);
+                orderBook.refreshSource(TEST_SOURCE, Map.of(new BigDecimal("100"), quantity),
+                                        Map.of(new BigDecimal("101"), quantity));
+            }
+        });
+        orderBook.refreshSource(TEST_SOURCE, Map.of(new BigDecimal("100"), BigDecimal.ONE),
+                                Map.of(new BigDecimal("101"), BigDecimal.ONE));
+        writer.start();
+
+        try {
+            // When - 读者并发读取最优价和深度
+            for (int i = 0; i < 20_000; i++) {
+                OrderBook.BestPrices best = orderBook.readBestPrices();
+                BookDepth[] depths = orderBook.readDepth(1);
+
+                // Then - 买卖数量始终一致
+                assertThat(best.isTwoSided()).isTrue();
+                assertThat(best.getBidQty()).isEqualByComparingTo(best.getAskQty());
+                assertThat(depths[0].getQuantity(0)).isEqualByComparingTo(depths[1].getQuantity(0));
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    /**
+     * 测试堆外存储的并发读取
+     * 写者不断新建和删除档位使记录被释放复用，验证不经 read 直接读取的最优价和档位仍不会把一个档位的价格
+     * 与另一个档位的数量拼在一起（每个档位的买量都等于其价格）
+     */
+    @Test
+    void testOffHeapReadsDuringRecordReuse() throws Exception {
+        // Given - 价格1的档位常驻，其余档位在写者中反复新建删除
+        OrderBook offHeap = new OrderBook(TEST_SYMBOL, OrderBook.MARKET_OFFSHORE, PriceScale.DEFAULT,
+                                          OrderBookStorage.OFF_HEAP, 2, 4);
+        offHeap.addQuote(TEST_SOURCE, OrderBook.BUY, BigDecimal.ONE, BigDecimal.ONE);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            int i = 0;
+            while (running.get()) {
+                BigDecimal price = BigDecimal.valueOf(100 + i % 7);
+                offHeap.replaceQuote(TEST_SOURCE, OrderBook.BUY, price, price);
+                offHeap.deleteQuote(TEST_SOURCE, OrderBook.BUY, BigDecimal.valueOf(100 + (i + 4) % 7));
+                i++;
+            }
+        });
+        writer.start();
+
+        try {
+            // When - 读者直接读取最优买价和买方档位
+            for (int i = 0; i < 20_000; i++) {
+                OrderBook.PriceLevel best = offHeap.getBestBid();
+
+                // Then - 档位的价格和数量来自同一条记录
+                assertThat(best).isNotNull();
+                assertThat(best.getTotalBuyQty()).isEqualByComparingTo(best.getPrice());
+                for (OrderBook.PriceLevel level : offHeap.getBidLevels()) {
+                    assertThat(level.getTotalBuyQty()).isEqualByComparingTo(level.getPrice());
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
@@ -40,7 +40,7 @@ class QuoteEngineTest {
         mockOrderBook.addQuote("source1", OrderBook.BUY, new BigDecimal("1800.00"), new BigDecimal("1000"));
         mockOrderBook.addQuote("source1", OrderBook.SELL, new BigDecimal("1805.00"), new BigDecimal("1000"));
 
-        when(orderBookService.getOrderBook(symbol)).thenReturn(mockOrderBook);
+        when(orderBookService.getOrderBook(symbol, marketType)).thenReturn(mockOrderBook);
 
         // 执行测试
         Quote[] quotes = quoteEngine.generateBestQuotes(symbol, marketType);
@@ -66,7 +66,7 @@ class QuoteEngineTest {
         String symbol = "NONEXISTENT";
         Integer marketType = 1;
 
-        when(orderBookService.getOrderBook(symbol)).thenReturn(null);
+        when(orderBookService.getOrderBook(symbol, marketType)).thenReturn(null);
 
         // 执行测试
         Quote[] quotes = quoteEngine.generateBestQuotes(symbol, marketType);
@@ -120,7 +120,7 @@ class QuoteEngineTest {
         mockOrderBook.addQuote("source1", OrderBook.SELL, new BigDecimal("1805.00"), new BigDecimal("1200"));
         mockOrderBook.addQuote("source1", OrderBook.SELL, new BigDecimal("1805.50"), new BigDecimal("800"));
 
-        when(orderBookService.getOrderBook(symbol)).thenReturn(mockOrderBook);
+        when(orderBookService.getOrderBook(symbol, marketType)).thenReturn(mockOrderBook);
 
         // 执行测试
         List<Quote> quotes = quoteEngine.generateLevelQuotes(symbol, marketType, levels);
@@ -208,30 +208,32 @@ class QuoteEngineTest {
     void testGetBestBidPrice() {
         // 准备测试数据
         String symbol = "XAUUSD";
-        OrderBook.PriceLevel mockBid = new OrderBook.PriceLevel(new BigDecimal("1800.00"));
+        OrderBook mockOrderBook = new OrderBook(symbol, 1);
+        mockOrderBook.addQuote("source1", OrderBook.BUY, new BigDecimal("1800.00"), new BigDecimal("1000"));
 
-        when(orderBookService.getBestBid(symbol)).thenReturn(mockBid);
+        when(orderBookService.getOrderBook(symbol)).thenReturn(mockOrderBook);
 
         // 执行测试
         BigDecimal bestBidPrice = quoteEngine.getBestBidPrice(symbol);
 
         // 验证结果
-        assertEquals(new BigDecimal("1800.00"), bestBidPrice);
+        assertEquals(0, new BigDecimal("1800.00").compareTo(bestBidPrice));
     }
 
     @Test
     void testGetBestAskPrice() {
         // 准备测试数据
         String symbol = "XAUUSD";
-        OrderBook.PriceLevel mockAsk = new OrderBook.PriceLevel(new BigDecimal("1805.00"));
+        OrderBook mockOrderBook = new OrderBook(symbol, 1);
+        mockOrderBook.addQuote("source1", OrderBook.SELL, new BigDecimal("1805.00"), new BigDecimal("1000"));
 
-        when(orderBookService.getBestAsk(symbol)).thenReturn(mockAsk);
+        when(orderBookService.getOrderBook(symbol)).thenReturn(mockOrderBook);
 
         // 执行测试
         BigDecimal bestAskPrice = quoteEngine.getBestAskPrice(symbol);
 
         // 验证结果
-        assertEquals(new BigDecimal("1805.00"), bestAskPrice);
+        assertEquals(0, new BigDecimal("1805.00").compareTo(bestAskPrice));
     }
 
     @Test
@@ -248,7 +250,7 @@ class QuoteEngineTest {
         mockOrderBook.addQuote("source1", OrderBook.BUY, new BigDecimal("1800.00"), new BigDecimal("1000"));
         mockOrderBook.addQuote("source1", OrderBook.SELL, new BigDecimal("1805.00"), new BigDecimal("1000"));
 
-        when(orderBookService.getOrderBook(symbol)).thenReturn(mockOrderBook);
+        when(orderBookService.getOrderBook(symbol, marketType)).thenReturn(mockOrderBook);
 
         Quote[] quotes = quoteEngine.generateBestQuotes(symbol, marketType);
         assertNotNull(quotes);
@@ -275,4 +277,23 @@ class QuoteEngineTest {
         // 验证结果
         assertEquals(seq1 + 1, seq2);
     }
+
+    @Test
+    void testBookSelector() {
+        // 准备测试数据 - 境内报价参考境外订单簿
+        String symbol = "XAUUSD";
+        OrderBook offshoreBook = new OrderBook(symbol, OrderBook.MARKET_OFFSHORE);
+        offshoreBook.addQuote("source1", OrderBook.BUY, new BigDecimal("1810.00"), new BigDecimal("1000"));
+        offshoreBook.addQuote("source1", OrderBook.SELL, new BigDecimal("1811.00"), new BigDecimal("1000"));
+        quoteEngine.setBookSelector((s, marketType) -> offshoreBook);
+
+        // 执行测试
+        Quote[] quotes = quoteEngine.generateBestQuotes(symbol, OrderBook.MARKET_DOMESTIC_GOLD);
+
+        // 验证结果
+        assertNotNull(quotes);
+        assertEquals(new BigDecimal("1810.00"), quotes[0].getPrice());
+        assertEquals(OrderBook.MARKET_DOMESTIC_GOLD, quotes[0].getMarketType());
+        verifyNoInteractions(orderBookService);
+    }
 }
@@ -1,5 +1,6 @@
 package com.quant.making.risk;
 
+import com.quant.making.book.SymbolIds;
 import com.quant.making.quote.Quote;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -144,6 +145,20 @@ public class RiskRuleEngineTest {
         assertTrue(result.getMessage().contains("单日交易金额"));
     }
     
+    @Test
+    void testPositionLimitRejectionDoesNotInternSymbol() {
+        // 超出持仓限制的未知品种被拒绝，且不在品种注册表中分配编号
+        String symbol = "UNKNOWN_POSITION_SYMBOL";
+        Quote quote = new Quote(symbol, 1, Quote.BUY,
+                               new BigDecimal("1"), new BigDecimal("2500")); // 持仓2500 > 2000 limit
+        
+        RiskRuleEngine.RiskCheckResult result = riskRuleEngine.postTradeCheck(quote, new BigDecimal("100"));
+        
+        assertFalse(result.isPassed());
+        assertTrue(result.getMessage().contains("持仓"));
+        assertEquals(-1, SymbolIds.lookup(symbol));
+    }
+    
     @Test
     void testLossLimit() {
         Quote quote = new Quote("ALLOWED_SYMBOL", 1, Quote.BUY, 